@@ -0,0 +1,16 @@
+package com.nari._mw._enum;
+
+/**
+ * 告警规则类型
+ */
+public enum AlarmRuleType {
+
+    // 测点值越限
+    THRESHOLD,
+
+    // 测点变化率(每秒)越限
+    RATE_OF_CHANGE,
+
+    // 滑动时间窗口内的平均值越限
+    WINDOW_AVERAGE
+}
@@ -0,0 +1,16 @@
+package com.nari._mw._enum;
+
+/**
+ * 设备链路熔断状态
+ */
+public enum CircuitState {
+
+    // 正常放行
+    CLOSED,
+
+    // 连续失败后拒绝请求，直到冷却时间结束
+    OPEN,
+
+    // 冷却结束，只放行一个探测请求
+    HALF_OPEN
+}
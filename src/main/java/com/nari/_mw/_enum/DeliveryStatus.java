@@ -0,0 +1,13 @@
+package com.nari._mw._enum;
+
+/**
+ * 下发结果
+ */
+public enum DeliveryStatus {
+
+    // 已发布至代理
+    DELIVERED,
+
+    // 设备离线，已暂存，设备上线后按顺序下发
+    QUEUED
+}
@@ -0,0 +1,19 @@
+package com.nari._mw._enum;
+
+/**
+ * 下发消息的类别，按类别确定发布使用的QoS
+ */
+public enum MessageClass {
+
+    // 配置传输元数据，设备据此准备接收
+    METADATA,
+
+    // 配置文件切片，逐片由设备在 file/dataack 上确认
+    SLICE,
+
+    // 功能块下发，无应用层确认
+    FUNCTION_BLOCK,
+
+    // 调试和控制指令
+    COMMAND
+}
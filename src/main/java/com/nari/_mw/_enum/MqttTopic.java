@@ -21,7 +21,22 @@ public enum MqttTopic {
     FILE_SLICE_ACK("file/dataack"),
 
     // 控制器向HMI发送最终文件验证结果
-    FILE_VERIFICATION_RESULT("file/ack");
+    FILE_VERIFICATION_RESULT("file/ack"),
+
+    // HMI请求控制器回传当前生效的配置文件
+    CONFIG_UPLOAD_REQUEST("upload"),
+
+    // 控制器向HMI发送回传文件的元数据
+    CONFIG_UPLOAD_METADATA("upload/meta"),
+
+    // 控制器向HMI发送文件数据块，数据块可乱序到达
+    UPLOAD_DATA_SLICE("upload/data"),
+
+    // HMI向控制器批量确认已收到的数据块
+    UPLOAD_SLICE_ACK("upload/dataack"),
+
+    // HMI向控制器发送最终校验结果，失败时附带缺失的切片序号
+    UPLOAD_VERIFICATION_RESULT("upload/ack");
 
     private final String topic;
 
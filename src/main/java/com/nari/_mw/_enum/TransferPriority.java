@@ -0,0 +1,16 @@
+package com.nari._mw._enum;
+
+/**
+ * 下发任务优先级，高优先级任务总是先于低优先级任务开始
+ */
+public enum TransferPriority {
+
+    // 紧急操作，如故障处置
+    HIGH,
+
+    // 常规下发
+    NORMAL,
+
+    // 批量或后台下发
+    LOW
+}
@@ -0,0 +1,22 @@
+package com.nari._mw.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(BrokerFailoverConfig.PREFIX)
+public class BrokerFailoverConfig {
+    public static final String PREFIX = "mqtt.failover";
+
+    /**
+     * 连接失败或丢失后该代理排在健康代理之后的时间(毫秒)
+     */
+    private long failurePenaltyMs = 30_000;
+
+    /**
+     * 单次传输中因连接丢失切换代理的最大次数
+     */
+    private int maxFailovers = 3;
+}
@@ -0,0 +1,69 @@
+package com.nari._mw.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(ClusterConfig.PREFIX)
+public class ClusterConfig {
+    public static final String PREFIX = "cluster";
+
+    /**
+     * 是否以集群模式运行；关闭时本实例处理所有设备
+     */
+    private boolean enabled;
+
+    /**
+     * 本实例标识，为空时使用主机名
+     */
+    private String nodeId;
+
+    /**
+     * 其他实例转发请求时使用的地址，如 http://10.0.0.5:8080
+     */
+    private String advertisedUrl;
+
+    /**
+     * 成员来源: memory(进程内，仅用于测试和单机)、file(共享目录)、jdbc(MySQL表 cluster_member)
+     */
+    private String membership = "file";
+
+    /**
+     * file 模式下各实例写入心跳文件的共享目录
+     */
+    private String directory = "data/cluster";
+
+    /**
+     * jdbc 模式单独使用的数据库连接；为空时复用遥测持久化的连接池
+     */
+    private String url;
+    private String username;
+    private String password;
+
+    /**
+     * jdbc 模式启动时执行 db/cluster-schema.sql 建表，默认由运维预先建表
+     */
+    private boolean initializeSchema;
+
+    /**
+     * 心跳及刷新成员列表的间隔(毫秒)
+     */
+    private long heartbeatIntervalMs = 5000;
+
+    /**
+     * 超过该时间(毫秒)未心跳的实例被移出成员列表，其设备重新分配
+     */
+    private long memberTimeoutMs = 15_000;
+
+    /**
+     * 每个实例在哈希环上的虚拟节点数，越大分配越均匀
+     */
+    private int virtualNodes = 128;
+
+    /**
+     * 转发到设备所属实例的请求超时(毫秒)，应覆盖对方排队和传输时间
+     */
+    private long forwardTimeoutMs = 600_000;
+}
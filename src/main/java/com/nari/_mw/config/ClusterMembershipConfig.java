@@ -0,0 +1,67 @@
+package com.nari._mw.config;
+
+import com.nari._mw.service.FileMembershipStore;
+import com.nari._mw.service.InMemoryMembershipStore;
+import com.nari._mw.service.JdbcMembershipStore;
+import com.nari._mw.service.MembershipStore;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.nio.file.Paths;
+
+/**
+ * 集群成员来源，按 cluster.membership 选择实现
+ * jdbc 模式默认复用遥测持久化的连接池；仅当显式配置 cluster.url 时为成员表单独建立小连接池。
+ */
+@Configuration
+@ConditionalOnProperty(prefix = ClusterConfig.PREFIX, name = "enabled", havingValue = "true")
+public class ClusterMembershipConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = ClusterConfig.PREFIX, name = "membership", havingValue = "memory")
+    public MembershipStore inMemoryMembershipStore() {
+        return new InMemoryMembershipStore();
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = ClusterConfig.PREFIX, name = "membership", havingValue = "file", matchIfMissing = true)
+    public MembershipStore fileMembershipStore(ClusterConfig config) {
+        return new FileMembershipStore(Paths.get(config.getDirectory()));
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnExpression("'${cluster.membership:file}' == 'jdbc' and '${cluster.url:}' != ''")
+    public HikariDataSource clusterDataSource(ClusterConfig config) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("cluster");
+        dataSource.setJdbcUrl(config.getUrl());
+        dataSource.setUsername(config.getUsername());
+        dataSource.setPassword(config.getPassword());
+        dataSource.setMaximumPoolSize(2);
+        return dataSource;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = ClusterConfig.PREFIX, name = "membership", havingValue = "jdbc")
+    public MembershipStore jdbcMembershipStore(ClusterConfig config,
+                                               @Qualifier("clusterDataSource") ObjectProvider<DataSource> clusterDataSource,
+                                               @Qualifier("telemetryDataSource") ObjectProvider<DataSource> telemetryDataSource) {
+        DataSource dataSource = clusterDataSource.getIfAvailable(telemetryDataSource::getIfAvailable);
+        if (dataSource == null) {
+            throw new IllegalStateException("cluster.membership=jdbc 需要开启遥测持久化(telemetry.persistence.enabled)或配置 cluster.url");
+        }
+        if (config.isInitializeSchema()) {
+            new ResourceDatabasePopulator(new ClassPathResource("db/cluster-schema.sql")).execute(dataSource);
+        }
+        return new JdbcMembershipStore(new JdbcTemplate(dataSource));
+    }
+}
@@ -0,0 +1,52 @@
+package com.nari._mw.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(ConfigReadBackConfig.PREFIX)
+public class ConfigReadBackConfig {
+    public static final String PREFIX = "transfer.read-back";
+
+    /**
+     * 回读文件保存目录，每次回读一个子目录，其下按设备ID分目录
+     */
+    private String directory = "data/backups";
+
+    /**
+     * 请求控制器使用的切片大小(bytes)
+     */
+    private int sliceSize = 10 * 1024;
+
+    /**
+     * 累计多少个切片后发送一次批量确认
+     */
+    private int ackBatchSize = 16;
+
+    /**
+     * 未满一批的确认最多延迟的时间(毫秒)
+     */
+    private long ackIntervalMs = 50;
+
+    /**
+     * 超过该时间(毫秒)没有切片到达时，向控制器列出缺失切片请求重发
+     */
+    private long idleTimeoutMs = 3_000;
+
+    /**
+     * 请求重发缺失切片的最大轮次
+     */
+    private int maxRetransmissionRounds = 3;
+
+    /**
+     * 单次请求重发时列出的最大缺失切片数
+     */
+    private int maxMissingPerRound = 256;
+
+    /**
+     * 单个设备回读的总超时(毫秒)
+     */
+    private long timeoutMs = 300_000;
+}
@@ -0,0 +1,30 @@
+package com.nari._mw.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(DeviceGroupConfig.PREFIX)
+public class DeviceGroupConfig {
+    public static final String PREFIX = "device-group";
+
+    /**
+     * 通知控制器加入或退出组主题使用的MQTT代理，为空时不发送通知，由控制器自行配置订阅；
+     * 用户名和密码为空时使用 mqtt.default-username / mqtt.default-password
+     */
+    private String host;
+    private String username;
+    private String password;
+
+    /**
+     * 组下发等待各设备确认的时间(毫秒)，超时未确认的设备标记为未确认
+     */
+    private long ackTimeoutMs = 30_000;
+
+    /**
+     * 内存中保留的最近组下发结果数
+     */
+    private int retainedResults = 100;
+}
@@ -0,0 +1,34 @@
+package com.nari._mw.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(DeviceLinkConfig.PREFIX)
+public class DeviceLinkConfig {
+    public static final String PREFIX = "transfer.link";
+
+    /**
+     * 尚无往返时间样本时的重传超时(毫秒)
+     */
+    private long initialRtoMs = 3_000;
+    private long minRtoMs = 200;
+    private long maxRtoMs = 60_000;
+
+    /**
+     * 单条消息无响应时的最大重传次数
+     */
+    private int maxRetransmits = 4;
+
+    /**
+     * 连续失败多少次后熔断
+     */
+    private int failureThreshold = 3;
+
+    /**
+     * 熔断后的冷却时间(毫秒)，结束后放行一个探测请求
+     */
+    private long openDurationMs = 60_000;
+}
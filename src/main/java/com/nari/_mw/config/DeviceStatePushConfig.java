@@ -0,0 +1,23 @@
+package com.nari._mw.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(DeviceStatePushConfig.PREFIX)
+public class DeviceStatePushConfig {
+    public static final String PREFIX = "telemetry.push";
+
+    /**
+     * 推送帧间隔(毫秒)，一帧内的多次变化合并为最新值
+     */
+    private long intervalMs = 100;
+
+    /**
+     * 单个客户端发送超时(毫秒)和待发送缓冲上限(字节)，超出时断开慢客户端
+     */
+    private int sendTimeLimitMs = 1000;
+    private int bufferSizeLimit = 512 * 1024;
+}
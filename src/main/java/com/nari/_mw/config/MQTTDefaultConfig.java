@@ -13,4 +13,14 @@ public class MQTTDefaultConfig {
     private String clientId;
     private String defaultUsername;
     private String defaultPassword;
+
+    /**
+     * 配置传输使用的MQTT协议版本：3 (3.1.1) 或 5
+     */
+    private int protocolVersion = 3;
+
+    /**
+     * MQTT 5 下文件切片在代理端的过期时间(秒)，过期未投递的切片被丢弃，0表示不过期
+     */
+    private long sliceExpirySeconds = 60;
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.nari._mw.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(PresenceConfig.PREFIX)
+public class PresenceConfig {
+    public static final String PREFIX = "presence";
+
+    /**
+     * 是否订阅设备上下线和心跳主题
+     */
+    private boolean enabled;
+
+    /**
+     * MQTT代理地址，用户名和密码为空时使用 mqtt.default-username / mqtt.default-password
+     */
+    private String host;
+    private String username;
+    private String password;
+
+    /**
+     * 超过该时间(毫秒)未收到心跳或遥测即判定离线
+     */
+    private long heartbeatTimeoutMs = 30_000;
+
+    /**
+     * 为true时，从未上报过状态的设备也视为离线
+     */
+    private boolean requireKnown;
+}
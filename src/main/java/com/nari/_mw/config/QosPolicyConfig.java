@@ -0,0 +1,36 @@
+package com.nari._mw.config;
+
+import com.nari._mw._enum.MessageClass;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 按消息类别配置发布QoS
+ * 切片已有设备的应用层确认和按RTO重传，默认使用QoS 0，省去代理的PUBACK往返；
+ * 没有应用层确认的消息保持QoS 1，由代理保证至少送达一次。
+ */
+@Data
+@Configuration
+@ConfigurationProperties(QosPolicyConfig.PREFIX)
+public class QosPolicyConfig {
+    public static final String PREFIX = "mqtt.qos";
+
+    private int metadata = 1;
+    private int slice = 0;
+    private int functionBlock = 1;
+    private int command = 1;
+
+    public int qosFor(MessageClass messageClass) {
+        int qos = switch (messageClass) {
+            case METADATA -> metadata;
+            case SLICE -> slice;
+            case FUNCTION_BLOCK -> functionBlock;
+            case COMMAND -> command;
+        };
+        if (qos < 0 || qos > 2) {
+            throw new IllegalStateException("无效的QoS配置: " + messageClass + "=" + qos);
+        }
+        return qos;
+    }
+}
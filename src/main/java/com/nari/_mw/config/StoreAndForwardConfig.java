@@ -0,0 +1,50 @@
+package com.nari._mw.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(StoreAndForwardConfig.PREFIX)
+public class StoreAndForwardConfig {
+    public static final String PREFIX = "store-forward";
+
+    /**
+     * 是否暂存发往离线设备的消息，未启用时离线设备的请求直接失败
+     */
+    private boolean enabled;
+
+    /**
+     * 暂存日志目录，每个设备一个文件
+     */
+    private String directory = "data/outbound";
+
+    /**
+     * 单个设备日志文件的初始映射大小(字节)，不足时先压缩再扩容
+     */
+    private int logSizeBytes = 64 * 1024;
+
+    /**
+     * 暂存消息后是否立即刷盘；确认记录在每次下发结束后统一刷盘
+     */
+    private boolean syncOnAppend = true;
+
+    /**
+     * 未记录原始代理的消息(如加入/退出组通知)在设备上线后下发使用的MQTT代理地址，
+     * 用户名和密码为空时使用 mqtt.default-username / mqtt.default-password
+     */
+    private String host;
+    private String username;
+    private String password;
+
+    /**
+     * 单条消息等待代理确认的超时时间(毫秒)
+     */
+    private long publishTimeoutMs = 10_000;
+
+    /**
+     * 定期重试下发的间隔(毫秒)，用于上线通知到达时下发失败的设备
+     */
+    private long retryIntervalMs = 30_000;
+}
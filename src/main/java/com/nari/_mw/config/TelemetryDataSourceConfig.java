@@ -0,0 +1,31 @@
+package com.nari._mw.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 遥测持久化数据源
+ * 应用排除了DataSource自动配置，仅在开启遥测持久化时创建连接池
+ */
+@Configuration
+@ConditionalOnProperty(prefix = TelemetryPersistenceConfig.PREFIX, name = "enabled", havingValue = "true")
+public class TelemetryDataSourceConfig {
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource telemetryDataSource(TelemetryPersistenceConfig config) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("telemetry");
+        dataSource.setJdbcUrl(config.getUrl());
+        dataSource.setUsername(config.getUsername());
+        dataSource.setPassword(config.getPassword());
+        return dataSource;
+    }
+
+    @Bean
+    public JdbcTemplate telemetryJdbcTemplate(HikariDataSource telemetryDataSource) {
+        return new JdbcTemplate(telemetryDataSource);
+    }
+}
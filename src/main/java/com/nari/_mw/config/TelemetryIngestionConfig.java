@@ -0,0 +1,43 @@
+package com.nari._mw.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(TelemetryIngestionConfig.PREFIX)
+public class TelemetryIngestionConfig {
+    public static final String PREFIX = "telemetry.ingestion";
+
+    /**
+     * 是否启动时订阅遥测主题
+     */
+    private boolean enabled;
+
+    /**
+     * MQTT代理地址，如 tcp://localhost:1883
+     */
+    private String host;
+
+    /**
+     * 用户名和密码，为空时使用 mqtt.default-username / mqtt.default-password
+     */
+    private String username;
+    private String password;
+
+    /**
+     * 每个工作线程的环形缓冲区容量，向上取整为2的幂
+     */
+    private int ringCapacity = 65536;
+
+    /**
+     * 解析工作线程数，也是按设备划分的分区数
+     */
+    private int workerThreads = 2;
+
+    /**
+     * 每批最多解析的消息数
+     */
+    private int batchSize = 256;
+}
@@ -0,0 +1,65 @@
+package com.nari._mw.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(TelemetryPersistenceConfig.PREFIX)
+public class TelemetryPersistenceConfig {
+    public static final String PREFIX = "telemetry.persistence";
+
+    /**
+     * 是否持久化遥测数据，开启后需要配置数据库连接
+     */
+    private boolean enabled;
+
+    /**
+     * 数据库连接，MySQL建议附加 rewriteBatchedStatements=true 以合并批量插入
+     */
+    private String url;
+    private String username;
+    private String password;
+
+    /**
+     * 启动时执行 db/telemetry-schema.sql 建表
+     */
+    private boolean initializeSchema = true;
+
+    /**
+     * 单次批量插入的最大行数
+     */
+    private int batchSize = 500;
+
+    /**
+     * 异步写缓冲容量，缓冲满时丢弃新样本并计数
+     */
+    private int bufferCapacity = 100_000;
+
+    /**
+     * 缓冲未满一批时的最长刷写间隔(毫秒)
+     */
+    private long flushIntervalMs = 1000;
+
+    /**
+     * 查询时间跨度不超过该值(毫秒)时返回原始样本，否则返回聚合数据
+     */
+    private long rawMaxRangeMs = 5 * 60 * 1000;
+
+    /**
+     * 聚合查询期望返回的最大点数，据此选择聚合粒度
+     */
+    private int maxQueryPoints = 1000;
+
+    /**
+     * 每个测点每种粒度在内存中保留的最近聚合桶数
+     */
+    private int retainedBuckets = 1000;
+
+    /**
+     * 聚合桶结束后等待迟到样本的时间(毫秒)，超过后即使设备不再上报也关闭并写入该桶，
+     * 按服务器时钟判断，需覆盖设备时钟偏差
+     */
+    private long rollupGraceMs = 5000;
+}
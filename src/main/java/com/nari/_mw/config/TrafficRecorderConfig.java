@@ -0,0 +1,27 @@
+package com.nari._mw.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(TrafficRecorderConfig.PREFIX)
+public class TrafficRecorderConfig {
+    public static final String PREFIX = "mqtt.recorder";
+
+    /**
+     * 是否记录配置传输和功能块下发客户端的MQTT流量
+     */
+    private boolean enabled;
+
+    /**
+     * 记录文件目录，每次启动新建一个文件
+     */
+    private String directory = "data/recordings";
+
+    /**
+     * 单个记录文件大小(字节)，写满后停止记录
+     */
+    private int capacityBytes = 64 * 1024 * 1024;
+}
@@ -0,0 +1,27 @@
+package com.nari._mw.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(TransferAdmissionConfig.PREFIX)
+public class TransferAdmissionConfig {
+    public static final String PREFIX = "transfer.admission";
+
+    /**
+     * 同时执行的下发任务数，同一设备同时只执行一个任务
+     */
+    private int maxConcurrent = 2;
+
+    /**
+     * 排队任务上限，队列满时才拒绝新请求
+     */
+    private int maxDepth = 64;
+
+    /**
+     * 尚无完成记录时用于估算开始时间的单个任务耗时(毫秒)
+     */
+    private long initialServiceTimeMs = 30_000;
+}
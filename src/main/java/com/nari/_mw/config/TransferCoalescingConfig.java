@@ -0,0 +1,22 @@
+package com.nari._mw.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(TransferCoalescingConfig.PREFIX)
+public class TransferCoalescingConfig {
+    public static final String PREFIX = "transfer.coalescing";
+
+    /**
+     * 成功完成的请求按 Idempotency-Key 保留结果的时间(毫秒)
+     */
+    private long idempotencyRetentionMs = 600_000;
+
+    /**
+     * 保留的 Idempotency-Key 数量上限，超出时丢弃最早的
+     */
+    private int maxIdempotencyKeys = 10_000;
+}
@@ -0,0 +1,22 @@
+package com.nari._mw.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(TransferExecutionConfig.PREFIX)
+public class TransferExecutionConfig {
+    public static final String PREFIX = "transfer.execution";
+
+    /**
+     * 执行配置传输的专用线程数，与公共线程池隔离
+     */
+    private int threads = 8;
+
+    /**
+     * 等待单个设备响应的超时时间(毫秒)
+     */
+    private long ackTimeoutMs = 30_000;
+}
@@ -0,0 +1,41 @@
+package com.nari._mw.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashSet;
+import java.util.Set;
+
+@Data
+@Configuration
+@ConfigurationProperties(TransferLoggingConfig.PREFIX)
+public class TransferLoggingConfig {
+    public static final String PREFIX = "transfer.logging";
+    public static final int DEFAULT_PAYLOAD_PREVIEW_LENGTH = 64;
+
+    /**
+     * 未开启明细的设备，每隔多少个切片事件采样输出一次(DEBUG)，小于等于0表示不采样
+     */
+    private int sliceSampleRate = 100;
+
+    /**
+     * 异步日志队列容量，队列满时丢弃事件并计数
+     */
+    private int queueCapacity = 4096;
+
+    /**
+     * 日志中保留的消息内容最大字符数
+     */
+    private int payloadPreviewLength = DEFAULT_PAYLOAD_PREVIEW_LENGTH;
+
+    /**
+     * 开启逐切片明细日志(INFO)的设备ID
+     */
+    private Set<String> detailDevices = new HashSet<>();
+
+    /**
+     * 内存中保留的最近传输时间线数量
+     */
+    private int timelineCapacity = 200;
+}
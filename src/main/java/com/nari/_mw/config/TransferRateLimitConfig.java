@@ -0,0 +1,33 @@
+package com.nari._mw.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 传输限速初始配置，单位均为字节/秒，小于等于0表示不限速
+ * 运行时可通过管理接口调整
+ */
+@Data
+@Configuration
+@ConfigurationProperties(TransferRateLimitConfig.PREFIX)
+public class TransferRateLimitConfig {
+    public static final String PREFIX = "transfer.rate-limit";
+
+    private long globalBytesPerSecond;
+    private long brokerBytesPerSecond;
+    private long deviceBytesPerSecond;
+
+    /**
+     * 已满且超过该时长(毫秒)未使用的代理和设备令牌桶被清理，下次发布时重新创建
+     */
+    private long idleEvictMs = 60_000;
+
+    /**
+     * 单个设备的速率覆盖，key为设备ID
+     */
+    private Map<String, Long> devices = new HashMap<>();
+}
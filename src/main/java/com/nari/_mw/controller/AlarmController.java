@@ -0,0 +1,48 @@
+package com.nari._mw.controller;
+
+import com.nari._mw.pojo.dto.response.MessageResponse;
+import com.nari._mw.pojo.model.AlarmEvent;
+import com.nari._mw.pojo.model.AlarmRule;
+import com.nari._mw.service.AlarmRuleEngine;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@CrossOrigin(originPatterns = "*", allowCredentials = "true")
+@RestController
+@RequestMapping("/api/v1/alarms")
+@RequiredArgsConstructor
+public class AlarmController {
+    private final AlarmRuleEngine alarmRuleEngine;
+
+    @GetMapping("/rules")
+    public ResponseEntity<List<AlarmRule>> getRules() {
+        return ResponseEntity.ok(alarmRuleEngine.getRules());
+    }
+
+    @PostMapping("/rules")
+    public ResponseEntity<AlarmRule> addRule(@RequestBody AlarmRule rule) {
+        return ResponseEntity.ok(alarmRuleEngine.addRule(rule));
+    }
+
+    @DeleteMapping("/rules/{ruleId}")
+    public ResponseEntity<MessageResponse> removeRule(@PathVariable String ruleId) {
+        if (!alarmRuleEngine.removeRule(ruleId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new MessageResponse("告警规则不存在: " + ruleId));
+        }
+        return ResponseEntity.ok(new MessageResponse("告警规则已删除: " + ruleId));
+    }
+
+    @GetMapping("/active")
+    public ResponseEntity<List<AlarmEvent>> getActiveAlarms() {
+        return ResponseEntity.ok(alarmRuleEngine.getActiveAlarms());
+    }
+
+    @GetMapping("/events")
+    public ResponseEntity<List<AlarmEvent>> getRecentEvents() {
+        return ResponseEntity.ok(alarmRuleEngine.getRecentEvents());
+    }
+}
@@ -0,0 +1,38 @@
+package com.nari._mw.controller;
+
+import com.nari._mw.pojo.model.ClusterNode;
+import com.nari._mw.service.ClusterService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@CrossOrigin(originPatterns = "*", allowCredentials = "true")
+@RestController
+@RequestMapping("/api/v1/cluster")
+@RequiredArgsConstructor
+public class ClusterController {
+    private final ClusterService clusterService;
+
+    /**
+     * 当前存活的集群成员
+     */
+    @GetMapping("/members")
+    public ResponseEntity<List<ClusterNode>> getMembers() {
+        return ResponseEntity.ok(clusterService.getMembers());
+    }
+
+    @GetMapping("/self")
+    public ResponseEntity<ClusterNode> getSelf() {
+        return ResponseEntity.ok(clusterService.getSelf());
+    }
+
+    /**
+     * 设备所属实例
+     */
+    @GetMapping("/owners/{deviceId}")
+    public ResponseEntity<ClusterNode> getOwner(@PathVariable String deviceId) {
+        return ResponseEntity.ok(clusterService.ownerOf(deviceId));
+    }
+}
@@ -1,19 +1,42 @@
 package com.nari._mw.controller;
 
+import com.nari._mw._enum.DeliveryStatus;
+import com.nari._mw._enum.TransferPriority;
 import com.nari._mw.exception.MessageProcessingException;
+import com.nari._mw.pojo.dto.request.ConfigBackupRequest;
 import com.nari._mw.pojo.dto.request.DeviceFunctionBlockRequest;
 import com.nari._mw.pojo.dto.request.PublishConfigRequest;
+import com.nari._mw.pojo.dto.response.AdmissionTicketResponse;
+import com.nari._mw.pojo.dto.response.ConfigBackupResponse;
 import com.nari._mw.pojo.dto.response.MessageResponse;
+import com.nari._mw.pojo.dto.response.PublishConfigResponse;
+import com.nari._mw.pojo.dto.response.TransferStatusResponse;
+import com.nari._mw.pojo.dto.response.TransferTimelineResponse;
+import com.nari._mw.pojo.model.ClusterNode;
+import com.nari._mw.pojo.model.DevicePresence;
+import com.nari._mw.pojo.model.OutboundMessage;
+import com.nari._mw.service.ClusterForwarder;
+import com.nari._mw.service.ClusterService;
+import com.nari._mw.service.ConfigReadBackService;
+import com.nari._mw.service.DevicePresenceRegistry;
 import com.nari._mw.service.DeviceService;
+import com.nari._mw.service.StoreAndForwardService;
 import com.nari._mw.service.TestDeviceService;
+import com.nari._mw.service.TransferAdmissionQueue;
+import com.nari._mw.service.TransferCoalescer;
+import com.nari._mw.service.TransferRegistry;
+import com.nari._mw.service.TransferTimelineStore;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 @CrossOrigin(originPatterns = "*", allowCredentials = "true")
@@ -23,91 +46,202 @@ import java.util.concurrent.TimeUnit;
 public class DeviceController {
     private final DeviceService deviceService;
     private final TestDeviceService testDeviceService;
-    private final Semaphore publishConfigSemaphore = new Semaphore(1);
-    private final Semaphore processFunctionBlocksSemaphore = new Semaphore(1);
+    private final DevicePresenceRegistry devicePresenceRegistry;
+    private final StoreAndForwardService storeAndForwardService;
+    private final TransferAdmissionQueue transferAdmissionQueue;
+    private final TransferRegistry transferRegistry;
+    private final ClusterService clusterService;
+    private final ClusterForwarder clusterForwarder;
+    private final ConfigReadBackService configReadBackService;
+    private final TransferTimelineStore transferTimelineStore;
+    private final TransferCoalescer transferCoalescer;
+
+    private static final String OPERATOR_HEADER = "X-Operator-Id";
+    private static final String PRIORITY_HEADER = "X-Transfer-Priority";
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    // 与 spring.mvc.async.request-timeout 一致，请求超时后尚未开始的任务从准入队列移除
+    private static final long QUEUE_TIMEOUT_MINUTES = 10;
 
     //Spring中使用CompletableFuture：该函数接受到一个CompletableFuture对象后，Spring 会在内部注册一个回调，等待 CompletableFuture 完成，然后再返回给客户端
+    /**
+     * 同一设备、同一配置文件和切片大小的传输已在排队或执行时，请求附加到该传输并得到相同结果；
+     * 携带 Idempotency-Key 的重复提交返回首次请求的结果
+     */
     @PostMapping("/publish-config")
-    public CompletableFuture<ResponseEntity<MessageResponse>> publishConfig(
-            @Valid @RequestBody PublishConfigRequest request) {
-        // 如果无法获取信号量，直接返回繁忙信息
-        if (!publishConfigSemaphore.tryAcquire()) {
-            return CompletableFuture.completedFuture(
-                    ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
-                            .body(new MessageResponse("系统正在处理其他配置请求，请稍后再试"))
-            );
+    public CompletableFuture<ResponseEntity<?>> publishConfig(
+            @Valid @RequestBody PublishConfigRequest request,
+            @RequestHeader(value = OPERATOR_HEADER, required = false) String operator,
+            @RequestHeader(value = PRIORITY_HEADER, defaultValue = "NORMAL") TransferPriority priority,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestHeader(value = ClusterForwarder.FORWARDED_HEADER, required = false) String forwardedBy,
+            HttpServletRequest httpRequest) {
+        CompletableFuture<ResponseEntity<?>> forwarded = forwardIfRemote(request.getDeviceId(),
+                "/api/v1/devices/publish-config", request, operatorOf(operator, httpRequest), priority,
+                idempotencyKey, forwardedBy);
+        if (forwarded != null) {
+            return forwarded;
         }
+        // 排队等待执行，超时从任务开始执行时计算；排队时间计入时间线
+        return complete(transferCoalescer.submit(deviceService.coalescingKey(request), idempotencyKey, () -> {
+                    long queuedAtNanos = System.nanoTime();
+                    return transferAdmissionQueue.submit(request.getDeviceId(), operatorOf(operator, httpRequest),
+                                    priority, () -> deviceService.publishConfig(request, queuedAtNanos)
+                                            .orTimeout(2, TimeUnit.MINUTES))
+                            .orTimeout(QUEUE_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+                })
+                .thenApply(timeline -> ResponseEntity.<MessageResponse>ok(
+                        new PublishConfigResponse("配置成功发布至设备: " + request.getDeviceId(), timeline))));
+    }
 
-        // 创建一个特殊的资源，在 try-with-resources 中自动释放信号量
-        class SemaphoreResource implements AutoCloseable {
-            @Override
-            public void close() {
-                publishConfigSemaphore.release();
-            }
+    @PostMapping("/function-blocks")
+    public CompletableFuture<ResponseEntity<?>> processFunctionBlocks(
+            @Valid @RequestBody DeviceFunctionBlockRequest request,
+            @RequestHeader(value = OPERATOR_HEADER, required = false) String operator,
+            @RequestHeader(value = PRIORITY_HEADER, defaultValue = "NORMAL") TransferPriority priority,
+            @RequestHeader(value = ClusterForwarder.FORWARDED_HEADER, required = false) String forwardedBy,
+            HttpServletRequest httpRequest) {
+        CompletableFuture<ResponseEntity<?>> forwarded = forwardIfRemote(request.getDeviceId(),
+                "/api/v1/devices/function-blocks", request, operatorOf(operator, httpRequest), priority, null, forwardedBy);
+        if (forwarded != null) {
+            return forwarded;
         }
+        return complete(transferAdmissionQueue.submit(request.getDeviceId(), operatorOf(operator, httpRequest), priority,
+                        () -> deviceService.processFunctionBlocks(request).orTimeout(2, TimeUnit.MINUTES))
+                .orTimeout(QUEUE_TIMEOUT_MINUTES, TimeUnit.MINUTES)
+                .thenApply(status -> status == DeliveryStatus.QUEUED
+                        ? ResponseEntity.status(HttpStatus.ACCEPTED).body(
+                        new MessageResponse("设备离线，功能块已暂存，设备上线后下发: " + request.getDeviceId()))
+                        : ResponseEntity.ok(
+                        new MessageResponse("功能块成功发布至设备: " + request.getDeviceId()))));
+    }
 
-        CompletableFuture<ResponseEntity<MessageResponse>> future = new CompletableFuture<>();
-
-        try (SemaphoreResource resource = new SemaphoreResource()) {
-            deviceService.publishConfig(request)
-                    .orTimeout(2, TimeUnit.MINUTES)
-                    .thenApply(v -> ResponseEntity.ok(
-                            new MessageResponse("配置成功发布至设备: " + request.getDeviceId())))
-                    .whenComplete((result, ex) -> {
-                        if (ex != null) {
-                            // 将异常传递给全局异常处理器
-                            if (ex instanceof java.util.concurrent.TimeoutException) {
-                                future.completeExceptionally(new MessageProcessingException("处理请求超时", ex));
-                            } else {
-                                future.completeExceptionally(ex);
-                            }
-                        } else {
-                            future.complete(result);
-                        }
-                    });
-        } catch (Exception e) {
-            future.completeExceptionally(e);
-        }
+    /**
+     * 并行回读多个控制器当前生效的配置，全部结束后返回各设备结果；单个设备失败不影响其他设备
+     * 各设备的回读经准入队列排队，默认按批量任务的低优先级执行
+     */
+    @PostMapping("/config-backups")
+    public CompletableFuture<ResponseEntity<ConfigBackupResponse>> backupConfigs(
+            @Valid @RequestBody ConfigBackupRequest request,
+            @RequestHeader(value = OPERATOR_HEADER, required = false) String operator,
+            @RequestHeader(value = PRIORITY_HEADER, defaultValue = "LOW") TransferPriority priority,
+            HttpServletRequest httpRequest) {
+        return configReadBackService.backup(request.getDevices(), operatorOf(operator, httpRequest), priority)
+                .thenApply(ResponseEntity::ok);
+    }
 
-        return future;
+    /**
+     * 执行中和排队中的下发任务，含排队位置和预计开始时间
+     */
+    @GetMapping("/queue")
+    public ResponseEntity<List<AdmissionTicketResponse>> getQueue() {
+        return ResponseEntity.ok(transferAdmissionQueue.snapshot());
     }
 
-    @PostMapping("/function-blocks")
-    public CompletableFuture<ResponseEntity<MessageResponse>> processFunctionBlocks(
-            @Valid @RequestBody DeviceFunctionBlockRequest request) {
-        // 如果无法获取信号量，直接返回繁忙信息
-        if (!processFunctionBlocksSemaphore.tryAcquire()) {
-            return CompletableFuture.completedFuture(
-                    ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
-                            .body(new MessageResponse("系统正在处理其他配置请求，请稍后再试"))
-            );
-        }
+    @GetMapping("/queue/{jobId}")
+    public ResponseEntity<AdmissionTicketResponse> getQueueTicket(@PathVariable String jobId) {
+        AdmissionTicketResponse ticket = transferAdmissionQueue.getTicket(jobId);
+        return ticket == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(ticket);
+    }
 
-        CompletableFuture<ResponseEntity<MessageResponse>> future = new CompletableFuture<>();
-
-        try {
-            deviceService.processFunctionBlocks(request)
-                    .orTimeout(2, TimeUnit.MINUTES)
-                    .thenApply(v -> ResponseEntity.ok(
-                            new MessageResponse("功能块成功发布至设备: " + request.getDeviceId())))
-                    .whenComplete((result, ex) -> {
-                        processFunctionBlocksSemaphore.release();
-                        if (ex != null) {
-                            // 将异常传递给全局异常处理器
-                            if (ex instanceof java.util.concurrent.TimeoutException) {
-                                future.completeExceptionally(new MessageProcessingException("处理请求超时", ex));
-                            } else {
-                                future.completeExceptionally(ex);
-                            }
-                        } else {
-                            future.complete(result);
-                        }
-                    });
-        } catch (Exception e) {
-            processFunctionBlocksSemaphore.release();
-            future.completeExceptionally(e);
-        }
+    /**
+     * 撤销尚未开始执行的任务
+     */
+    @DeleteMapping("/queue/{jobId}")
+    public ResponseEntity<MessageResponse> cancelQueued(@PathVariable String jobId) {
+        return transferAdmissionQueue.cancel(jobId)
+                ? ResponseEntity.ok(new MessageResponse("已撤销排队任务: " + jobId))
+                : ResponseEntity.status(HttpStatus.NOT_FOUND).body(new MessageResponse("排队任务不存在或已开始执行: " + jobId));
+    }
+
+    @GetMapping("/transfers")
+    public ResponseEntity<List<TransferStatusResponse>> getTransfers() {
+        return ResponseEntity.ok(transferRegistry.list());
+    }
+
+    /**
+     * 取消进行中的配置传输，立即释放执行线程和MQTT连接
+     */
+    @DeleteMapping("/transfers/{transferId}")
+    public ResponseEntity<MessageResponse> cancelTransfer(@PathVariable String transferId) {
+        return transferRegistry.cancel(transferId)
+                ? ResponseEntity.ok(new MessageResponse("已取消传输: " + transferId))
+                : ResponseEntity.status(HttpStatus.NOT_FOUND).body(new MessageResponse("传输不存在或已结束: " + transferId));
+    }
 
+    /**
+     * 最近结束的配置传输时间线，按结束时间倒序，含各阶段耗时和切片往返时间百分位
+     */
+    @GetMapping("/transfers/timelines")
+    public ResponseEntity<List<TransferTimelineResponse>> getTransferTimelines(
+            @RequestParam(required = false) String deviceId) {
+        return ResponseEntity.ok(transferTimelineStore.list(deviceId));
+    }
+
+    @GetMapping("/transfers/timelines/{id}")
+    public ResponseEntity<TransferTimelineResponse> getTransferTimeline(@PathVariable String id) {
+        TransferTimelineResponse timeline = transferTimelineStore.get(id);
+        return timeline == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(timeline);
+    }
+
+    @GetMapping("/presence")
+    public ResponseEntity<List<DevicePresence>> getAllPresence() {
+        return ResponseEntity.ok(devicePresenceRegistry.getAll());
+    }
+
+    @GetMapping("/{deviceId}/presence")
+    public ResponseEntity<DevicePresence> getPresence(@PathVariable String deviceId) {
+        DevicePresence presence = devicePresenceRegistry.getPresence(deviceId);
+        return presence == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(presence);
+    }
+
+    @GetMapping("/{deviceId}/outbound")
+    public ResponseEntity<List<OutboundMessage>> getOutbound(@PathVariable String deviceId) {
+        return ResponseEntity.ok(storeAndForwardService.getPending(deviceId));
+    }
+
+    /**
+     * 将超时转换为业务异常，其余异常交给全局异常处理器
+     */
+    private static CompletableFuture<ResponseEntity<?>> complete(
+            CompletableFuture<? extends ResponseEntity<?>> response) {
+        CompletableFuture<ResponseEntity<?>> future = new CompletableFuture<>();
+        response.whenComplete((result, ex) -> {
+            if (ex != null) {
+                Throwable cause = ex instanceof java.util.concurrent.CompletionException && ex.getCause() != null
+                        ? ex.getCause() : ex;
+                if (cause instanceof java.util.concurrent.TimeoutException) {
+                    future.completeExceptionally(new MessageProcessingException("处理请求超时", cause));
+                } else {
+                    future.completeExceptionally(ex);
+                }
+            } else {
+                future.complete(result);
+            }
+        });
         return future;
     }
-}
\ No newline at end of file
+
+    /**
+     * 集群模式下设备归其他实例时转发给所属实例，原样返回对方的响应；返回null表示在本实例处理；已转发过的请求不再转发
+     */
+    private CompletableFuture<ResponseEntity<?>> forwardIfRemote(String deviceId, String path, Object body,
+                                                                 String operator, TransferPriority priority,
+                                                                 String idempotencyKey, String forwardedBy) {
+        if (clusterForwarder.isForwardedByMember(forwardedBy) || clusterService.isLocal(deviceId)) {
+            return null;
+        }
+        ClusterNode owner = clusterService.ownerOf(deviceId);
+        Map<String, String> headers = new HashMap<>();
+        headers.put(OPERATOR_HEADER, operator);
+        headers.put(PRIORITY_HEADER, priority.name());
+        headers.put(IDEMPOTENCY_KEY_HEADER, idempotencyKey);
+        return clusterForwarder.forward(owner, path, body, headers).thenApply(response -> response);
+    }
+
+    /**
+     * 未携带操作员标识时按客户端地址区分
+     */
+    private static String operatorOf(String operator, HttpServletRequest httpRequest) {
+        return operator != null && !operator.isBlank() ? operator : httpRequest.getRemoteAddr();
+    }
+}
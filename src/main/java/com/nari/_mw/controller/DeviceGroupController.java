@@ -0,0 +1,141 @@
+package com.nari._mw.controller;
+
+import com.nari._mw._enum.TransferPriority;
+import com.nari._mw.pojo.dto.request.DeviceGroupRequest;
+import com.nari._mw.pojo.dto.request.GroupFunctionBlockRequest;
+import com.nari._mw.pojo.dto.response.GroupPublishResponse;
+import com.nari._mw.pojo.dto.response.MessageResponse;
+import com.nari._mw.pojo.model.DeviceGroup;
+import com.nari._mw.service.ClusterForwarder;
+import com.nari._mw.service.ClusterService;
+import com.nari._mw.service.DeviceGroupService;
+import com.nari._mw.service.TransferAdmissionQueue;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 设备组管理与组下发
+ * 集群模式下每个设备组归一个实例，组的增删查和下发都转发给该实例；组列表只包含本实例的设备组。
+ */
+@CrossOrigin(originPatterns = "*", allowCredentials = "true")
+@RestController
+@RequestMapping("/api/v1/groups")
+@RequiredArgsConstructor
+public class DeviceGroupController {
+    private final DeviceGroupService deviceGroupService;
+    private final TransferAdmissionQueue transferAdmissionQueue;
+    private final ClusterService clusterService;
+    private final ClusterForwarder clusterForwarder;
+
+    private static final String OPERATOR_HEADER = "X-Operator-Id";
+    private static final String PRIORITY_HEADER = "X-Transfer-Priority";
+
+    @GetMapping
+    public ResponseEntity<List<DeviceGroup>> getGroups() {
+        return ResponseEntity.ok(deviceGroupService.getGroups());
+    }
+
+    /**
+     * 创建或替换设备组，新加入和移除的控制器收到加入/退出组的通知
+     */
+    @PutMapping("/{groupId}")
+    public CompletableFuture<ResponseEntity<?>> putGroup(
+            @PathVariable String groupId, @Valid @RequestBody DeviceGroupRequest request,
+            @RequestHeader(value = ClusterForwarder.FORWARDED_HEADER, required = false) String forwardedBy) {
+        CompletableFuture<ResponseEntity<?>> forwarded = forwardIfRemote(groupId, "PUT", "/api/v1/groups/" + groupId,
+                request, Map.of(), forwardedBy);
+        if (forwarded != null) {
+            return forwarded;
+        }
+        return CompletableFuture.completedFuture(ResponseEntity.ok(deviceGroupService.putGroup(groupId, request.getDeviceIds())));
+    }
+
+    @GetMapping("/{groupId}")
+    public CompletableFuture<ResponseEntity<?>> getGroup(
+            @PathVariable String groupId,
+            @RequestHeader(value = ClusterForwarder.FORWARDED_HEADER, required = false) String forwardedBy) {
+        CompletableFuture<ResponseEntity<?>> forwarded = forwardIfRemote(groupId, "GET", "/api/v1/groups/" + groupId,
+                null, Map.of(), forwardedBy);
+        if (forwarded != null) {
+            return forwarded;
+        }
+        DeviceGroup group = deviceGroupService.getGroup(groupId);
+        return CompletableFuture.completedFuture(group == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(group));
+    }
+
+    @DeleteMapping("/{groupId}")
+    public CompletableFuture<ResponseEntity<?>> deleteGroup(
+            @PathVariable String groupId,
+            @RequestHeader(value = ClusterForwarder.FORWARDED_HEADER, required = false) String forwardedBy) {
+        CompletableFuture<ResponseEntity<?>> forwarded = forwardIfRemote(groupId, "DELETE", "/api/v1/groups/" + groupId,
+                null, Map.of(), forwardedBy);
+        if (forwarded != null) {
+            return forwarded;
+        }
+        return CompletableFuture.completedFuture(deviceGroupService.removeGroup(groupId) != null
+                ? ResponseEntity.ok(new MessageResponse("已删除设备组: " + groupId))
+                : ResponseEntity.status(HttpStatus.NOT_FOUND).body(new MessageResponse("设备组不存在: " + groupId)));
+    }
+
+    /**
+     * 向组主题发布一次功能块，代理接受后返回202，各设备确认通过 /publishes/{publishId} 查询
+     * 与单设备下发一样经准入队列排队，同一组的下发依次执行
+     */
+    @PostMapping("/{groupId}/function-blocks")
+    public CompletableFuture<ResponseEntity<?>> publishFunctionBlocks(
+            @PathVariable String groupId, @Valid @RequestBody GroupFunctionBlockRequest request,
+            @RequestHeader(value = OPERATOR_HEADER, required = false) String operator,
+            @RequestHeader(value = PRIORITY_HEADER, defaultValue = "NORMAL") TransferPriority priority,
+            @RequestHeader(value = ClusterForwarder.FORWARDED_HEADER, required = false) String forwardedBy,
+            HttpServletRequest httpRequest) {
+        String operatorId = operator != null && !operator.isBlank() ? operator : httpRequest.getRemoteAddr();
+        Map<String, String> headers = new HashMap<>();
+        headers.put(OPERATOR_HEADER, operatorId);
+        headers.put(PRIORITY_HEADER, priority.name());
+        CompletableFuture<ResponseEntity<?>> forwarded = forwardIfRemote(groupId, "POST",
+                "/api/v1/groups/" + groupId + "/function-blocks", request, headers, forwardedBy);
+        if (forwarded != null) {
+            return forwarded;
+        }
+        return transferAdmissionQueue.submit(DeviceGroupService.admissionKey(groupId), operatorId, priority,
+                        () -> deviceGroupService.publishFunctionBlocks(groupId, request))
+                .thenApply(response -> ResponseEntity.status(HttpStatus.ACCEPTED).body(response));
+    }
+
+    @GetMapping("/{groupId}/publishes/{publishId}")
+    public CompletableFuture<ResponseEntity<?>> getPublish(
+            @PathVariable String groupId, @PathVariable String publishId,
+            @RequestHeader(value = ClusterForwarder.FORWARDED_HEADER, required = false) String forwardedBy) {
+        CompletableFuture<ResponseEntity<?>> forwarded = forwardIfRemote(groupId, "GET",
+                "/api/v1/groups/" + groupId + "/publishes/" + publishId, null, Map.of(), forwardedBy);
+        if (forwarded != null) {
+            return forwarded;
+        }
+        GroupPublishResponse response = deviceGroupService.getPublish(publishId);
+        return CompletableFuture.completedFuture(response == null || !response.getGroupId().equals(groupId)
+                ? ResponseEntity.notFound().build() : ResponseEntity.ok(response));
+    }
+
+    /**
+     * 设备组归其他实例时转发给所属实例并原样返回对方的响应，返回null表示在本实例处理；已转发过的请求不再转发
+     */
+    private CompletableFuture<ResponseEntity<?>> forwardIfRemote(String groupId, String method, String path,
+                                                                 Object body, Map<String, String> headers,
+                                                                 String forwardedBy) {
+        String key = DeviceGroupService.admissionKey(groupId);
+        if (clusterForwarder.isForwardedByMember(forwardedBy) || clusterService.isLocal(key)) {
+            return null;
+        }
+        return clusterForwarder.forward(clusterService.ownerOf(key), method, path, body, headers)
+                .thenApply(response -> response);
+    }
+}
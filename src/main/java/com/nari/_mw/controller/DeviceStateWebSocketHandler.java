@@ -0,0 +1,111 @@
+package com.nari._mw.controller;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.nari._mw.config.DeviceStatePushConfig;
+import com.nari._mw.service.DeviceStateService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 设备实时状态WebSocket推送
+ * 客户端连接后先收到一帧全量快照，之后每个推送周期只收到变化的测点；
+ * 所有客户端共享同一份变化帧，只序列化一次
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DeviceStateWebSocketHandler extends TextWebSocketHandler {
+    private final DeviceStateService deviceStateService;
+    private final DeviceStatePushConfig config;
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "device-state-push");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::pushChanges, config.getIntervalMs(), config.getIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        WebSocketSession concurrentSession = new ConcurrentWebSocketSessionDecorator(
+                session, config.getSendTimeLimitMs(), config.getBufferSizeLimit());
+        sessions.put(session.getId(), concurrentSession);
+        send(concurrentSession, new TextMessage(frame("snapshot", deviceStateService.snapshot())));
+        log.info("HMI客户端已连接设备状态推送: {}, 当前连接数: {}", session.getRemoteAddress(), sessions.size());
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        sessions.remove(session.getId());
+        log.info("HMI客户端已断开设备状态推送: {}, 当前连接数: {}", session.getRemoteAddress(), sessions.size());
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.warn("设备状态推送传输错误: {}", session.getId(), exception);
+        sessions.remove(session.getId());
+    }
+
+    /**
+     * 合并本周期内的变化并推送给所有客户端；无客户端时仍清除变化标记
+     */
+    private void pushChanges() {
+        try {
+            Map<String, Map<String, Double>> changes = deviceStateService.drainChanges();
+            if (changes.isEmpty() || sessions.isEmpty()) {
+                return;
+            }
+
+            TextMessage message = new TextMessage(frame("delta", changes));
+            sessions.values().forEach(session -> send(session, message));
+        } catch (RuntimeException e) {
+            log.error("推送设备状态失败", e);
+        }
+    }
+
+    private void send(WebSocketSession session, TextMessage message) {
+        try {
+            if (session.isOpen()) {
+                session.sendMessage(message);
+            }
+        } catch (IOException | RuntimeException e) {
+            // 发送超时或缓冲超限的慢客户端会被装饰器关闭
+            log.warn("向HMI客户端推送设备状态失败: {}", session.getId(), e);
+            sessions.remove(session.getId());
+        }
+    }
+
+    private static String frame(String type, Map<String, Map<String, Double>> values) {
+        JSONObject frame = new JSONObject();
+        frame.put("type", type);
+        frame.put("ts", System.currentTimeMillis());
+        frame.put("values", values);
+        return JSON.toJSONString(frame);
+    }
+}
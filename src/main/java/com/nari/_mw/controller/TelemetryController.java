@@ -0,0 +1,29 @@
+package com.nari._mw.controller;
+
+import com.nari._mw.pojo.dto.response.TelemetryStatsResponse;
+import com.nari._mw.service.DeviceStateService;
+import com.nari._mw.service.TelemetryIngestionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@CrossOrigin(originPatterns = "*", allowCredentials = "true")
+@RestController
+@RequestMapping("/api/v1/telemetry")
+@RequiredArgsConstructor
+public class TelemetryController {
+    private final TelemetryIngestionService telemetryIngestionService;
+    private final DeviceStateService deviceStateService;
+
+    @GetMapping("/stats")
+    public ResponseEntity<TelemetryStatsResponse> getStats() {
+        return ResponseEntity.ok(telemetryIngestionService.getStats());
+    }
+
+    @GetMapping("/latest/{deviceId}")
+    public ResponseEntity<Map<String, Double>> getLatest(@PathVariable String deviceId) {
+        return ResponseEntity.ok(deviceStateService.getDeviceState(deviceId));
+    }
+}
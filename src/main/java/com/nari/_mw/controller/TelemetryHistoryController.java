@@ -0,0 +1,29 @@
+package com.nari._mw.controller;
+
+import com.nari._mw.config.TelemetryPersistenceConfig;
+import com.nari._mw.pojo.dto.response.TelemetryHistoryResponse;
+import com.nari._mw.service.TelemetryPersistenceService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@CrossOrigin(originPatterns = "*", allowCredentials = "true")
+@RestController
+@RequestMapping("/api/v1/telemetry")
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = TelemetryPersistenceConfig.PREFIX, name = "enabled", havingValue = "true")
+public class TelemetryHistoryController {
+    private final TelemetryPersistenceService telemetryPersistenceService;
+
+    /**
+     * 查询测点历史，from/to为毫秒时间戳，返回数据的粒度随时间跨度自动选择
+     */
+    @GetMapping("/history")
+    public ResponseEntity<TelemetryHistoryResponse> getHistory(@RequestParam String deviceId,
+                                                               @RequestParam String point,
+                                                               @RequestParam long from,
+                                                               @RequestParam long to) {
+        return ResponseEntity.ok(telemetryPersistenceService.query(deviceId, point, from, to));
+    }
+}
@@ -0,0 +1,69 @@
+package com.nari._mw.controller;
+
+import com.nari._mw.pojo.dto.request.RateLimitUpdateRequest;
+import com.nari._mw.pojo.dto.response.DeviceLinkResponse;
+import com.nari._mw.pojo.dto.response.RateLimitResponse;
+import com.nari._mw.service.DeviceLinkService;
+import com.nari._mw.util.TransferEventLogger;
+import com.nari._mw.util.TransferRateLimiter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Set;
+
+@CrossOrigin(originPatterns = "*", allowCredentials = "true")
+@RestController
+@RequestMapping("/api/v1/management")
+@RequiredArgsConstructor
+public class TransferManagementController {
+    private final TransferRateLimiter transferRateLimiter;
+    private final TransferEventLogger transferEventLogger;
+    private final DeviceLinkService deviceLinkService;
+
+    @GetMapping("/rate-limits")
+    public ResponseEntity<RateLimitResponse> getRateLimits() {
+        return ResponseEntity.ok(transferRateLimiter.snapshot());
+    }
+
+    @PutMapping("/rate-limits")
+    public ResponseEntity<RateLimitResponse> updateRateLimits(@RequestBody RateLimitUpdateRequest request) {
+        transferRateLimiter.update(request);
+        return ResponseEntity.ok(transferRateLimiter.snapshot());
+    }
+
+    @GetMapping("/logging/detail-devices")
+    public ResponseEntity<Set<String>> getDetailLoggingDevices() {
+        return ResponseEntity.ok(transferEventLogger.getDetailDevices());
+    }
+
+    @PutMapping("/logging/detail-devices/{deviceId}")
+    public ResponseEntity<Set<String>> enableDetailLogging(@PathVariable String deviceId) {
+        transferEventLogger.enableDetail(deviceId);
+        return ResponseEntity.ok(transferEventLogger.getDetailDevices());
+    }
+
+    @DeleteMapping("/logging/detail-devices/{deviceId}")
+    public ResponseEntity<Set<String>> disableDetailLogging(@PathVariable String deviceId) {
+        transferEventLogger.disableDetail(deviceId);
+        return ResponseEntity.ok(transferEventLogger.getDetailDevices());
+    }
+
+    /**
+     * 各设备的往返时间估计和熔断状态
+     */
+    @GetMapping("/links")
+    public ResponseEntity<List<DeviceLinkResponse>> getDeviceLinks() {
+        return ResponseEntity.ok(deviceLinkService.getStatus());
+    }
+
+    /**
+     * 清除设备的链路状态，熔断立即解除
+     */
+    @DeleteMapping("/links/{deviceId}")
+    public ResponseEntity<List<DeviceLinkResponse>> resetDeviceLink(@PathVariable String deviceId) {
+        deviceLinkService.reset(deviceId);
+        return ResponseEntity.ok(deviceLinkService.getStatus());
+    }
+}
@@ -0,0 +1,14 @@
+package com.nari._mw.exception;
+
+public class AdmissionRejectedException extends RuntimeException {
+    private final int queueDepth;
+
+    public AdmissionRejectedException(String message, int queueDepth) {
+        super(message);
+        this.queueDepth = queueDepth;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+}
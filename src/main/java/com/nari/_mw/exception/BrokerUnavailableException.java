@@ -0,0 +1,10 @@
+package com.nari._mw.exception;
+
+/**
+ * MQTT代理不可用：所有代理均无法连接或连接丢失后超出切换次数，与设备本身无关，不计入设备熔断统计
+ */
+public class BrokerUnavailableException extends RuntimeException {
+    public BrokerUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.nari._mw.exception;
+
+public class CircuitOpenException extends DeviceInteractionException {
+    public CircuitOpenException(String message, String deviceId) {
+        super(message, deviceId);
+    }
+}
@@ -0,0 +1,14 @@
+package com.nari._mw.exception;
+
+public class ClusterForwardException extends RuntimeException {
+    private final String nodeId;
+
+    public ClusterForwardException(String message, String nodeId, Throwable cause) {
+        super(message, cause);
+        this.nodeId = nodeId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+}
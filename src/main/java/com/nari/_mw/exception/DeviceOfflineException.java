@@ -0,0 +1,7 @@
+package com.nari._mw.exception;
+
+public class DeviceOfflineException extends DeviceInteractionException {
+    public DeviceOfflineException(String message, String deviceId) {
+        super(message, deviceId);
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 @Slf4j
 @ControllerAdvice
@@ -21,10 +22,22 @@ public class GlobalExceptionHandler {
             return handleMQTTValidationException((MQTTValidationException) cause);
         } else if (cause instanceof MessageProcessingException) {
             return handleMessageProcessingException((MessageProcessingException) cause);
+        } else if (cause instanceof TransferCancelledException) {
+            return handleTransferCancelledException((TransferCancelledException) cause);
+        } else if (cause instanceof CircuitOpenException) {
+            return handleCircuitOpenException((CircuitOpenException) cause);
+        } else if (cause instanceof DeviceOfflineException) {
+            return handleDeviceOfflineException((DeviceOfflineException) cause);
         } else if (cause instanceof DeviceInteractionException) {
             return handleDeviceInteractionException((DeviceInteractionException) cause);
+        } else if (cause instanceof AdmissionRejectedException) {
+            return handleAdmissionRejectedException((AdmissionRejectedException) cause);
         } else if (cause instanceof FileSliceException) {
             return handleFileSliceException((FileSliceException) cause);
+        } else if (cause instanceof ClusterForwardException) {
+            return handleClusterForwardException((ClusterForwardException) cause);
+        } else if (cause instanceof BrokerUnavailableException) {
+            return handleBrokerUnavailableException((BrokerUnavailableException) cause);
         } else {
             // 处理其他未知异常
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -46,6 +59,13 @@ public class GlobalExceptionHandler {
                 .body(new MessageResponse(ex.getMessage()));
     }
 
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public ResponseEntity<MessageResponse> handleMethodArgumentTypeMismatchException(MethodArgumentTypeMismatchException ex) {
+        log.warn("请求参数格式错误: {}={}", ex.getName(), ex.getValue());
+        return ResponseEntity.badRequest()
+                .body(new MessageResponse("请求参数格式错误: " + ex.getName() + "=" + ex.getValue()));
+    }
+
     @ExceptionHandler(MessageProcessingException.class)
     public ResponseEntity<MessageResponse> handleMessageProcessingException(MessageProcessingException ex) {
         log.error("消息处理失败", ex);
@@ -53,6 +73,28 @@ public class GlobalExceptionHandler {
                 .body(new MessageResponse("处理失败: " + ex.getMessage()));
     }
 
+    @ExceptionHandler(DeviceOfflineException.class)
+    public ResponseEntity<MessageResponse> handleDeviceOfflineException(DeviceOfflineException ex) {
+        log.warn("设备离线，拒绝请求: 设备ID={}", ex.getDeviceId());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(new MessageResponse(ex.getMessage() + ", 设备ID: " + ex.getDeviceId()));
+    }
+
+    @ExceptionHandler(CircuitOpenException.class)
+    public ResponseEntity<MessageResponse> handleCircuitOpenException(CircuitOpenException ex) {
+        log.warn("设备处于熔断状态，拒绝请求: 设备ID={}", ex.getDeviceId());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "60")
+                .body(new MessageResponse(ex.getMessage() + ", 设备ID: " + ex.getDeviceId()));
+    }
+
+    @ExceptionHandler(TransferCancelledException.class)
+    public ResponseEntity<MessageResponse> handleTransferCancelledException(TransferCancelledException ex) {
+        log.info("传输已取消: 设备ID={}", ex.getDeviceId());
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new MessageResponse(ex.getMessage() + ", 设备ID: " + ex.getDeviceId()));
+    }
+
     @ExceptionHandler(DeviceInteractionException.class)
     public ResponseEntity<MessageResponse> handleDeviceInteractionException(DeviceInteractionException ex) {
         log.error("设备交互失败: 设备ID={}", ex.getDeviceId(), ex);
@@ -60,6 +102,21 @@ public class GlobalExceptionHandler {
                 .body(new MessageResponse("设备交互失败: " + ex.getMessage() + ", 设备ID: " + ex.getDeviceId()));
     }
 
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<MessageResponse> handleAdmissionRejectedException(AdmissionRejectedException ex) {
+        log.warn("下发队列已满，拒绝请求: 排队数={}", ex.getQueueDepth());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header("Retry-After", "30")
+                .body(new MessageResponse(ex.getMessage() + ", 排队数: " + ex.getQueueDepth()));
+    }
+
+    @ExceptionHandler(IdempotencyConflictException.class)
+    public ResponseEntity<MessageResponse> handleIdempotencyConflictException(IdempotencyConflictException ex) {
+        log.warn("幂等键重复用于不同请求: {}", ex.getIdempotencyKey());
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(new MessageResponse(ex.getMessage() + ": " + ex.getIdempotencyKey()));
+    }
+
     @ExceptionHandler(FileSliceException.class)
     public ResponseEntity<MessageResponse> handleFileSliceException(FileSliceException e) {
         log.error("文件切片处理异常", e);
@@ -67,4 +124,20 @@ public class GlobalExceptionHandler {
                 .status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(new MessageResponse("文件切片处理异常: " + e.getMessage()));
     }
-}
\ No newline at end of file
+
+    @ExceptionHandler(ClusterForwardException.class)
+    public ResponseEntity<MessageResponse> handleClusterForwardException(ClusterForwardException ex) {
+        log.warn("转发请求到集群实例失败: 实例={}", ex.getNodeId(), ex);
+        return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
+                .header("Retry-After", "5")
+                .body(new MessageResponse(ex.getMessage() + ", 实例: " + ex.getNodeId()));
+    }
+
+    @ExceptionHandler(BrokerUnavailableException.class)
+    public ResponseEntity<MessageResponse> handleBrokerUnavailableException(BrokerUnavailableException ex) {
+        log.warn("MQTT代理不可用: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "30")
+                .body(new MessageResponse(ex.getMessage()));
+    }
+}
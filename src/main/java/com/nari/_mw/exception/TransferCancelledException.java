@@ -0,0 +1,7 @@
+package com.nari._mw.exception;
+
+public class TransferCancelledException extends DeviceInteractionException {
+    public TransferCancelledException(String message, String deviceId) {
+        super(message, deviceId);
+    }
+}
@@ -0,0 +1,43 @@
+package com.nari._mw.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+@Name("com.nari.mw.AckWait")
+@Label("Device Ack Wait")
+@Description("等待设备对一次发送的响应")
+@Threshold("20 ms")
+public final class AckWaitEvent extends DeviceTransferEvent {
+    @Label("Response Topic")
+    String topic;
+
+    @Label("Correlation ID")
+    String correlationId;
+
+    @Label("Transmission")
+    @Description("0 为首次发送，其后为重传序号")
+    int transmission;
+
+    @Label("Timeout")
+    @Timespan(Timespan.MILLISECONDS)
+    long timeoutMs;
+
+    @Label("Answered")
+    boolean answered;
+
+    public void complete(String topic, String correlationId, int transmission, long timeoutMs, boolean answered) {
+        end();
+        if (shouldCommit()) {
+            this.topic = topic;
+            this.correlationId = correlationId;
+            this.transmission = transmission;
+            this.timeoutMs = timeoutMs;
+            this.answered = answered;
+            fillContext();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.nari._mw.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * 设备传输JFR事件的公共字段，未显式给出的设备ID和任务号取自当前线程的 TransferContext
+ * 事件只在录制启用且超过阈值时才填充字段并提交，未录制时开销接近于零
+ */
+@Category({"10MW", "Device Transfer"})
+@StackTrace(false)
+abstract class DeviceTransferEvent extends Event {
+    @Label("Device ID")
+    String deviceId;
+
+    @Label("Task No")
+    String taskNo;
+
+    void fillContext() {
+        if (deviceId == null) {
+            deviceId = TransferContext.currentDeviceId();
+        }
+        if (taskNo == null) {
+            taskNo = TransferContext.currentTaskNo();
+        }
+    }
+}
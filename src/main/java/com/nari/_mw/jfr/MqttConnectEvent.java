@@ -0,0 +1,30 @@
+package com.nari._mw.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.nari.mw.MqttConnect")
+@Label("MQTT Connect")
+@Description("建立到MQTT代理的连接")
+public final class MqttConnectEvent extends DeviceTransferEvent {
+    @Label("Broker")
+    String broker;
+
+    @Label("Protocol Version")
+    int protocolVersion;
+
+    @Label("Succeeded")
+    boolean succeeded;
+
+    public void complete(String broker, int protocolVersion, boolean succeeded) {
+        end();
+        if (shouldCommit()) {
+            this.broker = broker;
+            this.protocolVersion = protocolVersion;
+            this.succeeded = succeeded;
+            fillContext();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.nari._mw.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("com.nari.mw.MqttPublish")
+@Label("MQTT Publish")
+@Description("从发布到投递完成(QoS 0 为写出，QoS 1 为收到PUBACK)")
+@Threshold("5 ms")
+public final class MqttPublishEvent extends DeviceTransferEvent {
+    @Label("Topic")
+    String topic;
+
+    @Label("Payload Size")
+    @DataAmount
+    int bytes;
+
+    @Label("QoS")
+    int qos;
+
+    /**
+     * 开始计时；投递完成在MQTT回调线程上，所属传输在发布线程上确定
+     */
+    public static MqttPublishEvent start(String topic, int bytes, int qos) {
+        MqttPublishEvent event = new MqttPublishEvent();
+        if (event.isEnabled()) {
+            event.topic = topic;
+            event.bytes = bytes;
+            event.qos = qos;
+            event.fillContext();
+            event.begin();
+        }
+        return event;
+    }
+
+    public void complete() {
+        end();
+        if (shouldCommit()) {
+            commit();
+        }
+    }
+}
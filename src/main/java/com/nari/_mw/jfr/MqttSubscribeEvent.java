@@ -0,0 +1,28 @@
+package com.nari._mw.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("com.nari.mw.MqttSubscribe")
+@Label("MQTT Subscribe")
+@Description("订阅主题直到代理确认")
+@Threshold("5 ms")
+public final class MqttSubscribeEvent extends DeviceTransferEvent {
+    @Label("Broker")
+    String broker;
+
+    @Label("Topic")
+    String topic;
+
+    public void complete(String broker, String topic) {
+        end();
+        if (shouldCommit()) {
+            this.broker = broker;
+            this.topic = topic;
+            fillContext();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.nari._mw.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("com.nari.mw.Retransmit")
+@Label("Device Retransmit")
+@Description("设备无响应、响应不匹配或最终校验失败引起的重发")
+public final class RetransmitEvent extends DeviceTransferEvent {
+    public static final String TIMEOUT = "timeout";
+    public static final String MISMATCH = "mismatch";
+    public static final String VERIFICATION = "verification";
+
+    @Label("Topic")
+    String topic;
+
+    @Label("Attempt")
+    int attempt;
+
+    @Label("Reason")
+    String reason;
+
+    @Label("RTO")
+    @Timespan(Timespan.MILLISECONDS)
+    long rtoMs;
+
+    public static void emit(String topic, int attempt, String reason, long rtoMs) {
+        RetransmitEvent event = new RetransmitEvent();
+        if (event.isEnabled()) {
+            event.topic = topic;
+            event.attempt = attempt;
+            event.reason = reason;
+            event.rtoMs = rtoMs;
+            event.fillContext();
+            event.commit();
+        }
+    }
+}
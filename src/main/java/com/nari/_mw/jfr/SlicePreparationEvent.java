@@ -0,0 +1,38 @@
+package com.nari._mw.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.nari.mw.SlicePreparation")
+@Label("Slice Preparation")
+@Description("读取配置文件、切片并计算CRC32C和MD5")
+public final class SlicePreparationEvent extends DeviceTransferEvent {
+    @Label("File")
+    String file;
+
+    @Label("File Size")
+    @DataAmount
+    long fileSize;
+
+    @Label("Slice Size")
+    @DataAmount
+    int sliceSize;
+
+    @Label("Slice Count")
+    int sliceCount;
+
+    public void complete(String taskNo, String file, long fileSize, int sliceSize, int sliceCount) {
+        end();
+        if (shouldCommit()) {
+            this.taskNo = taskNo;
+            this.file = file;
+            this.fileSize = fileSize;
+            this.sliceSize = sliceSize;
+            this.sliceCount = sliceCount;
+            fillContext();
+            commit();
+        }
+    }
+}
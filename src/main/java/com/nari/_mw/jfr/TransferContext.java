@@ -0,0 +1,56 @@
+package com.nari._mw.jfr;
+
+/**
+ * 当前线程正在处理的设备和任务号，供JFR事件标注所属传输
+ * 在下发请求线程上建立连接时和传输线程执行期间绑定，结束后恢复之前的上下文
+ */
+public final class TransferContext implements AutoCloseable {
+    private static final ThreadLocal<TransferContext> CURRENT = new ThreadLocal<>();
+
+    private final String deviceId;
+    private final TransferContext previous;
+    private String taskNo;
+
+    private TransferContext(String deviceId, TransferContext previous) {
+        this.deviceId = deviceId;
+        this.previous = previous;
+    }
+
+    /**
+     * 将当前线程绑定到设备，关闭返回的上下文时解除绑定
+     */
+    public static TransferContext open(String deviceId) {
+        TransferContext context = new TransferContext(deviceId, CURRENT.get());
+        CURRENT.set(context);
+        return context;
+    }
+
+    /**
+     * 任务号在切片后才确定，由传输线程补充
+     */
+    public static void setTaskNo(String taskNo) {
+        TransferContext context = CURRENT.get();
+        if (context != null) {
+            context.taskNo = taskNo;
+        }
+    }
+
+    static String currentDeviceId() {
+        TransferContext context = CURRENT.get();
+        return context == null ? null : context.deviceId;
+    }
+
+    static String currentTaskNo() {
+        TransferContext context = CURRENT.get();
+        return context == null ? null : context.taskNo;
+    }
+
+    @Override
+    public void close() {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.nari._mw.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.nari.mw.Transfer")
+@Label("Config Transfer")
+@Description("一次完整的配置传输，从发送元数据到最终校验结束")
+public final class TransferEvent extends DeviceTransferEvent {
+    @Label("File Size")
+    @DataAmount
+    long fileSize;
+
+    @Label("Slices")
+    int sliceCount;
+
+    @Label("Slices Acknowledged")
+    int slicesAcked;
+
+    @Label("Bytes Sent")
+    @DataAmount
+    long bytesSent;
+
+    @Label("Retries")
+    int retries;
+
+    @Label("Succeeded")
+    boolean succeeded;
+
+    @Label("Error")
+    String error;
+
+    public static TransferEvent start(String deviceId, String taskNo, long fileSize, int sliceCount) {
+        TransferEvent event = new TransferEvent();
+        if (event.isEnabled()) {
+            event.deviceId = deviceId;
+            event.taskNo = taskNo;
+            event.fileSize = fileSize;
+            event.sliceCount = sliceCount;
+            event.begin();
+        }
+        return event;
+    }
+
+    public void complete(int slicesAcked, long bytesSent, int retries, boolean succeeded, String error) {
+        end();
+        if (shouldCommit()) {
+            this.slicesAcked = slicesAcked;
+            this.bytesSent = bytesSent;
+            this.retries = retries;
+            this.succeeded = succeeded;
+            this.error = error;
+            commit();
+        }
+    }
+}
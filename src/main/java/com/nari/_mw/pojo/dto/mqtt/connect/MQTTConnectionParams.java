@@ -3,12 +3,49 @@ package com.nari._mw.pojo.dto.mqtt.connect;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Data
 @Builder
+@NoArgsConstructor
 @AllArgsConstructor
 public class MQTTConnectionParams {
     private String host;
     private String username;
     private String password;
-}
\ No newline at end of file
+
+    /**
+     * 冗余代理地址，可为空；传输按健康状况在 host 和这些代理中选择，连接丢失时切换到其他代理继续
+     */
+    private List<String> backupHosts;
+
+    public MQTTConnectionParams(String host, String username, String password) {
+        this(host, username, password, null);
+    }
+
+    /**
+     * host 与 backupHosts 去重后的全部代理地址，host在前
+     */
+    public List<String> allHosts() {
+        List<String> hosts = new ArrayList<>();
+        hosts.add(host);
+        if (backupHosts != null) {
+            for (String backup : backupHosts) {
+                if (!hosts.contains(backup)) {
+                    hosts.add(backup);
+                }
+            }
+        }
+        return hosts;
+    }
+
+    /**
+     * 使用相同凭据连接另一个代理的参数
+     */
+    public MQTTConnectionParams withHost(String host) {
+        return new MQTTConnectionParams(host, username, password, null);
+    }
+}
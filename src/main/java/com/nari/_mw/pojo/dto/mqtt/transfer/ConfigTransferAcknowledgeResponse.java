@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -23,6 +24,16 @@ public class ConfigTransferAcknowledgeResponse {
      */
     private String status;
 
+    /**
+     * 缺失或校验失败的切片序号
+     * 仅在最终校验结果(file/ack)失败时由控制器填写，HMI据此只重传这些切片
+     */
+    private List<Integer> missing;
+
+    public ConfigTransferAcknowledgeResponse(String status) {
+        this.status = status;
+    }
+
     // 覆写equal方法
     @Override
     public boolean equals(Object o) {
@@ -31,4 +31,10 @@ public class ConfigTransferSlice {
      * 当前切片的实际数据内容
      */
     private byte[] data;
+
+    /**
+     * 切片CRC32C校验值
+     * 控制器据此校验单个切片，校验失败时回复failure，HMI仅重发该切片
+     */
+    private long crc;
 }
\ No newline at end of file
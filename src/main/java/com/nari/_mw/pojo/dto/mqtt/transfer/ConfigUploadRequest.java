@@ -0,0 +1,31 @@
+package com.nari._mw.pojo.dto.mqtt.transfer;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 配置回传请求类
+ * HMI请求控制器回传当前生效的配置文件，控制器以元数据(ConfigTransferMetadata)回复后开始发送切片
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConfigUploadRequest {
+    /**
+     * 操作类型，固定为"upload_config"
+     */
+    private String action;
+
+    /**
+     * 任务号，由HMI生成，控制器在元数据、切片中原样带回
+     */
+    private String taskNo;
+
+    /**
+     * 期望的单个分片大小(bytes)
+     */
+    private int onesize;
+}
@@ -0,0 +1,34 @@
+package com.nari._mw.pojo.dto.mqtt.transfer;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 回传结果类
+ * 全部切片到达且MD5一致时 status=success；切片停止到达而仍有缺失时 status=failure 并列出缺失序号，
+ * 控制器只重发这些切片
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConfigUploadResult {
+    /**
+     * 任务号
+     */
+    private String taskNo;
+
+    /**
+     * success 或 failure
+     */
+    private String status;
+
+    /**
+     * 缺失或CRC校验失败的切片序号
+     */
+    private List<Integer> missing;
+}
@@ -0,0 +1,28 @@
+package com.nari._mw.pojo.dto.mqtt.transfer;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 回传切片批量确认类
+ * HMI按批次确认已校验并写入的切片，控制器据此推进发送窗口；重复收到的切片再次确认
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConfigUploadSliceAck {
+    /**
+     * 任务号
+     */
+    private String taskNo;
+
+    /**
+     * 本批确认的切片序号
+     */
+    private List<Integer> numbers;
+}
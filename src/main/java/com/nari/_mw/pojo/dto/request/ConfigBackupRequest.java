@@ -0,0 +1,13 @@
+package com.nari._mw.pojo.dto.request;
+
+import lombok.Data;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import java.util.List;
+
+@Data
+public class ConfigBackupRequest {
+    @NotEmpty(message = "Device list cannot be empty")
+    private List<@Valid ConfigReadBackRequest> devices;
+}
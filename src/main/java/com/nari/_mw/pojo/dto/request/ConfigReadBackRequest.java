@@ -0,0 +1,19 @@
+package com.nari._mw.pojo.dto.request;
+
+import com.nari._mw.pojo.dto.mqtt.connect.MQTTConnectionParams;
+import lombok.Data;
+
+import javax.validation.constraints.NotBlank;
+
+@Data
+public class ConfigReadBackRequest {
+    @NotBlank(message = "Device ID cannot be empty")
+    private String deviceId;
+
+    /**
+     * 请求控制器使用的切片大小，小于等于0时使用 transfer.read-back.slice-size
+     */
+    private int sliceSize;
+
+    private MQTTConnectionParams mqttConnectionParams;
+}
@@ -0,0 +1,12 @@
+package com.nari._mw.pojo.dto.request;
+
+import lombok.Data;
+
+import javax.validation.constraints.NotEmpty;
+import java.util.List;
+
+@Data
+public class DeviceGroupRequest {
+    @NotEmpty(message = "Device IDs cannot be empty")
+    private List<String> deviceIds;
+}
@@ -0,0 +1,16 @@
+package com.nari._mw.pojo.dto.request;
+
+import com.nari._mw.pojo.dto.mqtt.connect.MQTTConnectionParams;
+import com.nari._mw.pojo.model.FunctionBlock;
+import lombok.Data;
+
+import javax.validation.constraints.NotEmpty;
+import java.util.List;
+
+@Data
+public class GroupFunctionBlockRequest {
+    @NotEmpty(message = "Function blocks list cannot be empty")
+    private List<FunctionBlock> functionBlocks;
+
+    private MQTTConnectionParams mqttConnectionParams;
+}
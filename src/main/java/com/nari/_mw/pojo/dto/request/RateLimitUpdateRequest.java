@@ -0,0 +1,22 @@
+package com.nari._mw.pojo.dto.request;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * 限速调整请求，单位均为字节/秒，小于等于0表示不限速，为空表示保持不变
+ */
+@Data
+public class RateLimitUpdateRequest {
+    private Long globalBytesPerSecond;
+
+    private Long brokerBytesPerSecond;
+
+    private Long deviceBytesPerSecond;
+
+    /**
+     * 单个设备的速率覆盖，值为空表示移除该设备的覆盖
+     */
+    private Map<String, Long> devices;
+}
@@ -0,0 +1,31 @@
+package com.nari._mw.pojo.dto.response;
+
+import com.nari._mw._enum.TransferPriority;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class AdmissionTicketResponse {
+    private String jobId;
+    private String deviceId;
+    private String operator;
+    private TransferPriority priority;
+
+    /**
+     * QUEUED 或 RUNNING
+     */
+    private String state;
+
+    /**
+     * 排队位置，从1开始；执行中的任务为0
+     */
+    private int position;
+
+    private long submittedAt;
+
+    /**
+     * 预计开始时间(毫秒)，执行中的任务为实际开始时间
+     */
+    private long estimatedStartAt;
+}
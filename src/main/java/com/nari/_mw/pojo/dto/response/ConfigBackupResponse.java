@@ -0,0 +1,22 @@
+package com.nari._mw.pojo.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 批量配置备份结果，各设备并行回读，总耗时取决于最慢的设备
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConfigBackupResponse {
+    private String backupId;
+    private String directory;
+    private long durationMs;
+    private int succeeded;
+    private int failed;
+    private List<ConfigReadBackResponse> devices;
+}
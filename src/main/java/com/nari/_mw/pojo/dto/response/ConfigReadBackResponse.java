@@ -0,0 +1,46 @@
+package com.nari._mw.pojo.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 单个设备的配置回读结果
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConfigReadBackResponse {
+    private String deviceId;
+
+    /**
+     * success 或 failure
+     */
+    private String status;
+
+    /**
+     * 回读文件的保存路径，失败时为空
+     */
+    private String filePath;
+
+    private long size;
+    private String md5;
+    private int sliceCount;
+
+    /**
+     * 重复到达的切片数
+     */
+    private int duplicateSlices;
+
+    /**
+     * 请求重发缺失切片的轮次
+     */
+    private int retransmissionRounds;
+
+    private long durationMs;
+
+    /**
+     * 失败原因，成功时为空
+     */
+    private String error;
+}
@@ -0,0 +1,20 @@
+package com.nari._mw.pojo.dto.response;
+
+import com.nari._mw._enum.CircuitState;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class DeviceLinkResponse {
+    private String deviceId;
+    private CircuitState state;
+    private int consecutiveFailures;
+
+    /**
+     * 平滑往返时间(毫秒)，尚无样本时为-1
+     */
+    private long srttMs;
+    private long rttvarMs;
+    private long rtoMs;
+}
@@ -0,0 +1,39 @@
+package com.nari._mw.pojo.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 组下发结果，确认在后台陆续收集，completed 为 true 后不再变化
+ */
+@Data
+@AllArgsConstructor
+public class GroupPublishResponse {
+    private String publishId;
+    private String groupId;
+    private String topic;
+    private long startedAt;
+    private boolean completed;
+
+    /**
+     * 已确认成功的设备
+     */
+    private List<String> acknowledged;
+
+    /**
+     * 确认状态不是 success 的设备
+     */
+    private List<String> failed;
+
+    /**
+     * 离线、已单独暂存待上线下发的设备
+     */
+    private List<String> queued;
+
+    /**
+     * 尚未确认的设备；completed 为 true 时表示超时未确认
+     */
+    private List<String> pending;
+}
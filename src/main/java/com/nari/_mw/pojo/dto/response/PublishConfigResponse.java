@@ -0,0 +1,18 @@
+package com.nari._mw.pojo.dto.response;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * 配置下发结果，附带本次传输的耗时分解；由其他实例转发处理时只有消息
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class PublishConfigResponse extends MessageResponse {
+    private TransferTimelineResponse timeline;
+
+    public PublishConfigResponse(String message, TransferTimelineResponse timeline) {
+        super(message);
+        this.timeline = timeline;
+    }
+}
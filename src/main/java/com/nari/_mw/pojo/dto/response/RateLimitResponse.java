@@ -0,0 +1,15 @@
+package com.nari._mw.pojo.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+public class RateLimitResponse {
+    private long globalBytesPerSecond;
+    private long brokerBytesPerSecond;
+    private long deviceBytesPerSecond;
+    private Map<String, Long> devices;
+}
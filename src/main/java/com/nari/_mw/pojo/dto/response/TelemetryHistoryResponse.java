@@ -0,0 +1,21 @@
+package com.nari._mw.pojo.dto.response;
+
+import com.nari._mw.pojo.model.TelemetryBucket;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class TelemetryHistoryResponse {
+    private String deviceId;
+    private String point;
+
+    /**
+     * 数据粒度(毫秒)，0表示原始样本
+     */
+    private long resolutionMs;
+
+    private List<TelemetryBucket> buckets;
+}
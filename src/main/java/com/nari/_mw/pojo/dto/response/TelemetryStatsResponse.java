@@ -0,0 +1,14 @@
+package com.nari._mw.pojo.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class TelemetryStatsResponse {
+    private long received;
+    private long dropped;
+    private long processed;
+    private long parseErrors;
+    private int queued;
+}
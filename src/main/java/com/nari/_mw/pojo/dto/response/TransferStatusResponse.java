@@ -0,0 +1,18 @@
+package com.nari._mw.pojo.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class TransferStatusResponse {
+    private String transferId;
+    private String deviceId;
+
+    /**
+     * 切片完成前为空
+     */
+    private String taskNo;
+
+    private long startedAt;
+}
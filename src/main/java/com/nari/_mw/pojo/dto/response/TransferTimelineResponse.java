@@ -0,0 +1,51 @@
+package com.nari._mw.pojo.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * 单次配置传输的耗时分解
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransferTimelineResponse {
+    private String transferId;
+    private String deviceId;
+    private String taskNo;
+
+    /**
+     * success 或 failure
+     */
+    private String status;
+
+    private long startedAt;
+    private double durationMs;
+
+    /**
+     * 按发生顺序的各阶段耗时(毫秒)：queue(等待准入队列)、connect、subscribe、dispatch(等待传输线程)、slice、metadata、slices、verification
+     */
+    private Map<String, Double> phasesMs;
+
+    private long fileSize;
+    private int sliceCount;
+
+    /**
+     * 单个切片从首次发送到确认的耗时(毫秒，含重传)
+     */
+    private double sliceRttP50Ms;
+    private double sliceRttP90Ms;
+    private double sliceRttP99Ms;
+    private double sliceRttMaxMs;
+
+    private int retries;
+    private long bytesSent;
+
+    /**
+     * 失败原因，成功时为空
+     */
+    private String error;
+}
@@ -0,0 +1,35 @@
+package com.nari._mw.pojo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 告警事件
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AlarmEvent {
+    private String ruleId;
+
+    private String deviceId;
+
+    private String point;
+
+    /**
+     * RAISED: 告警产生; CLEARED: 告警恢复
+     */
+    private String state;
+
+    /**
+     * 触发时的观测值（原始值、变化率或窗口平均值）
+     */
+    private double value;
+
+    private long timestamp;
+
+    private String severity;
+
+    private String description;
+}
@@ -0,0 +1,57 @@
+package com.nari._mw.pojo.model;
+
+import com.nari._mw._enum.AlarmRuleType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 告警规则
+ * 观测值高于high或低于low时越限，恢复时需回到限值以内hysteresis的范围
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlarmRule {
+    /**
+     * 规则ID，新增时为空则自动生成
+     */
+    private String id;
+
+    private String deviceId;
+
+    private String point;
+
+    private AlarmRuleType type;
+
+    /**
+     * 上限，为空表示不检查
+     */
+    private Double high;
+
+    /**
+     * 下限，为空表示不检查
+     */
+    private Double low;
+
+    /**
+     * 回差，越限后需回到(low + hysteresis, high - hysteresis)内才恢复
+     */
+    private double hysteresis;
+
+    /**
+     * 窗口长度(毫秒)，仅WINDOW_AVERAGE使用
+     */
+    private long windowMs;
+
+    /**
+     * 连续满足条件的次数达到该值才产生或恢复告警，防止抖动
+     */
+    private int debounceCount;
+
+    private String severity;
+
+    private String description;
+}
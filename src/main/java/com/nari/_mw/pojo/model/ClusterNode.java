@@ -0,0 +1,25 @@
+package com.nari._mw.pojo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 集群成员
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ClusterNode {
+    private String nodeId;
+
+    /**
+     * 接收转发请求的地址
+     */
+    private String url;
+
+    /**
+     * 最近一次心跳时间(毫秒)
+     */
+    private long lastHeartbeat;
+}
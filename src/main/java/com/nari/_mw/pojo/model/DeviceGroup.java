@@ -0,0 +1,24 @@
+package com.nari._mw.pojo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 设备组，组内控制器订阅同一组主题，组下发由代理扇出
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DeviceGroup {
+    private String groupId;
+
+    /**
+     * 组下发主题
+     */
+    private String topic;
+
+    private List<String> deviceIds;
+}
@@ -0,0 +1,35 @@
+package com.nari._mw.pojo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 设备在线状态
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DevicePresence {
+    private String deviceId;
+
+    /**
+     * 在线设备的心跳在compute之外更新lastSeen，两者需对超时检查线程立即可见
+     */
+    private volatile boolean online;
+
+    /**
+     * 最近一次收到该设备任何消息的时间(毫秒)
+     */
+    private volatile long lastSeen;
+
+    /**
+     * 进入当前状态的时间(毫秒)
+     */
+    private long since;
+
+    /**
+     * 最近一次状态变化的来源: birth, will, heartbeat, telemetry, timeout
+     */
+    private String source;
+}
@@ -12,5 +12,10 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 public class FunctionBlockConfiguration {
+    /**
+     * 组下发标识，设备确认时原样带回；单设备下发时为空，不出现在报文中
+     */
+    private String publishId;
+
     private List<FunctionBlock> functionBlocks;
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.nari._mw.pojo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 暂存待下发的设备消息
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OutboundMessage {
+    /**
+     * 设备内递增的序号，按序号顺序下发
+     */
+    private long sequence;
+
+    /**
+     * 消息种类，同一设备同一种类的新消息会取代尚未下发的旧消息
+     */
+    private String kind;
+
+    private String topic;
+
+    private String payload;
+
+    /**
+     * 暂存时间(毫秒)
+     */
+    private long enqueuedAt;
+
+    /**
+     * 目标代理地址，为空时使用 store-forward.host
+     */
+    private String host;
+
+    /**
+     * 连接目标代理的用户名，密码不持久化
+     */
+    private String username;
+
+    public OutboundMessage(long sequence, String kind, String topic, String payload, long enqueuedAt) {
+        this(sequence, kind, topic, payload, enqueuedAt, null, null);
+    }
+}
@@ -0,0 +1,26 @@
+package com.nari._mw.pojo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 遥测聚合桶，原始样本以count=1、min=max=avg的桶表示
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TelemetryBucket {
+    /**
+     * 桶起始时间(毫秒)
+     */
+    private long start;
+
+    private double min;
+
+    private double max;
+
+    private double avg;
+
+    private int count;
+}
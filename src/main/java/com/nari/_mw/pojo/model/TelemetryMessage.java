@@ -0,0 +1,34 @@
+package com.nari._mw.pojo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 设备遥测消息
+ * 测点名与测点值按下标一一对应
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TelemetryMessage {
+    /**
+     * 设备ID
+     */
+    private String deviceId;
+
+    /**
+     * 采样时间戳(毫秒)，消息未携带时取接收时间
+     */
+    private long timestamp;
+
+    /**
+     * 测点名
+     */
+    private String[] points;
+
+    /**
+     * 测点值
+     */
+    private double[] values;
+}
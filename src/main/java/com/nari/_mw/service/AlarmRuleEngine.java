@@ -0,0 +1,296 @@
+package com.nari._mw.service;
+
+import com.nari._mw._enum.AlarmRuleType;
+import com.nari._mw.exception.MessageProcessingException;
+import com.nari._mw.pojo.model.AlarmEvent;
+import com.nari._mw.pojo.model.AlarmRule;
+import com.nari._mw.pojo.model.TelemetryMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 告警规则引擎
+ * 规则按设备和测点建立索引，每条遥测消息只评估引用了其测点的规则；
+ * 变化率和窗口平均值均增量维护，不回扫历史数据
+ */
+@Slf4j
+@Service
+public class AlarmRuleEngine implements TelemetryListener {
+    private static final int MAX_RECENT_EVENTS = 1000;
+    private static final String RAISED = "RAISED";
+    private static final String CLEARED = "CLEARED";
+
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, RuleState[]>> index = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, RuleState> rulesById = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AlarmEvent> activeAlarms = new ConcurrentHashMap<>();
+    private final ArrayDeque<AlarmEvent> recentEvents = new ArrayDeque<>();
+    private final List<Consumer<AlarmEvent>> alarmListeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong ruleIdSequence = new AtomicLong();
+
+    @Override
+    public void onTelemetry(List<TelemetryMessage> batch) {
+        for (TelemetryMessage message : batch) {
+            ConcurrentHashMap<String, RuleState[]> pointRules = index.get(message.getDeviceId());
+            if (pointRules == null) {
+                continue;
+            }
+            String[] points = message.getPoints();
+            double[] values = message.getValues();
+            for (int i = 0; i < points.length; i++) {
+                RuleState[] states = pointRules.get(points[i]);
+                if (states == null) {
+                    continue;
+                }
+                for (RuleState state : states) {
+                    AlarmEvent event = state.evaluate(message.getTimestamp(), values[i]);
+                    if (event != null) {
+                        publish(event);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 新增或替换规则，被替换规则的活动告警以CLEARED事件恢复
+     * 引擎保存规则的副本，调用方之后修改传入对象不影响评估
+     *
+     * @return 保存的规则副本，包含生成的ID
+     */
+    public synchronized AlarmRule addRule(AlarmRule rule) {
+        validate(rule);
+        String id = rule.getId() == null || rule.getId().isEmpty()
+                ? "rule-" + ruleIdSequence.incrementAndGet() : rule.getId();
+        AlarmRule stored = rule.toBuilder().id(id).build();
+        removeRule(id);
+
+        RuleState state = new RuleState(stored);
+        rulesById.put(id, state);
+        index.computeIfAbsent(stored.getDeviceId(), k -> new ConcurrentHashMap<>())
+                .merge(stored.getPoint(), new RuleState[]{state}, (current, added) -> {
+                    RuleState[] merged = Arrays.copyOf(current, current.length + 1);
+                    merged[current.length] = state;
+                    return merged;
+                });
+        return stored.toBuilder().build();
+    }
+
+    public synchronized boolean removeRule(String ruleId) {
+        RuleState removed = rulesById.remove(ruleId);
+        if (removed == null) {
+            return false;
+        }
+
+        AlarmRule rule = removed.rule;
+        ConcurrentHashMap<String, RuleState[]> pointRules = index.get(rule.getDeviceId());
+        if (pointRules != null) {
+            pointRules.computeIfPresent(rule.getPoint(), (point, current) -> {
+                RuleState[] remaining = Arrays.stream(current).filter(s -> s != removed).toArray(RuleState[]::new);
+                return remaining.length == 0 ? null : remaining;
+            });
+        }
+        AlarmEvent active = activeAlarms.get(ruleId);
+        if (active != null) {
+            // 规则删除或替换时恢复其未结束的告警，避免监听方一直保留失效的告警
+            publish(new AlarmEvent(ruleId, active.getDeviceId(), active.getPoint(), CLEARED, active.getValue(),
+                    System.currentTimeMillis(), active.getSeverity(), active.getDescription()));
+        }
+        return true;
+    }
+
+    public List<AlarmRule> getRules() {
+        return rulesById.values().stream().map(state -> state.rule.toBuilder().build()).toList();
+    }
+
+    public List<AlarmEvent> getActiveAlarms() {
+        return new ArrayList<>(activeAlarms.values());
+    }
+
+    public List<AlarmEvent> getRecentEvents() {
+        synchronized (recentEvents) {
+            return new ArrayList<>(recentEvents);
+        }
+    }
+
+    public void addAlarmListener(Consumer<AlarmEvent> listener) {
+        alarmListeners.add(listener);
+    }
+
+    /**
+     * 已索引的规则数
+     */
+    public int getRuleCount() {
+        return rulesById.size();
+    }
+
+    private void publish(AlarmEvent event) {
+        if (RAISED.equals(event.getState())) {
+            activeAlarms.put(event.getRuleId(), event);
+            log.warn("告警产生 - 规则: {}, 设备: {}, 测点: {}, 值: {}, 级别: {}",
+                    event.getRuleId(), event.getDeviceId(), event.getPoint(), event.getValue(), event.getSeverity());
+        } else {
+            activeAlarms.remove(event.getRuleId());
+            log.info("告警恢复 - 规则: {}, 设备: {}, 测点: {}, 值: {}",
+                    event.getRuleId(), event.getDeviceId(), event.getPoint(), event.getValue());
+        }
+
+        synchronized (recentEvents) {
+            recentEvents.addLast(event);
+            if (recentEvents.size() > MAX_RECENT_EVENTS) {
+                recentEvents.removeFirst();
+            }
+        }
+        for (Consumer<AlarmEvent> listener : alarmListeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                log.error("告警监听器处理失败", e);
+            }
+        }
+    }
+
+    private static void validate(AlarmRule rule) {
+        if (rule.getDeviceId() == null || rule.getPoint() == null || rule.getType() == null) {
+            throw new MessageProcessingException("告警规则必须指定设备、测点和类型");
+        }
+        if (rule.getHigh() == null && rule.getLow() == null) {
+            throw new MessageProcessingException("告警规则必须指定上限或下限");
+        }
+        if (rule.getHysteresis() < 0) {
+            throw new MessageProcessingException("告警规则回差不能为负");
+        }
+        if (rule.getType() == AlarmRuleType.WINDOW_AVERAGE && rule.getWindowMs() <= 0) {
+            throw new MessageProcessingException("窗口平均值规则必须指定窗口长度");
+        }
+    }
+
+    /**
+     * 单条规则的增量评估状态
+     */
+    private static final class RuleState {
+        private final AlarmRule rule;
+        private final int debounceCount;
+        private boolean active;
+        private int streak;
+
+        // 变化率
+        private boolean hasPrevious;
+        private double previousValue;
+        private long previousTimestamp;
+
+        // 窗口平均值
+        private long[] windowTimestamps = new long[16];
+        private double[] windowValues = new double[16];
+        private int windowHead;
+        private int windowSize;
+        private double windowSum;
+
+        private RuleState(AlarmRule rule) {
+            this.rule = rule;
+            this.debounceCount = Math.max(1, rule.getDebounceCount());
+        }
+
+        synchronized AlarmEvent evaluate(long timestamp, double value) {
+            double observed;
+            switch (rule.getType()) {
+                case RATE_OF_CHANGE -> {
+                    if (!hasPrevious) {
+                        hasPrevious = true;
+                        previousValue = value;
+                        previousTimestamp = timestamp;
+                        return null;
+                    }
+                    if (timestamp <= previousTimestamp) {
+                        // 乱序或重复样本无法计算变化率
+                        return null;
+                    }
+                    observed = (value - previousValue) * 1000.0 / (timestamp - previousTimestamp);
+                    previousValue = value;
+                    previousTimestamp = timestamp;
+                }
+                case WINDOW_AVERAGE -> {
+                    if (windowSize > 0 && timestamp < latestWindowTimestamp()) {
+                        // 早于窗口内最新样本的乱序样本会破坏按时间从队首移出的顺序
+                        return null;
+                    }
+                    observed = addToWindow(timestamp, value);
+                }
+                default -> observed = value;
+            }
+
+            boolean conditionMet = active ? isCleared(observed) : isViolated(observed);
+            if (!conditionMet) {
+                streak = 0;
+                return null;
+            }
+            if (++streak < debounceCount) {
+                return null;
+            }
+
+            streak = 0;
+            active = !active;
+            return new AlarmEvent(rule.getId(), rule.getDeviceId(), rule.getPoint(),
+                    active ? RAISED : CLEARED,
+                    observed, timestamp, rule.getSeverity(), rule.getDescription());
+        }
+
+        private boolean isViolated(double observed) {
+            return (rule.getHigh() != null && observed > rule.getHigh())
+                    || (rule.getLow() != null && observed < rule.getLow());
+        }
+
+        private boolean isCleared(double observed) {
+            return (rule.getHigh() == null || observed <= rule.getHigh() - rule.getHysteresis())
+                    && (rule.getLow() == null || observed >= rule.getLow() + rule.getHysteresis());
+        }
+
+        /**
+         * 加入样本并移出窗口外的旧样本，返回当前窗口平均值
+         */
+        private double addToWindow(long timestamp, double value) {
+            if (windowSize == windowValues.length) {
+                growWindow();
+            }
+            int tail = (windowHead + windowSize) % windowValues.length;
+            windowTimestamps[tail] = timestamp;
+            windowValues[tail] = value;
+            windowSize++;
+            windowSum += value;
+
+            long windowStart = timestamp - rule.getWindowMs();
+            while (windowSize > 1 && windowTimestamps[windowHead] <= windowStart) {
+                windowSum -= windowValues[windowHead];
+                windowHead = (windowHead + 1) % windowValues.length;
+                windowSize--;
+            }
+            return windowSum / windowSize;
+        }
+
+        private long latestWindowTimestamp() {
+            return windowTimestamps[(windowHead + windowSize - 1) % windowValues.length];
+        }
+
+        private void growWindow() {
+            long[] timestamps = new long[windowValues.length * 2];
+            double[] values = new double[windowValues.length * 2];
+            for (int i = 0; i < windowSize; i++) {
+                int from = (windowHead + i) % windowValues.length;
+                timestamps[i] = windowTimestamps[from];
+                values[i] = windowValues[from];
+            }
+            windowTimestamps = timestamps;
+            windowValues = values;
+            windowHead = 0;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.nari._mw.service;
+
+import com.nari._mw.config.BrokerFailoverConfig;
+import com.nari._mw.util.FailoverTransferClient;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MQTT代理健康状况：按平滑连接耗时排序健康代理，最近连接失败或丢失的代理排在最后
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BrokerHealthRegistry implements FailoverTransferClient.HealthTracker {
+    private static final double SMOOTHING = 0.25;
+
+    private final BrokerFailoverConfig config;
+    private final ConcurrentHashMap<String, Health> brokers = new ConcurrentHashMap<>();
+
+    @Override
+    public List<String> rank(List<String> hosts) {
+        long now = System.currentTimeMillis();
+        List<String> ranked = new ArrayList<>(hosts);
+        // 稳定排序：无样本的代理保持给定顺序并优先尝试
+        ranked.sort(Comparator.comparingLong((String host) -> penalizedUntil(host) > now ? penalizedUntil(host) : 0)
+                .thenComparingDouble(this::connectMs));
+        return ranked;
+    }
+
+    @Override
+    public void connected(String host, long connectNanos) {
+        brokers.computeIfAbsent(host, h -> new Health()).connected(connectNanos / 1e6);
+    }
+
+    @Override
+    public void failed(String host) {
+        log.warn("MQTT代理 {} 标记为不健康，{} ms 内优先使用其他代理", host, config.getFailurePenaltyMs());
+        brokers.computeIfAbsent(host, h -> new Health()).failedAt = System.currentTimeMillis();
+    }
+
+    private long penalizedUntil(String host) {
+        Health health = brokers.get(host);
+        return health == null || health.failedAt == 0 ? 0 : health.failedAt + config.getFailurePenaltyMs();
+    }
+
+    private double connectMs(String host) {
+        Health health = brokers.get(host);
+        return health == null ? 0 : health.connectMs;
+    }
+
+    private static final class Health {
+        private volatile double connectMs;
+        private volatile long failedAt;
+
+        private synchronized void connected(double ms) {
+            connectMs = connectMs == 0 ? ms : connectMs + SMOOTHING * (ms - connectMs);
+            failedAt = 0;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.nari._mw.service;
+
+import com.alibaba.fastjson.JSON;
+import com.nari._mw.config.ClusterConfig;
+import com.nari._mw.exception.ClusterForwardException;
+import com.nari._mw.pojo.model.ClusterNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 把发往非本实例设备的请求转发给设备所属实例，并原样返回对方的状态码、响应体和 Content-Type
+ * 转发请求携带 X-Cluster-Forwarded-By，接收方不再二次转发，成员视图短暂不一致时由接收方直接处理。
+ * 只有值为当前其他成员ID的标记才被认可，客户端伪造的标记不能绕过转发。
+ */
+@Slf4j
+@Service
+public class ClusterForwarder {
+    public static final String FORWARDED_HEADER = "X-Cluster-Forwarded-By";
+    private static final String RETRY_AFTER_HEADER = "Retry-After";
+    private static final String CONTENT_TYPE_HEADER = "Content-Type";
+
+    private final ClusterConfig config;
+    private final ClusterService clusterService;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    public ClusterForwarder(ClusterConfig config, ClusterService clusterService) {
+        this.config = config;
+        this.clusterService = clusterService;
+    }
+
+    /**
+     * 以POST转发
+     *
+     * @param path    请求路径，如 /api/v1/devices/publish-config
+     * @param body    请求体，按JSON序列化
+     * @param headers 需要透传的请求头，值为null的忽略
+     */
+    public CompletableFuture<ResponseEntity<String>> forward(ClusterNode owner, String path, Object body,
+                                                             Map<String, String> headers) {
+        return forward(owner, "POST", path, body, headers);
+    }
+
+    /**
+     * @param method HTTP方法
+     * @param body   请求体，按JSON序列化；为null时不带请求体
+     */
+    public CompletableFuture<ResponseEntity<String>> forward(ClusterNode owner, String method, String path, Object body,
+                                                             Map<String, String> headers) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(owner.getUrl() + path))
+                .timeout(Duration.ofMillis(config.getForwardTimeoutMs()))
+                .header(FORWARDED_HEADER, clusterService.getSelf().getNodeId());
+        if (body != null) {
+            request.header(CONTENT_TYPE_HEADER, MediaType.APPLICATION_JSON_VALUE)
+                    .method(method, HttpRequest.BodyPublishers.ofString(JSON.toJSONString(body), StandardCharsets.UTF_8));
+        } else {
+            request.method(method, HttpRequest.BodyPublishers.noBody());
+        }
+        headers.forEach((name, value) -> {
+            if (value != null) {
+                request.header(name, value);
+            }
+        });
+
+        log.debug("转发请求到实例 {} - {} {}", owner.getNodeId(), method, path);
+        return httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8))
+                .handle((response, ex) -> {
+                    if (ex != null) {
+                        throw new ClusterForwardException("设备所属实例不可达", owner.getNodeId(), ex);
+                    }
+                    ResponseEntity.BodyBuilder builder = ResponseEntity.status(HttpStatus.valueOf(response.statusCode()));
+                    response.headers().firstValue(RETRY_AFTER_HEADER)
+                            .ifPresent(value -> builder.header(RETRY_AFTER_HEADER, value));
+                    response.headers().firstValue(CONTENT_TYPE_HEADER)
+                            .ifPresent(value -> builder.header(CONTENT_TYPE_HEADER, value));
+                    return builder.body(response.body());
+                });
+    }
+
+    /**
+     * 是否由当前集群中的其他实例转发而来，标记的实例不在成员视图中时按未转发处理
+     */
+    public boolean isForwardedByMember(String forwardedBy) {
+        if (forwardedBy == null || forwardedBy.isBlank()) {
+            return false;
+        }
+        if (clusterService.isPeer(forwardedBy)) {
+            return true;
+        }
+        log.warn("忽略非集群成员的转发标记: {}", forwardedBy);
+        return false;
+    }
+}
@@ -0,0 +1,172 @@
+package com.nari._mw.service;
+
+import com.nari._mw.config.ClusterConfig;
+import com.nari._mw.pojo.model.ClusterNode;
+import com.nari._mw.util.ConsistentHashRing;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 集群设备归属
+ * 各实例定期向成员表写入心跳并读取存活成员，按一致性哈希把设备分配给唯一的实例；
+ * 成员加入或离开(含心跳超时)时重建哈希环，只有相邻区间的设备改变归属。
+ * 归属变化只影响之后的请求，已在原实例排队或执行的传输继续完成。
+ */
+@Slf4j
+@Service
+@Lazy(false)
+public class ClusterService {
+    private final ClusterConfig config;
+    private final MembershipStore store;
+    private final ClusterNode self;
+    private volatile View view;
+    private ScheduledExecutorService heartbeatExecutor;
+
+    public ClusterService(ClusterConfig config, ObjectProvider<MembershipStore> store) {
+        this.config = config;
+        this.store = config.isEnabled() ? store.getIfAvailable() : null;
+        if (config.isEnabled() && this.store == null) {
+            throw new IllegalStateException("集群模式未找到成员来源: cluster.membership=" + config.getMembership());
+        }
+        if (config.isEnabled() && (config.getAdvertisedUrl() == null || config.getAdvertisedUrl().isBlank())) {
+            throw new IllegalStateException("集群模式需要配置 cluster.advertised-url");
+        }
+        this.self = new ClusterNode(nodeIdOf(config), config.getAdvertisedUrl(), 0);
+        this.view = new View(Map.of(self.getNodeId(), self), new ConsistentHashRing(List.of(self.getNodeId()), 1));
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        refresh();
+        heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cluster-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeatExecutor.scheduleWithFixedDelay(this::refresh, config.getHeartbeatIntervalMs(),
+                config.getHeartbeatIntervalMs(), TimeUnit.MILLISECONDS);
+        log.info("集群模式已启动 - 实例: {}, 地址: {}, 成员来源: {}", self.getNodeId(), self.getUrl(), config.getMembership());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (heartbeatExecutor != null) {
+            heartbeatExecutor.shutdownNow();
+        }
+        if (store != null) {
+            try {
+                store.leave(self.getNodeId());
+                log.info("已退出集群: {}", self.getNodeId());
+            } catch (RuntimeException e) {
+                log.warn("注销集群成员失败，其他实例将在心跳超时后重新分配: {}", self.getNodeId(), e);
+            }
+        }
+    }
+
+    /**
+     * 写入心跳并按存活成员重建哈希环；成员来源不可用时保留上一次的视图
+     */
+    public void refresh() {
+        long now = System.currentTimeMillis();
+        List<ClusterNode> members;
+        try {
+            self.setLastHeartbeat(now);
+            store.heartbeat(self);
+            members = store.members();
+        } catch (RuntimeException e) {
+            log.warn("刷新集群成员失败，沿用当前成员: {}", view.members.keySet(), e);
+            return;
+        }
+
+        Map<String, ClusterNode> live = new TreeMap<>();
+        for (ClusterNode member : members) {
+            if (now - member.getLastHeartbeat() <= config.getMemberTimeoutMs()) {
+                live.put(member.getNodeId(), member);
+            }
+        }
+        live.put(self.getNodeId(), self);
+
+        View current = view;
+        if (!live.keySet().equals(current.members.keySet())) {
+            List<String> joined = new ArrayList<>(live.keySet());
+            joined.removeAll(current.members.keySet());
+            List<String> left = new ArrayList<>(current.members.keySet());
+            left.removeAll(live.keySet());
+            log.info("集群成员变化，重新分配设备 - 加入: {}, 离开: {}, 当前: {}", joined, left, live.keySet());
+            view = new View(live, new ConsistentHashRing(live.keySet(), config.getVirtualNodes()));
+        } else {
+            view = new View(live, current.ring);
+        }
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    public ClusterNode getSelf() {
+        return self;
+    }
+
+    /**
+     * 设备所属实例，未启用集群时总是本实例
+     */
+    public ClusterNode ownerOf(String deviceId) {
+        View current = view;
+        ClusterNode owner = current.members.get(current.ring.ownerOf(deviceId));
+        return owner != null ? owner : self;
+    }
+
+    public boolean isLocal(String deviceId) {
+        return !config.isEnabled() || self.getNodeId().equals(ownerOf(deviceId).getNodeId());
+    }
+
+    /**
+     * 是否为当前成员视图中的其他实例
+     */
+    public boolean isPeer(String nodeId) {
+        return config.isEnabled() && !self.getNodeId().equals(nodeId) && view.members.containsKey(nodeId);
+    }
+
+    public List<ClusterNode> getMembers() {
+        return Collections.unmodifiableList(new ArrayList<>(view.members.values()));
+    }
+
+    private static String nodeIdOf(ClusterConfig config) {
+        if (config.getNodeId() != null && !config.getNodeId().isBlank()) {
+            return config.getNodeId();
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException("无法获取主机名，请配置 cluster.node-id", e);
+        }
+    }
+
+    private static final class View {
+        private final Map<String, ClusterNode> members;
+        private final ConsistentHashRing ring;
+
+        private View(Map<String, ClusterNode> members, ConsistentHashRing ring) {
+            this.members = members;
+            this.ring = ring;
+        }
+    }
+}
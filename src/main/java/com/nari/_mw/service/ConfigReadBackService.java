@@ -0,0 +1,361 @@
+package com.nari._mw.service;
+
+import com.alibaba.fastjson.JSON;
+import com.nari._mw._enum.MessageClass;
+import com.nari._mw._enum.MqttTopic;
+import com.nari._mw._enum.TransferPriority;
+import com.nari._mw.config.ConfigReadBackConfig;
+import com.nari._mw.config.MQTTDefaultConfig;
+import com.nari._mw.config.QosPolicyConfig;
+import com.nari._mw.exception.DeviceInteractionException;
+import com.nari._mw.exception.MessageProcessingException;
+import com.nari._mw.exception.TransferCancelledException;
+import com.nari._mw.pojo.dto.mqtt.connect.MQTTConnectionParams;
+import com.nari._mw.pojo.dto.mqtt.transfer.ConfigTransferMetadata;
+import com.nari._mw.pojo.dto.mqtt.transfer.ConfigTransferSlice;
+import com.nari._mw.pojo.dto.mqtt.transfer.ConfigUploadRequest;
+import com.nari._mw.pojo.dto.mqtt.transfer.ConfigUploadResult;
+import com.nari._mw.pojo.dto.mqtt.transfer.ConfigUploadSliceAck;
+import com.nari._mw.pojo.dto.request.ConfigReadBackRequest;
+import com.nari._mw.pojo.dto.response.ConfigBackupResponse;
+import com.nari._mw.pojo.dto.response.ConfigReadBackResponse;
+import com.nari._mw.util.FileSlicerUtil;
+import com.nari._mw.util.MQTTTransferClient;
+import com.nari._mw.util.SliceAssembler;
+import com.nari._mw.util.TransferEventLogger;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 配置回读：按切片协议反向从控制器拉取当前生效的配置文件，用于审计和备份
+ * 控制器连续发送切片而不逐片等待确认，切片可乱序到达，按位置直接写入磁盘并增量计算MD5；
+ * HMI按批次确认，切片停止到达时列出缺失序号请求重发。多个设备经准入队列在传输线程池上并行回读，
+ * 批量备份的耗时取决于最慢的设备而不是各设备之和。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ConfigReadBackService {
+    private final ConfigReadBackConfig config;
+    private final MQTTDefaultConfig mqttDefaultConfig;
+    private final QosPolicyConfig qosPolicyConfig;
+    private final DeviceService deviceService;
+    private final DevicePresenceRegistry devicePresenceRegistry;
+    private final DeviceLinkService deviceLinkService;
+    private final TransferRegistry transferRegistry;
+    private final TransferAdmissionQueue transferAdmissionQueue;
+    private final TransferEventLogger transferEventLogger;
+
+    private static final String UPLOAD_ACTION = "upload_config";
+    private static final DateTimeFormatter BACKUP_ID_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    /**
+     * 并行回读多个设备的配置，单个设备失败不影响其他设备
+     * 每个设备经准入队列排队，与下发任务共用并发上限和同一设备依次执行的约束
+     */
+    public CompletableFuture<ConfigBackupResponse> backup(List<ConfigReadBackRequest> requests, String operator,
+                                                          TransferPriority priority) {
+        if (requests == null || requests.isEmpty()) {
+            throw new MessageProcessingException("设备列表不能为空");
+        }
+        long startedAt = System.currentTimeMillis();
+        String backupId = LocalDateTime.now().format(BACKUP_ID_FORMAT);
+        Path directory = Paths.get(config.getDirectory(), backupId);
+
+        List<CompletableFuture<ConfigReadBackResponse>> futures = new ArrayList<>(requests.size());
+        for (ConfigReadBackRequest request : requests) {
+            long deviceStartedAt = System.currentTimeMillis();
+            CompletableFuture<ConfigReadBackResponse> future;
+            try {
+                future = transferAdmissionQueue.submit(request.getDeviceId(), operator, priority,
+                        () -> readBack(request, directory));
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            futures.add(future.exceptionally(ex -> failure(request.getDeviceId(), ex, deviceStartedAt)));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(v -> {
+            List<ConfigReadBackResponse> results = new ArrayList<>(futures.size());
+            futures.forEach(future -> results.add(future.join()));
+            int succeeded = (int) results.stream().filter(r -> "success".equals(r.getStatus())).count();
+            long duration = System.currentTimeMillis() - startedAt;
+            log.info("配置备份 {} 完成 - 设备: {}, 成功: {}, 失败: {}, 耗时: {} ms",
+                    backupId, results.size(), succeeded, results.size() - succeeded, duration);
+            return new ConfigBackupResponse(backupId, directory.toString(), duration, succeeded,
+                    results.size() - succeeded, results);
+        });
+    }
+
+    /**
+     * 回读单个设备的配置
+     * 连接和订阅在传输线程上进行，超时从传输开始执行时计算
+     *
+     * @param directory 保存目录，文件保存在其下以编码后的设备ID命名的子目录中
+     */
+    public CompletableFuture<ConfigReadBackResponse> readBack(ConfigReadBackRequest request, Path directory) {
+        String deviceId = request.getDeviceId();
+        devicePresenceRegistry.ensureOnline(deviceId);
+        MQTTConnectionParams params = deviceService.validateAndProcessMQTTParams(request.getMqttConnectionParams());
+        int sliceSize = request.getSliceSize() <= 0 ? config.getSliceSize() : request.getSliceSize();
+        deviceLinkService.acquire(deviceId);
+
+        ConfigReadBackResponse[] result = new ConfigReadBackResponse[1];
+        CompletableFuture<Void> transfer;
+        try {
+            transfer = transferRegistry.submit(deviceId, config.getTimeoutMs(), handle -> {
+                long startedAt = System.currentTimeMillis();
+                MQTTTransferClient mqttClient = connect(params);
+                handle.attach(mqttClient);
+                String taskNo = UUID.randomUUID().toString().replace("-", "");
+                handle.setTaskNo(taskNo);
+                result[0] = receive(mqttClient, deviceId, taskNo, sliceSize,
+                        directory.resolve(deviceDirectoryName(deviceId)), startedAt);
+            });
+        } catch (RuntimeException e) {
+            deviceLinkService.release(deviceId);
+            throw e;
+        }
+        transfer.whenComplete((v, ex) -> deviceLinkService.recordOutcome(deviceId, ex));
+        return transfer.thenApply(v -> result[0]);
+    }
+
+    /**
+     * 连接代理并订阅回传元数据和切片主题
+     */
+    private MQTTTransferClient connect(MQTTConnectionParams params) {
+        MQTTTransferClient mqttClient = null;
+        try {
+            mqttClient = MQTTTransferClient.connect(params, mqttDefaultConfig.getProtocolVersion())
+                    .withPayloadPreview(transferEventLogger.getPayloadPreviewLength())
+                    .withQos(MqttTopic.CONFIG_UPLOAD_REQUEST.getTopic(), qosPolicyConfig.qosFor(MessageClass.METADATA))
+                    .withQos(MqttTopic.UPLOAD_VERIFICATION_RESULT.getTopic(), qosPolicyConfig.qosFor(MessageClass.METADATA))
+                    .withQos(MqttTopic.UPLOAD_SLICE_ACK.getTopic(), qosPolicyConfig.qosFor(MessageClass.SLICE));
+            mqttClient.subscribe(MqttTopic.CONFIG_UPLOAD_METADATA.getTopic());
+            mqttClient.subscribe(MqttTopic.UPLOAD_DATA_SLICE.getTopic());
+            return mqttClient;
+        } catch (Exception e) {
+            log.error("配置回读过程中发生错误", e);
+            disconnectIfNotNull(mqttClient);
+            throw new MessageProcessingException("配置回读失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 请求元数据后接收切片直到文件完整，校验MD5并保存
+     */
+    private ConfigReadBackResponse receive(MQTTTransferClient mqttClient, String deviceId, String taskNo, int sliceSize,
+                                           Path deviceDirectory, long startedAt) {
+        ConfigTransferMetadata metadata = requestMetadata(mqttClient, deviceId, taskNo, sliceSize);
+        TransferEventLogger.TransferTrace trace = transferEventLogger.begin(deviceId, taskNo, metadata.getSize(),
+                metadata.getNumber());
+        Path target = deviceDirectory.resolve(safeFileName(metadata.getName()));
+        Path partial = deviceDirectory.resolve(taskNo + ".part");
+
+        int duplicates = 0;
+        int rounds = 0;
+        try {
+            Files.createDirectories(deviceDirectory);
+            String md5;
+            try (SliceAssembler assembler = new SliceAssembler(partial, metadata.getSize(), metadata.getOnesize())) {
+                if (assembler.getSliceCount() != metadata.getNumber()) {
+                    throw new DeviceInteractionException("回传元数据的切片数与文件大小不符: " + metadata.getNumber(), deviceId);
+                }
+
+                List<Integer> pendingAcks = new ArrayList<>(config.getAckBatchSize());
+                long ackDeadline = 0;
+                while (!assembler.isComplete()) {
+                    long wait = pendingAcks.isEmpty()
+                            ? config.getIdleTimeoutMs() : Math.max(1, ackDeadline - System.currentTimeMillis());
+                    String message = mqttClient.poll(MqttTopic.UPLOAD_DATA_SLICE.getTopic(), wait);
+
+                    if (message == null) {
+                        if (!pendingAcks.isEmpty()) {
+                            flushAcks(mqttClient, taskNo, pendingAcks);
+                            continue;
+                        }
+                        // 切片停止到达，只请求重发缺失的切片
+                        if (rounds >= config.getMaxRetransmissionRounds()) {
+                            throw new DeviceInteractionException("回读超出重发轮次，缺失切片: "
+                                    + (assembler.getSliceCount() - assembler.getReceivedCount()), deviceId);
+                        }
+                        rounds++;
+                        List<Integer> missing = assembler.missing(config.getMaxMissingPerRound());
+                        log.warn("设备 {} 回传切片中断，第{}轮请求重发: {}", deviceId, rounds, missing);
+                        publishResult(mqttClient, new ConfigUploadResult(taskNo, "failure", missing));
+                        continue;
+                    }
+
+                    ConfigTransferSlice slice = parseSlice(message);
+                    if (slice == null || !taskNo.equals(slice.getTaskNo())) {
+                        continue;
+                    }
+                    // CRC校验失败的切片不确认，在下一轮作为缺失切片请求重发
+                    if (slice.getData() == null || FileSlicerUtil.calculateCRC32C(slice.getData()) != slice.getCrc()) {
+                        log.warn("设备 {} 回传切片CRC校验失败: {}", deviceId, slice.getNumber());
+                        continue;
+                    }
+                    try {
+                        if (assembler.write(slice.getNumber(), slice.getData())) {
+                            trace.sliceAcked(slice.getNumber(), slice.getData().length, 0);
+                        } else {
+                            duplicates++;
+                        }
+                    } catch (IllegalArgumentException e) {
+                        log.warn("设备 {} 回传切片无效: {}", deviceId, e.getMessage());
+                        continue;
+                    }
+
+                    // 重复切片说明控制器可能未收到上次确认，再次确认
+                    if (pendingAcks.isEmpty()) {
+                        ackDeadline = System.currentTimeMillis() + config.getAckIntervalMs();
+                    }
+                    pendingAcks.add(slice.getNumber());
+                    if (pendingAcks.size() >= config.getAckBatchSize()) {
+                        flushAcks(mqttClient, taskNo, pendingAcks);
+                    }
+                }
+                flushAcks(mqttClient, taskNo, pendingAcks);
+                assembler.force();
+                md5 = assembler.md5();
+            }
+
+            if (metadata.getMd5() == null || !metadata.getMd5().equalsIgnoreCase(md5)) {
+                publishResult(mqttClient, new ConfigUploadResult(taskNo, "failure", List.of()));
+                throw new DeviceInteractionException("回读文件MD5校验失败: " + md5, deviceId);
+            }
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            publishResult(mqttClient, new ConfigUploadResult(taskNo, "success", null));
+            trace.retried(rounds);
+            trace.completed();
+
+            log.info("设备 {} 配置回读完成 - 文件: {}, 大小: {}, 切片: {}, 重复: {}, 重发轮次: {}",
+                    deviceId, target, metadata.getSize(), metadata.getNumber(), duplicates, rounds);
+            return new ConfigReadBackResponse(deviceId, "success", target.toString(), metadata.getSize(), md5,
+                    metadata.getNumber(), duplicates, rounds, System.currentTimeMillis() - startedAt, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            trace.failed(e);
+            deleteQuietly(partial);
+            throw new TransferCancelledException("回读已取消", deviceId);
+        } catch (IOException e) {
+            trace.failed(e);
+            deleteQuietly(partial);
+            throw new MessageProcessingException("写入回读文件失败: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            trace.failed(e);
+            deleteQuietly(partial);
+            throw e;
+        }
+    }
+
+    /**
+     * 发送回传请求并等待元数据，无响应时按RTO重传
+     */
+    private ConfigTransferMetadata requestMetadata(MQTTTransferClient mqttClient, String deviceId, String taskNo,
+                                                   int sliceSize) {
+        String request = JSON.toJSONString(new ConfigUploadRequest(UPLOAD_ACTION, taskNo, sliceSize));
+        DeviceLinkService.Reply reply;
+        try {
+            reply = deviceLinkService.exchange(mqttClient, deviceId, MqttTopic.CONFIG_UPLOAD_REQUEST.getTopic(),
+                    MqttTopic.CONFIG_UPLOAD_METADATA.getTopic(), request, taskNo + "/upload",
+                    response -> {
+                        ConfigTransferMetadata metadata = parseMetadata(response);
+                        return metadata == null || taskNo.equals(metadata.getTaskNo());
+                    });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferCancelledException("回读已取消", deviceId);
+        }
+
+        ConfigTransferMetadata metadata = parseMetadata(reply.getResponse());
+        if (metadata == null || metadata.getSize() < 0 || metadata.getOnesize() <= 0) {
+            throw new DeviceInteractionException("无法解析回传元数据: "
+                    + transferEventLogger.abbreviate(reply.getResponse()), deviceId);
+        }
+        return metadata;
+    }
+
+    private void flushAcks(MQTTTransferClient mqttClient, String taskNo, List<Integer> pendingAcks) {
+        if (pendingAcks.isEmpty()) {
+            return;
+        }
+        mqttClient.publishMessage(MqttTopic.UPLOAD_SLICE_ACK.getTopic(),
+                JSON.toJSONString(new ConfigUploadSliceAck(taskNo, pendingAcks)));
+        pendingAcks.clear();
+    }
+
+    private void publishResult(MQTTTransferClient mqttClient, ConfigUploadResult result) {
+        mqttClient.publishMessage(MqttTopic.UPLOAD_VERIFICATION_RESULT.getTopic(), JSON.toJSONString(result));
+    }
+
+    private ConfigTransferMetadata parseMetadata(String response) {
+        try {
+            return JSON.parseObject(response, ConfigTransferMetadata.class);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private ConfigTransferSlice parseSlice(String message) {
+        try {
+            return JSON.parseObject(message, ConfigTransferSlice.class);
+        } catch (Exception e) {
+            log.warn("解析回传切片失败: {}", transferEventLogger.abbreviate(message));
+            return null;
+        }
+    }
+
+    private ConfigReadBackResponse failure(String deviceId, Throwable ex, long startedAt) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        log.warn("设备 {} 配置回读失败: {}", deviceId, cause.toString());
+        return new ConfigReadBackResponse(deviceId, "failure", null, 0, null, 0, 0, 0,
+                System.currentTimeMillis() - startedAt, cause.getMessage() != null ? cause.getMessage() : cause.toString());
+    }
+
+    /**
+     * 设备ID按URL编码作为目录名，与暂存日志文件名一致；编码可逆，不同设备ID不会映射到同一目录，
+     * "." 也被编码，避免 "." ".." 指向保存目录本身或其上级
+     */
+    private static String deviceDirectoryName(String deviceId) {
+        return URLEncoder.encode(deviceId, StandardCharsets.UTF_8).replace(".", "%2E").replace("*", "%2A");
+    }
+
+    /**
+     * 替换控制器报告的文件名中的路径分隔符等字符，避免写到保存目录之外
+     */
+    private static String safeFileName(String name) {
+        String fileName = name == null ? "" : name.replaceAll("[^A-Za-z0-9._-]", "_");
+        return fileName.isEmpty() || fileName.equals(".") || fileName.equals("..") ? "config.bin" : fileName;
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除回读临时文件失败: {}", path, e);
+        }
+    }
+
+    private void disconnectIfNotNull(MQTTTransferClient mqttClient) {
+        if (mqttClient != null) {
+            mqttClient.disconnect();
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package com.nari._mw.service;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.nari._mw._enum.MessageClass;
+import com.nari._mw.config.DeviceGroupConfig;
+import com.nari._mw.config.MQTTDefaultConfig;
+import com.nari._mw.config.QosPolicyConfig;
+import com.nari._mw.exception.CircuitOpenException;
+import com.nari._mw.exception.MessageProcessingException;
+import com.nari._mw.pojo.dto.mqtt.connect.MQTTConnectionParams;
+import com.nari._mw.pojo.dto.request.GroupFunctionBlockRequest;
+import com.nari._mw.pojo.dto.response.GroupPublishResponse;
+import com.nari._mw.pojo.model.DeviceGroup;
+import com.nari._mw.pojo.model.FunctionBlockConfiguration;
+import com.nari._mw.util.MQTTClientWrapper;
+import com.nari._mw.util.TopicBuilder;
+import com.nari._mw.util.TransferRateLimiter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 设备组与组下发
+ * 组内控制器订阅共享的组主题；组下发只序列化一次、建立一个连接、向组主题发布一次，由代理扇出到各控制器。
+ * 各控制器在 power/10mw/group/{groupId}/ack/{deviceId} 上带回 publishId 确认，确认在后台收集，
+ * 全部确认或超时后断开连接；已知离线的成员改为单独暂存，上线后通过各自的设备主题下发。
+ * 成员变更时向新增和移除的控制器发送加入/退出组的控制消息，离线控制器的控制消息同样暂存。
+ * 组下发与单设备下发经过相同的限制：由调用方按组提交到准入队列，在线成员任一处于熔断状态时拒绝下发，
+ * 各成员的确认结果计入其熔断统计，发布受全局和代理限速约束。
+ */
+@Slf4j
+@Service
+public class DeviceGroupService {
+    private static final String GROUP_KIND_PREFIX = "group:";
+    private static final String FUNCTION_BLOCKS_KIND = "function-blocks";
+    private static final String ADMISSION_KEY_PREFIX = "group:";
+
+    private final DeviceGroupConfig config;
+    private final MQTTDefaultConfig mqttDefaultConfig;
+    private final QosPolicyConfig qosPolicyConfig;
+    private final TopicBuilder topicBuilder;
+    private final DeviceService deviceService;
+    private final DevicePresenceRegistry devicePresenceRegistry;
+    private final StoreAndForwardService storeAndForwardService;
+    private final DeviceLinkService deviceLinkService;
+    private final TransferRateLimiter transferRateLimiter;
+    private final ConcurrentHashMap<String, DeviceGroup> groups = new ConcurrentHashMap<>();
+    private final Map<String, GroupPublish> publishes;
+    private final ScheduledExecutorService executor;
+
+    public DeviceGroupService(DeviceGroupConfig config, MQTTDefaultConfig mqttDefaultConfig,
+                              QosPolicyConfig qosPolicyConfig, TopicBuilder topicBuilder, DeviceService deviceService,
+                              DevicePresenceRegistry devicePresenceRegistry, StoreAndForwardService storeAndForwardService,
+                              DeviceLinkService deviceLinkService, TransferRateLimiter transferRateLimiter) {
+        this.config = config;
+        this.mqttDefaultConfig = mqttDefaultConfig;
+        this.qosPolicyConfig = qosPolicyConfig;
+        this.topicBuilder = topicBuilder;
+        this.deviceService = deviceService;
+        this.devicePresenceRegistry = devicePresenceRegistry;
+        this.storeAndForwardService = storeAndForwardService;
+        this.deviceLinkService = deviceLinkService;
+        this.transferRateLimiter = transferRateLimiter;
+        this.publishes = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, GroupPublish> eldest) {
+                return size() > config.getRetainedResults();
+            }
+        });
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "device-group");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 组下发在准入队列和集群分片中使用的键，与设备ID区分
+     */
+    public static String admissionKey(String groupId) {
+        return ADMISSION_KEY_PREFIX + groupId;
+    }
+
+    /**
+     * 创建或替换设备组，向成员变化的控制器异步发送加入/退出通知
+     */
+    public DeviceGroup putGroup(String groupId, List<String> deviceIds) {
+        validateTopicLevel("组ID", groupId);
+        deviceIds.forEach(deviceId -> validateTopicLevel("设备ID", deviceId));
+        DeviceGroup group = new DeviceGroup(groupId, topicBuilder.buildGroupTopic(groupId),
+                List.copyOf(new LinkedHashSet<>(deviceIds)));
+        DeviceGroup previous = groups.put(groupId, group);
+
+        Set<String> joined = new LinkedHashSet<>(group.getDeviceIds());
+        Set<String> left = new LinkedHashSet<>();
+        if (previous != null) {
+            joined.removeAll(previous.getDeviceIds());
+            left.addAll(previous.getDeviceIds());
+            left.removeAll(group.getDeviceIds());
+        }
+        log.info("设备组 {} 已更新 - 成员: {}, 加入: {}, 退出: {}", groupId, group.getDeviceIds().size(), joined, left);
+        executor.execute(() -> notifyMembership(group, joined, left));
+        return group;
+    }
+
+    public DeviceGroup removeGroup(String groupId) {
+        DeviceGroup group = groups.remove(groupId);
+        if (group != null) {
+            log.info("设备组 {} 已删除", groupId);
+            executor.execute(() -> notifyMembership(group, List.of(), group.getDeviceIds()));
+        }
+        return group;
+    }
+
+    public DeviceGroup getGroup(String groupId) {
+        return groups.get(groupId);
+    }
+
+    public List<DeviceGroup> getGroups() {
+        return new ArrayList<>(groups.values());
+    }
+
+    public GroupPublishResponse getPublish(String publishId) {
+        GroupPublish publish = publishes.get(publishId);
+        return publish == null ? null : publish.snapshot();
+    }
+
+    /**
+     * 向组下发功能块，代理接受发布后返回，各设备的确认在后台收集
+     * 应在准入队列的任务中调用，连接代理在调用线程上进行
+     *
+     * @throws CircuitOpenException 有在线成员处于熔断状态
+     */
+    public CompletableFuture<GroupPublishResponse> publishFunctionBlocks(String groupId, GroupFunctionBlockRequest request) {
+        DeviceGroup group = groups.get(groupId);
+        if (group == null) {
+            throw new MessageProcessingException("设备组不存在: " + groupId);
+        }
+        MQTTConnectionParams params = deviceService.validateAndProcessMQTTParams(request.getMqttConnectionParams());
+
+        // 只序列化一次，组主题和离线暂存使用同一份报文
+        String publishId = UUID.randomUUID().toString();
+        FunctionBlockConfiguration configuration = new FunctionBlockConfiguration(publishId, request.getFunctionBlocks());
+        String payload = JSON.toJSONString(configuration);
+
+        List<String> offline = new ArrayList<>();
+        List<String> online = new ArrayList<>();
+        for (String deviceId : group.getDeviceIds()) {
+            (!devicePresenceRegistry.isOnline(deviceId) && storeAndForwardService.isEnabled() ? offline : online)
+                    .add(deviceId);
+        }
+        // 先检查熔断，被拒绝时不留下暂存消息
+        acquireAll(online);
+
+        GroupPublish publish = new GroupPublish(publishId, group);
+        try {
+            for (String deviceId : offline) {
+                storeAndForwardService.enqueue(deviceId, FUNCTION_BLOCKS_KIND, topicBuilder.buildPublishTopic(deviceId),
+                        payload, params);
+                publish.queued(deviceId);
+            }
+        } catch (RuntimeException e) {
+            publish.complete();
+            online.forEach(deviceLinkService::release);
+            throw e;
+        }
+        publishes.put(publishId, publish);
+        if (publish.isSettled()) {
+            publish.complete();
+            return CompletableFuture.completedFuture(publish.snapshot());
+        }
+
+        MQTTClientWrapper mqttClient;
+        try {
+            // 组下发没有单一目标设备，只受全局和代理限速约束
+            mqttClient = new MQTTClientWrapper(params, false)
+                    .withRateLimit(transferRateLimiter, null)
+                    .withQos(group.getTopic(), qosPolicyConfig.qosFor(MessageClass.FUNCTION_BLOCK));
+            publish.mqttClient = mqttClient;
+            mqttClient.subscribe(topicBuilder.buildGroupAckWildcardTopic(groupId),
+                    (topic, ack) -> onAck(publish, topic, ack)).join();
+        } catch (RuntimeException e) {
+            abandon(publish);
+            throw new MessageProcessingException("连接代理或订阅组确认主题失败: " + e.getMessage(), e);
+        }
+        publish.timeout = executor.schedule(() -> {
+            if (publish.complete()) {
+                List<String> pending = publish.pendingDevices();
+                pending.forEach(deviceLinkService::recordFailure);
+                log.warn("组下发 {} 确认超时 - 组: {}, 未确认: {}", publishId, groupId, pending);
+            }
+        }, config.getAckTimeoutMs(), TimeUnit.MILLISECONDS);
+
+        log.info("组下发 {} - 组: {}, 成员: {}, 暂存: {}", publishId, groupId,
+                group.getDeviceIds().size(), publish.snapshot().getQueued().size());
+        return mqttClient.publishMessage(group.getTopic(), payload)
+                .handle((v, ex) -> {
+                    if (ex != null) {
+                        abandon(publish);
+                        throw new MessageProcessingException("组下发失败: " + ex.getMessage(), ex);
+                    }
+                    return publish.snapshot();
+                });
+    }
+
+    private void onAck(GroupPublish publish, String topic, byte[] ack) {
+        String deviceId = topicBuilder.parseGroupAckTopicDeviceId(publish.group.getGroupId(), topic);
+        JSONObject body;
+        try {
+            body = JSON.parseObject(new String(ack, StandardCharsets.UTF_8));
+        } catch (RuntimeException e) {
+            log.warn("无法解析组下发确认 - Topic: {}", topic);
+            return;
+        }
+        if (deviceId == null || body == null || !publish.publishId.equals(body.getString("publishId"))) {
+            return;
+        }
+        boolean success = "success".equals(body.getString("status"));
+        if (publish.acknowledge(deviceId, success)) {
+            if (success) {
+                deviceLinkService.recordSuccess(deviceId);
+            } else {
+                deviceLinkService.recordFailure(deviceId);
+            }
+        }
+        if (publish.isSettled() && publish.complete()) {
+            log.info("组下发 {} 已全部确认 - 组: {}", publish.publishId, publish.group.getGroupId());
+        }
+    }
+
+    /**
+     * 申请各在线成员的交互许可，任一成员熔断时释放已申请的许可并拒绝
+     */
+    private void acquireAll(List<String> deviceIds) {
+        List<String> acquired = new ArrayList<>(deviceIds.size());
+        try {
+            for (String deviceId : deviceIds) {
+                deviceLinkService.acquire(deviceId);
+                acquired.add(deviceId);
+            }
+        } catch (CircuitOpenException e) {
+            acquired.forEach(deviceLinkService::release);
+            throw e;
+        }
+    }
+
+    /**
+     * 因本地或代理原因结束收集，未确认成员的许可释放，不计入熔断统计
+     */
+    private void abandon(GroupPublish publish) {
+        if (publish.complete()) {
+            publish.pendingDevices().forEach(deviceLinkService::release);
+        }
+    }
+
+    private static void validateTopicLevel(String name, String value) {
+        if (!TopicBuilder.isValidTopicLevel(value)) {
+            throw new MessageProcessingException(name + "不能为空，且不能包含 / + #: " + value);
+        }
+    }
+
+    /**
+     * 通过各控制器的设备主题发送加入/退出组的控制消息，离线控制器暂存
+     */
+    private void notifyMembership(DeviceGroup group, Collection<String> joined, Collection<String> left) {
+        if (joined.isEmpty() && left.isEmpty()) {
+            return;
+        }
+        if (config.getHost() == null || config.getHost().isBlank()) {
+            log.info("未配置 {}.host，不通知控制器组成员变更: {}", DeviceGroupConfig.PREFIX, group.getGroupId());
+            return;
+        }
+
+        MQTTClientWrapper mqttClient = null;
+        try {
+            for (String deviceId : joined) {
+                mqttClient = sendMembership(mqttClient, group, deviceId, "join_group");
+            }
+            for (String deviceId : left) {
+                mqttClient = sendMembership(mqttClient, group, deviceId, "leave_group");
+            }
+        } catch (Exception e) {
+            log.warn("通知设备组 {} 成员变更失败", group.getGroupId(), e);
+        } finally {
+            if (mqttClient != null) {
+                mqttClient.disconnect();
+            }
+        }
+    }
+
+    private MQTTClientWrapper sendMembership(MQTTClientWrapper mqttClient, DeviceGroup group, String deviceId,
+                                             String action) throws Exception {
+        JSONObject message = new JSONObject(true);
+        message.put("action", action);
+        message.put("groupId", group.getGroupId());
+        message.put("topic", group.getTopic());
+        message.put("ackTopic", topicBuilder.buildGroupAckTopic(group.getGroupId(), deviceId));
+        String topic = topicBuilder.buildPublishTopic(deviceId);
+        String payload = message.toJSONString();
+
+        // 同一组的加入/退出消息互相取代，控制器上线后只收到最终状态
+        if (!devicePresenceRegistry.isOnline(deviceId) && storeAndForwardService.isEnabled()) {
+            storeAndForwardService.enqueue(deviceId, GROUP_KIND_PREFIX + group.getGroupId(), topic, payload,
+                    connectionParams());
+            return mqttClient;
+        }
+        if (mqttClient == null) {
+            mqttClient = new MQTTClientWrapper(connectionParams(), false);
+        }
+        mqttClient.withQos(topic, qosPolicyConfig.qosFor(MessageClass.COMMAND));
+        mqttClient.publishMessage(topic, payload).get(config.getAckTimeoutMs(), TimeUnit.MILLISECONDS);
+        return mqttClient;
+    }
+
+    private MQTTConnectionParams connectionParams() {
+        boolean useDefault = config.getUsername() == null || config.getUsername().isEmpty();
+        return new MQTTConnectionParams(config.getHost(),
+                useDefault ? mqttDefaultConfig.getDefaultUsername() : config.getUsername(),
+                useDefault ? mqttDefaultConfig.getDefaultPassword() : config.getPassword());
+    }
+
+    /**
+     * 一次组下发的确认状态
+     */
+    private static final class GroupPublish {
+        private final String publishId;
+        private final DeviceGroup group;
+        private final long startedAt = System.currentTimeMillis();
+        private final Set<String> pending;
+        private final List<String> acknowledged = new ArrayList<>();
+        private final List<String> failed = new ArrayList<>();
+        private final List<String> queued = new ArrayList<>();
+        private boolean completed;
+        private volatile MQTTClientWrapper mqttClient;
+        private volatile ScheduledFuture<?> timeout;
+
+        private GroupPublish(String publishId, DeviceGroup group) {
+            this.publishId = publishId;
+            this.group = group;
+            this.pending = new LinkedHashSet<>(group.getDeviceIds());
+        }
+
+        private synchronized void queued(String deviceId) {
+            if (pending.remove(deviceId)) {
+                queued.add(deviceId);
+            }
+        }
+
+        /**
+         * @return 本次确认是否被记录，重复确认或收集结束后的确认返回false
+         */
+        private synchronized boolean acknowledge(String deviceId, boolean success) {
+            if (!completed && pending.remove(deviceId)) {
+                (success ? acknowledged : failed).add(deviceId);
+                return true;
+            }
+            return false;
+        }
+
+        private synchronized List<String> pendingDevices() {
+            return List.copyOf(pending);
+        }
+
+        private synchronized boolean isSettled() {
+            return pending.isEmpty();
+        }
+
+        /**
+         * 结束确认收集并断开连接，重复调用无效
+         *
+         * @return 本次调用是否结束了收集
+         */
+        private boolean complete() {
+            synchronized (this) {
+                if (completed) {
+                    return false;
+                }
+                completed = true;
+            }
+            ScheduledFuture<?> scheduled = timeout;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            MQTTClientWrapper client = mqttClient;
+            if (client != null) {
+                client.disconnect();
+            }
+            return true;
+        }
+
+        private synchronized GroupPublishResponse snapshot() {
+            return new GroupPublishResponse(publishId, group.getGroupId(), group.getTopic(), startedAt, completed,
+                    List.copyOf(acknowledged), List.copyOf(failed), List.copyOf(queued), List.copyOf(pending));
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.nari._mw.service;
+
+import com.nari._mw.config.DeviceLinkConfig;
+import com.nari._mw.exception.CircuitOpenException;
+import com.nari._mw.exception.DeviceInteractionException;
+import com.nari._mw.exception.TransferCancelledException;
+import com.nari._mw.jfr.AckWaitEvent;
+import com.nari._mw.jfr.RetransmitEvent;
+import com.nari._mw.pojo.dto.response.DeviceLinkResponse;
+import com.nari._mw.util.CircuitBreaker;
+import com.nari._mw.util.MQTTReply;
+import com.nari._mw.util.MQTTTransferClient;
+import com.nari._mw.util.RtoEstimator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * 设备链路状态：每个设备一个重传超时估计和一个熔断器
+ * 请求-响应交互按估计的RTO等待，无响应时退避重传；传输连续失败的设备被熔断，
+ * 冷却期内直接拒绝，避免不健康的控制器占用代理带宽和传输线程。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeviceLinkService {
+    private final DeviceLinkConfig config;
+    private final ConcurrentHashMap<String, DeviceLink> links = new ConcurrentHashMap<>();
+
+    /**
+     * 申请与设备交互的许可，之后必须调用 recordSuccess、recordFailure 或 release 之一
+     *
+     * @throws CircuitOpenException 设备处于熔断状态
+     */
+    public void acquire(String deviceId) {
+        if (!link(deviceId).breaker.tryAcquire(System.currentTimeMillis())) {
+            throw new CircuitOpenException("设备连续交互失败，已暂停下发", deviceId);
+        }
+    }
+
+    public void recordSuccess(String deviceId) {
+        link(deviceId).breaker.onSuccess();
+    }
+
+    public void recordFailure(String deviceId) {
+        DeviceLink link = link(deviceId);
+        link.breaker.onFailure(System.currentTimeMillis());
+        log.warn("设备 {} 交互失败 - 连续失败: {}, 熔断状态: {}", deviceId,
+                link.breaker.getConsecutiveFailures(), link.breaker.getState());
+    }
+
+    /**
+     * 按传输结果记录：只有设备交互失败计入熔断统计，取消、超时、代理不可用和本地错误不计入
+     */
+    public void recordOutcome(String deviceId, Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        if (cause == null) {
+            recordSuccess(deviceId);
+        } else if (cause instanceof DeviceInteractionException && !(cause instanceof TransferCancelledException)) {
+            recordFailure(deviceId);
+        } else {
+            release(deviceId);
+        }
+    }
+
+    /**
+     * 交互因与设备无关的原因结束，不计入熔断统计
+     */
+    public void release(String deviceId) {
+        link(deviceId).breaker.release();
+    }
+
+    /**
+     * 发布消息并等待响应，按RTO超时重传，RTO每次翻倍
+     *
+     * @param correlationId 请求标识，重传使用同一标识；MQTT 5 客户端据此直接匹配响应
+     * @param relevant      MQTT 3.1.1 下判断收到的消息是否是本次请求的响应，不相关的迟到响应被丢弃
+     * @return 响应及重传次数
+     * @throws DeviceInteractionException 超过最大重传次数仍无响应
+     * @throws InterruptedException       等待时线程被中断
+     */
+    public Reply exchange(MQTTTransferClient mqttClient, String deviceId, String publishTopic, String responseTopic,
+                          String message, String correlationId, Predicate<String> relevant) throws InterruptedException {
+        RtoEstimator estimator = link(deviceId).estimator;
+        for (int transmission = 0; transmission <= config.getMaxRetransmits(); transmission++) {
+            long rto = transmission == 0 ? estimator.getRtoMs() : estimator.backoff();
+            if (transmission > 0) {
+                log.debug("设备 {} 无响应，第{}次重传 - Topic: {}, RTO: {} ms", deviceId, transmission, publishTopic, rto);
+                RetransmitEvent.emit(publishTopic, transmission, RetransmitEvent.TIMEOUT, rto);
+            }
+
+            long sentAt = System.nanoTime();
+            long deadline = sentAt + rto * 1_000_000L;
+            mqttClient.publishRequest(publishTopic, responseTopic, message, correlationId);
+
+            AckWaitEvent event = new AckWaitEvent();
+            event.begin();
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                MQTTReply reply = mqttClient.pollReply(responseTopic, correlationId, Math.max(1, remaining / 1_000_000L));
+                if (reply == null) {
+                    break;
+                }
+                // 未携带关联数据的响应可能是之前请求的迟到响应
+                if (!reply.isCorrelated() && !relevant.test(reply.getContent())) {
+                    continue;
+                }
+                event.complete(responseTopic, correlationId, transmission, rto, true);
+                // Karn算法：重传过的请求无法确定响应对应哪次发送，不采样
+                if (transmission == 0) {
+                    estimator.sample((System.nanoTime() - sentAt) / 1_000_000L);
+                }
+                return new Reply(reply.getContent(), transmission);
+            }
+            event.complete(responseTopic, correlationId, transmission, rto, false);
+        }
+        throw new DeviceInteractionException("设备无响应，超出重传次数: " + publishTopic, deviceId);
+    }
+
+    /**
+     * 清除设备的RTO估计和熔断状态
+     */
+    public void reset(String deviceId) {
+        links.remove(deviceId);
+        log.info("已重置设备 {} 的链路状态", deviceId);
+    }
+
+    public List<DeviceLinkResponse> getStatus() {
+        List<DeviceLinkResponse> statuses = new ArrayList<>(links.size());
+        links.forEach((deviceId, link) -> statuses.add(new DeviceLinkResponse(deviceId,
+                link.breaker.getState(), link.breaker.getConsecutiveFailures(),
+                link.estimator.getSrttMs(), link.estimator.getRttvarMs(), link.estimator.getRtoMs())));
+        return statuses;
+    }
+
+    private DeviceLink link(String deviceId) {
+        return links.computeIfAbsent(deviceId, id -> new DeviceLink(
+                new RtoEstimator(config.getInitialRtoMs(), config.getMinRtoMs(), config.getMaxRtoMs()),
+                new CircuitBreaker(config.getFailureThreshold(), config.getOpenDurationMs())));
+    }
+
+    /**
+     * 一次请求-响应交互的结果
+     */
+    public static final class Reply {
+        private final String response;
+        private final int retransmissions;
+
+        private Reply(String response, int retransmissions) {
+            this.response = response;
+            this.retransmissions = retransmissions;
+        }
+
+        public String getResponse() {
+            return response;
+        }
+
+        public int getRetransmissions() {
+            return retransmissions;
+        }
+    }
+
+    private static final class DeviceLink {
+        private final RtoEstimator estimator;
+        private final CircuitBreaker breaker;
+
+        private DeviceLink(RtoEstimator estimator, CircuitBreaker breaker) {
+            this.estimator = estimator;
+            this.breaker = breaker;
+        }
+    }
+}
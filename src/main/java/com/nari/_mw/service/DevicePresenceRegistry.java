@@ -0,0 +1,248 @@
+package com.nari._mw.service;
+
+import com.alibaba.fastjson.JSON;
+import com.nari._mw.config.MQTTDefaultConfig;
+import com.nari._mw.config.PresenceConfig;
+import com.nari._mw.exception.DeviceOfflineException;
+import com.nari._mw.pojo.dto.mqtt.connect.MQTTConnectionParams;
+import com.nari._mw.pojo.model.DevicePresence;
+import com.nari._mw.pojo.model.TelemetryMessage;
+import com.nari._mw.util.MQTTClientWrapper;
+import com.nari._mw.util.TopicBuilder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 设备在线状态注册表
+ * 由控制器的上线(birth)/遗嘱(will)消息、心跳和遥测维护，超过心跳超时未收到消息的设备判定为离线。
+ * 下发配置前据此快速失败，避免在离线设备上占用线程和连接直到请求超时。
+ */
+@Slf4j
+@Service
+@Lazy(false)
+@RequiredArgsConstructor
+public class DevicePresenceRegistry implements TelemetryListener {
+    private static final String ONLINE = "online";
+
+    private final PresenceConfig config;
+    private final MQTTDefaultConfig mqttDefaultConfig;
+    private final TopicBuilder topicBuilder;
+    private final ConcurrentHashMap<String, DevicePresence> devices = new ConcurrentHashMap<>();
+    private final List<Consumer<DevicePresence>> presenceListeners = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService sweeper;
+    private MQTTClientWrapper mqttClient;
+
+    @PostConstruct
+    public void start() {
+        if (!config.isEnabled()) {
+            log.info("设备在线状态监测未启用");
+            return;
+        }
+
+        String username = config.getUsername() != null ? config.getUsername() : mqttDefaultConfig.getDefaultUsername();
+        String password = config.getPassword() != null ? config.getPassword() : mqttDefaultConfig.getDefaultPassword();
+        mqttClient = new MQTTClientWrapper(new MQTTConnectionParams(config.getHost(), username, password), false);
+        mqttClient.subscribe(topicBuilder.buildPresenceWildcardTopic(), this::onPresenceMessage);
+        mqttClient.subscribe(topicBuilder.buildHeartbeatWildcardTopic(), this::onHeartbeat);
+
+        if (config.getHeartbeatTimeoutMs() > 0) {
+            long period = Math.max(1000, config.getHeartbeatTimeoutMs() / 4);
+            sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "device-presence-sweeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            sweeper.scheduleAtFixedRate(this::sweep, period, period, TimeUnit.MILLISECONDS);
+        }
+        log.info("设备在线状态监测已启动 - 代理: {}, 心跳超时: {} ms", config.getHost(), config.getHeartbeatTimeoutMs());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        if (mqttClient != null) {
+            mqttClient.disconnect();
+        }
+    }
+
+    @Override
+    public void onTelemetry(List<TelemetryMessage> batch) {
+        for (TelemetryMessage message : batch) {
+            markSeen(message.getDeviceId(), "telemetry");
+        }
+    }
+
+    /**
+     * 设备离线时立即失败
+     *
+     * @throws DeviceOfflineException 设备已知离线，或要求设备已知而设备从未上报状态
+     */
+    public void ensureOnline(String deviceId) {
+        if (!isOnline(deviceId)) {
+            throw new DeviceOfflineException("设备离线", deviceId);
+        }
+    }
+
+    /**
+     * 判断设备是否可达，未启用状态监测时始终返回true
+     */
+    public boolean isOnline(String deviceId) {
+        if (!config.isEnabled()) {
+            return true;
+        }
+        DevicePresence presence = devices.get(deviceId);
+        return presence == null ? !config.isRequireKnown() : presence.isOnline();
+    }
+
+    public DevicePresence getPresence(String deviceId) {
+        DevicePresence presence = devices.get(deviceId);
+        return presence == null ? null : copy(presence);
+    }
+
+    public List<DevicePresence> getAll() {
+        List<DevicePresence> all = new ArrayList<>(devices.size());
+        devices.values().forEach(presence -> all.add(copy(presence)));
+        return all;
+    }
+
+    /**
+     * 注册状态变化监听器，在MQTT回调线程或超时检查线程上调用
+     */
+    public void addPresenceListener(Consumer<DevicePresence> listener) {
+        presenceListeners.add(listener);
+    }
+
+    private void onPresenceMessage(String topic, byte[] payload) {
+        String deviceId = topicBuilder.parsePresenceTopicDeviceId(topic);
+        if (deviceId == null) {
+            return;
+        }
+
+        // 支持纯文本 online/offline 和 {"status":"online"} 两种格式
+        String body = new String(payload, StandardCharsets.UTF_8).trim();
+        String status = body;
+        if (body.startsWith("{")) {
+            try {
+                status = JSON.parseObject(body).getString("status");
+            } catch (RuntimeException e) {
+                log.warn("解析设备上下线消息失败 - Topic: {}", topic);
+                return;
+            }
+        }
+        boolean online = ONLINE.equalsIgnoreCase(status);
+        update(deviceId, online, online ? "birth" : "will", System.currentTimeMillis());
+    }
+
+    private void onHeartbeat(String topic, byte[] payload) {
+        String deviceId = topicBuilder.parseHeartbeatTopicDeviceId(topic);
+        if (deviceId != null) {
+            markSeen(deviceId, "heartbeat");
+        }
+    }
+
+    private void markSeen(String deviceId, String source) {
+        long now = System.currentTimeMillis();
+        DevicePresence presence = devices.get(deviceId);
+        if (presence != null && presence.isOnline()) {
+            // 在线设备只刷新时间，不走compute；先写lastSeen再读online，与expire中的顺序配对，
+            // 超时检查同时把设备判为离线时，至少有一方能看到对方的写入
+            presence.setLastSeen(now);
+            if (presence.isOnline()) {
+                return;
+            }
+        }
+        update(deviceId, true, source, now);
+    }
+
+    private void update(String deviceId, boolean online, String source, long now) {
+        DevicePresence[] changed = new DevicePresence[1];
+        devices.compute(deviceId, (id, current) -> {
+            if (current == null) {
+                current = new DevicePresence(id, online, now, now, source);
+                changed[0] = copy(current);
+                return current;
+            }
+            if (online) {
+                current.setLastSeen(now);
+            }
+            if (current.isOnline() != online) {
+                current.setOnline(online);
+                current.setSince(now);
+                current.setSource(source);
+                changed[0] = copy(current);
+            }
+            return current;
+        });
+        notifyChanged(changed[0]);
+    }
+
+    /**
+     * 心跳超时判定离线，在compute内重新检查，检查之后到达的心跳不会被覆盖
+     */
+    private void expire(String deviceId, long now, long timeoutMs) {
+        DevicePresence[] changed = new DevicePresence[1];
+        devices.computeIfPresent(deviceId, (id, current) -> {
+            long lastSeen = current.getLastSeen();
+            if (!current.isOnline() || now - lastSeen <= timeoutMs) {
+                return current;
+            }
+            current.setOnline(false);
+            // 先写online再重读lastSeen，与markSeen的顺序相反：lastSeen有变化说明心跳并发到达，
+            // markSeen可能已读到在线并返回，由这里恢复在线
+            if (current.getLastSeen() != lastSeen) {
+                current.setOnline(true);
+                return current;
+            }
+            current.setSince(now);
+            current.setSource("timeout");
+            changed[0] = copy(current);
+            return current;
+        });
+        notifyChanged(changed[0]);
+    }
+
+    private void notifyChanged(DevicePresence changed) {
+        if (changed == null) {
+            return;
+        }
+        log.info("设备 {} {} - 来源: {}", changed.getDeviceId(), changed.isOnline() ? "上线" : "离线", changed.getSource());
+        for (Consumer<DevicePresence> listener : presenceListeners) {
+            try {
+                listener.accept(changed);
+            } catch (RuntimeException e) {
+                log.error("设备状态监听器处理失败: {}", changed.getDeviceId(), e);
+            }
+        }
+    }
+
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        long timeoutMs = config.getHeartbeatTimeoutMs();
+        devices.forEach((deviceId, presence) -> {
+            if (presence.isOnline() && now - presence.getLastSeen() > timeoutMs) {
+                expire(deviceId, now, timeoutMs);
+            }
+        });
+    }
+
+    private static DevicePresence copy(DevicePresence presence) {
+        return new DevicePresence(presence.getDeviceId(), presence.isOnline(), presence.getLastSeen(),
+                presence.getSince(), presence.getSource());
+    }
+}
@@ -1,8 +1,13 @@
 package com.nari._mw.service;
 
 import com.alibaba.fastjson.JSON;
+import com.nari._mw._enum.DeliveryStatus;
+import com.nari._mw._enum.MessageClass;
 import com.nari._mw._enum.MqttTopic;
+import com.nari._mw.config.BrokerFailoverConfig;
 import com.nari._mw.config.MQTTDefaultConfig;
+import com.nari._mw.config.QosPolicyConfig;
+import com.nari._mw.config.TransferExecutionConfig;
 import com.nari._mw.pojo.dto.mqtt.transfer.ConfigTransferAcknowledgeResponse;
 import com.nari._mw.pojo.dto.mqtt.transfer.ConfigTransferMetadata;
 import com.nari._mw.pojo.dto.mqtt.transfer.ConfigTransferSlice;
@@ -10,20 +15,40 @@ import com.nari._mw.pojo.dto.mqtt.transfer.ConfigTransferSliceResponse;
 import com.nari._mw.pojo.dto.request.DeviceFunctionBlockRequest;
 import com.nari._mw.pojo.dto.mqtt.connect.MQTTConnectionParams;
 import com.nari._mw.pojo.dto.request.PublishConfigRequest;
+import com.nari._mw.pojo.dto.response.TransferTimelineResponse;
+import com.nari._mw.exception.BrokerUnavailableException;
 import com.nari._mw.exception.DeviceInteractionException;
 import com.nari._mw.exception.MQTTValidationException;
 import com.nari._mw.exception.MessageProcessingException;
+import com.nari._mw.exception.TransferCancelledException;
+import com.nari._mw.jfr.AckWaitEvent;
+import com.nari._mw.jfr.RetransmitEvent;
+import com.nari._mw.jfr.TransferContext;
 import com.nari._mw.pojo.model.ConfigTransferData;
 import com.nari._mw.pojo.model.FunctionBlockConfiguration;
+import com.nari._mw.util.AckScanner;
+import com.nari._mw.util.FailoverTransferClient;
 import com.nari._mw.util.FileSlicerUtil;
-import com.nari._mw.util.MQTTClientWrapper;
+import com.nari._mw.util.MQTTReply;
+import com.nari._mw.util.MQTTTransferClient;
 import com.nari._mw.util.TopicBuilder;
+import com.nari._mw.util.TransferEventLogger;
+import com.nari._mw.util.TransferRateLimiter;
+import com.nari._mw.util.TransferTimeline;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Predicate;
 
 @Slf4j
 @Service
@@ -31,24 +56,110 @@ import java.util.concurrent.CompletableFuture;
 public class DeviceService {
     private final TopicBuilder topicBuilder;
     private final MQTTDefaultConfig mqttDefaultConfig;
+    private final TransferRateLimiter transferRateLimiter;
+    private final TransferEventLogger transferEventLogger;
+    private final DevicePresenceRegistry devicePresenceRegistry;
+    private final StoreAndForwardService storeAndForwardService;
+    private final TransferRegistry transferRegistry;
+    private final TransferExecutionConfig transferExecutionConfig;
+    private final DeviceLinkService deviceLinkService;
+    private final QosPolicyConfig qosPolicyConfig;
+    private final TransferTimelineStore transferTimelineStore;
+    private final TrafficRecordingService trafficRecordingService;
+    private final BrokerHealthRegistry brokerHealthRegistry;
+    private final BrokerFailoverConfig brokerFailoverConfig;
 
     // 常量定义
     private static final int DEFAULT_MAX_TRY_TIME = 2;
+    private static final int MAX_RETRANSMISSION_ROUNDS = 3;
     private static final int DEFAULT_SLICE_SIZE = 10 * 1024;
     private static final String METADATA_ACTION = "transfer_config";
+    private static final String FUNCTION_BLOCKS_KIND = "function-blocks";
 
     /**
      * 发布配置到设备
+     *
+     * @return 传输结束后完成，携带本次传输的时间线；时间线同时保存在最近传输记录中
      */
-    public CompletableFuture<Void> publishConfig(PublishConfigRequest request) {
-        MQTTClientWrapper mqttClient = null;
+    public CompletableFuture<TransferTimelineResponse> publishConfig(PublishConfigRequest request) {
+        return publishConfig(request, new TransferTimeline(request.getDeviceId()));
+    }
+
+    /**
+     * 发布经准入队列排队的配置，排队等待计入时间线的 queue 阶段
+     *
+     * @param queuedAtNanos 提交到准入队列时的 {@link System#nanoTime()}
+     */
+    public CompletableFuture<TransferTimelineResponse> publishConfig(PublishConfigRequest request, long queuedAtNanos) {
+        return publishConfig(request, TransferTimeline.queuedSince(request.getDeviceId(), queuedAtNanos));
+    }
+
+    private CompletableFuture<TransferTimelineResponse> publishConfig(PublishConfigRequest request,
+                                                                      TransferTimeline timeline) {
+        // 设备已知离线或处于熔断状态时立即失败，不建立连接
+        devicePresenceRegistry.ensureOnline(request.getDeviceId());
+        deviceLinkService.acquire(request.getDeviceId());
+
+        CompletableFuture<Void> transfer;
         try {
+            transfer = startTransfer(request, timeline);
+        } catch (RuntimeException e) {
+            // 连接失败等未能开始的传输同样记录时间线
+            recordTimeline(timeline, e);
+            throw e;
+        }
+
+        CompletableFuture<TransferTimelineResponse> completed = new CompletableFuture<>();
+        transfer.whenComplete((result, ex) -> {
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            TransferTimelineResponse response = recordTimeline(timeline, cause);
+            if (cause != null) {
+                completed.completeExceptionally(cause);
+            } else {
+                completed.complete(response);
+            }
+        });
+        // 调用方的超时作用于返回的future，需要传递给传输本身以中断执行线程；
+        // 时间线在传输结束时记录，不依赖返回的future是否已完成
+        completed.whenComplete((result, ex) -> {
+            if (ex != null) {
+                transfer.completeExceptionally(ex);
+            }
+        });
+        return completed;
+    }
+
+    /**
+     * 结束时间线并保存到最近传输记录
+     *
+     * @param cause 失败原因，成功时为null
+     */
+    private TransferTimelineResponse recordTimeline(TransferTimeline timeline, Throwable cause) {
+        TransferTimelineResponse response = timeline.finish(cause == null,
+                cause == null ? null : String.valueOf(cause.getMessage() != null ? cause.getMessage() : cause));
+        transferTimelineStore.add(response);
+        return response;
+    }
+
+    /**
+     * 连接代理并在传输线程池上开始传输，失败时断开连接并释放熔断器许可
+     */
+    private CompletableFuture<Void> startTransfer(PublishConfigRequest request, TransferTimeline timeline) {
+        MQTTTransferClient mqttClient = null;
+        try (TransferContext ignored = TransferContext.open(request.getDeviceId())) {
             // 验证并处理MQTT连接参数
             MQTTConnectionParams params = validateAndProcessMQTTParams(request.getMqttConnectionParams());
 
             // 创建MQTT客户端并订阅相关主题
             log.debug("连接MQTT代理: {}, 用户: {}", params.getHost(), params.getUsername());
-            mqttClient = new MQTTClientWrapper(params);
+            timeline.phase(TransferTimeline.CONNECT);
+            mqttClient = connectBroker(params)
+                    .withRateLimit(transferRateLimiter, request.getDeviceId())
+                    .withRecorder(trafficRecordingService.getRecorder())
+                    .withPayloadPreview(transferEventLogger.getPayloadPreviewLength())
+                    .withQos(MqttTopic.CONFIG_TRANSFER_REQUEST.getTopic(), qosPolicyConfig.qosFor(MessageClass.METADATA))
+                    .withQos(MqttTopic.FILE_DATA_SLICE.getTopic(), qosPolicyConfig.qosFor(MessageClass.SLICE))
+                    .withMessageExpiry(MqttTopic.FILE_DATA_SLICE.getTopic(), mqttDefaultConfig.getSliceExpirySeconds());
 
             String[] topics = {
                     MqttTopic.CONFIG_TRANSFER_REQUEST_ACK.getTopic(),
@@ -56,6 +167,7 @@ public class DeviceService {
                     MqttTopic.FILE_VERIFICATION_RESULT.getTopic()
             };
 
+            timeline.phase(TransferTimeline.SUBSCRIBE);
             for (String topic : topics) {
                 mqttClient.subscribe(topic);
             }
@@ -65,65 +177,98 @@ public class DeviceService {
             ConfigTransferAcknowledgeResponse successStatus = new ConfigTransferAcknowledgeResponse("success");
 
             // 使用最终变量以便在lambda表达式中使用
-            final MQTTClientWrapper finalMqttClient = mqttClient;
+            final MQTTTransferClient finalMqttClient = mqttClient;
 
-            return CompletableFuture.supplyAsync(() -> {
+            // 在专用线程池执行，超时或取消时中断传输并断开连接
+            timeline.phase(TransferTimeline.DISPATCH);
+            CompletableFuture<Void> transfer = transferRegistry.submit(request.getDeviceId(), mqttClient, handle -> {
+                TransferEventLogger.TransferTrace trace = null;
+                timeline.transferId(handle.getTransferId());
                 try {
                     // 切片文件
-                    int sliceSize = request.getSliceSize() <= 0 ? DEFAULT_SLICE_SIZE : request.getSliceSize();
-                    ConfigTransferData configData = FileSlicerUtil.sliceFile(request.getConfigFilePath(), sliceSize);
+                    timeline.phase(TransferTimeline.SLICE);
+                    ConfigTransferData configData = FileSlicerUtil.sliceFile(request.getConfigFilePath(),
+                            sliceSizeOf(request));
                     String deviceId = request.getDeviceId();
+                    handle.setTaskNo(configData.getTaskNo());
+                    timeline.file(configData.getTaskNo(), configData.getSize(), configData.getNumber());
+                    trace = transferEventLogger.begin(deviceId, configData.getTaskNo(),
+                            configData.getSize(), configData.getNumber());
 
                     // 发送元数据
+                    timeline.phase(TransferTimeline.METADATA);
                     ConfigTransferMetadata metadata = createMetadata(configData);
-                    publishWithRetry(finalMqttClient,
+                    int metadataRetries = publishWithRetry(finalMqttClient,
                             MqttTopic.CONFIG_TRANSFER_REQUEST.getTopic(),
                             MqttTopic.CONFIG_TRANSFER_REQUEST_ACK.getTopic(),
                             JSON.toJSONString(metadata),
+                            configData.getTaskNo() + "/metadata",
                             readyStatus,
                             deviceId,
                             DEFAULT_MAX_TRY_TIME);
+                    trace.retried(metadataRetries);
+                    timeline.retried(metadataRetries);
 
-                    // 发送每个文件切片
+                    // 发送除最后一个外的每个文件切片
+                    timeline.phase(TransferTimeline.SLICES);
                     List<ConfigTransferSlice> slices = configData.getSlices();
                     for (int i = 0; i < slices.size() - 1; i++) {
-                        ConfigTransferSliceResponse expectedResponse = new ConfigTransferSliceResponse(
-                                slices.get(i).getTaskNo(), slices.get(i).getNumber(), "success");
-
-                        publishWithRetry(finalMqttClient,
-                                MqttTopic.FILE_DATA_SLICE.getTopic(),
-                                MqttTopic.FILE_SLICE_ACK.getTopic(),
-                                JSON.toJSONString(slices.get(i)),
-                                expectedResponse,
-                                deviceId,
-                                DEFAULT_MAX_TRY_TIME);
+                        publishSlice(finalMqttClient, slices.get(i), deviceId, trace, timeline);
                     }
 
-                    // 发送最终确认消息
-                    publishWithRetry(finalMqttClient,
-                            MqttTopic.FILE_DATA_SLICE.getTopic(),
-                            MqttTopic.FILE_VERIFICATION_RESULT.getTopic(),
-                            JSON.toJSONString(slices.get(slices.size() - 1)),
-                            successStatus,
-                            deviceId,
-                            1);
+                    // 发送最后一个切片并等待最终校验结果
+                    timeline.phase(TransferTimeline.VERIFICATION);
+                    verifyWithSelectiveRetransmission(finalMqttClient, configData, successStatus, deviceId,
+                            trace, timeline);
 
-                    return null;
-                } finally {
-                    finalMqttClient.disconnect();
+                    trace.completed();
+                } catch (RuntimeException e) {
+                    if (trace != null) {
+                        trace.failed(e);
+                    }
+                    throw e;
                 }
             });
+            transfer.whenComplete((result, ex) -> deviceLinkService.recordOutcome(request.getDeviceId(), ex));
+            return transfer;
         } catch (MQTTValidationException e) {
             log.error("MQTT连接参数验证失败", e);
             disconnectIfNotNull(mqttClient);
+            deviceLinkService.release(request.getDeviceId());
+            throw e;
+        } catch (BrokerUnavailableException e) {
+            log.error("发布配置失败: {}", e.getMessage());
+            disconnectIfNotNull(mqttClient);
+            deviceLinkService.release(request.getDeviceId());
             throw e;
         } catch (Exception e) {
             log.error("发布配置过程中发生错误", e);
             disconnectIfNotNull(mqttClient);
+            deviceLinkService.release(request.getDeviceId());
             throw new MessageProcessingException("发布配置失败: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * 合并重复请求使用的内容键：设备ID、文件路径、大小、修改时间和实际切片大小；文件无法读取时返回null，不合并
+     * 只读取文件属性，不在请求线程上计算MD5，文件MD5在传输线程切片时计算一次
+     */
+    public String coalescingKey(PublishConfigRequest request) {
+        try {
+            Path file = Paths.get(request.getConfigFilePath()).toAbsolutePath().normalize();
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return request.getDeviceId() + "|" + file + "|" + attributes.size()
+                    + "|" + attributes.lastModifiedTime().toMillis() + "|" + sliceSizeOf(request);
+        } catch (IOException | RuntimeException e) {
+            log.debug("无法读取配置文件属性，不合并请求: {}", request.getConfigFilePath(), e);
+            return null;
+        }
+    }
+
+    private static int sliceSizeOf(PublishConfigRequest request) {
+        return request.getSliceSize() <= 0 ? DEFAULT_SLICE_SIZE : request.getSliceSize();
+    }
+
     /**
      * 创建配置元数据对象
      */
@@ -139,64 +284,222 @@ public class DeviceService {
         );
     }
 
+    /**
+     * 发送单个文件切片并等待切片确认
+     */
+    private void publishSlice(MQTTTransferClient mqttClient, ConfigTransferSlice slice, String deviceId,
+                              TransferEventLogger.TransferTrace trace, TransferTimeline timeline) {
+        ConfigTransferSliceResponse expectedResponse = new ConfigTransferSliceResponse(
+                slice.getTaskNo(), slice.getNumber(), "success");
+
+        long startNanos = System.nanoTime();
+        int retries = publishWithRetry(mqttClient,
+                MqttTopic.FILE_DATA_SLICE.getTopic(),
+                MqttTopic.FILE_SLICE_ACK.getTopic(),
+                JSON.toJSONString(slice),
+                slice.getTaskNo() + "/" + slice.getNumber(),
+                expectedResponse,
+                deviceId,
+                DEFAULT_MAX_TRY_TIME);
+        trace.sliceAcked(slice.getNumber(), slice.getData().length, retries);
+        timeline.sliceAcked(slice.getData().length, retries, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 发送最后一个切片触发控制器最终校验
+     * 校验失败时仅重传控制器报告的缺失或损坏切片，再重新触发校验，最多进行有限轮次
+     */
+    private void verifyWithSelectiveRetransmission(MQTTTransferClient mqttClient, ConfigTransferData configData,
+                                                   ConfigTransferAcknowledgeResponse successStatus, String deviceId,
+                                                   TransferEventLogger.TransferTrace trace,
+                                                   TransferTimeline timeline) {
+        List<ConfigTransferSlice> slices = configData.getSlices();
+        ConfigTransferSlice lastSlice = slices.get(slices.size() - 1);
+        String lastSliceMessage = JSON.toJSONString(lastSlice);
+
+        for (int round = 0; ; round++) {
+            String correlationId = lastSlice.getTaskNo() + "/verify/" + round;
+            long startNanos = System.nanoTime();
+            mqttClient.publishRequest(MqttTopic.FILE_DATA_SLICE.getTopic(),
+                    MqttTopic.FILE_VERIFICATION_RESULT.getTopic(), lastSliceMessage, correlationId);
+            String response = awaitReply(mqttClient, MqttTopic.FILE_VERIFICATION_RESULT.getTopic(), correlationId, deviceId);
+
+            ConfigTransferAcknowledgeResponse result = parseVerificationResult(response);
+            if (result != null && successStatus.getStatus().equals(result.getStatus())) {
+                trace.sliceAcked(lastSlice.getNumber(), lastSlice.getData().length, round);
+                timeline.sliceAcked(lastSlice.getData().length, round, System.nanoTime() - startNanos);
+                return;
+            }
+
+            if (round >= MAX_RETRANSMISSION_ROUNDS) {
+                throw new DeviceInteractionException("文件最终校验失败，超出重传轮次: " + response, deviceId);
+            }
+
+            List<Integer> missing = result != null && result.getMissing() != null
+                    ? result.getMissing() : Collections.emptyList();
+            log.warn("设备 {} 文件校验失败，第{}轮重传切片: {}", deviceId, round + 1, missing);
+            RetransmitEvent.emit(MqttTopic.FILE_DATA_SLICE.getTopic(), round + 1, RetransmitEvent.VERIFICATION, 0);
+
+            for (Integer number : missing) {
+                // 最后一个切片在下一轮作为校验触发重新发送
+                if (number == null || number < 1 || number >= slices.size()) {
+                    continue;
+                }
+                publishSlice(mqttClient, slices.get(number - 1), deviceId, trace, timeline);
+            }
+        }
+    }
+
+    /**
+     * 解析最终校验结果，无法解析时返回null
+     */
+    private ConfigTransferAcknowledgeResponse parseVerificationResult(String response) {
+        if (response == null || response.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return JSON.parseObject(response, ConfigTransferAcknowledgeResponse.class);
+        } catch (Exception e) {
+            log.warn("解析最终校验结果失败: {}", response);
+            return null;
+        }
+    }
+
     /**
      * 发布确认数据并重试
+     *
+     * @return 重发次数
      */
-    private void publishWithRetry(MQTTClientWrapper mqttClient, String publishTopic, String subscribeTopic,
-                                  String message, Object expectedStatus, String deviceId, int retryTime) {
+    private int publishWithRetry(MQTTTransferClient mqttClient, String publishTopic, String subscribeTopic,
+                                  String message, String correlationId, Object expectedStatus, String deviceId,
+                                  int retryTime) {
+        // 切片确认中其他切片号的迟到响应(重传造成的重复确认)直接丢弃
+        Predicate<String> relevant = response -> isRelevantResponse(response, expectedStatus);
         try {
-            mqttClient.publishMessage(publishTopic, message);
-            String response = mqttClient.listen(subscribeTopic);
+            DeviceLinkService.Reply reply = deviceLinkService.exchange(mqttClient, deviceId,
+                    publishTopic, subscribeTopic, message, correlationId, relevant);
+            String response = reply.getResponse();
+            int retries = reply.getRetransmissions();
 
             // 检查响应是否为空
             if (response == null || response.trim().isEmpty()) {
                 throw new DeviceInteractionException("设备没有返回响应", deviceId);
             }
 
-            Object responseObj = null;
-
+            boolean matched;
             try {
-                if (expectedStatus instanceof ConfigTransferAcknowledgeResponse) {
-                    responseObj = JSON.parseObject(response, ConfigTransferAcknowledgeResponse.class);
-                } else {
-                    responseObj = JSON.parseObject(response, ConfigTransferSliceResponse.class);
-                }
+                matched = isMatchingResponse(response, expectedStatus);
             } catch (Exception e) {
                 log.error("解析设备响应失败: {}", response, e);
                 throw new MessageProcessingException("无法解析设备响应: " + e.getMessage());
             }
 
-            // 重试逻辑
-            for (int i = 0; i < retryTime && !isResponseMatching(responseObj, expectedStatus); i++) {
-                log.debug("设备响应不匹配，重试第{}次: {}", (i + 1), response);
-                mqttClient.publishMessage(publishTopic, message);
-                response = mqttClient.listen(subscribeTopic);
+            // 响应不匹配时的重试逻辑，无响应的重传由RTO驱动
+            for (int i = 0; i < retryTime && !matched; i++) {
+                retries++;
+                if (log.isDebugEnabled()) {
+                    log.debug("设备响应不匹配，重试第{}次: {}", (i + 1), transferEventLogger.abbreviate(response));
+                }
+                RetransmitEvent.emit(publishTopic, i + 1, RetransmitEvent.MISMATCH, 0);
+                reply = deviceLinkService.exchange(mqttClient, deviceId, publishTopic, subscribeTopic, message,
+                        correlationId, relevant);
+                response = reply.getResponse();
+                retries += reply.getRetransmissions();
 
                 if (response == null || response.trim().isEmpty()) {
                     continue;
                 }
 
                 try {
-                    if (expectedStatus instanceof ConfigTransferAcknowledgeResponse) {
-                        responseObj = JSON.parseObject(response, ConfigTransferAcknowledgeResponse.class);
-                    } else {
-                        responseObj = JSON.parseObject(response, ConfigTransferSliceResponse.class);
-                    }
+                    matched = isMatchingResponse(response, expectedStatus);
                 } catch (Exception e) {
-                    log.warn("重试时解析设备响应失败: {}", response);
+                    log.warn("重试时解析设备响应失败: {}", transferEventLogger.abbreviate(response));
                 }
             }
 
-            if (!isResponseMatching(responseObj, expectedStatus)) {
+            if (!matched) {
                 throw new DeviceInteractionException("设备返回错误响应，超出重试次数: " + response, deviceId);
             }
-        } catch (DeviceInteractionException e) {
+            return retries;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferCancelledException("传输已取消", deviceId);
+        } catch (DeviceInteractionException | BrokerUnavailableException e) {
             throw e;
         } catch (Exception e) {
             throw new DeviceInteractionException("与设备通信失败: " + e.getMessage(), deviceId, e);
         }
     }
 
+    /**
+     * 判断响应是否与期望一致：固定格式的确认报文直接扫描比较，其他格式回退到 Fastjson 解析
+     */
+    private boolean isMatchingResponse(String response, Object expectedStatus) {
+        int scanned;
+        if (expectedStatus instanceof ConfigTransferSliceResponse) {
+            ConfigTransferSliceResponse expected = (ConfigTransferSliceResponse) expectedStatus;
+            scanned = AckScanner.matchSliceAck(response, expected.getTaskNo(), expected.getNumber(), expected.getStatus());
+        } else {
+            scanned = AckScanner.matchStatus(response, ((ConfigTransferAcknowledgeResponse) expectedStatus).getStatus());
+        }
+        if (scanned != AckScanner.UNKNOWN) {
+            return scanned == AckScanner.MATCH;
+        }
+        return isResponseMatching(parseResponse(response, expectedStatus), expectedStatus);
+    }
+
+    private Object parseResponse(String response, Object expectedStatus) {
+        if (expectedStatus instanceof ConfigTransferAcknowledgeResponse) {
+            return JSON.parseObject(response, ConfigTransferAcknowledgeResponse.class);
+        }
+        return JSON.parseObject(response, ConfigTransferSliceResponse.class);
+    }
+
+    /**
+     * 切片确认的任务号或切片号与期望不同时视为迟到的旧响应；无法解析的响应交给匹配逻辑处理
+     */
+    private boolean isRelevantResponse(String response, Object expectedStatus) {
+        if (!(expectedStatus instanceof ConfigTransferSliceResponse)) {
+            return true;
+        }
+        ConfigTransferSliceResponse expected = (ConfigTransferSliceResponse) expectedStatus;
+        int scanned = AckScanner.matchSliceAck(response, expected.getTaskNo(), expected.getNumber(), null);
+        if (scanned != AckScanner.UNKNOWN) {
+            return scanned == AckScanner.MATCH;
+        }
+        try {
+            ConfigTransferSliceResponse actual = JSON.parseObject(response, ConfigTransferSliceResponse.class);
+            return actual == null || actual.getNumber() == expected.getNumber()
+                    && expected.getTaskNo().equals(actual.getTaskNo());
+        } catch (Exception e) {
+            return true;
+        }
+    }
+
+    /**
+     * 限时等待请求的响应，线程被中断(传输取消或超时)时立即停止
+     */
+    private String awaitReply(MQTTTransferClient mqttClient, String topic, String correlationId, String deviceId) {
+        MQTTReply reply;
+        AckWaitEvent event = new AckWaitEvent();
+        event.begin();
+        try {
+            reply = mqttClient.pollReply(topic, correlationId, transferExecutionConfig.getAckTimeoutMs());
+            event.complete(topic, correlationId, 0, transferExecutionConfig.getAckTimeoutMs(), reply != null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferCancelledException("传输已取消", deviceId);
+        } catch (BrokerUnavailableException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new DeviceInteractionException("等待设备响应失败: " + topic, deviceId, e);
+        }
+        if (reply == null) {
+            throw new DeviceInteractionException("等待设备响应超时: " + topic, deviceId);
+        }
+        return reply.getContent();
+    }
+
     private boolean isResponseMatching(Object responseObj, Object expectedStatus) {
         if (responseObj == null || expectedStatus == null) {
             return false;
@@ -219,9 +522,14 @@ public class DeviceService {
     /**
      * 处理设备的功能块并发布到MQTT
      */
-    public CompletableFuture<Void> processFunctionBlocks(DeviceFunctionBlockRequest request) {
-        MQTTClientWrapper mqttClient = null;
-        try {
+    public CompletableFuture<DeliveryStatus> processFunctionBlocks(DeviceFunctionBlockRequest request) {
+        boolean online = devicePresenceRegistry.isOnline(request.getDeviceId());
+        if (!online && !storeAndForwardService.isEnabled()) {
+            devicePresenceRegistry.ensureOnline(request.getDeviceId());
+        }
+
+        MQTTTransferClient mqttClient = null;
+        try (TransferContext ignored = TransferContext.open(request.getDeviceId())) {
             // 验证MQTT连接参数
             MQTTConnectionParams params = validateAndProcessMQTTParams(request.getMqttConnectionParams());
 
@@ -230,23 +538,40 @@ public class DeviceService {
             configuration.setFunctionBlocks(request.getFunctionBlocks());
             String payload = JSON.toJSONString(configuration);
 
-            log.debug("设备 {} 的功能块序列化结果: {}", request.getDeviceId(), payload);
+            if (log.isDebugEnabled()) {
+                log.debug("设备 {} 的功能块序列化结果: {}", request.getDeviceId(), transferEventLogger.abbreviate(payload));
+            }
 
             // 构建发布主题
             String topic = topicBuilder.buildPublishTopic(request.getDeviceId());
 
+            // 设备离线时暂存，上线后按顺序下发
+            if (!online) {
+                storeAndForwardService.enqueue(request.getDeviceId(), FUNCTION_BLOCKS_KIND, topic, payload, params);
+                return CompletableFuture.completedFuture(DeliveryStatus.QUEUED);
+            }
+
             // 创建MQTT客户端并发布消息
             log.debug("连接MQTT代理: {}, 用户: {}", params.getHost(), params.getUsername());
-            mqttClient = new MQTTClientWrapper(params);
+            mqttClient = connectBroker(params)
+                    .withRateLimit(transferRateLimiter, request.getDeviceId())
+                    .withRecorder(trafficRecordingService.getRecorder())
+                    .withPayloadPreview(transferEventLogger.getPayloadPreviewLength())
+                    .withQos(topic, qosPolicyConfig.qosFor(MessageClass.FUNCTION_BLOCK));
 
-            final MQTTClientWrapper finalMqttClient = mqttClient;
+            final MQTTTransferClient finalMqttClient = mqttClient;
             return mqttClient.publishMessage(topic, payload)
-                    .whenComplete((result, ex) -> disconnectIfNotNull(finalMqttClient));
+                    .whenComplete((result, ex) -> disconnectIfNotNull(finalMqttClient))
+                    .thenApply(v -> DeliveryStatus.DELIVERED);
 
         } catch (MQTTValidationException e) {
             log.error("MQTT连接参数验证失败", e);
             disconnectIfNotNull(mqttClient);
             throw e;
+        } catch (BrokerUnavailableException e) {
+            log.error("处理功能块失败: {}", e.getMessage());
+            disconnectIfNotNull(mqttClient);
+            throw e;
         } catch (Exception e) {
             log.error("处理功能块失败", e);
             disconnectIfNotNull(mqttClient);
@@ -257,7 +582,7 @@ public class DeviceService {
     /**
      * 验证和处理MQTT连接参数
      */
-    private MQTTConnectionParams validateAndProcessMQTTParams(MQTTConnectionParams params) {
+    MQTTConnectionParams validateAndProcessMQTTParams(MQTTConnectionParams params) {
         if (params == null) {
             throw new MQTTValidationException("MQTT连接参数不能为空", 400);
         }
@@ -266,6 +591,11 @@ public class DeviceService {
             throw new MQTTValidationException("MQTT代理主机不能为空", 400);
         }
 
+        if (params.getBackupHosts() != null
+                && params.getBackupHosts().stream().anyMatch(host -> host == null || host.isEmpty())) {
+            throw new MQTTValidationException("冗余MQTT代理地址不能为空", 400);
+        }
+
         boolean usernameEmpty = params.getUsername() == null || params.getUsername().isEmpty();
         boolean passwordEmpty = params.getPassword() == null || params.getPassword().isEmpty();
 
@@ -280,10 +610,19 @@ public class DeviceService {
         return params;
     }
 
+    /**
+     * 按健康状况连接 host 和冗余代理中第一个可用的代理，传输中连接丢失时切换到其他代理继续
+     */
+    private FailoverTransferClient connectBroker(MQTTConnectionParams params) {
+        return FailoverTransferClient.connect(params.allHosts(),
+                host -> MQTTTransferClient.connect(params.withHost(host), mqttDefaultConfig.getProtocolVersion()),
+                brokerHealthRegistry, brokerFailoverConfig.getMaxFailovers());
+    }
+
     /**
      * 安全断开MQTT连接
      */
-    private void disconnectIfNotNull(MQTTClientWrapper mqttClient) {
+    private void disconnectIfNotNull(MQTTTransferClient mqttClient) {
         if (mqttClient != null) {
             mqttClient.disconnect();
         }
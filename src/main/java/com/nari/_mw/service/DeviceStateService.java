@@ -0,0 +1,58 @@
+package com.nari._mw.service;
+
+import com.nari._mw.pojo.model.TelemetryMessage;
+import com.nari._mw.util.LatestValueCache;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 设备实时状态服务
+ * 由遥测接入管道更新测点最新值，供REST查询和WebSocket按帧推送
+ */
+@Service
+public class DeviceStateService implements TelemetryListener {
+    private final LatestValueCache cache = new LatestValueCache();
+
+    @Override
+    public void onTelemetry(List<TelemetryMessage> batch) {
+        for (TelemetryMessage message : batch) {
+            String[] points = message.getPoints();
+            double[] values = message.getValues();
+            for (int i = 0; i < points.length; i++) {
+                cache.put(message.getDeviceId(), points[i], values[i], message.getTimestamp());
+            }
+        }
+    }
+
+    /**
+     * 取出自上次调用以来变化的测点，按设备分组
+     */
+    public Map<String, Map<String, Double>> drainChanges() {
+        Map<String, Map<String, Double>> changes = new LinkedHashMap<>();
+        cache.drainChanges((deviceId, point, value, timestamp) ->
+                changes.computeIfAbsent(deviceId, k -> new LinkedHashMap<>()).put(point, value));
+        return changes;
+    }
+
+    /**
+     * 全部设备测点的当前快照，按设备分组
+     */
+    public Map<String, Map<String, Double>> snapshot() {
+        Map<String, Map<String, Double>> snapshot = new LinkedHashMap<>();
+        cache.forEach((deviceId, point, value, timestamp) ->
+                snapshot.computeIfAbsent(deviceId, k -> new LinkedHashMap<>()).put(point, value));
+        return snapshot;
+    }
+
+    /**
+     * 单个设备测点的当前快照
+     */
+    public Map<String, Double> getDeviceState(String deviceId) {
+        Map<String, Double> state = new LinkedHashMap<>();
+        cache.forEachOfDevice(deviceId, (d, point, value, timestamp) -> state.put(point, value));
+        return state;
+    }
+}
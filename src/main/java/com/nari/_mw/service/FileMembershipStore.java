@@ -0,0 +1,87 @@
+package com.nari._mw.service;
+
+import com.nari._mw.pojo.model.ClusterNode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基于共享目录的成员表
+ * 每个实例只写自己的心跳文件(先写临时文件再原子替换)，读取时列出目录，实例之间无需加锁。
+ */
+@Slf4j
+public class FileMembershipStore implements MembershipStore {
+    private static final String SUFFIX = ".member";
+
+    private final Path directory;
+
+    public FileMembershipStore(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("创建集群成员目录失败: " + directory, e);
+        }
+    }
+
+    @Override
+    public void heartbeat(ClusterNode node) {
+        Path file = fileOf(node.getNodeId());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.writeString(temp, node.getUrl() + "\n" + node.getLastHeartbeat() + "\n");
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入集群心跳失败: " + file, e);
+        }
+    }
+
+    @Override
+    public List<ClusterNode> members() {
+        List<ClusterNode> nodes = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String nodeId = URLDecoder.decode(name.substring(0, name.length() - SUFFIX.length()), StandardCharsets.UTF_8);
+                try {
+                    List<String> lines = Files.readAllLines(file);
+                    nodes.add(new ClusterNode(nodeId, lines.get(0), Long.parseLong(lines.get(1).trim())));
+                } catch (IOException | RuntimeException e) {
+                    // 文件可能正被替换或已被删除，下次刷新再读
+                    log.debug("读取集群成员文件失败: {}", file, e);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取集群成员目录失败: " + directory, e);
+        }
+        return nodes;
+    }
+
+    @Override
+    public void leave(String nodeId) {
+        try {
+            Files.deleteIfExists(fileOf(nodeId));
+        } catch (IOException e) {
+            log.warn("删除集群心跳文件失败: {}", nodeId, e);
+        }
+    }
+
+    private Path fileOf(String nodeId) {
+        return directory.resolve(URLEncoder.encode(nodeId, StandardCharsets.UTF_8) + SUFFIX);
+    }
+}
@@ -0,0 +1,29 @@
+package com.nari._mw.service;
+
+import com.nari._mw.pojo.model.ClusterNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内成员表，用于测试和同一进程内模拟多个实例
+ */
+public class InMemoryMembershipStore implements MembershipStore {
+    private final ConcurrentHashMap<String, ClusterNode> nodes = new ConcurrentHashMap<>();
+
+    @Override
+    public void heartbeat(ClusterNode node) {
+        nodes.put(node.getNodeId(), new ClusterNode(node.getNodeId(), node.getUrl(), node.getLastHeartbeat()));
+    }
+
+    @Override
+    public List<ClusterNode> members() {
+        return new ArrayList<>(nodes.values());
+    }
+
+    @Override
+    public void leave(String nodeId) {
+        nodes.remove(nodeId);
+    }
+}
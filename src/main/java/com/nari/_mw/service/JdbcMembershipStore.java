@@ -0,0 +1,40 @@
+package com.nari._mw.service;
+
+import com.nari._mw.pojo.model.ClusterNode;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * 基于MySQL表 cluster_member 的成员表
+ * 心跳时间由各实例按本机时钟写入，实例间时钟偏差应远小于 cluster.member-timeout-ms。
+ */
+public class JdbcMembershipStore implements MembershipStore {
+    private static final String UPSERT_SQL =
+            "INSERT INTO cluster_member (node_id, url, last_heartbeat) VALUES (?, ?, ?) "
+                    + "ON DUPLICATE KEY UPDATE url = VALUES(url), last_heartbeat = VALUES(last_heartbeat)";
+    private static final String SELECT_SQL = "SELECT node_id, url, last_heartbeat FROM cluster_member";
+    private static final String DELETE_SQL = "DELETE FROM cluster_member WHERE node_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcMembershipStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void heartbeat(ClusterNode node) {
+        jdbcTemplate.update(UPSERT_SQL, node.getNodeId(), node.getUrl(), node.getLastHeartbeat());
+    }
+
+    @Override
+    public List<ClusterNode> members() {
+        return jdbcTemplate.query(SELECT_SQL, (rs, i) ->
+                new ClusterNode(rs.getString("node_id"), rs.getString("url"), rs.getLong("last_heartbeat")));
+    }
+
+    @Override
+    public void leave(String nodeId) {
+        jdbcTemplate.update(DELETE_SQL, nodeId);
+    }
+}
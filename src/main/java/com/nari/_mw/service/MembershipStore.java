@@ -0,0 +1,26 @@
+package com.nari._mw.service;
+
+import com.nari._mw.pojo.model.ClusterNode;
+
+import java.util.List;
+
+/**
+ * 集群成员来源，各实例定期写入自己的心跳并读取全部成员
+ */
+public interface MembershipStore {
+
+    /**
+     * 登记或刷新本实例
+     */
+    void heartbeat(ClusterNode node);
+
+    /**
+     * 所有登记过的实例，含已停止心跳的实例，由调用方按心跳时间过滤
+     */
+    List<ClusterNode> members();
+
+    /**
+     * 本实例正常退出时注销，其他实例下一次刷新即重新分配其设备
+     */
+    void leave(String nodeId);
+}
@@ -0,0 +1,230 @@
+package com.nari._mw.service;
+
+import com.nari._mw.config.MQTTDefaultConfig;
+import com.nari._mw.config.StoreAndForwardConfig;
+import com.nari._mw.exception.MessageProcessingException;
+import com.nari._mw.pojo.dto.mqtt.connect.MQTTConnectionParams;
+import com.nari._mw.pojo.model.DevicePresence;
+import com.nari._mw.pojo.model.OutboundMessage;
+import com.nari._mw.util.MQTTClientWrapper;
+import com.nari._mw.util.OutboundMessageLog;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 离线设备消息暂存与转发
+ * 发往离线设备的消息追加到该设备的持久化日志，同种类的新消息取代尚未下发的旧消息；
+ * 设备上线(或定期重试)时在单个下发线程上按序号顺序发布，代理确认后逐条确认，服务重启后未确认的消息仍会下发。
+ * 消息记录原始请求的代理地址和用户名，下发时连接同一代理；密码只保存在内存中，重启后使用配置的密码。
+ */
+@Slf4j
+@Service
+@Lazy(false)
+@RequiredArgsConstructor
+public class StoreAndForwardService {
+    private static final String LOG_SUFFIX = ".log";
+
+    private final StoreAndForwardConfig config;
+    private final MQTTDefaultConfig mqttDefaultConfig;
+    private final DevicePresenceRegistry devicePresenceRegistry;
+    private final ConcurrentHashMap<String, OutboundMessageLog> logs = new ConcurrentHashMap<>();
+    // 代理地址和用户名 -> 原始请求的密码
+    private final ConcurrentHashMap<String, String> passwords = new ConcurrentHashMap<>();
+    private ScheduledExecutorService drainExecutor;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!config.isEnabled()) {
+            log.info("离线消息暂存未启用");
+            return;
+        }
+
+        Path directory = Paths.get(config.getDirectory());
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + LOG_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String deviceId = URLDecoder.decode(name.substring(0, name.length() - LOG_SUFFIX.length()), StandardCharsets.UTF_8);
+                logs.put(deviceId, OutboundMessageLog.open(file, config.getLogSizeBytes(), config.isSyncOnAppend()));
+            }
+        }
+
+        drainExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "outbound-drain");
+            thread.setDaemon(true);
+            return thread;
+        });
+        devicePresenceRegistry.addPresenceListener(this::onPresenceChanged);
+        drainExecutor.scheduleWithFixedDelay(this::drainAll, 0, config.getRetryIntervalMs(), TimeUnit.MILLISECONDS);
+        log.info("离线消息暂存已启动 - 目录: {}, 待下发设备数: {}", directory.toAbsolutePath(), logs.size());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (drainExecutor != null) {
+            drainExecutor.shutdownNow();
+        }
+        logs.forEach((deviceId, outboundLog) -> {
+            try {
+                outboundLog.close();
+            } catch (IOException e) {
+                log.warn("关闭设备 {} 的暂存日志失败", deviceId, e);
+            }
+        });
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * 暂存一条发往 store-forward.host 的消息，同一设备同种类尚未下发的消息被取代
+     *
+     * @param kind 消息种类，如 function-blocks
+     */
+    public OutboundMessage enqueue(String deviceId, String kind, String topic, String payload) {
+        return enqueue(deviceId, kind, topic, payload, null);
+    }
+
+    /**
+     * 暂存一条消息，设备上线后通过原始请求的代理下发
+     *
+     * @param params 原始请求的连接参数，为null时使用 store-forward.host
+     */
+    public OutboundMessage enqueue(String deviceId, String kind, String topic, String payload,
+                                   MQTTConnectionParams params) {
+        try {
+            String host = params != null ? params.getHost() : null;
+            String username = params != null ? params.getUsername() : null;
+            if (host != null && params.getPassword() != null) {
+                passwords.put(credentialKey(host, username), params.getPassword());
+            }
+            OutboundMessageLog outboundLog = logs.computeIfAbsent(deviceId, this::openLog);
+            OutboundMessage message = outboundLog.append(kind, topic, payload, host, username);
+            log.info("设备 {} 离线，消息已暂存 - 种类: {}, 序号: {}", deviceId, kind, message.getSequence());
+
+            // 入队与上线通知之间可能存在竞争，设备已在线时立即下发
+            if (devicePresenceRegistry.isOnline(deviceId)) {
+                drainAsync(deviceId);
+            }
+            return message;
+        } catch (IOException e) {
+            throw new MessageProcessingException("暂存消息失败: " + e.getMessage(), e);
+        }
+    }
+
+    public List<OutboundMessage> getPending(String deviceId) {
+        OutboundMessageLog outboundLog = logs.get(deviceId);
+        return outboundLog == null ? Collections.emptyList() : outboundLog.pending();
+    }
+
+    /**
+     * 在下发线程上异步下发设备的暂存消息
+     */
+    public void drainAsync(String deviceId) {
+        if (drainExecutor != null) {
+            drainExecutor.execute(() -> drain(deviceId));
+        }
+    }
+
+    private void onPresenceChanged(DevicePresence presence) {
+        if (presence.isOnline() && logs.containsKey(presence.getDeviceId())) {
+            drainAsync(presence.getDeviceId());
+        }
+    }
+
+    private void drainAll() {
+        logs.keySet().forEach(this::drain);
+    }
+
+    /**
+     * 按顺序下发，遇到失败即停止，保留剩余消息等待下次上线或定期重试
+     */
+    private void drain(String deviceId) {
+        OutboundMessageLog outboundLog = logs.get(deviceId);
+        if (outboundLog == null || outboundLog.isEmpty() || !devicePresenceRegistry.isOnline(deviceId)) {
+            return;
+        }
+
+        // 按消息记录的代理分别连接，同一次下发内复用连接
+        Map<String, MQTTClientWrapper> clients = new HashMap<>();
+        int delivered = 0;
+        try {
+            for (OutboundMessage message : outboundLog.pending()) {
+                MQTTConnectionParams params = connectionParams(message);
+                MQTTClientWrapper mqttClient = clients.get(credentialKey(params.getHost(), params.getUsername()));
+                if (mqttClient == null) {
+                    mqttClient = new MQTTClientWrapper(params, false);
+                    clients.put(credentialKey(params.getHost(), params.getUsername()), mqttClient);
+                }
+                mqttClient.publishMessage(message.getTopic(), message.getPayload())
+                        .get(config.getPublishTimeoutMs(), TimeUnit.MILLISECONDS);
+                outboundLog.acknowledge(message.getSequence());
+                delivered++;
+            }
+            log.info("设备 {} 的暂存消息已全部下发 - 条数: {}", deviceId, delivered);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("下发设备 {} 的暂存消息失败，已下发 {} 条，剩余消息稍后重试", deviceId, delivered, e);
+        } finally {
+            if (delivered > 0) {
+                outboundLog.flush();
+            }
+            clients.values().forEach(MQTTClientWrapper::disconnect);
+        }
+    }
+
+    private MQTTConnectionParams connectionParams(OutboundMessage message) {
+        if (message.getHost() == null) {
+            return defaultConnectionParams();
+        }
+        String password = passwords.get(credentialKey(message.getHost(), message.getUsername()));
+        if (password == null) {
+            // 重启后内存中没有原始密码，使用配置的凭据
+            password = config.getPassword() != null ? config.getPassword() : mqttDefaultConfig.getDefaultPassword();
+        }
+        return new MQTTConnectionParams(message.getHost(), message.getUsername(), password);
+    }
+
+    private MQTTConnectionParams defaultConnectionParams() {
+        String username = config.getUsername() != null ? config.getUsername() : mqttDefaultConfig.getDefaultUsername();
+        String password = config.getPassword() != null ? config.getPassword() : mqttDefaultConfig.getDefaultPassword();
+        return new MQTTConnectionParams(config.getHost(), username, password);
+    }
+
+    private static String credentialKey(String host, String username) {
+        return host + '\u0000' + (username != null ? username : "");
+    }
+
+    private OutboundMessageLog openLog(String deviceId) {
+        String fileName = URLEncoder.encode(deviceId, StandardCharsets.UTF_8) + LOG_SUFFIX;
+        try {
+            return OutboundMessageLog.open(Paths.get(config.getDirectory()).resolve(fileName), config.getLogSizeBytes(),
+                    config.isSyncOnAppend());
+        } catch (IOException e) {
+            throw new MessageProcessingException("打开暂存日志失败: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.nari._mw.service;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.nari._mw.config.MQTTDefaultConfig;
+import com.nari._mw.config.TelemetryIngestionConfig;
+import com.nari._mw.pojo.dto.mqtt.connect.MQTTConnectionParams;
+import com.nari._mw.pojo.dto.response.TelemetryStatsResponse;
+import com.nari._mw.pojo.model.TelemetryMessage;
+import com.nari._mw.util.MQTTClientWrapper;
+import com.nari._mw.util.MpmcRingBuffer;
+import com.nari._mw.util.TopicBuilder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 设备遥测接入服务
+ * 以一个通配符订阅接收所有设备的subscribe主题，MQTT回调线程只将原始消息放入无锁环形缓冲区，
+ * 由工作线程批量解析并分发给各个TelemetryListener。
+ * 每个工作线程消费自己的环形缓冲区，消息按主题(即设备)哈希分区，同一设备的消息只由一个工作线程按到达顺序分发，
+ * 聚合、告警等有状态的监听器看到的同一设备样本不会乱序。
+ */
+@Slf4j
+@Service
+@Lazy(false)
+public class TelemetryIngestionService {
+    private static final int SPIN_BEFORE_PARK = 100;
+    private static final long MIN_IDLE_PARK_NANOS = 50_000;
+    private static final long MAX_IDLE_PARK_NANOS = 20_000_000;
+
+    private final TelemetryIngestionConfig config;
+    private final MQTTDefaultConfig mqttDefaultConfig;
+    private final TopicBuilder topicBuilder;
+    private final ObjectProvider<TelemetryListener> listenerProvider;
+    private final List<TelemetryListener> listeners = new CopyOnWriteArrayList<>();
+    // 下标i的分区只由 telemetry-worker-i 消费
+    private final List<MpmcRingBuffer<RawTelemetry>> partitions;
+    private final List<Thread> workers = new ArrayList<>();
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong parseErrors = new AtomicLong();
+
+    private volatile boolean running;
+    private MQTTClientWrapper mqttClient;
+
+    /**
+     * 未解析的原始遥测消息
+     */
+    private record RawTelemetry(String topic, byte[] payload, long receivedAt) {
+    }
+
+    public TelemetryIngestionService(TelemetryIngestionConfig config, MQTTDefaultConfig mqttDefaultConfig,
+                                     TopicBuilder topicBuilder, ObjectProvider<TelemetryListener> listenerProvider) {
+        this.config = config;
+        this.mqttDefaultConfig = mqttDefaultConfig;
+        this.topicBuilder = topicBuilder;
+        this.listenerProvider = listenerProvider;
+        int partitionCount = Math.max(1, config.getWorkerThreads());
+        this.partitions = new ArrayList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new MpmcRingBuffer<>(config.getRingCapacity()));
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!config.isEnabled()) {
+            log.info("遥测接入未启用");
+            return;
+        }
+
+        listenerProvider.orderedStream().forEach(this::addListener);
+        startWorkers();
+
+        String username = config.getUsername() != null ? config.getUsername() : mqttDefaultConfig.getDefaultUsername();
+        String password = config.getPassword() != null ? config.getPassword() : mqttDefaultConfig.getDefaultPassword();
+        mqttClient = new MQTTClientWrapper(new MQTTConnectionParams(config.getHost(), username, password), false);
+        mqttClient.subscribe(topicBuilder.buildSubscribeWildcardTopic(), this::ingest);
+        log.info("遥测接入已启动 - 代理: {}, 工作线程: {}", config.getHost(), config.getWorkerThreads());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (mqttClient != null) {
+            mqttClient.disconnect();
+        }
+        workers.forEach(Thread::interrupt);
+        workers.clear();
+    }
+
+    public void addListener(TelemetryListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 启动解析工作线程
+     */
+    void startWorkers() {
+        running = true;
+        for (int i = 0; i < partitions.size(); i++) {
+            MpmcRingBuffer<RawTelemetry> partition = partitions.get(i);
+            Thread worker = new Thread(() -> runWorker(partition), "telemetry-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * 接收一条原始遥测消息，在MQTT回调线程上调用，不做解析
+     * 主题与设备一一对应，按主题哈希选择分区，不必先解析出设备ID
+     *
+     * @return 缓冲区已满被丢弃时返回false
+     */
+    public boolean ingest(String topic, byte[] payload) {
+        received.incrementAndGet();
+        if (!partitionOf(topic).offer(new RawTelemetry(topic, payload, System.currentTimeMillis()))) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public TelemetryStatsResponse getStats() {
+        int buffered = 0;
+        for (MpmcRingBuffer<RawTelemetry> partition : partitions) {
+            buffered += partition.size();
+        }
+        return new TelemetryStatsResponse(received.get(), dropped.get(), processed.get(),
+                parseErrors.get(), buffered);
+    }
+
+    private MpmcRingBuffer<RawTelemetry> partitionOf(String topic) {
+        int hash = topic.hashCode();
+        // 混合高位，避免设备ID只在末尾字符不同时集中到少数分区
+        return partitions.get(Math.floorMod(hash ^ (hash >>> 16), partitions.size()));
+    }
+
+    private void runWorker(MpmcRingBuffer<RawTelemetry> ringBuffer) {
+        List<TelemetryMessage> batch = new ArrayList<>(config.getBatchSize());
+        int idleRounds = 0;
+        long parkNanos = MIN_IDLE_PARK_NANOS;
+
+        while (running && !Thread.currentThread().isInterrupted()) {
+            int drained = ringBuffer.drain(raw -> {
+                TelemetryMessage message = parse(raw);
+                if (message != null) {
+                    batch.add(message);
+                }
+            }, config.getBatchSize());
+
+            if (drained == 0) {
+                // 短暂自旋后休眠，持续无消息时休眠时间指数增长，避免空闲时占用CPU
+                if (++idleRounds < SPIN_BEFORE_PARK) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(parkNanos);
+                    parkNanos = Math.min(parkNanos * 2, MAX_IDLE_PARK_NANOS);
+                }
+                continue;
+            }
+
+            idleRounds = 0;
+            parkNanos = MIN_IDLE_PARK_NANOS;
+            if (!batch.isEmpty()) {
+                dispatch(batch);
+                processed.addAndGet(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    private void dispatch(List<TelemetryMessage> batch) {
+        for (TelemetryListener listener : listeners) {
+            try {
+                listener.onTelemetry(batch);
+            } catch (RuntimeException e) {
+                log.error("遥测监听器处理失败: {}", listener.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    /**
+     * 解析遥测负载
+     * 支持 {"ts":..., "points":{"P":1.0,...}} 和扁平的 {"ts":..., "P":1.0,...} 两种格式，
+     * 布尔值按1/0处理，非数值字段忽略
+     */
+    private TelemetryMessage parse(RawTelemetry raw) {
+        String deviceId = topicBuilder.parseSubscribeTopicDeviceId(raw.topic());
+        if (deviceId == null) {
+            parseErrors.incrementAndGet();
+            return null;
+        }
+
+        try {
+            JSONObject json = JSON.parseObject(new String(raw.payload(), StandardCharsets.UTF_8));
+            if (json == null) {
+                parseErrors.incrementAndGet();
+                return null;
+            }
+
+            long timestamp = json.get("ts") instanceof Number ? json.getLongValue("ts") : raw.receivedAt();
+            Object nested = json.get("points");
+            Map<String, Object> source = nested instanceof JSONObject ? (JSONObject) nested : json;
+
+            String[] points = new String[source.size()];
+            double[] values = new double[source.size()];
+            int count = 0;
+            for (Map.Entry<String, Object> entry : source.entrySet()) {
+                if (source == json && "ts".equals(entry.getKey())) {
+                    continue;
+                }
+                Object value = entry.getValue();
+                if (value instanceof Number) {
+                    values[count] = ((Number) value).doubleValue();
+                } else if (value instanceof Boolean) {
+                    values[count] = (Boolean) value ? 1 : 0;
+                } else {
+                    continue;
+                }
+                points[count++] = entry.getKey();
+            }
+
+            if (count < points.length) {
+                points = Arrays.copyOf(points, count);
+                values = Arrays.copyOf(values, count);
+            }
+            return new TelemetryMessage(deviceId, timestamp, points, values);
+        } catch (RuntimeException e) {
+            parseErrors.incrementAndGet();
+            log.debug("解析遥测消息失败 - Topic: {}", raw.topic(), e);
+            return null;
+        }
+    }
+}
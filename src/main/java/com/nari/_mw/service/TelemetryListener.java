@@ -0,0 +1,21 @@
+package com.nari._mw.service;
+
+import com.nari._mw.pojo.model.TelemetryMessage;
+
+import java.util.List;
+
+/**
+ * 遥测消息批处理监听器
+ * 在遥测解析工作线程上调用，同一监听器可能被多个工作线程并发调用；
+ * 同一设备的消息总由同一个工作线程按到达顺序分发，不同设备的消息可能并发到达
+ */
+public interface TelemetryListener {
+
+    /**
+     * 处理一批已解析的遥测消息
+     * 批列表在返回后会被复用，实现不得持有该列表引用
+     *
+     * @param batch 遥测消息批
+     */
+    void onTelemetry(List<TelemetryMessage> batch);
+}
@@ -0,0 +1,251 @@
+package com.nari._mw.service;
+
+import com.nari._mw.config.TelemetryPersistenceConfig;
+import com.nari._mw.exception.MessageProcessingException;
+import com.nari._mw.pojo.dto.response.TelemetryHistoryResponse;
+import com.nari._mw.pojo.model.TelemetryBucket;
+import com.nari._mw.pojo.model.TelemetryMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 遥测持久化服务
+ * 遥测工作线程只将样本放入有界缓冲，由后台写线程批量插入原始样本；
+ * 同时在内存中增量计算1秒/1分钟/15分钟聚合，桶关闭时批量写入聚合表。
+ * 写线程定期关闭已过期的桶，停止时写入所有未关闭的桶。
+ * 查询按时间跨度选择粒度，近期聚合数据直接由内存返回。
+ */
+@Slf4j
+@Service
+@Lazy(false)
+@ConditionalOnProperty(prefix = TelemetryPersistenceConfig.PREFIX, name = "enabled", havingValue = "true")
+public class TelemetryPersistenceService implements TelemetryListener {
+    private static final long DROP_WARNING_INTERVAL_MS = 10_000;
+    private static final long ROLLUP_SWEEP_INTERVAL_MS = 1000;
+    private static final String INSERT_SAMPLE_SQL =
+            "INSERT INTO telemetry_sample (device_id, point, ts, value) VALUES (?, ?, ?, ?)";
+    private static final String UPSERT_ROLLUP_SQL =
+            "INSERT INTO telemetry_rollup (device_id, point, resolution_ms, bucket_start, min_value, max_value, avg_value, sample_count) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE "
+                    // 停止时写入的未完成桶在重启后与同一桶的后续数据合并，avg_value 须在 sample_count 之前更新
+                    + "min_value = LEAST(min_value, VALUES(min_value)), max_value = GREATEST(max_value, VALUES(max_value)), "
+                    + "avg_value = (avg_value * sample_count + VALUES(avg_value) * VALUES(sample_count)) "
+                    + "/ (sample_count + VALUES(sample_count)), sample_count = sample_count + VALUES(sample_count)";
+    private static final String SELECT_SAMPLE_SQL =
+            "SELECT ts, value FROM telemetry_sample WHERE device_id = ? AND point = ? AND ts >= ? AND ts < ? ORDER BY ts";
+    private static final String SELECT_ROLLUP_SQL =
+            "SELECT bucket_start, min_value, max_value, avg_value, sample_count FROM telemetry_rollup "
+                    + "WHERE device_id = ? AND point = ? AND resolution_ms = ? AND bucket_start >= ? AND bucket_start < ? "
+                    + "ORDER BY bucket_start";
+
+    private final TelemetryPersistenceConfig config;
+    private final JdbcTemplate jdbcTemplate;
+    private final TelemetryRollupAggregator aggregator;
+    private final BlockingQueue<SampleRow> sampleBuffer;
+    private final BlockingQueue<RollupRow> rollupBuffer;
+    private final AtomicLong droppedSamples = new AtomicLong();
+    private final AtomicLong droppedRollups = new AtomicLong();
+    private final AtomicLong lastRollupDropWarning = new AtomicLong();
+    private Thread writer;
+    private volatile boolean running;
+
+    private record SampleRow(String deviceId, String point, long timestamp, double value) {
+    }
+
+    private record RollupRow(String deviceId, String point, long resolutionMs, TelemetryBucket bucket) {
+    }
+
+    public TelemetryPersistenceService(TelemetryPersistenceConfig config,
+                                       @Qualifier("telemetryJdbcTemplate") JdbcTemplate jdbcTemplate) {
+        this.config = config;
+        this.jdbcTemplate = jdbcTemplate;
+        this.aggregator = new TelemetryRollupAggregator(config.getRetainedBuckets());
+        this.sampleBuffer = new ArrayBlockingQueue<>(config.getBufferCapacity());
+        this.rollupBuffer = new ArrayBlockingQueue<>(config.getBufferCapacity());
+    }
+
+    @PostConstruct
+    public void start() {
+        if (config.isInitializeSchema()) {
+            new ResourceDatabasePopulator(new ClassPathResource("db/telemetry-schema.sql"))
+                    .execute(jdbcTemplate.getDataSource());
+        }
+
+        running = true;
+        writer = new Thread(this::runWriter, "telemetry-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("遥测持久化已启动 - 批量大小: {}, 缓冲容量: {}", config.getBatchSize(), config.getBufferCapacity());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+
+        // 写线程退出后写入未关闭的桶，停止上报前最后一段时间的聚合不丢失
+        List<RollupRow> rollups = new ArrayList<>();
+        rollupBuffer.drainTo(rollups);
+        aggregator.flush((deviceId, point, resolutionMs, bucket) ->
+                rollups.add(new RollupRow(deviceId, point, resolutionMs, bucket)));
+        try {
+            for (int from = 0; from < rollups.size(); from += config.getBatchSize()) {
+                writeRollups(rollups.subList(from, Math.min(from + config.getBatchSize(), rollups.size())));
+            }
+        } catch (RuntimeException e) {
+            log.error("停止时写入聚合桶失败，丢弃 {} 个聚合桶", rollups.size(), e);
+        }
+    }
+
+    @Override
+    public void onTelemetry(List<TelemetryMessage> batch) {
+        for (TelemetryMessage message : batch) {
+            String[] points = message.getPoints();
+            double[] values = message.getValues();
+            for (int i = 0; i < points.length; i++) {
+                if (!sampleBuffer.offer(new SampleRow(message.getDeviceId(), points[i], message.getTimestamp(), values[i]))) {
+                    droppedSamples.incrementAndGet();
+                }
+                aggregator.add(message.getDeviceId(), points[i], message.getTimestamp(), values[i], this::onBucketClosed);
+            }
+        }
+    }
+
+    /**
+     * 按时间跨度选择粒度查询历史数据
+     */
+    public TelemetryHistoryResponse query(String deviceId, String point, long from, long to) {
+        if (from >= to) {
+            throw new MessageProcessingException("查询起始时间必须早于结束时间");
+        }
+
+        long resolutionMs = selectResolution(to - from);
+        List<TelemetryBucket> buckets;
+        if (resolutionMs == 0) {
+            buckets = jdbcTemplate.query(SELECT_SAMPLE_SQL, (rs, rowNum) -> {
+                double value = rs.getDouble(2);
+                return new TelemetryBucket(rs.getLong(1), value, value, value, 1);
+            }, deviceId, point, from, to);
+        } else {
+            buckets = aggregator.query(deviceId, point, resolutionMs, from, to);
+            if (buckets == null) {
+                buckets = jdbcTemplate.query(SELECT_ROLLUP_SQL, (rs, rowNum) -> new TelemetryBucket(
+                                rs.getLong(1), rs.getDouble(2), rs.getDouble(3), rs.getDouble(4), rs.getInt(5)),
+                        deviceId, point, resolutionMs, from, to);
+            }
+        }
+        return new TelemetryHistoryResponse(deviceId, point, resolutionMs, buckets);
+    }
+
+    public long getDroppedSamples() {
+        return droppedSamples.get();
+    }
+
+    public long getDroppedRollups() {
+        return droppedRollups.get();
+    }
+
+    /**
+     * 选择使返回点数不超过上限的最细粒度，跨度足够小时返回原始样本(0)
+     */
+    private long selectResolution(long rangeMs) {
+        if (rangeMs <= config.getRawMaxRangeMs()) {
+            return 0;
+        }
+        for (long resolution : TelemetryRollupAggregator.RESOLUTIONS_MS) {
+            if (rangeMs / resolution <= config.getMaxQueryPoints()) {
+                return resolution;
+            }
+        }
+        return TelemetryRollupAggregator.RESOLUTIONS_MS[TelemetryRollupAggregator.RESOLUTIONS_MS.length - 1];
+    }
+
+    private void onBucketClosed(String deviceId, String point, long resolutionMs, TelemetryBucket bucket) {
+        if (!rollupBuffer.offer(new RollupRow(deviceId, point, resolutionMs, bucket))) {
+            long dropped = droppedRollups.incrementAndGet();
+            // 缓冲持续满时每个间隔只输出一次，避免告警本身加重积压
+            long now = System.currentTimeMillis();
+            long last = lastRollupDropWarning.get();
+            if (now - last >= DROP_WARNING_INTERVAL_MS && lastRollupDropWarning.compareAndSet(last, now)) {
+                log.warn("聚合写缓冲已满，累计丢弃聚合桶: {}", dropped);
+            }
+        }
+    }
+
+    private void runWriter() {
+        List<SampleRow> samples = new ArrayList<>(config.getBatchSize());
+        List<RollupRow> rollups = new ArrayList<>(config.getBatchSize());
+        long lastSweep = 0;
+
+        while (running || !sampleBuffer.isEmpty() || !rollupBuffer.isEmpty()) {
+            try {
+                SampleRow first = sampleBuffer.poll(config.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    samples.add(first);
+                    sampleBuffer.drainTo(samples, config.getBatchSize() - 1);
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastSweep >= ROLLUP_SWEEP_INTERVAL_MS) {
+                    lastSweep = now;
+                    aggregator.closeExpired(now, config.getRollupGraceMs(), this::onBucketClosed);
+                }
+                rollupBuffer.drainTo(rollups, config.getBatchSize());
+
+                writeSamples(samples);
+                writeRollups(rollups);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("批量写入遥测数据失败，丢弃 {} 条样本和 {} 个聚合桶", samples.size(), rollups.size(), e);
+            } finally {
+                samples.clear();
+                rollups.clear();
+            }
+        }
+    }
+
+    private void writeSamples(List<SampleRow> samples) {
+        if (samples.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SAMPLE_SQL, samples, samples.size(), (ps, row) -> {
+            ps.setString(1, row.deviceId());
+            ps.setString(2, row.point());
+            ps.setLong(3, row.timestamp());
+            ps.setDouble(4, row.value());
+        });
+    }
+
+    private void writeRollups(List<RollupRow> rollups) {
+        if (rollups.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPSERT_ROLLUP_SQL, rollups, rollups.size(), (ps, row) -> {
+            TelemetryBucket bucket = row.bucket();
+            ps.setString(1, row.deviceId());
+            ps.setString(2, row.point());
+            ps.setLong(3, row.resolutionMs());
+            ps.setLong(4, bucket.getStart());
+            ps.setDouble(5, bucket.getMin());
+            ps.setDouble(6, bucket.getMax());
+            ps.setDouble(7, bucket.getAvg());
+            ps.setInt(8, bucket.getCount());
+        });
+    }
+}
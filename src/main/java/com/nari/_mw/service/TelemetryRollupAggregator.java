@@ -0,0 +1,174 @@
+package com.nari._mw.service;
+
+import com.nari._mw.pojo.model.TelemetryBucket;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 遥测增量聚合器
+ * 为每个测点维护1秒、1分钟、15分钟三种粒度的当前桶，样本跨入下一个桶或桶结束时间加宽限期已过去时关闭当前桶，
+ * 交给持久化回调并保留在内存中供近期查询。早于当前桶或落在已关闭桶内的迟到样本不参与聚合。
+ */
+public class TelemetryRollupAggregator {
+    public static final long[] RESOLUTIONS_MS = {1_000L, 60_000L, 900_000L};
+
+    private final int retainedBuckets;
+    private final ConcurrentHashMap<String, Series> series = new ConcurrentHashMap<>();
+
+    /**
+     * 已关闭聚合桶的接收者
+     */
+    @FunctionalInterface
+    public interface BucketSink {
+        void accept(String deviceId, String point, long resolutionMs, TelemetryBucket bucket);
+    }
+
+    public TelemetryRollupAggregator(int retainedBuckets) {
+        this.retainedBuckets = retainedBuckets;
+    }
+
+    public void add(String deviceId, String point, long timestamp, double value, BucketSink sink) {
+        series.computeIfAbsent(seriesKey(deviceId, point), k -> new Series(deviceId, point))
+                .add(timestamp, value, sink);
+    }
+
+    /**
+     * 关闭结束时间加宽限期早于 now 的桶，停止上报的设备的最后一个桶也能按时写入
+     *
+     * @param graceMs 桶结束后继续等待迟到样本的时间(毫秒)
+     */
+    public void closeExpired(long now, long graceMs, BucketSink sink) {
+        series.values().forEach(s -> s.closeExpired(now, graceMs, sink));
+    }
+
+    /**
+     * 立即关闭所有未关闭的桶，用于停止前写入
+     */
+    public void flush(BucketSink sink) {
+        series.values().forEach(s -> s.flush(sink));
+    }
+
+    /**
+     * 从内存查询[from, to)内的聚合桶
+     *
+     * @return 聚合桶列表，内存保留的数据不能覆盖from时返回null
+     */
+    public List<TelemetryBucket> query(String deviceId, String point, long resolutionMs, long from, long to) {
+        Series s = series.get(seriesKey(deviceId, point));
+        if (s == null) {
+            return null;
+        }
+        for (int r = 0; r < RESOLUTIONS_MS.length; r++) {
+            if (RESOLUTIONS_MS[r] == resolutionMs) {
+                return s.query(r, from, to);
+            }
+        }
+        return null;
+    }
+
+    private static String seriesKey(String deviceId, String point) {
+        return deviceId + '\u0000' + point;
+    }
+
+    private final class Series {
+        private final String deviceId;
+        private final String point;
+        private final long[] start = new long[RESOLUTIONS_MS.length];
+        private final double[] min = new double[RESOLUTIONS_MS.length];
+        private final double[] max = new double[RESOLUTIONS_MS.length];
+        private final double[] sum = new double[RESOLUTIONS_MS.length];
+        private final int[] count = new int[RESOLUTIONS_MS.length];
+        // 早于该时间的样本所在的桶已关闭
+        private final long[] closedBefore = new long[RESOLUTIONS_MS.length];
+        private final List<ArrayDeque<TelemetryBucket>> closed = new ArrayList<>();
+
+        private Series(String deviceId, String point) {
+            this.deviceId = deviceId;
+            this.point = point;
+            for (int r = 0; r < RESOLUTIONS_MS.length; r++) {
+                closed.add(new ArrayDeque<>());
+            }
+            Arrays.fill(closedBefore, Long.MIN_VALUE);
+        }
+
+        synchronized void add(long timestamp, double value, BucketSink sink) {
+            for (int r = 0; r < RESOLUTIONS_MS.length; r++) {
+                long bucketStart = timestamp - Math.floorMod(timestamp, RESOLUTIONS_MS[r]);
+
+                if (bucketStart < closedBefore[r] || count[r] > 0 && bucketStart < start[r]) {
+                    continue;
+                }
+                if (count[r] > 0 && bucketStart > start[r]) {
+                    close(r, sink);
+                }
+                if (count[r] == 0) {
+                    start[r] = bucketStart;
+                    min[r] = value;
+                    max[r] = value;
+                    sum[r] = 0;
+                }
+
+                min[r] = Math.min(min[r], value);
+                max[r] = Math.max(max[r], value);
+                sum[r] += value;
+                count[r]++;
+            }
+        }
+
+        synchronized void closeExpired(long now, long graceMs, BucketSink sink) {
+            for (int r = 0; r < RESOLUTIONS_MS.length; r++) {
+                if (count[r] > 0 && start[r] + RESOLUTIONS_MS[r] + graceMs <= now) {
+                    close(r, sink);
+                }
+            }
+        }
+
+        synchronized void flush(BucketSink sink) {
+            for (int r = 0; r < RESOLUTIONS_MS.length; r++) {
+                if (count[r] > 0) {
+                    close(r, sink);
+                }
+            }
+        }
+
+        private void close(int r, BucketSink sink) {
+            TelemetryBucket bucket = current(r);
+            sink.accept(deviceId, point, RESOLUTIONS_MS[r], bucket);
+            ArrayDeque<TelemetryBucket> retained = closed.get(r);
+            retained.addLast(bucket);
+            if (retained.size() > retainedBuckets) {
+                retained.removeFirst();
+            }
+            count[r] = 0;
+            closedBefore[r] = start[r] + RESOLUTIONS_MS[r];
+        }
+
+        synchronized List<TelemetryBucket> query(int r, long from, long to) {
+            ArrayDeque<TelemetryBucket> retained = closed.get(r);
+            long oldest = retained.isEmpty() ? (count[r] > 0 ? start[r] : Long.MAX_VALUE) : retained.peekFirst().getStart();
+            if (oldest > from) {
+                return null;
+            }
+
+            List<TelemetryBucket> result = new ArrayList<>();
+            for (TelemetryBucket bucket : retained) {
+                if (bucket.getStart() >= from && bucket.getStart() < to) {
+                    result.add(bucket);
+                }
+            }
+            // 当前未关闭的桶作为部分结果返回
+            if (count[r] > 0 && start[r] >= from && start[r] < to) {
+                result.add(current(r));
+            }
+            return result;
+        }
+
+        private TelemetryBucket current(int r) {
+            return new TelemetryBucket(start[r], min[r], max[r], sum[r] / count[r], count[r]);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.nari._mw.service;
 
+import com.nari._mw._enum.MessageClass;
 import com.nari._mw.config.MQTTDefaultConfig;
+import com.nari._mw.config.QosPolicyConfig;
 import com.nari._mw.exception.DeviceInteractionException;
 import com.nari._mw.pojo.dto.mqtt.connect.MQTTConnectionParams;
 import com.nari._mw.util.MQTTClientWrapper;
@@ -17,7 +19,9 @@ import java.util.concurrent.CompletableFuture;
 public class TestDeviceService {
     private final TopicBuilder topicBuilder;
     private final MQTTDefaultConfig mqttDefaultConfig;
-    private final int MAX_TRY_TIME = 50;
+    private final DeviceLinkService deviceLinkService;
+    private final QosPolicyConfig qosPolicyConfig;
+    private final int MAX_TRY_TIME = 5;
 
     public CompletableFuture<String> test() {
         String deviceId = "device123";
@@ -26,7 +30,8 @@ public class TestDeviceService {
         String publishTopic = topicBuilder.buildPublishTopic(deviceId);
         String subscribeTopic = topicBuilder.buildSubscribeTopic(deviceId);
 
-        MQTTClientWrapper mqttClient = new MQTTClientWrapper(params);
+        MQTTClientWrapper mqttClient = new MQTTClientWrapper(params)
+                .withQos(publishTopic, qosPolicyConfig.qosFor(MessageClass.COMMAND));
 
         mqttClient.subscribe(subscribeTopic);
         mqttClient.publishMessage(publishTopic, "hello world");
@@ -43,7 +48,15 @@ public class TestDeviceService {
         String publishTopic = topicBuilder.buildPublishTopic(deviceId);
         String subscribeTopic = topicBuilder.buildSubscribeTopic(deviceId);
 
-        MQTTClientWrapper mqttClient = new MQTTClientWrapper(params);
+        deviceLinkService.acquire(deviceId);
+        MQTTClientWrapper mqttClient;
+        try {
+            mqttClient = new MQTTClientWrapper(params)
+                    .withQos(publishTopic, qosPolicyConfig.qosFor(MessageClass.COMMAND));
+        } catch (RuntimeException e) {
+            deviceLinkService.release(deviceId);
+            throw e;
+        }
 
         mqttClient.subscribe(subscribeTopic);
 
@@ -53,30 +66,43 @@ public class TestDeviceService {
             String endMsg = "end";
             int[] testArr = new int[]{1, 2, 3, 4, 5};
             String expectedMsg = "success";
-            // 1. test start
-            tryPublish(mqttClient, publishTopic, subscribeTopic, startMsg, deviceId, expectedMsg);
-            for (int num : testArr) {
-                // 2. test num
-                tryPublish(mqttClient, publishTopic, subscribeTopic, String.valueOf(num), deviceId, expectedMsg);
+            try {
+                // 1. test start
+                tryPublish(mqttClient, publishTopic, subscribeTopic, startMsg, deviceId, expectedMsg);
+                for (int num : testArr) {
+                    // 2. test num
+                    tryPublish(mqttClient, publishTopic, subscribeTopic, String.valueOf(num), deviceId, expectedMsg);
+                }
+                // 3. test end
+                tryPublish(mqttClient, publishTopic, subscribeTopic, endMsg, deviceId, expectedMsg);
+                deviceLinkService.recordSuccess(deviceId);
+                return null;
+            } catch (DeviceInteractionException e) {
+                deviceLinkService.recordFailure(deviceId);
+                throw e;
+            } finally {
+                mqttClient.disconnect();
             }
-            // 3. test end
-            tryPublish(mqttClient, publishTopic, subscribeTopic, endMsg, deviceId, expectedMsg);
-            return null;
         });
     }
 
-
-
+    /**
+     * 发布测试消息直到设备返回期望响应：无响应时按RTO退避重传，响应不符时最多重试 MAX_TRY_TIME 次
+     */
     private void tryPublish(MQTTClientWrapper mqttClient, String publishTopic, String subscribeTopic,
-                            String msg, String expectedMsg, String deviceId) {
-        mqttClient.publishMessage(publishTopic, msg);
-        String response = mqttClient.listen(subscribeTopic);
-        for (int i = 0; i < MAX_TRY_TIME; i++) {
-            if (response.equals(expectedMsg)) break;
-            mqttClient.publishMessage(publishTopic, msg);
-            response = mqttClient.listen(subscribeTopic);
+                            String msg, String deviceId, String expectedMsg) {
+        try {
+            String response = deviceLinkService.exchange(mqttClient, deviceId, publishTopic, subscribeTopic, msg,
+                    msg, r -> true).getResponse();
+            for (int i = 0; i < MAX_TRY_TIME && !expectedMsg.equals(response); i++) {
+                response = deviceLinkService.exchange(mqttClient, deviceId, publishTopic, subscribeTopic, msg,
+                        msg, r -> true).getResponse();
+            }
+            if (!expectedMsg.equals(response))
+                throw new DeviceInteractionException("设备返回错误响应，超出重试次数", deviceId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DeviceInteractionException("测试交互被中断", deviceId, e);
         }
-        if (!response.equals(expectedMsg))
-            throw new DeviceInteractionException("设备返回错误响应，超出重试次数", deviceId);
     }
-}
\ No newline at end of file
+}
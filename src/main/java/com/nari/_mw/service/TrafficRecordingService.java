@@ -0,0 +1,58 @@
+package com.nari._mw.service;
+
+import com.nari._mw.config.TrafficRecorderConfig;
+import com.nari._mw.util.TrafficRecorder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 现场MQTT流量记录
+ * 启用后每次启动在记录目录下新建一个记录文件，配置传输和功能块下发的客户端把收发的消息写入其中，
+ * 可用 {@link com.nari._mw.util.TrafficReplayer} 按记录回放设备行为。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TrafficRecordingService {
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final TrafficRecorderConfig config;
+    private volatile TrafficRecorder recorder;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!config.isEnabled()) {
+            log.info("MQTT流量记录未启用");
+            return;
+        }
+        Path directory = Paths.get(config.getDirectory());
+        Files.createDirectories(directory);
+        Path file = directory.resolve("mqtt-" + LocalDateTime.now().format(FILE_TIME) + ".rec");
+        recorder = TrafficRecorder.create(file, config.getCapacityBytes());
+        log.info("MQTT流量记录已启用: {}", file);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (recorder != null) {
+            recorder.close();
+        }
+    }
+
+    /**
+     * 未启用时返回null
+     */
+    public TrafficRecorder getRecorder() {
+        return recorder;
+    }
+}
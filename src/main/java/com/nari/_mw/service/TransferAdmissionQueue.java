@@ -0,0 +1,331 @@
+package com.nari._mw.service;
+
+import com.nari._mw._enum.TransferPriority;
+import com.nari._mw.config.TransferAdmissionConfig;
+import com.nari._mw.exception.AdmissionRejectedException;
+import com.nari._mw.exception.TransferCancelledException;
+import com.nari._mw.pojo.dto.response.AdmissionTicketResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 下发任务准入队列
+ * 替代按接口的单信号量：最多 maxConcurrent 个任务同时执行，其余任务排队而不是直接返回429。
+ * 调度顺序：先按优先级；同一优先级内在操作员之间轮转，每个操作员的任务按提交顺序；
+ * 同一设备的任务严格按提交顺序且同时只执行一个。仅当排队数达到 maxDepth 时拒绝。
+ * 轮到的任务在专用调度线程上启动，不占用提交请求的线程或上一个任务的完成线程；
+ * 调用方的future提前结束(超时、撤销)时，尚未开始的任务从队列中移除。
+ */
+@Slf4j
+@Service
+public class TransferAdmissionQueue {
+    private static final double SERVICE_TIME_SMOOTHING = 0.2;
+
+    private final TransferAdmissionConfig config;
+    private final Executor dispatchExecutor;
+    private final Object lock = new Object();
+    // 优先级 -> 操作员 -> 该操作员的排队任务，LinkedHashMap的顺序即轮转顺序
+    private final EnumMap<TransferPriority, LinkedHashMap<String, ArrayDeque<Job>>> levels = new EnumMap<>(TransferPriority.class);
+    // 设备 -> 该设备的排队任务(提交顺序)
+    private final Map<String, ArrayDeque<Job>> deviceQueues = new HashMap<>();
+    private final Set<String> busyDevices = new HashSet<>();
+    private final Map<String, Job> running = new LinkedHashMap<>();
+    private int queued;
+    private double serviceTimeMs;
+
+    @Autowired
+    public TransferAdmissionQueue(TransferAdmissionConfig config) {
+        this(config, newDispatchExecutor(config));
+    }
+
+    /**
+     * @param dispatchExecutor 启动任务的执行器，task 在其线程上调用
+     */
+    TransferAdmissionQueue(TransferAdmissionConfig config, Executor dispatchExecutor) {
+        this.config = config;
+        this.dispatchExecutor = dispatchExecutor;
+        this.serviceTimeMs = config.getInitialServiceTimeMs();
+        for (TransferPriority priority : TransferPriority.values()) {
+            levels.put(priority, new LinkedHashMap<>());
+        }
+    }
+
+    /**
+     * 提交任务，轮到该任务时才调用 task
+     *
+     * @return 任务结果，完成时间包含排队时间
+     * @throws AdmissionRejectedException 队列已满
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> submit(String deviceId, String operator, TransferPriority priority,
+                                           Supplier<CompletableFuture<T>> task) {
+        Job job = new Job(UUID.randomUUID().toString(), deviceId, operator, priority,
+                System.currentTimeMillis(), (Supplier<CompletableFuture<?>>) (Supplier<?>) task);
+        synchronized (lock) {
+            if (queued >= config.getMaxDepth()) {
+                log.warn("下发队列已满，拒绝设备 {} 的请求 - 操作员: {}, 排队数: {}", deviceId, operator, queued);
+                throw new AdmissionRejectedException("下发队列已满，请稍后再试", queued);
+            }
+            levels.get(priority).computeIfAbsent(operator, k -> new ArrayDeque<>()).addLast(job);
+            deviceQueues.computeIfAbsent(deviceId, k -> new ArrayDeque<>()).addLast(job);
+            queued++;
+        }
+        log.debug("下发任务已排队 - 任务: {}, 设备: {}, 操作员: {}, 优先级: {}", job.id, deviceId, operator, priority);
+        // 调用方提前结束future(如超时)时撤销尚未开始的任务
+        job.result.whenComplete((result, ex) -> {
+            if (!job.started) {
+                cancel(job.id);
+            }
+        });
+        dispatch();
+        return (CompletableFuture<T>) job.result;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (dispatchExecutor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * 执行中和排队中的任务，按预计执行顺序排列
+     */
+    public List<AdmissionTicketResponse> snapshot() {
+        synchronized (lock) {
+            List<AdmissionTicketResponse> tickets = new ArrayList<>(running.size() + queued);
+            for (Job job : running.values()) {
+                tickets.add(ticket(job, "RUNNING", 0, job.startedAt));
+            }
+
+            long now = System.currentTimeMillis();
+            int maxConcurrent = Math.max(1, config.getMaxConcurrent());
+            int position = 0;
+            for (Job job : projectedOrder()) {
+                position++;
+                // 前面还有 running + position - 1 个任务，按平均耗时分摊到各执行槽位
+                long waves = (running.size() + position - 1) / maxConcurrent;
+                tickets.add(ticket(job, "QUEUED", position, now + (long) (waves * serviceTimeMs)));
+            }
+            return tickets;
+        }
+    }
+
+    /**
+     * 撤销尚未开始的任务
+     *
+     * @return 任务不存在或已开始执行时返回false
+     */
+    public boolean cancel(String jobId) {
+        Job cancelled = null;
+        synchronized (lock) {
+            for (LinkedHashMap<String, ArrayDeque<Job>> operators : levels.values()) {
+                for (Iterator<ArrayDeque<Job>> it = operators.values().iterator(); it.hasNext() && cancelled == null; ) {
+                    ArrayDeque<Job> jobs = it.next();
+                    for (Job job : jobs) {
+                        if (job.id.equals(jobId)) {
+                            cancelled = job;
+                            jobs.remove(job);
+                            break;
+                        }
+                    }
+                    if (jobs.isEmpty()) {
+                        it.remove();
+                    }
+                }
+            }
+            if (cancelled == null) {
+                return false;
+            }
+            ArrayDeque<Job> deviceJobs = deviceQueues.get(cancelled.deviceId);
+            deviceJobs.remove(cancelled);
+            if (deviceJobs.isEmpty()) {
+                deviceQueues.remove(cancelled.deviceId);
+            }
+            queued--;
+        }
+        cancelled.result.completeExceptionally(new TransferCancelledException("排队任务已撤销", cancelled.deviceId));
+        // 被撤销的任务可能阻塞着同一设备的后续任务
+        dispatch();
+        return true;
+    }
+
+    public AdmissionTicketResponse getTicket(String jobId) {
+        for (AdmissionTicketResponse ticket : snapshot()) {
+            if (ticket.getJobId().equals(jobId)) {
+                return ticket;
+            }
+        }
+        return null;
+    }
+
+    private void dispatch() {
+        List<Job> started = new ArrayList<>();
+        synchronized (lock) {
+            Job next;
+            while (running.size() < config.getMaxConcurrent() && (next = pollEligible()) != null) {
+                next.started = true;
+                next.startedAt = System.currentTimeMillis();
+                running.put(next.id, next);
+                busyDevices.add(next.deviceId);
+                started.add(next);
+            }
+        }
+
+        for (Job job : started) {
+            try {
+                dispatchExecutor.execute(() -> start(job));
+            } catch (RejectedExecutionException e) {
+                finish(job);
+                job.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void start(Job job) {
+        log.debug("下发任务开始 - 任务: {}, 设备: {}, 排队 {} ms", job.id, job.deviceId, job.startedAt - job.submittedAt);
+        CompletableFuture<?> future;
+        try {
+            future = job.result.isDone()
+                    ? CompletableFuture.completedFuture(null)
+                    : job.task.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((result, ex) -> {
+            finish(job);
+            if (ex != null) {
+                job.result.completeExceptionally(ex);
+            } else {
+                job.result.complete(result);
+            }
+        });
+    }
+
+    private void finish(Job job) {
+        synchronized (lock) {
+            running.remove(job.id);
+            busyDevices.remove(job.deviceId);
+            long elapsed = System.currentTimeMillis() - job.startedAt;
+            serviceTimeMs += SERVICE_TIME_SMOOTHING * (elapsed - serviceTimeMs);
+        }
+        dispatch();
+    }
+
+    /**
+     * 取出下一个可执行的任务：设备空闲且是该设备最早提交的任务
+     */
+    private Job pollEligible() {
+        for (LinkedHashMap<String, ArrayDeque<Job>> operators : levels.values()) {
+            for (Iterator<Map.Entry<String, ArrayDeque<Job>>> it = operators.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, ArrayDeque<Job>> entry = it.next();
+                ArrayDeque<Job> jobs = entry.getValue();
+                for (Iterator<Job> jobIt = jobs.iterator(); jobIt.hasNext(); ) {
+                    Job job = jobIt.next();
+                    if (busyDevices.contains(job.deviceId) || deviceQueues.get(job.deviceId).peekFirst() != job) {
+                        continue;
+                    }
+                    jobIt.remove();
+                    // 轮转：该操作员移到队尾
+                    it.remove();
+                    if (!jobs.isEmpty()) {
+                        operators.put(entry.getKey(), jobs);
+                    }
+                    ArrayDeque<Job> deviceJobs = deviceQueues.get(job.deviceId);
+                    deviceJobs.pollFirst();
+                    if (deviceJobs.isEmpty()) {
+                        deviceQueues.remove(job.deviceId);
+                    }
+                    queued--;
+                    return job;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 不考虑设备占用时的预计执行顺序：按优先级，同一优先级内在操作员之间轮转
+     */
+    private List<Job> projectedOrder() {
+        List<Job> order = new ArrayList<>(queued);
+        for (LinkedHashMap<String, ArrayDeque<Job>> operators : levels.values()) {
+            List<Iterator<Job>> cursors = new ArrayList<>();
+            operators.values().forEach(jobs -> cursors.add(jobs.iterator()));
+            boolean progressed = true;
+            while (progressed) {
+                progressed = false;
+                for (Iterator<Job> cursor : cursors) {
+                    if (cursor.hasNext()) {
+                        order.add(cursor.next());
+                        progressed = true;
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    private static ExecutorService newDispatchExecutor(TransferAdmissionConfig config) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        int threads = Math.max(1, config.getMaxConcurrent());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "transfer-admission-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static AdmissionTicketResponse ticket(Job job, String state, int position, long startAt) {
+        return new AdmissionTicketResponse(job.id, job.deviceId, job.operator, job.priority, state, position,
+                job.submittedAt, startAt);
+    }
+
+    private static final class Job {
+        private final String id;
+        private final String deviceId;
+        private final String operator;
+        private final TransferPriority priority;
+        private final long submittedAt;
+        private final Supplier<CompletableFuture<?>> task;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private volatile boolean started;
+        private long startedAt;
+
+        private Job(String id, String deviceId, String operator, TransferPriority priority, long submittedAt,
+                    Supplier<CompletableFuture<?>> task) {
+            this.id = id;
+            this.deviceId = deviceId;
+            this.operator = operator;
+            this.priority = priority;
+            this.submittedAt = submittedAt;
+            this.task = task;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.nari._mw.service;
+
+import com.nari._mw.config.TransferCoalescingConfig;
+import com.nari._mw.exception.IdempotencyConflictException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 合并重复的下发请求
+ * 内容键相同(同一设备、配置文件和切片大小)的请求在前一个传输排队或执行期间到达时，附加到该传输的结果，不另起传输；
+ * 携带 Idempotency-Key 的请求重复提交时返回首次请求的结果，成功结果保留 idempotencyRetentionMs，
+ * 失败后该键失效以便重试；同一个键用于不同内容的请求时拒绝。
+ * 每个调用方得到结果的独立副本，调用方对结果的超时或取消不影响其他调用方。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TransferCoalescer {
+    private final TransferCoalescingConfig config;
+    private final Map<String, CompletableFuture<?>> inFlight = new HashMap<>();
+    private final LinkedHashMap<String, IdempotentRequest> idempotentRequests = new LinkedHashMap<>();
+    private long coalesced;
+
+    /**
+     * 在锁内登记占位结果，锁外调用 task 后把传输结果转入占位结果，排队或建立连接不阻塞其他请求的合并判断
+     *
+     * @param contentKey     请求内容键，为null时不按内容合并
+     * @param idempotencyKey 客户端提供的幂等键，可为null
+     * @param task           需要新建传输时调用
+     * @throws IdempotencyConflictException 幂等键已用于内容不同的请求
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> submit(String contentKey, String idempotencyKey,
+                                           Supplier<CompletableFuture<T>> task) {
+        CompletableFuture<T> placeholder = new CompletableFuture<>();
+        CompletableFuture<T> result;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            expireIdempotentRequests(now);
+
+            if (idempotencyKey != null) {
+                IdempotentRequest previous = idempotentRequests.get(idempotencyKey);
+                if (previous != null) {
+                    if (!Objects.equals(previous.contentKey, contentKey)) {
+                        throw new IdempotencyConflictException("Idempotency-Key 已用于内容不同的请求", idempotencyKey);
+                    }
+                    log.info("重复提交的请求返回首次请求的结果 - Idempotency-Key: {}", idempotencyKey);
+                    return (CompletableFuture<T>) previous.result.copy();
+                }
+            }
+
+            result = contentKey == null ? null : (CompletableFuture<T>) inFlight.putIfAbsent(contentKey, placeholder);
+            if (result != null) {
+                coalesced++;
+                log.info("相同的下发请求已在进行，附加到该传输 - {}", contentKey);
+            } else {
+                result = placeholder;
+                if (contentKey != null) {
+                    placeholder.whenComplete((value, ex) -> finished(contentKey, placeholder));
+                }
+            }
+
+            if (idempotencyKey != null) {
+                CompletableFuture<T> remembered = result;
+                idempotentRequests.put(idempotencyKey, new IdempotentRequest(contentKey, remembered, now));
+                remembered.whenComplete((value, ex) -> {
+                    if (ex != null) {
+                        forget(idempotencyKey, remembered);
+                    }
+                });
+            }
+        }
+
+        if (result == placeholder) {
+            CompletableFuture<T> started;
+            try {
+                started = task.get();
+            } catch (RuntimeException e) {
+                // 附加到占位结果的请求得到同样的失败，内容键和幂等键随之失效
+                placeholder.completeExceptionally(e);
+                throw e;
+            }
+            started.whenComplete((value, ex) -> {
+                if (ex != null) {
+                    placeholder.completeExceptionally(ex);
+                } else {
+                    placeholder.complete(value);
+                }
+            });
+        }
+        return result.copy();
+    }
+
+    /**
+     * 附加到已有传输的请求数
+     */
+    public synchronized long getCoalescedCount() {
+        return coalesced;
+    }
+
+    private synchronized void finished(String contentKey, CompletableFuture<?> result) {
+        inFlight.remove(contentKey, result);
+    }
+
+    private synchronized void forget(String idempotencyKey, CompletableFuture<?> result) {
+        IdempotentRequest request = idempotentRequests.get(idempotencyKey);
+        if (request != null && request.result == result) {
+            idempotentRequests.remove(idempotencyKey);
+        }
+    }
+
+    /**
+     * 移除超过保留期的已完成请求，数量超出上限时丢弃最早的
+     */
+    private void expireIdempotentRequests(long now) {
+        long cutoff = now - config.getIdempotencyRetentionMs();
+        for (Iterator<IdempotentRequest> it = idempotentRequests.values().iterator(); it.hasNext(); ) {
+            IdempotentRequest request = it.next();
+            if (request.submittedAt >= cutoff) {
+                break;
+            }
+            if (request.result.isDone()) {
+                it.remove();
+            }
+        }
+        Iterator<IdempotentRequest> eldest = idempotentRequests.values().iterator();
+        while (idempotentRequests.size() >= Math.max(1, config.getMaxIdempotencyKeys()) && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private static final class IdempotentRequest {
+        private final String contentKey;
+        private final CompletableFuture<?> result;
+        private final long submittedAt;
+
+        private IdempotentRequest(String contentKey, CompletableFuture<?> result, long submittedAt) {
+            this.contentKey = contentKey;
+            this.result = result;
+            this.submittedAt = submittedAt;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.nari._mw.service;
+
+import com.nari._mw.config.TransferExecutionConfig;
+import com.nari._mw.exception.MessageProcessingException;
+import com.nari._mw.exception.TransferCancelledException;
+import com.nari._mw.jfr.TransferContext;
+import com.nari._mw.pojo.dto.response.TransferStatusResponse;
+import com.nari._mw.util.MQTTTransferClient;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 进行中的配置传输
+ * 传输在专用线程池上执行；返回的future一旦以异常结束(超时、取消)，立即中断执行线程并断开该传输的MQTT连接，
+ * 不再等待设备响应到达才释放线程和连接。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TransferRegistry {
+    private final TransferExecutionConfig config;
+    private final ConcurrentHashMap<String, TransferHandle> transfers = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(config.getThreads(), config.getThreads(), 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "config-transfer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void stop() {
+        transfers.keySet().forEach(this::cancel);
+        executor.shutdownNow();
+    }
+
+    /**
+     * 在专用线程池上执行传输
+     *
+     * @param client 传输使用的客户端，传输结束(含取消、超时)后断开
+     * @param body   传输过程，应响应线程中断
+     */
+    public CompletableFuture<Void> submit(String deviceId, MQTTTransferClient client, Consumer<TransferHandle> body) {
+        return submit(deviceId, client, 0, body);
+    }
+
+    /**
+     * 在专用线程池上执行传输，客户端在执行线程上建立
+     *
+     * @param timeoutMs 超时(毫秒)，从开始执行时计算，等待执行线程的时间不计入
+     * @param body      传输过程，建立的客户端通过 {@link TransferHandle#attach} 登记，传输结束后断开
+     */
+    public CompletableFuture<Void> submit(String deviceId, long timeoutMs, Consumer<TransferHandle> body) {
+        return submit(deviceId, null, timeoutMs, body);
+    }
+
+    private CompletableFuture<Void> submit(String deviceId, MQTTTransferClient client, long timeoutMs,
+                                           Consumer<TransferHandle> body) {
+        TransferHandle handle = new TransferHandle(UUID.randomUUID().toString(), deviceId, System.currentTimeMillis());
+        if (client != null) {
+            handle.attach(client);
+        }
+        transfers.put(handle.transferId, handle);
+
+        Future<?> worker;
+        try {
+            worker = executor.submit(() -> {
+                if (timeoutMs > 0) {
+                    handle.result.orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+                }
+                try (TransferContext ignored = TransferContext.open(deviceId)) {
+                    body.accept(handle);
+                    handle.result.complete(null);
+                } catch (Throwable e) {
+                    handle.result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            transfers.remove(handle.transferId);
+            handle.disconnect();
+            throw new MessageProcessingException("传输线程池已关闭", e);
+        }
+
+        handle.result.whenComplete((result, ex) -> {
+            transfers.remove(handle.transferId);
+            if (ex != null && !worker.isDone()) {
+                log.warn("传输 {} 提前结束，中断执行线程 - 设备: {}, 原因: {}", handle.transferId, deviceId, ex.toString());
+                worker.cancel(true);
+            }
+            handle.disconnect();
+        });
+        return handle.result;
+    }
+
+    /**
+     * 取消传输
+     *
+     * @return 传输不存在或已结束时返回false
+     */
+    public boolean cancel(String transferId) {
+        TransferHandle handle = transfers.get(transferId);
+        if (handle == null) {
+            return false;
+        }
+        log.info("取消传输 {} - 设备: {}", transferId, handle.deviceId);
+        return handle.result.completeExceptionally(new TransferCancelledException("传输已取消", handle.deviceId));
+    }
+
+    public List<TransferStatusResponse> list() {
+        List<TransferStatusResponse> statuses = new ArrayList<>(transfers.size());
+        transfers.values().forEach(handle -> statuses.add(new TransferStatusResponse(
+                handle.transferId, handle.deviceId, handle.taskNo, handle.startedAt)));
+        return statuses;
+    }
+
+    /**
+     * 正在执行传输的线程数
+     */
+    public int getActiveThreadCount() {
+        return executor.getActiveCount();
+    }
+
+    public static final class TransferHandle {
+        private final String transferId;
+        private final String deviceId;
+        private final long startedAt;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private final AtomicReference<MQTTTransferClient> client = new AtomicReference<>();
+        private volatile String taskNo;
+
+        private TransferHandle(String transferId, String deviceId, long startedAt) {
+            this.transferId = transferId;
+            this.deviceId = deviceId;
+            this.startedAt = startedAt;
+        }
+
+        public String getTransferId() {
+            return transferId;
+        }
+
+        public void setTaskNo(String taskNo) {
+            this.taskNo = taskNo;
+            TransferContext.setTaskNo(taskNo);
+        }
+
+        /**
+         * 登记传输使用的客户端，传输结束后断开；传输已结束时立即断开
+         */
+        public void attach(MQTTTransferClient client) {
+            this.client.set(client);
+            if (result.isDone()) {
+                disconnect();
+            }
+        }
+
+        private void disconnect() {
+            MQTTTransferClient attached = client.getAndSet(null);
+            if (attached != null) {
+                attached.disconnect();
+            }
+        }
+
+        /**
+         * 传输已因取消、超时或失败结束
+         */
+        public boolean isDone() {
+            return result.isDone();
+        }
+    }
+}
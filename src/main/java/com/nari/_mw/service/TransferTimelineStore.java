@@ -0,0 +1,60 @@
+package com.nari._mw.service;
+
+import com.nari._mw.config.TransferLoggingConfig;
+import com.nari._mw.pojo.dto.response.TransferTimelineResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 最近结束的传输时间线，超出容量时丢弃最旧的
+ */
+@Service
+@RequiredArgsConstructor
+public class TransferTimelineStore {
+    private final TransferLoggingConfig config;
+    private final ArrayDeque<TransferTimelineResponse> timelines = new ArrayDeque<>();
+
+    public synchronized void add(TransferTimelineResponse timeline) {
+        if (config.getTimelineCapacity() <= 0) {
+            return;
+        }
+        while (timelines.size() >= config.getTimelineCapacity()) {
+            timelines.pollFirst();
+        }
+        timelines.addLast(timeline);
+    }
+
+    /**
+     * 按结束时间倒序
+     *
+     * @param deviceId 只返回该设备的时间线，为空时返回全部
+     */
+    public synchronized List<TransferTimelineResponse> list(String deviceId) {
+        List<TransferTimelineResponse> result = new ArrayList<>();
+        for (Iterator<TransferTimelineResponse> it = timelines.descendingIterator(); it.hasNext(); ) {
+            TransferTimelineResponse timeline = it.next();
+            if (deviceId == null || deviceId.equals(timeline.getDeviceId())) {
+                result.add(timeline);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按传输ID或任务号查找
+     */
+    public synchronized TransferTimelineResponse get(String id) {
+        for (Iterator<TransferTimelineResponse> it = timelines.descendingIterator(); it.hasNext(); ) {
+            TransferTimelineResponse timeline = it.next();
+            if (id.equals(timeline.getTransferId()) || id.equals(timeline.getTaskNo())) {
+                return timeline;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,206 @@
+package com.nari._mw.util;
+
+/**
+ * 传输确认报文扫描器
+ * 确认报文是形如 {"taskNo":"...","number":3,"status":"success"} 的扁平JSON对象，逐字符扫描并就地与期望值比较，
+ * 不创建对象也不经过反射映射。遇到转义字符、嵌套值、重复字段、字段缺失或类型不符等意外格式返回 UNKNOWN，
+ * 由调用方回退到 Fastjson 解析。
+ */
+public final class AckScanner {
+    public static final int MISMATCH = 0;
+    public static final int MATCH = 1;
+    public static final int UNKNOWN = -1;
+
+    private static final int TASK_NO = 1;
+    private static final int NUMBER = 2;
+    private static final int STATUS = 4;
+
+    private AckScanner() {
+    }
+
+    /**
+     * 比较切片确认的任务号、切片号和状态
+     *
+     * @param status 期望状态，null表示不比较状态
+     * @return MATCH、MISMATCH 或 UNKNOWN
+     */
+    public static int matchSliceAck(String payload, String taskNo, int number, String status) {
+        return scan(payload, taskNo, number, status, true);
+    }
+
+    /**
+     * 只比较状态字段，其他简单字段忽略
+     *
+     * @return MATCH、MISMATCH 或 UNKNOWN
+     */
+    public static int matchStatus(String payload, String status) {
+        return scan(payload, null, 0, status, false);
+    }
+
+    private static int scan(String s, String taskNo, int number, String status, boolean sliceFields) {
+        if (s == null) {
+            return UNKNOWN;
+        }
+        int n = s.length();
+        int i = skipWhitespace(s, 0);
+        if (i >= n || s.charAt(i) != '{') {
+            return UNKNOWN;
+        }
+        i = skipWhitespace(s, i + 1);
+
+        int seen = 0;
+        boolean mismatch = false;
+        if (i < n && s.charAt(i) == '}') {
+            i++;
+        } else {
+            while (true) {
+                if (i >= n || s.charAt(i) != '"') {
+                    return UNKNOWN;
+                }
+                int keyStart = i + 1;
+                int keyEnd = endOfString(s, keyStart);
+                if (keyEnd < 0) {
+                    return UNKNOWN;
+                }
+                int field = field(s, keyStart, keyEnd);
+                if ((seen & field) != 0) {
+                    return UNKNOWN;
+                }
+                seen |= field;
+
+                i = skipWhitespace(s, keyEnd + 1);
+                if (i >= n || s.charAt(i) != ':') {
+                    return UNKNOWN;
+                }
+                i = skipWhitespace(s, i + 1);
+                if (i >= n) {
+                    return UNKNOWN;
+                }
+
+                char c = s.charAt(i);
+                if (c == '"') {
+                    int valueEnd = endOfString(s, i + 1);
+                    if (valueEnd < 0 || field == NUMBER) {
+                        return UNKNOWN;
+                    }
+                    if (field == TASK_NO && sliceFields && !regionEquals(s, i + 1, valueEnd, taskNo)
+                            || field == STATUS && status != null && !regionEquals(s, i + 1, valueEnd, status)) {
+                        mismatch = true;
+                    }
+                    i = valueEnd + 1;
+                } else if (c == '-' || c >= '0' && c <= '9') {
+                    boolean negative = c == '-';
+                    if (negative) {
+                        i++;
+                    }
+                    long value = 0;
+                    int digits = 0;
+                    while (i < n && (c = s.charAt(i)) >= '0' && c <= '9') {
+                        if (++digits > 10) {
+                            return UNKNOWN;
+                        }
+                        value = value * 10 + (c - '0');
+                        i++;
+                    }
+                    if (digits == 0 || i < n && ((c = s.charAt(i)) == '.' || c == 'e' || c == 'E')) {
+                        return UNKNOWN;
+                    }
+                    if (field == TASK_NO || field == STATUS) {
+                        return UNKNOWN;
+                    }
+                    if (field == NUMBER && sliceFields && (negative ? -value : value) != number) {
+                        mismatch = true;
+                    }
+                } else {
+                    // true、false、null 只允许出现在无关字段上
+                    int end = literalEnd(s, i);
+                    if (end < 0 || field != 0) {
+                        return UNKNOWN;
+                    }
+                    i = end;
+                }
+
+                i = skipWhitespace(s, i);
+                if (i >= n) {
+                    return UNKNOWN;
+                }
+                c = s.charAt(i);
+                if (c == ',') {
+                    i = skipWhitespace(s, i + 1);
+                } else if (c == '}') {
+                    i++;
+                    break;
+                } else {
+                    return UNKNOWN;
+                }
+            }
+        }
+        if (skipWhitespace(s, i) != n) {
+            return UNKNOWN;
+        }
+
+        int required = (sliceFields ? TASK_NO | NUMBER : 0) | (status != null ? STATUS : 0);
+        if ((seen & required) != required) {
+            return UNKNOWN;
+        }
+        return mismatch ? MISMATCH : MATCH;
+    }
+
+    private static int field(String s, int start, int end) {
+        // 三个字段名都是6个字符，按首字母区分
+        if (end - start != 6) {
+            return 0;
+        }
+        switch (s.charAt(start)) {
+            case 't':
+                return s.regionMatches(start, "taskNo", 0, 6) ? TASK_NO : 0;
+            case 'n':
+                return s.regionMatches(start, "number", 0, 6) ? NUMBER : 0;
+            case 's':
+                return s.regionMatches(start, "status", 0, 6) ? STATUS : 0;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @return 结束引号的位置，遇到转义或未结束时返回-1
+     */
+    private static int endOfString(String s, int start) {
+        for (int i = start; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') {
+                return i;
+            }
+            if (c == '\\') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static int literalEnd(String s, int start) {
+        if (s.startsWith("true", start) || s.startsWith("null", start)) {
+            return start + 4;
+        }
+        if (s.startsWith("false", start)) {
+            return start + 5;
+        }
+        return -1;
+    }
+
+    private static boolean regionEquals(String s, int start, int end, String expected) {
+        return expected != null && end - start == expected.length() && s.regionMatches(start, expected, 0, end - start);
+    }
+
+    private static int skipWhitespace(String s, int i) {
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,75 @@
+package com.nari._mw.util;
+
+import com.nari._mw._enum.CircuitState;
+
+/**
+ * 熔断器
+ * 连续失败达到阈值后打开，冷却时间内拒绝所有请求；冷却结束后半开，只放行一个探测请求，
+ * 探测成功则关闭，失败则重新打开。
+ */
+public class CircuitBreaker {
+    private final int failureThreshold;
+    private final long openDurationMs;
+    private CircuitState state = CircuitState.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    public CircuitBreaker(int failureThreshold, long openDurationMs) {
+        this.failureThreshold = failureThreshold;
+        this.openDurationMs = openDurationMs;
+    }
+
+    /**
+     * 请求放行许可，放行后必须调用 onSuccess、onFailure 或 release 之一
+     */
+    public synchronized boolean tryAcquire(long now) {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (now - openedAt < openDurationMs) {
+                    return false;
+                }
+                state = CircuitState.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        probeInFlight = false;
+        state = CircuitState.CLOSED;
+    }
+
+    public synchronized void onFailure(long now) {
+        consecutiveFailures++;
+        probeInFlight = false;
+        if (state == CircuitState.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = CircuitState.OPEN;
+            openedAt = now;
+        }
+    }
+
+    /**
+     * 请求因与设备无关的原因结束(取消、参数错误等)，不计入结果
+     */
+    public synchronized void release() {
+        probeInFlight = false;
+    }
+
+    public synchronized CircuitState getState() {
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+}
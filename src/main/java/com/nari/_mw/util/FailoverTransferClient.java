@@ -0,0 +1,273 @@
+package com.nari._mw.util;
+
+import com.nari._mw.exception.BrokerUnavailableException;
+import com.nari._mw.exception.MessageProcessingException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 可在冗余代理间切换的传输客户端
+ * 按健康状况依次尝试代理直到连接成功；连接意外丢失后，下一次发布前切换到其他代理，重新应用限速、QoS等设置并重新订阅，
+ * 等待中的响应立即返回超时，调用方按原有重传逻辑在新代理上重发当前消息。已确认的切片不受影响，
+ * 传输从最后确认的切片继续，任务号不变。要求设备同样能在存活的代理上收发(代理桥接或设备侧切换)。
+ */
+@Slf4j
+public final class FailoverTransferClient implements MQTTTransferClient {
+    private static final long LOST_CHECK_INTERVAL_MS = 100;
+
+    /**
+     * 代理健康状况，用于排序候选代理并记录连接结果
+     */
+    public interface HealthTracker {
+        List<String> rank(List<String> hosts);
+
+        void connected(String host, long connectNanos);
+
+        void failed(String host);
+    }
+
+    private final List<String> hosts;
+    private final Function<String, MQTTTransferClient> connector;
+    private final HealthTracker health;
+    private final int maxFailovers;
+    private final Map<String, Integer> qosByTopic = new LinkedHashMap<>();
+    private final Map<String, Long> messageExpiry = new LinkedHashMap<>();
+    private final Set<String> topics = ConcurrentHashMap.newKeySet();
+    private TransferRateLimiter rateLimiter;
+    private String deviceId;
+    private TrafficRecorder recorder;
+    private Integer payloadPreviewLength;
+    private volatile MQTTTransferClient delegate;
+    private volatile String currentHost;
+    private volatile boolean lost;
+    private volatile boolean closed;
+    private int failovers;
+
+    private FailoverTransferClient(List<String> hosts, Function<String, MQTTTransferClient> connector,
+                                   HealthTracker health, int maxFailovers) {
+        this.hosts = hosts;
+        this.connector = connector;
+        this.health = health;
+        this.maxFailovers = maxFailovers;
+    }
+
+    /**
+     * 按健康状况连接第一个可用的代理
+     *
+     * @param hosts        候选代理地址
+     * @param connector    按地址创建并连接底层客户端
+     * @param maxFailovers 连接丢失后最多切换的次数
+     * @throws BrokerUnavailableException 所有代理都无法连接
+     */
+    public static FailoverTransferClient connect(List<String> hosts, Function<String, MQTTTransferClient> connector,
+                                                 HealthTracker health, int maxFailovers) {
+        FailoverTransferClient client = new FailoverTransferClient(hosts, connector, health, maxFailovers);
+        client.connectFirstAvailable(null);
+        return client;
+    }
+
+    /**
+     * 当前连接的代理地址
+     */
+    public String getCurrentHost() {
+        return currentHost;
+    }
+
+    /**
+     * 已发生的代理切换次数
+     */
+    public synchronized int getFailovers() {
+        return failovers;
+    }
+
+    @Override
+    public synchronized FailoverTransferClient withRateLimit(TransferRateLimiter rateLimiter, String deviceId) {
+        this.rateLimiter = rateLimiter;
+        this.deviceId = deviceId;
+        delegate.withRateLimit(rateLimiter, deviceId);
+        return this;
+    }
+
+    @Override
+    public synchronized FailoverTransferClient withRecorder(TrafficRecorder recorder) {
+        this.recorder = recorder;
+        delegate.withRecorder(recorder);
+        return this;
+    }
+
+    @Override
+    public synchronized FailoverTransferClient withPayloadPreview(int maxChars) {
+        this.payloadPreviewLength = maxChars;
+        delegate.withPayloadPreview(maxChars);
+        return this;
+    }
+
+    @Override
+    public synchronized FailoverTransferClient withMessageExpiry(String topic, long expirySeconds) {
+        messageExpiry.put(topic, expirySeconds);
+        delegate.withMessageExpiry(topic, expirySeconds);
+        return this;
+    }
+
+    @Override
+    public synchronized FailoverTransferClient withQos(String topic, int qos) {
+        qosByTopic.put(topic, qos);
+        delegate.withQos(topic, qos);
+        return this;
+    }
+
+    @Override
+    public CompletableFuture<Void> subscribe(String topic) {
+        topics.add(topic);
+        return delegate.subscribe(topic);
+    }
+
+    @Override
+    public CompletableFuture<Void> publishMessage(String topic, String message) {
+        return active().publishMessage(topic, message);
+    }
+
+    @Override
+    public CompletableFuture<Void> publishRequest(String topic, String responseTopic, String message,
+                                                  String correlationId) {
+        return active().publishRequest(topic, responseTopic, message, correlationId);
+    }
+
+    @Override
+    public MQTTReply pollReply(String responseTopic, String correlationId, long timeout) throws InterruptedException {
+        MQTTTransferClient client = delegate;
+        long deadline = System.nanoTime() + timeout * 1_000_000L;
+        long remaining;
+        while (!lost && (remaining = (deadline - System.nanoTime()) / 1_000_000L) > 0) {
+            MQTTReply reply = client.pollReply(responseTopic, correlationId, Math.min(remaining, LOST_CHECK_INTERVAL_MS));
+            if (reply != null) {
+                return reply;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String poll(String topic, long timeout) throws InterruptedException {
+        MQTTTransferClient client = delegate;
+        long deadline = System.nanoTime() + timeout * 1_000_000L;
+        long remaining;
+        while (!lost && (remaining = (deadline - System.nanoTime()) / 1_000_000L) > 0) {
+            String message = client.poll(topic, Math.min(remaining, LOST_CHECK_INTERVAL_MS));
+            if (message != null) {
+                return message;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String listen(String topic, long timeout) throws InterruptedException {
+        String message = poll(topic, timeout);
+        if (message == null) {
+            throw new RuntimeException("监听主题超时: " + topic);
+        }
+        return message;
+    }
+
+    /**
+     * 不等待进行中的切换，切换完成后新建立的连接随即断开
+     */
+    @Override
+    public void disconnect() {
+        closed = true;
+        delegate.disconnect();
+    }
+
+    /**
+     * 连接已丢失时先切换代理
+     *
+     * @throws BrokerUnavailableException 超出切换次数或没有可用的代理
+     */
+    private MQTTTransferClient active() {
+        if (!lost) {
+            return delegate;
+        }
+        synchronized (this) {
+            if (lost && !closed) {
+                if (failovers >= maxFailovers) {
+                    throw new BrokerUnavailableException("MQTT代理连接丢失，超出切换次数: " + currentHost);
+                }
+                failovers++;
+                String lostHost = currentHost;
+                delegate.disconnect();
+                connectFirstAvailable(lostHost);
+                log.warn("MQTT代理 {} 连接丢失，传输切换到 {} (第{}次切换)", lostHost, currentHost, failovers);
+            }
+            return delegate;
+        }
+    }
+
+    /**
+     * @param lostHost 刚丢失连接的代理，排在其他代理之后重新尝试
+     */
+    private synchronized void connectFirstAvailable(String lostHost) {
+        List<String> ranked = health.rank(hosts);
+        if (lostHost != null && ranked.remove(lostHost)) {
+            ranked.add(lostHost);
+        }
+        List<String> errors = new ArrayList<>();
+        for (String host : ranked) {
+            long start = System.nanoTime();
+            MQTTTransferClient client = null;
+            try {
+                client = connector.apply(host);
+                applySettings(client);
+                for (String topic : topics) {
+                    client.subscribe(topic).join();
+                }
+                health.connected(host, System.nanoTime() - start);
+            } catch (RuntimeException e) {
+                log.warn("连接MQTT代理 {} 失败: {}", host, e.getMessage());
+                health.failed(host);
+                if (client != null) {
+                    client.disconnect();
+                }
+                errors.add(host + ": " + e.getMessage());
+                continue;
+            }
+            delegate = client;
+            currentHost = host;
+            lost = false;
+            if (closed) {
+                client.disconnect();
+                throw new MessageProcessingException("传输客户端已关闭");
+            }
+            return;
+        }
+        throw new BrokerUnavailableException("所有MQTT代理均无法连接: " + errors);
+    }
+
+    private void applySettings(MQTTTransferClient client) {
+        client.onConnectionLost(() -> connectionLost(client));
+        if (rateLimiter != null) {
+            client.withRateLimit(rateLimiter, deviceId);
+        }
+        client.withRecorder(recorder);
+        if (payloadPreviewLength != null) {
+            client.withPayloadPreview(payloadPreviewLength);
+        }
+        qosByTopic.forEach(client::withQos);
+        messageExpiry.forEach(client::withMessageExpiry);
+    }
+
+    private void connectionLost(MQTTTransferClient client) {
+        if (client == delegate && !closed) {
+            health.failed(currentHost);
+            lost = true;
+        }
+    }
+}
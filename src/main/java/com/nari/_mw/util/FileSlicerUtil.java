@@ -1,6 +1,7 @@
 package com.nari._mw.util;
 
 import com.nari._mw.exception.FileSliceException;
+import com.nari._mw.jfr.SlicePreparationEvent;
 import com.nari._mw.pojo.dto.mqtt.transfer.ConfigTransferSlice;
 import com.nari._mw.pojo.model.ConfigTransferData;
 import lombok.experimental.UtilityClass;
@@ -9,6 +10,7 @@ import lombok.extern.slf4j.Slf4j;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
@@ -17,9 +19,14 @@ import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.CRC32C;
 
 /**
  * 文件切片工具类
@@ -29,6 +36,11 @@ import java.util.UUID;
 @UtilityClass
 public class FileSlicerUtil {
 
+    /**
+     * 单个fork/join任务直接读取的最大切片数，超过则继续二分
+     */
+    static final int SLICES_PER_TASK = 16;
+
     /**
      * 将指定文件按照给定的切片大小分割，并转化为ConfigTransferData对象
      *
@@ -38,6 +50,8 @@ public class FileSlicerUtil {
      * @throws IOException 如果文件读取发生错误
      */
     public static ConfigTransferData sliceFile(String filePath, int sliceSize) {
+        SlicePreparationEvent event = new SlicePreparationEvent();
+        event.begin();
         try {
             Path path = Paths.get(filePath);
             validateFile(path);
@@ -46,12 +60,15 @@ public class FileSlicerUtil {
 
             String taskNo = generateTaskNo();
             long fileSize = Files.size(path);
-            String md5 = calculateMD5(filePath);
 
-            List<ConfigTransferSlice> slices = readFileSlices(path, sliceSize, taskNo);
+            // MD5需要顺序计算，与并行切片同时进行
+            ForkJoinTask<String> md5Task = ForkJoinPool.commonPool().submit(() -> calculateMD5(filePath));
+            List<ConfigTransferSlice> slices = readFileSlices(path, fileSize, sliceSize, taskNo);
+            String md5 = joinMD5(md5Task);
 
             log.debug("文件路径: {} , 文件大小: {} KB, 切片大小: {} KB, 切片数量: {}",
                     filePath, fileSize / 1024.0, sliceSize / 1024.0, slices.size());
+            event.complete(taskNo, filePath, fileSize, sliceSize, slices.size());
 
             return new ConfigTransferData(
                     taskNo,
@@ -92,46 +109,118 @@ public class FileSlicerUtil {
 
     /**
      * 读取文件并按照指定大小分割为切片
+     * 按文件区域fork/join并行读取，每个切片同时计算CRC32C校验值
      *
      * @param path      文件路径
+     * @param fileSize  文件大小
      * @param sliceSize 切片大小
      * @param taskNo    任务编号
-     * @return 切片列表
+     * @return 按序号排列的切片列表
      * @throws IOException 当读取文件发生错误时
      */
-    private static List<ConfigTransferSlice> readFileSlices(Path path, int sliceSize, String taskNo) throws IOException {
-        List<ConfigTransferSlice> slices = new ArrayList<>();
+    private static List<ConfigTransferSlice> readFileSlices(Path path, long fileSize, int sliceSize, String taskNo) throws IOException {
+        int sliceCount = (int) ((fileSize + sliceSize - 1) / sliceSize);
+        ConfigTransferSlice[] slices = new ConfigTransferSlice[sliceCount];
 
         try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
-            ByteBuffer buffer = ByteBuffer.allocate(sliceSize);
-            int sliceNumber = 1;
-
-            while (channel.read(buffer) > 0) {
-                buffer.flip();
-
-                byte[] data;
-                if (buffer.limit() < sliceSize) {
-                    // 如果读取的数据小于切片大小，创建合适大小的数组
-                    data = new byte[buffer.limit()];
-                    buffer.get(data);
-                } else {
-                    data = buffer.array().clone();
-                }
+            ForkJoinPool.commonPool().invoke(
+                    new SliceRegionTask(channel, fileSize, sliceSize, taskNo, slices, 0, sliceCount));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
 
-                ConfigTransferSlice slice = ConfigTransferSlice.builder()
-                        .taskNo(taskNo)
-                        .number(sliceNumber++)
-                        .data(data)
-                        .build();
+        return Arrays.asList(slices);
+    }
 
-                slices.add(slice);
+    /**
+     * 等待并取出并行计算的MD5结果
+     */
+    private static String joinMD5(ForkJoinTask<String> md5Task) throws IOException {
+        try {
+            return md5Task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileSliceException("计算MD5时被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new FileSliceException("计算MD5时出错", e.getCause());
+        }
+    }
 
-                // 清空缓冲区，准备下一次读取
-                buffer.clear();
+    /**
+     * 计算数据的CRC32C校验值
+     *
+     * @param data 数据
+     * @return CRC32C校验值（无符号32位，以long表示）
+     */
+    public static long calculateCRC32C(byte[] data) {
+        CRC32C crc = new CRC32C();
+        crc.update(data, 0, data.length);
+        return crc.getValue();
+    }
+
+    /**
+     * 读取[from, to)区间切片的fork/join任务
+     * FileChannel的按位置读取不改变通道位置，可被多个任务同时使用
+     */
+    private static final class SliceRegionTask extends RecursiveAction {
+        private final FileChannel channel;
+        private final long fileSize;
+        private final int sliceSize;
+        private final String taskNo;
+        private final ConfigTransferSlice[] slices;
+        private final int from;
+        private final int to;
+
+        private SliceRegionTask(FileChannel channel, long fileSize, int sliceSize, String taskNo,
+                                ConfigTransferSlice[] slices, int from, int to) {
+            this.channel = channel;
+            this.fileSize = fileSize;
+            this.sliceSize = sliceSize;
+            this.taskNo = taskNo;
+            this.slices = slices;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SLICES_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    slices[i] = readSlice(i);
+                }
+                return;
             }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new SliceRegionTask(channel, fileSize, sliceSize, taskNo, slices, from, mid),
+                    new SliceRegionTask(channel, fileSize, sliceSize, taskNo, slices, mid, to));
         }
 
-        return slices;
+        private ConfigTransferSlice readSlice(int index) {
+            long position = (long) index * sliceSize;
+            byte[] data = new byte[(int) Math.min(sliceSize, fileSize - position)];
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+
+            try {
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, position + buffer.position()) < 0) {
+                        throw new IOException("读取切片时文件提前结束: " + (index + 1));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            return ConfigTransferSlice.builder()
+                    .taskNo(taskNo)
+                    .number(index + 1)
+                    .data(data)
+                    .crc(calculateCRC32C(data))
+                    .build();
+        }
     }
 
     /**
@@ -150,7 +239,7 @@ public class FileSlicerUtil {
 
             // 使用缓冲区分块读取文件以处理大文件
             try (InputStream is = Files.newInputStream(path)) {
-                byte[] buffer = new byte[8192]; // 8KB缓冲区
+                byte[] buffer = new byte[64 * 1024]; // 64KB缓冲区
                 int bytesRead;
 
                 while ((bytesRead = is.read(buffer)) != -1) {
@@ -0,0 +1,283 @@
+package com.nari._mw.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 设备测点最新值缓存
+ * 设备ID和测点名各自驻留为int编号，组合为long键后存入分段加锁的开放寻址表，值以double原始类型保存。
+ * 每个分段记录自上次读取以来值发生变化的槽位，供按帧推送变化量。
+ * 另按设备记录其测点编号，查询单个设备时只访问该设备的槽位。
+ */
+public class LatestValueCache {
+    private static final int SEGMENT_COUNT = 16;
+    private static final int SEGMENT_SHIFT = Integer.SIZE - Integer.numberOfTrailingZeros(SEGMENT_COUNT);
+    private static final int INITIAL_SEGMENT_CAPACITY = 64;
+
+    private final ConcurrentHashMap<String, Integer> deviceIndex = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> pointIndex = new ConcurrentHashMap<>();
+    private final NameTable deviceNames = new NameTable();
+    private final NameTable pointNames = new NameTable();
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    private final ConcurrentHashMap<Integer, PointList> devicePoints = new ConcurrentHashMap<>();
+
+    /**
+     * 测点值消费者
+     */
+    @FunctionalInterface
+    public interface ValueConsumer {
+        void accept(String deviceId, String point, double value, long timestamp);
+    }
+
+    public LatestValueCache() {
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * 更新测点值，时间戳早于已有值的更新被忽略
+     */
+    public void put(String deviceId, String point, double value, long timestamp) {
+        int device = intern(deviceIndex, deviceNames, deviceId);
+        int pointId = intern(pointIndex, pointNames, point);
+        long key = key(device, pointId);
+        if (segmentFor(key).put(key, value, timestamp)) {
+            devicePoints.computeIfAbsent(device, k -> new PointList()).add(pointId);
+        }
+    }
+
+    /**
+     * 获取测点最新值
+     *
+     * @return 最新值，不存在时返回NaN
+     */
+    public double get(String deviceId, String point) {
+        Integer device = deviceIndex.get(deviceId);
+        Integer pointId = pointIndex.get(point);
+        if (device == null || pointId == null) {
+            return Double.NaN;
+        }
+        long key = key(device, pointId);
+        return segmentFor(key).get(key);
+    }
+
+    /**
+     * 取出自上次调用以来发生变化的测点并清除变化标记
+     */
+    public void drainChanges(ValueConsumer consumer) {
+        for (Segment segment : segments) {
+            segment.drainChanges(consumer, this);
+        }
+    }
+
+    /**
+     * 遍历全部测点，不影响变化标记
+     */
+    public void forEach(ValueConsumer consumer) {
+        for (Segment segment : segments) {
+            segment.forEach(consumer, this);
+        }
+    }
+
+    /**
+     * 遍历指定设备的全部测点，开销与该设备的测点数成正比
+     */
+    public void forEachOfDevice(String deviceId, ValueConsumer consumer) {
+        Integer device = deviceIndex.get(deviceId);
+        PointList points = device == null ? null : devicePoints.get(device);
+        if (points == null) {
+            return;
+        }
+        for (int pointId : points.snapshot()) {
+            long key = key(device, pointId);
+            segmentFor(key).emit(key, consumer, this);
+        }
+    }
+
+    private void emit(ValueConsumer consumer, long key, double value, long timestamp) {
+        consumer.accept(deviceNames.get((int) (key >>> 32)), pointNames.get((int) key), value, timestamp);
+    }
+
+    private Segment segmentFor(long key) {
+        // 分段取高位，槽位取低位，避免同一分段内的键集中在少数槽位
+        return segments[mix(key) >>> SEGMENT_SHIFT];
+    }
+
+    private static long key(int device, int point) {
+        return ((long) device << 32) | (point & 0xFFFFFFFFL);
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int intern(ConcurrentHashMap<String, Integer> index, NameTable names, String name) {
+        Integer id = index.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (names) {
+            id = index.get(name);
+            if (id == null) {
+                id = names.add(name);
+                index.put(name, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * 编号到名称的映射，编号从1开始，保证组合键不为0
+     */
+    private static final class NameTable {
+        private volatile String[] names = new String[64];
+        private int size;
+
+        synchronized int add(String name) {
+            String[] current = names;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+            }
+            current[size] = name;
+            names = current;
+            return ++size;
+        }
+
+        String get(int id) {
+            return names[id - 1];
+        }
+    }
+
+    /**
+     * 单个设备的测点编号，按首次写入顺序追加
+     */
+    private static final class PointList {
+        private int[] ids = new int[8];
+        private int size;
+
+        synchronized void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        synchronized int[] snapshot() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+
+    /**
+     * 开放寻址分段，键为0表示空槽
+     */
+    private static final class Segment {
+        private long[] keys = new long[INITIAL_SEGMENT_CAPACITY];
+        private double[] values = new double[INITIAL_SEGMENT_CAPACITY];
+        private long[] timestamps = new long[INITIAL_SEGMENT_CAPACITY];
+        private boolean[] dirty = new boolean[INITIAL_SEGMENT_CAPACITY];
+        private int[] dirtySlots = new int[INITIAL_SEGMENT_CAPACITY];
+        private int dirtyCount;
+        private int size;
+
+        /**
+         * @return 是否新增了键
+         */
+        synchronized boolean put(long key, double value, long timestamp) {
+            int slot = find(keys, key);
+            if (keys[slot] == 0) {
+                keys[slot] = key;
+                values[slot] = value;
+                timestamps[slot] = timestamp;
+                markDirty(slot);
+                if (++size * 4 > keys.length * 3) {
+                    resize();
+                }
+                return true;
+            }
+
+            if (timestamp < timestamps[slot]) {
+                return false;
+            }
+            timestamps[slot] = timestamp;
+            if (Double.compare(values[slot], value) != 0) {
+                values[slot] = value;
+                markDirty(slot);
+            }
+            return false;
+        }
+
+        synchronized double get(long key) {
+            int slot = find(keys, key);
+            return keys[slot] == 0 ? Double.NaN : values[slot];
+        }
+
+        synchronized void emit(long key, ValueConsumer consumer, LatestValueCache cache) {
+            int slot = find(keys, key);
+            if (keys[slot] != 0) {
+                cache.emit(consumer, key, values[slot], timestamps[slot]);
+            }
+        }
+
+        synchronized void drainChanges(ValueConsumer consumer, LatestValueCache cache) {
+            for (int i = 0; i < dirtyCount; i++) {
+                int slot = dirtySlots[i];
+                dirty[slot] = false;
+                cache.emit(consumer, keys[slot], values[slot], timestamps[slot]);
+            }
+            dirtyCount = 0;
+        }
+
+        synchronized void forEach(ValueConsumer consumer, LatestValueCache cache) {
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != 0) {
+                    cache.emit(consumer, keys[slot], values[slot], timestamps[slot]);
+                }
+            }
+        }
+
+        private void markDirty(int slot) {
+            if (!dirty[slot]) {
+                dirty[slot] = true;
+                dirtySlots[dirtyCount++] = slot;
+            }
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            double[] oldValues = values;
+            long[] oldTimestamps = timestamps;
+            boolean[] oldDirty = dirty;
+            int capacity = oldKeys.length * 2;
+
+            keys = new long[capacity];
+            values = new double[capacity];
+            timestamps = new long[capacity];
+            dirty = new boolean[capacity];
+            dirtySlots = new int[capacity];
+            dirtyCount = 0;
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = find(keys, oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                    timestamps[slot] = oldTimestamps[i];
+                    if (oldDirty[i]) {
+                        markDirty(slot);
+                    }
+                }
+            }
+        }
+
+        private static int find(long[] keys, long key) {
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
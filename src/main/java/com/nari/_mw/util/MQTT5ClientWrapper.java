@@ -0,0 +1,366 @@
+package com.nari._mw.util;
+
+import com.nari._mw.config.TransferLoggingConfig;
+import com.nari._mw.jfr.MqttConnectEvent;
+import com.nari._mw.jfr.MqttPublishEvent;
+import com.nari._mw.jfr.MqttSubscribeEvent;
+import com.nari._mw.pojo.dto.mqtt.connect.MQTTConnectionParams;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.paho.mqttv5.client.IMqttToken;
+import org.eclipse.paho.mqttv5.client.MqttActionListener;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.MqttCallback;
+import org.eclipse.paho.mqttv5.client.MqttClientException;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.eclipse.paho.mqttv5.client.MqttDisconnectResponse;
+import org.eclipse.paho.mqttv5.client.persist.MemoryPersistence;
+import org.eclipse.paho.mqttv5.common.MqttException;
+import org.eclipse.paho.mqttv5.common.MqttMessage;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 基于 Paho mqttv5 的传输客户端
+ * 请求携带响应主题和关联数据，设备原样带回关联数据，响应按关联标识直接交给等待中的请求，无需解析消息体判断归属；
+ * 未携带关联数据的响应交给该响应主题上最近一次请求并标记为未关联，由调用方判断是否对应该请求，兼容尚未支持关联数据的设备。
+ * 代理声明支持主题别名时，Paho 自动为重复发布的主题(如 file/data)分配别名，后续报文不再携带完整主题名；
+ * 通过 withMessageExpiry 设置过期时间的主题，过期未投递的消息由代理丢弃。
+ */
+@Slf4j
+public class MQTT5ClientWrapper implements MQTTTransferClient {
+    private static final long CONNECT_TIMEOUT_MS = 30_000;
+    private static final long DISCONNECT_QUIESCE_MS = 1000;
+    private static final int DEFAULT_QOS = 1;
+    private static final int TOPIC_ALIAS_MAXIMUM = 10;
+
+    private final MqttAsyncClient client;
+    private final ConcurrentHashMap<String, BlockingQueue<String>> messageQueues = new ConcurrentHashMap<>();
+    // 关联标识 -> 等待中的响应
+    private final ConcurrentHashMap<String, BlockingQueue<MQTTReply>> pendingReplies = new ConcurrentHashMap<>();
+    // 响应主题 -> 最近一次请求的关联标识
+    private final ConcurrentHashMap<String, String> latestRequest = new ConcurrentHashMap<>();
+    private final Map<String, Long> messageExpiry = new ConcurrentHashMap<>();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final Map<String, Integer> qosByTopic = new ConcurrentHashMap<>();
+    private TransferRateLimiter rateLimiter;
+    private String deviceId;
+    private volatile TrafficRecorder.Session recording;
+    private volatile Runnable connectionLostListener;
+    private volatile int payloadPreviewLength = TransferLoggingConfig.DEFAULT_PAYLOAD_PREVIEW_LENGTH;
+    // 执行回调的线程，在该线程上断开时不能等待断开完成
+    private volatile Thread callbackThread;
+
+    public MQTT5ClientWrapper(MQTTConnectionParams params) {
+        try {
+            client = new MqttAsyncClient(params.getHost(), "mqtt5-client-" + UUID.randomUUID(), new MemoryPersistence());
+            client.setCallback(new Callback());
+
+            MqttConnectionOptions options = new MqttConnectionOptions();
+            options.setCleanStart(true);
+            options.setSessionExpiryInterval(0L);
+            options.setUserName(params.getUsername());
+            options.setPassword(params.getPassword() != null ? params.getPassword().getBytes(StandardCharsets.UTF_8) : null);
+            options.setConnectionTimeout(30);
+            options.setKeepAliveInterval(60);
+            options.setAutomaticReconnect(true);
+            if (NoDelaySocketFactory.appliesTo(params.getHost())) {
+                options.setSocketFactory(NoDelaySocketFactory.INSTANCE);
+            }
+            options.setTopicAliasMaximum(TOPIC_ALIAS_MAXIMUM);
+            MqttConnectEvent event = new MqttConnectEvent();
+            event.begin();
+            try {
+                client.connect(options).waitForCompletion(CONNECT_TIMEOUT_MS);
+            } catch (MqttException e) {
+                event.complete(params.getHost(), 5, false);
+                client.close(true);
+                throw e;
+            }
+            event.complete(params.getHost(), 5, true);
+            MQTTClientWrapper.clientOpened();
+            log.info("已连接到MQTT代理(MQTT 5): {}", params.getHost());
+        } catch (MqttException e) {
+            log.error("创建MQTT 5客户端失败: {}", params.getHost(), e);
+            throw new RuntimeException("创建MQTT客户端失败", e);
+        }
+    }
+
+    @Override
+    public MQTT5ClientWrapper withRateLimit(TransferRateLimiter rateLimiter, String deviceId) {
+        this.rateLimiter = rateLimiter;
+        this.deviceId = deviceId;
+        return this;
+    }
+
+    @Override
+    public MQTT5ClientWrapper withRecorder(TrafficRecorder recorder) {
+        if (recorder != null) {
+            this.recording = recorder.openSession(client.getClientId(), deviceId, client.getServerURI());
+        }
+        return this;
+    }
+
+    @Override
+    public MQTT5ClientWrapper withPayloadPreview(int maxChars) {
+        this.payloadPreviewLength = maxChars;
+        return this;
+    }
+
+    @Override
+    public MQTT5ClientWrapper onConnectionLost(Runnable listener) {
+        this.connectionLostListener = listener;
+        return this;
+    }
+
+    @Override
+    public MQTT5ClientWrapper withQos(String topic, int qos) {
+        qosByTopic.put(topic, qos);
+        return this;
+    }
+
+    @Override
+    public MQTT5ClientWrapper withMessageExpiry(String topic, long expirySeconds) {
+        if (expirySeconds > 0) {
+            messageExpiry.put(topic, expirySeconds);
+        }
+        return this;
+    }
+
+    @Override
+    public CompletableFuture<Void> subscribe(String topic) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            messageQueues.putIfAbsent(topic, new LinkedBlockingQueue<>());
+            MqttSubscribeEvent event = new MqttSubscribeEvent();
+            event.begin();
+            client.subscribe(topic, 1).waitForCompletion(CONNECT_TIMEOUT_MS);
+            event.complete(client.getServerURI(), topic);
+            future.complete(null);
+            log.info("成功订阅主题: {}", topic);
+        } catch (MqttException e) {
+            log.error("订阅主题失败: {}", topic, e);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Void> publishMessage(String topic, String message) {
+        return publish(topic, message, new MqttProperties());
+    }
+
+    @Override
+    public CompletableFuture<Void> publishRequest(String topic, String responseTopic, String message,
+                                                  String correlationId) {
+        pendingReplies.computeIfAbsent(correlationId, k -> new LinkedBlockingQueue<>());
+        latestRequest.put(responseTopic, correlationId);
+
+        MqttProperties properties = new MqttProperties();
+        properties.setResponseTopic(responseTopic);
+        properties.setCorrelationData(correlationId.getBytes(StandardCharsets.UTF_8));
+        return publish(topic, message, properties);
+    }
+
+    @Override
+    public MQTTReply pollReply(String responseTopic, String correlationId, long timeout) throws InterruptedException {
+        BlockingQueue<MQTTReply> queue = pendingReplies.get(correlationId);
+        if (queue == null) {
+            throw new RuntimeException("没有等待响应的请求: " + correlationId);
+        }
+        MQTTReply reply = queue.poll(timeout, TimeUnit.MILLISECONDS);
+        if (reply != null && reply.isCorrelated()) {
+            // 已收到关联的响应，之后同一关联标识的重复响应直接丢弃；未关联的响应可能被调用方判定为迟到响应，继续等待
+            pendingReplies.remove(correlationId, queue);
+            latestRequest.remove(responseTopic, correlationId);
+        }
+        return reply;
+    }
+
+    @Override
+    public String poll(String topic, long timeout) throws InterruptedException {
+        BlockingQueue<String> queue = messageQueues.get(topic);
+        if (queue == null) {
+            throw new RuntimeException("未订阅该主题: " + topic);
+        }
+        return queue.poll(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String listen(String topic, long timeout) throws InterruptedException {
+        String message = poll(topic, timeout);
+        if (message == null) {
+            throw new RuntimeException("监听主题超时: " + topic);
+        }
+        return message;
+    }
+
+    @Override
+    public void disconnect() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        // 断开可能在MQTT回调线程上发起(如连接丢失监听)，此时在其他线程等待完成
+        if (Thread.currentThread() == callbackThread) {
+            CompletableFuture.runAsync(this::close);
+        } else {
+            close();
+        }
+    }
+
+    private CompletableFuture<Void> publish(String topic, String message, MqttProperties properties) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            if (closed.get()) {
+                throw new MqttException(MqttClientException.REASON_CODE_CLIENT_CLOSED);
+            }
+
+            byte[] payload = message.getBytes(StandardCharsets.UTF_8);
+            if (rateLimiter != null) {
+                rateLimiter.acquire(deviceId, client.getServerURI(), payload.length);
+            }
+            Long expiry = messageExpiry.get(topic);
+            if (expiry != null) {
+                properties.setMessageExpiryInterval(expiry);
+            }
+
+            MqttMessage mqttMessage = new MqttMessage(payload);
+            mqttMessage.setQos(qosByTopic.getOrDefault(topic, DEFAULT_QOS));
+            mqttMessage.setRetained(false);
+            mqttMessage.setProperties(properties);
+            MqttPublishEvent event = MqttPublishEvent.start(topic, payload.length, mqttMessage.getQos());
+            TrafficRecorder.Session session = recording;
+            if (session != null) {
+                session.published(topic, payload);
+            }
+
+            client.publish(topic, mqttMessage, null, new MqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken asyncActionToken) {
+                    log.trace("消息发布成功 - Topic: {}", topic);
+                    if (future.complete(null)) {
+                        event.complete();
+                    }
+                }
+
+                @Override
+                public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+                    log.error("发布消息到Topic失败: {}", topic, exception);
+                    future.completeExceptionally(exception);
+                }
+            });
+            log.trace("消息已加入发布队列 - Topic: {}", topic);
+        } catch (MqttException e) {
+            log.error("发布消息失败 - Topic: {}", topic, e);
+            future.completeExceptionally(e);
+        } catch (InterruptedException e) {
+            log.error("等待发布限速时被中断 - Topic: {}", topic, e);
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private void close() {
+        try {
+            if (client.isConnected()) {
+                client.disconnect(DISCONNECT_QUIESCE_MS).waitForCompletion(DISCONNECT_QUIESCE_MS * 2);
+            }
+        } catch (MqttException e) {
+            log.warn("断开MQTT连接失败，强制断开: {}", client.getServerURI(), e);
+        }
+        try {
+            if (client.isConnected()) {
+                client.disconnectForcibly(0, DISCONNECT_QUIESCE_MS, false);
+            }
+            client.close(true);
+            log.info("已断开与MQTT代理的连接: {}", client.getServerURI());
+        } catch (MqttException e) {
+            log.error("关闭MQTT客户端时出错", e);
+        } finally {
+            pendingReplies.clear();
+            MQTTClientWrapper.clientClosed();
+        }
+    }
+
+    private class Callback implements MqttCallback {
+        @Override
+        public void disconnected(MqttDisconnectResponse disconnectResponse) {
+            callbackThread = Thread.currentThread();
+            if (!closed.get()) {
+                log.error("MQTT代理连接断开: {}, 原因: {}", client.getServerURI(), disconnectResponse.getReasonString());
+                Runnable listener = connectionLostListener;
+                if (listener != null) {
+                    listener.run();
+                }
+            }
+        }
+
+        @Override
+        public void mqttErrorOccurred(MqttException exception) {
+            log.error("MQTT 5客户端错误: {}", client.getServerURI(), exception);
+        }
+
+        @Override
+        public void messageArrived(String topic, MqttMessage message) {
+            callbackThread = Thread.currentThread();
+            TrafficRecorder.Session session = recording;
+            if (session != null) {
+                session.received(topic, message.getPayload());
+            }
+            String content = new String(message.getPayload(), StandardCharsets.UTF_8);
+            if (log.isDebugEnabled()) {
+                log.debug("收到消息 - Topic: {}, Content: {}", topic, TransferEventLogger.abbreviate(content, payloadPreviewLength));
+            }
+
+            MqttProperties properties = message.getProperties();
+            byte[] correlation = properties != null ? properties.getCorrelationData() : null;
+            String correlationId = correlation != null
+                    ? new String(correlation, StandardCharsets.UTF_8) : latestRequest.get(topic);
+            if (correlationId != null) {
+                BlockingQueue<MQTTReply> reply = pendingReplies.get(correlationId);
+                if (reply != null) {
+                    reply.offer(correlation != null ? MQTTReply.correlated(content) : MQTTReply.uncorrelated(content));
+                } else {
+                    log.debug("丢弃未匹配请求的响应 - Topic: {}, 关联标识: {}", topic, correlationId);
+                }
+                return;
+            }
+
+            BlockingQueue<String> queue = messageQueues.get(topic);
+            if (queue != null) {
+                queue.offer(content);
+            }
+        }
+
+        @Override
+        public void deliveryComplete(IMqttToken token) {
+        }
+
+        @Override
+        public void connectComplete(boolean reconnect, String serverURI) {
+            callbackThread = Thread.currentThread();
+            if (reconnect) {
+                messageQueues.keySet().forEach(topic -> {
+                    try {
+                        client.subscribe(topic, 1);
+                    } catch (MqttException e) {
+                        log.error("重连后重新订阅主题失败: {}", topic, e);
+                    }
+                });
+            }
+        }
+
+        @Override
+        public void authPacketArrived(int reasonCode, MqttProperties properties) {
+        }
+    }
+}
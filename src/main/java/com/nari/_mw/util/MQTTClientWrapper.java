@@ -1,31 +1,59 @@
 package com.nari._mw.util;
 
+import com.nari._mw.config.TransferLoggingConfig;
+import com.nari._mw.jfr.MqttConnectEvent;
+import com.nari._mw.jfr.MqttPublishEvent;
+import com.nari._mw.jfr.MqttSubscribeEvent;
 import com.nari._mw.pojo.dto.mqtt.connect.MQTTConnectionParams;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.paho.client.mqttv3.*;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 @Slf4j
-public class MQTTClientWrapper {
+public class MQTTClientWrapper implements MQTTTransferClient {
     private final MqttClient client;
     private final ConcurrentHashMap<String, BlockingQueue<String>> messageQueues;
+    private final ConcurrentHashMap<String, BiConsumer<String, byte[]>> messageHandlers = new ConcurrentHashMap<>();
     private static final ConcurrentHashMap<String, MQTTClientWrapper> activeClients = new ConcurrentHashMap<>();
+    private static final long DISCONNECT_QUIESCE_MS = 1000;
+    private static final int DEFAULT_QOS = 1;
+    private static final AtomicInteger openClients = new AtomicInteger();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final Map<String, Integer> qosByTopic = new ConcurrentHashMap<>();
+    private TransferRateLimiter rateLimiter;
+    private String deviceId;
+    private volatile TrafficRecorder.Session recording;
+    private volatile Runnable connectionLostListener;
+    private volatile int payloadPreviewLength = TransferLoggingConfig.DEFAULT_PAYLOAD_PREVIEW_LENGTH;
 
     public MQTTClientWrapper(MQTTConnectionParams params) {
+        this(params, true);
+    }
+
+    /**
+     * @param params    连接参数
+     * @param exclusive 是否独占该代理：独占客户端会关闭同一代理上的旧独占客户端；
+     *                  长期运行的订阅客户端应传false，避免与传输任务互相断开
+     */
+    public MQTTClientWrapper(MQTTConnectionParams params, boolean exclusive) {
         try {
             String clientId = "mqtt-client-" + UUID.randomUUID();
 
             // 检查是否有旧连接并关闭
             String serverURI = params.getHost();
-            MQTTClientWrapper oldClient = activeClients.get(serverURI);
+            MQTTClientWrapper oldClient = exclusive ? activeClients.get(serverURI) : null;
             if (oldClient != null) {
                 oldClient.disconnect();
             }
@@ -33,16 +61,64 @@ public class MQTTClientWrapper {
             this.client = new MqttClient(params.getHost(), clientId, new MemoryPersistence());
             this.messageQueues = new ConcurrentHashMap<>();
             setupClientCallbacks();
-            connectClient(params.getUsername(), params.getPassword());
+            try {
+                connectClient(params.getUsername(), params.getPassword());
+            } catch (MqttException e) {
+                client.close();
+                throw e;
+            }
+            openClients.incrementAndGet();
 
             // 注册当前客户端
-            activeClients.put(serverURI, this);
+            if (exclusive) {
+                activeClients.put(serverURI, this);
+            }
         } catch (MqttException e) {
             log.error("创建MQTT客户端失败: {}", params.getHost(), e);
             throw new RuntimeException("创建MQTT客户端失败", e);
         }
     }
 
+    /**
+     * 为该客户端的发布启用限速
+     *
+     * @param rateLimiter 限速器
+     * @param deviceId    目标设备ID，用于设备级限速
+     * @return 当前客户端
+     */
+    @Override
+    public MQTTClientWrapper withRateLimit(TransferRateLimiter rateLimiter, String deviceId) {
+        this.rateLimiter = rateLimiter;
+        this.deviceId = deviceId;
+        return this;
+    }
+
+    @Override
+    public MQTTClientWrapper withRecorder(TrafficRecorder recorder) {
+        if (recorder != null) {
+            this.recording = recorder.openSession(client.getClientId(), deviceId, client.getServerURI());
+        }
+        return this;
+    }
+
+    @Override
+    public MQTTClientWrapper withPayloadPreview(int maxChars) {
+        this.payloadPreviewLength = maxChars;
+        return this;
+    }
+
+    @Override
+    public MQTTClientWrapper onConnectionLost(Runnable listener) {
+        this.connectionLostListener = listener;
+        return this;
+    }
+
+    @Override
+    public MQTTClientWrapper withQos(String topic, int qos) {
+        qosByTopic.put(topic, qos);
+        return this;
+    }
+
     private void setupClientCallbacks() {
         client.setCallback(new MqttCallbackExtended() {
             @Override
@@ -57,18 +133,44 @@ public class MQTTClientWrapper {
                             log.error("重连后重新订阅主题失败: {}", topic, e);
                         }
                     });
+                    messageHandlers.keySet().forEach(topicFilter -> {
+                        try {
+                            doSubscribe(topicFilter);
+                        } catch (MqttException e) {
+                            log.error("重连后重新订阅主题失败: {}", topicFilter, e);
+                        }
+                    });
                 }
             }
 
             @Override
             public void connectionLost(Throwable cause) {
                 log.error("MQTT代理连接丢失: {}", client.getServerURI(), cause);
+                Runnable listener = connectionLostListener;
+                if (listener != null && !closed.get()) {
+                    listener.run();
+                }
             }
 
             @Override
             public void messageArrived(String topic, MqttMessage message) {
+                TrafficRecorder.Session session = recording;
+                if (session != null) {
+                    session.received(topic, message.getPayload());
+                }
+
+                // 直接处理的订阅不经过字符串解码和队列
+                for (Map.Entry<String, BiConsumer<String, byte[]>> entry : messageHandlers.entrySet()) {
+                    if (MqttTopic.isMatched(entry.getKey(), topic)) {
+                        entry.getValue().accept(topic, message.getPayload());
+                        return;
+                    }
+                }
+
                 String messageContent = new String(message.getPayload(), StandardCharsets.UTF_8);
-                log.info("收到消息 - Topic: {}, Content: {}", topic, messageContent);
+                if (log.isDebugEnabled()) {
+                    log.debug("收到消息 - Topic: {}, Content: {}", topic, TransferEventLogger.abbreviate(messageContent, payloadPreviewLength));
+                }
 
                 // 将消息放入对应的队列
                 BlockingQueue<String> queue = messageQueues.get(topic);
@@ -85,7 +187,8 @@ public class MQTTClientWrapper {
             @Override
             public void deliveryComplete(IMqttDeliveryToken token) {
                 try {
-                    if (token != null && token.getMessage() != null) {
+                    // QoS 0 的令牌发出后即释放消息和主题
+                    if (token != null && token.getMessage() != null && token.getTopics() != null) {
                         log.debug("消息成功投递 - Topic: {}", token.getTopics()[0]);
                     }
                 } catch (MqttException e) {
@@ -104,8 +207,19 @@ public class MQTTClientWrapper {
             options.setConnectionTimeout(30);
             options.setKeepAliveInterval(60);
             options.setAutomaticReconnect(true);
+            if (NoDelaySocketFactory.appliesTo(client.getServerURI())) {
+                options.setSocketFactory(NoDelaySocketFactory.INSTANCE);
+            }
 
-            client.connect(options);
+            MqttConnectEvent event = new MqttConnectEvent();
+            event.begin();
+            boolean connected = false;
+            try {
+                client.connect(options);
+                connected = true;
+            } finally {
+                event.complete(client.getServerURI(), 3, connected);
+            }
             log.info("已连接到MQTT代理: {}", client.getServerURI());
         }
     }
@@ -116,6 +230,7 @@ public class MQTTClientWrapper {
      * @param topic 要订阅的主题
      * @return 订阅成功的CompletableFuture
      */
+    @Override
     public CompletableFuture<Void> subscribe(String topic) {
         CompletableFuture<Void> future = new CompletableFuture<>();
         try {
@@ -137,8 +252,38 @@ public class MQTTClientWrapper {
         return future;
     }
 
+    /**
+     * 订阅主题（可含通配符），消息在MQTT回调线程上直接交给处理器，不进入监听队列
+     * 处理器应尽快返回，耗时处理需转交其他线程
+     *
+     * @param topicFilter 主题过滤器
+     * @param handler     消息处理器，参数为实际主题和原始负载
+     * @return 订阅成功的CompletableFuture
+     */
+    public CompletableFuture<Void> subscribe(String topicFilter, BiConsumer<String, byte[]> handler) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            if (!client.isConnected()) {
+                throw new MqttException(MqttException.REASON_CODE_CLIENT_NOT_CONNECTED);
+            }
+
+            messageHandlers.put(topicFilter, handler);
+            doSubscribe(topicFilter);
+            future.complete(null);
+            log.info("成功订阅主题: {}", topicFilter);
+        } catch (MqttException e) {
+            messageHandlers.remove(topicFilter);
+            log.error("订阅主题失败: {}", topicFilter, e);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
     private void doSubscribe(String topic) throws MqttException {
+        MqttSubscribeEvent event = new MqttSubscribeEvent();
+        event.begin();
         client.subscribe(topic);
+        event.complete(client.getServerURI(), topic);
     }
 
     /**
@@ -150,13 +295,9 @@ public class MQTTClientWrapper {
      * @throws InterruptedException 如果线程被中断
      * @throws RuntimeException     如果超时或该主题没有订阅
      */
+    @Override
     public String listen(String topic, long timeout) throws InterruptedException {
-        BlockingQueue<String> queue = messageQueues.get(topic);
-        if (queue == null) {
-            throw new RuntimeException("未订阅该主题: " + topic);
-        }
-
-        String message = queue.poll(timeout, TimeUnit.MILLISECONDS);
+        String message = poll(topic, timeout);
         if (message == null) {
             throw new RuntimeException("监听主题超时: " + topic);
         }
@@ -164,6 +305,24 @@ public class MQTTClientWrapper {
         return message;
     }
 
+    /**
+     * 等待指定主题的消息，超时返回null
+     *
+     * @param topic   要监听的主题
+     * @param timeout 超时时间（毫秒）
+     * @return 收到的消息内容，超时为null
+     * @throws InterruptedException 如果线程被中断
+     * @throws RuntimeException     如果该主题没有订阅
+     */
+    @Override
+    public String poll(String topic, long timeout) throws InterruptedException {
+        BlockingQueue<String> queue = messageQueues.get(topic);
+        if (queue == null) {
+            throw new RuntimeException("未订阅该主题: " + topic);
+        }
+        return queue.poll(timeout, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * 监听指定主题的消息，无限期等待
      *
@@ -176,16 +335,23 @@ public class MQTTClientWrapper {
         try {
             message = queue.take();
         } catch (InterruptedException e) {
+            // 保留中断标记，调用方据此停止后续操作
+            Thread.currentThread().interrupt();
             throw new RuntimeException(e);
         }
 
         return message;
     }
 
+    @Override
     public CompletableFuture<Void> publishMessage(String topic, String message) {
         CompletableFuture<Void> future = new CompletableFuture<>();
 
         try {
+            if (closed.get()) {
+                throw new MqttException(MqttException.REASON_CODE_CLIENT_CLOSED);
+            }
+
             // 确保已连接
             if (!client.isConnected()) {
                 MqttConnectOptions options = new MqttConnectOptions();
@@ -193,13 +359,25 @@ public class MQTTClientWrapper {
                 options.setConnectionTimeout(30);
                 options.setKeepAliveInterval(60);
                 options.setAutomaticReconnect(true);
+                if (NoDelaySocketFactory.appliesTo(client.getServerURI())) {
+                    options.setSocketFactory(NoDelaySocketFactory.INSTANCE);
+                }
                 client.connect(options);
             }
 
             // 创建消息
-            MqttMessage mqttMessage = new MqttMessage(message.getBytes(StandardCharsets.UTF_8));
-            mqttMessage.setQos(1);
+            byte[] payload = message.getBytes(StandardCharsets.UTF_8);
+            if (rateLimiter != null) {
+                rateLimiter.acquire(deviceId, client.getServerURI(), payload.length);
+            }
+            MqttMessage mqttMessage = new MqttMessage(payload);
+            mqttMessage.setQos(qosByTopic.getOrDefault(topic, DEFAULT_QOS));
+            MqttPublishEvent event = MqttPublishEvent.start(topic, payload.length, mqttMessage.getQos());
             mqttMessage.setRetained(false);
+            TrafficRecorder.Session session = recording;
+            if (session != null) {
+                session.published(topic, payload);
+            }
 
             // 发布消息
             MqttTopic mqttTopic = client.getTopic(topic);
@@ -208,8 +386,10 @@ public class MQTTClientWrapper {
             token.setActionCallback(new IMqttActionListener() {
                 @Override
                 public void onSuccess(IMqttToken asyncActionToken) {
-                    log.info("消息发布成功 - Topic: {}", topic);
-                    future.complete(null);
+                    log.trace("消息发布成功 - Topic: {}", topic);
+                    if (future.complete(null)) {
+                        event.complete();
+                    }
                 }
 
                 @Override
@@ -218,28 +398,80 @@ public class MQTTClientWrapper {
                     future.completeExceptionally(exception);
                 }
             });
+            // 注册回调之前已完成的投递不会再触发回调
+            if (token.isComplete()) {
+                if (token.getException() != null) {
+                    future.completeExceptionally(token.getException());
+                } else if (future.complete(null)) {
+                    event.complete();
+                }
+            }
 
-            log.debug("消息已加入发布队列 - Topic: {}", topic);
+            log.trace("消息已加入发布队列 - Topic: {}", topic);
         } catch (MqttException e) {
             log.error("发布消息失败 - Topic: {}", topic, e);
             future.completeExceptionally(e);
+        } catch (InterruptedException e) {
+            log.error("等待发布限速时被中断 - Topic: {}", topic, e);
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
         }
 
         return future;
     }
 
+    /**
+     * 断开并释放客户端，可重复调用
+     * 最多等待 DISCONNECT_QUIESCE_MS 让在途消息完成，随后强制断开；在MQTT回调线程上调用时转到其他线程执行
+     */
+    @Override
     public void disconnect() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        // 从活动客户端映射中移除
+        activeClients.remove(client.getServerURI(), this);
+
         try {
-            if (client != null && client.isConnected()) {
-                // 从活动客户端映射中移除
-                activeClients.remove(client.getServerURI());
+            if (client.isConnected()) {
+                client.disconnect(DISCONNECT_QUIESCE_MS);
+            }
+        } catch (MqttException e) {
+            if (e.getReasonCode() == MqttException.REASON_CODE_CLIENT_DISCONNECT_PROHIBITED) {
+                CompletableFuture.runAsync(this::forceClose);
+                return;
+            }
+            log.warn("断开MQTT连接失败，强制断开: {}", client.getServerURI(), e);
+        }
+        forceClose();
+    }
 
-                client.disconnect();
-                client.close();
-                log.info("已断开与MQTT代理的连接: {}", client.getServerURI());
+    /**
+     * 当前未关闭的客户端数量(含MQTT 5客户端)
+     */
+    public static int getOpenClientCount() {
+        return openClients.get();
+    }
+
+    static void clientOpened() {
+        openClients.incrementAndGet();
+    }
+
+    static void clientClosed() {
+        openClients.decrementAndGet();
+    }
+
+    private void forceClose() {
+        try {
+            if (client.isConnected()) {
+                client.disconnectForcibly(0, DISCONNECT_QUIESCE_MS);
             }
+            client.close(true);
+            log.info("已断开与MQTT代理的连接: {}", client.getServerURI());
         } catch (MqttException e) {
             log.error("关闭MQTT客户端时出错", e);
+        } finally {
+            openClients.decrementAndGet();
         }
     }
-}
\ No newline at end of file
+}
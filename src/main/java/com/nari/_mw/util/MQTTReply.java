@@ -0,0 +1,31 @@
+package com.nari._mw.util;
+
+/**
+ * 等待请求得到的响应
+ * correlated 表示响应携带了与请求一致的关联数据；未关联的响应可能属于之前的请求，由调用方判断是否对应本次请求。
+ */
+public final class MQTTReply {
+    private final String content;
+    private final boolean correlated;
+
+    private MQTTReply(String content, boolean correlated) {
+        this.content = content;
+        this.correlated = correlated;
+    }
+
+    public static MQTTReply correlated(String content) {
+        return new MQTTReply(content, true);
+    }
+
+    public static MQTTReply uncorrelated(String content) {
+        return new MQTTReply(content, false);
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public boolean isCorrelated() {
+        return correlated;
+    }
+}
@@ -0,0 +1,86 @@
+package com.nari._mw.util;
+
+import com.nari._mw.pojo.dto.mqtt.connect.MQTTConnectionParams;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 配置传输使用的MQTT客户端
+ * MQTT 3.1.1 实现按主题排队响应；MQTT 5 实现通过响应主题和关联数据把响应直接交给对应请求。
+ */
+public interface MQTTTransferClient {
+
+    /**
+     * 按协议版本创建并连接非独占客户端
+     *
+     * @param protocolVersion 3 或 5
+     */
+    static MQTTTransferClient connect(MQTTConnectionParams params, int protocolVersion) {
+        return protocolVersion == 5 ? new MQTT5ClientWrapper(params) : new MQTTClientWrapper(params, false);
+    }
+
+    MQTTTransferClient withRateLimit(TransferRateLimiter rateLimiter, String deviceId);
+
+    /**
+     * 为发往该主题的消息设置代理端过期时间，MQTT 3.1.1 不支持，忽略
+     */
+    default MQTTTransferClient withMessageExpiry(String topic, long expirySeconds) {
+        return this;
+    }
+
+    /**
+     * 把该客户端之后发布和收到的消息写入流量记录，recorder为null时不记录；不支持记录的实现忽略
+     * 应在设置限速之后调用，以便记录目标设备ID
+     */
+    default MQTTTransferClient withRecorder(TrafficRecorder recorder) {
+        return this;
+    }
+
+    /**
+     * 设置调试日志中保留的消息内容最大字符数；不支持的实现忽略
+     */
+    default MQTTTransferClient withPayloadPreview(int maxChars) {
+        return this;
+    }
+
+    /**
+     * 连接意外丢失时在MQTT回调线程上调用 listener，主动断开不触发；不支持的实现忽略
+     */
+    default MQTTTransferClient onConnectionLost(Runnable listener) {
+        return this;
+    }
+
+    /**
+     * 设置发往该主题的消息QoS，未设置的主题使用QoS 1
+     */
+    MQTTTransferClient withQos(String topic, int qos);
+
+    CompletableFuture<Void> subscribe(String topic);
+
+    CompletableFuture<Void> publishMessage(String topic, String message);
+
+    /**
+     * 发布请求，响应发往 responseTopic
+     * MQTT 5 携带响应主题和关联数据，重传时使用同一关联标识；MQTT 3.1.1 等同于 publishMessage
+     */
+    default CompletableFuture<Void> publishRequest(String topic, String responseTopic, String message,
+                                                   String correlationId) {
+        return publishMessage(topic, message);
+    }
+
+    /**
+     * 等待请求的响应，超时返回null
+     * MQTT 5 携带关联数据的响应只交给对应请求并标记为已关联，未携带关联数据的响应交给该响应主题上最近一次请求；
+     * MQTT 3.1.1 返回该主题上的下一条消息。未关联的响应需由调用方判断是否对应本次请求
+     */
+    default MQTTReply pollReply(String responseTopic, String correlationId, long timeout) throws InterruptedException {
+        String message = poll(responseTopic, timeout);
+        return message == null ? null : MQTTReply.uncorrelated(message);
+    }
+
+    String poll(String topic, long timeout) throws InterruptedException;
+
+    String listen(String topic, long timeout) throws InterruptedException;
+
+    void disconnect();
+}
@@ -0,0 +1,53 @@
+package com.nari._mw.util;
+
+import javax.net.SocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+
+/**
+ * 关闭Nagle算法的套接字工厂
+ * Paho 默认不设置 TCP_NODELAY，请求-确认交互中小报文(PUBACK、切片确认)会被Nagle与对端延迟确认叠加阻塞约40ms，
+ * 逐片等待确认的传输因此被限制在每秒几十片。仅用于 tcp:// 连接，ssl:// 连接沿用Paho默认的TLS工厂。
+ */
+final class NoDelaySocketFactory extends SocketFactory {
+    static final NoDelaySocketFactory INSTANCE = new NoDelaySocketFactory();
+
+    private NoDelaySocketFactory() {
+    }
+
+    static boolean appliesTo(String serverURI) {
+        return serverURI != null && serverURI.startsWith("tcp://");
+    }
+
+    @Override
+    public Socket createSocket() throws IOException {
+        return noDelay(new Socket());
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return noDelay(new Socket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return noDelay(new Socket(host, port, localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        return noDelay(new Socket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        return noDelay(new Socket(address, port, localAddress, localPort));
+    }
+
+    private static Socket noDelay(Socket socket) throws SocketException {
+        socket.setTcpNoDelay(true);
+        return socket;
+    }
+}
@@ -0,0 +1,305 @@
+package com.nari._mw.util;
+
+import com.nari._mw.pojo.model.OutboundMessage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 单个设备的待下发消息日志
+ * 仅追加写入内存映射文件，记录格式为 [长度][类型][序号][内容][CRC32]，长度字段最后写入，
+ * 因此崩溃时未写完的记录在重新打开时被视为日志末尾。下发成功后追加确认记录；
+ * 空间不足时只保留未确认且未被取代的消息，写入临时文件后原子替换，全部确认后日志清空。
+ * 确认记录不逐条刷盘，由调用方在一批下发结束后调用 flush；崩溃丢失的确认只会导致消息重发。
+ */
+public class OutboundMessageLog implements Closeable {
+    private static final byte TYPE_MESSAGE = 1;
+    private static final byte TYPE_ACK = 2;
+    // 携带目标代理和用户名的消息记录
+    private static final byte TYPE_ROUTED_MESSAGE = 3;
+    private static final int LENGTH_BYTES = 4;
+    private static final int CRC_BYTES = 4;
+
+    private final Path path;
+    private final int initialSize;
+    private final boolean syncOnAppend;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int writePosition;
+    private long nextSequence = 1;
+    private final LinkedHashMap<Long, OutboundMessage> pending = new LinkedHashMap<>();
+    private final Map<String, Long> latestByKind = new HashMap<>();
+
+    private OutboundMessageLog(Path path, int initialSize, boolean syncOnAppend) {
+        this.path = path;
+        this.initialSize = initialSize;
+        this.syncOnAppend = syncOnAppend;
+    }
+
+    /**
+     * 打开（或创建）日志并恢复未确认的消息，每条追加的消息立即刷盘
+     */
+    public static OutboundMessageLog open(Path path, int initialSize) throws IOException {
+        return open(path, initialSize, true);
+    }
+
+    /**
+     * 打开（或创建）日志并恢复未确认的消息
+     *
+     * @param syncOnAppend 追加消息后是否立即刷盘；为false时由调用方通过 flush 批量刷盘
+     */
+    public static OutboundMessageLog open(Path path, int initialSize, boolean syncOnAppend) throws IOException {
+        OutboundMessageLog log = new OutboundMessageLog(path, initialSize, syncOnAppend);
+        log.map(Math.max(initialSize, Files.exists(path) ? (int) Files.size(path) : 0));
+        log.recover();
+        return log;
+    }
+
+    /**
+     * 追加一条消息，同种类尚未下发的旧消息被取代
+     */
+    public synchronized OutboundMessage append(String kind, String topic, String payload) throws IOException {
+        return append(kind, topic, payload, null, null);
+    }
+
+    /**
+     * 追加一条发往指定代理的消息，同种类尚未下发的旧消息被取代
+     *
+     * @param host     目标代理地址，为空时由调用方使用默认代理
+     * @param username 连接代理的用户名，密码不写入日志
+     */
+    public synchronized OutboundMessage append(String kind, String topic, String payload, String host,
+                                               String username) throws IOException {
+        OutboundMessage message = new OutboundMessage(nextSequence++, kind, topic, payload,
+                System.currentTimeMillis(), host, username);
+        ensureCapacity(messageBodyLength(message));
+        writeMessage(message);
+        if (syncOnAppend) {
+            buffer.force();
+        }
+        apply(message);
+        return message;
+    }
+
+    /**
+     * 确认消息已下发
+     */
+    public synchronized void acknowledge(long sequence) throws IOException {
+        if (pending.remove(sequence) == null) {
+            return;
+        }
+        if (pending.isEmpty()) {
+            // 全部下发完成，直接清空日志
+            rewrite();
+            return;
+        }
+
+        int bodyLength = 1 + 8;
+        ensureCapacity(bodyLength);
+        int bodyStart = writePosition + LENGTH_BYTES;
+        buffer.position(bodyStart);
+        buffer.put(TYPE_ACK).putLong(sequence);
+        commit(bodyStart, bodyLength);
+    }
+
+    /**
+     * 按序号顺序返回未确认的消息
+     */
+    public synchronized List<OutboundMessage> pending() {
+        return new ArrayList<>(pending.values());
+    }
+
+    public synchronized boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * 将已写入的记录(含确认)刷到磁盘
+     */
+    public synchronized void flush() {
+        buffer.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private void writeMessage(OutboundMessage message) {
+        byte[] kindBytes = message.getKind().getBytes(StandardCharsets.UTF_8);
+        byte[] topicBytes = message.getTopic().getBytes(StandardCharsets.UTF_8);
+        byte[] payloadBytes = message.getPayload().getBytes(StandardCharsets.UTF_8);
+        boolean routed = message.getHost() != null;
+
+        int bodyStart = writePosition + LENGTH_BYTES;
+        buffer.position(bodyStart);
+        buffer.put(routed ? TYPE_ROUTED_MESSAGE : TYPE_MESSAGE)
+                .putLong(message.getSequence())
+                .putLong(message.getEnqueuedAt())
+                .putShort((short) kindBytes.length).put(kindBytes)
+                .putShort((short) topicBytes.length).put(topicBytes)
+                .putInt(payloadBytes.length).put(payloadBytes);
+        if (routed) {
+            byte[] hostBytes = message.getHost().getBytes(StandardCharsets.UTF_8);
+            byte[] usernameBytes = message.getUsername() != null
+                    ? message.getUsername().getBytes(StandardCharsets.UTF_8) : new byte[0];
+            buffer.putShort((short) hostBytes.length).put(hostBytes)
+                    .putShort((short) usernameBytes.length).put(usernameBytes);
+        }
+        commit(bodyStart, buffer.position() - bodyStart);
+    }
+
+    private static int messageBodyLength(OutboundMessage message) {
+        int length = 1 + 8 + 8
+                + 2 + message.getKind().getBytes(StandardCharsets.UTF_8).length
+                + 2 + message.getTopic().getBytes(StandardCharsets.UTF_8).length
+                + 4 + message.getPayload().getBytes(StandardCharsets.UTF_8).length;
+        if (message.getHost() != null) {
+            length += 2 + message.getHost().getBytes(StandardCharsets.UTF_8).length
+                    + 2 + (message.getUsername() != null ? message.getUsername().getBytes(StandardCharsets.UTF_8).length : 0);
+        }
+        return length;
+    }
+
+    private void apply(OutboundMessage message) {
+        Long superseded = latestByKind.put(message.getKind(), message.getSequence());
+        if (superseded != null) {
+            pending.remove(superseded);
+        }
+        pending.put(message.getSequence(), message);
+    }
+
+    private void recover() {
+        int position = 0;
+        while (position + LENGTH_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            int bodyStart = position + LENGTH_BYTES;
+            if (length <= CRC_BYTES || bodyStart + length > buffer.capacity()) {
+                break;
+            }
+
+            int bodyLength = length - CRC_BYTES;
+            byte[] body = new byte[bodyLength];
+            buffer.get(bodyStart, body);
+            if (crc(body) != buffer.getInt(bodyStart + bodyLength)) {
+                break;
+            }
+
+            ByteBuffer record = ByteBuffer.wrap(body);
+            byte type = record.get();
+            long sequence = record.getLong();
+            if (type == TYPE_MESSAGE || type == TYPE_ROUTED_MESSAGE) {
+                long enqueuedAt = record.getLong();
+                String kind = readString(record, record.getShort());
+                String topic = readString(record, record.getShort());
+                String payload = readString(record, record.getInt());
+                String host = null;
+                String username = null;
+                if (type == TYPE_ROUTED_MESSAGE) {
+                    host = readString(record, record.getShort());
+                    username = readString(record, record.getShort());
+                    if (username.isEmpty()) {
+                        username = null;
+                    }
+                }
+                apply(new OutboundMessage(sequence, kind, topic, payload, enqueuedAt, host, username));
+            } else if (type == TYPE_ACK) {
+                pending.remove(sequence);
+            }
+            nextSequence = Math.max(nextSequence, sequence + 1);
+            position = bodyStart + length;
+        }
+        writePosition = position;
+    }
+
+    /**
+     * 写入CRC和结束标记后再写长度，使记录整体可见
+     */
+    private void commit(int bodyStart, int bodyLength) {
+        byte[] body = new byte[bodyLength];
+        buffer.get(bodyStart, body);
+        buffer.putInt(bodyStart + bodyLength, crc(body));
+
+        int next = bodyStart + bodyLength + CRC_BYTES;
+        if (next + LENGTH_BYTES <= buffer.capacity()) {
+            buffer.putInt(next, 0);
+        }
+        buffer.putInt(writePosition, bodyLength + CRC_BYTES);
+        writePosition = next;
+    }
+
+    private void ensureCapacity(int bodyLength) throws IOException {
+        int required = LENGTH_BYTES + bodyLength + CRC_BYTES + LENGTH_BYTES;
+        if (writePosition + required <= buffer.capacity()) {
+            return;
+        }
+        rewrite();
+        if (writePosition + required > buffer.capacity()) {
+            remap(Math.max(buffer.capacity() * 2, writePosition + required));
+        }
+    }
+
+    /**
+     * 只保留未确认的消息重写日志：写入临时文件后原子替换并重新映射
+     */
+    private void rewrite() throws IOException {
+        int required = LENGTH_BYTES;
+        for (OutboundMessage message : pending.values()) {
+            required += LENGTH_BYTES + messageBodyLength(message) + CRC_BYTES;
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".compact");
+        Files.deleteIfExists(temp);
+
+        OutboundMessageLog compacted = new OutboundMessageLog(temp, initialSize, false);
+        compacted.map(Math.max(initialSize, required));
+        for (OutboundMessage message : pending.values()) {
+            compacted.writeMessage(message);
+        }
+        int compactedPosition = compacted.writePosition;
+        compacted.close();
+
+        channel.close();
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        map(Math.max(initialSize, (int) Files.size(path)));
+        writePosition = compactedPosition;
+    }
+
+    private void remap(int size) throws IOException {
+        buffer.force();
+        channel.close();
+        map(size);
+    }
+
+    private void map(int size) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private static String readString(ByteBuffer record, int length) {
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int crc(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,67 @@
+package com.nari._mw.util;
+
+/**
+ * 重传超时估计，参照TCP (RFC 6298)
+ * SRTT、RTTVAR按 1/8、1/4 平滑，RTO = SRTT + 4 * RTTVAR；超时未响应时RTO翻倍退避，直到下一个有效样本。
+ * 调用方只应对未重传过的消息采样(Karn算法)，否则无法区分响应对应哪次发送。
+ */
+public class RtoEstimator {
+    private static final double ALPHA = 0.125;
+    private static final double BETA = 0.25;
+    private static final int K = 4;
+
+    private final long minRtoMs;
+    private final long maxRtoMs;
+    private double srtt = -1;
+    private double rttvar;
+    private long rto;
+
+    public RtoEstimator(long initialRtoMs, long minRtoMs, long maxRtoMs) {
+        this.minRtoMs = minRtoMs;
+        this.maxRtoMs = maxRtoMs;
+        this.rto = clamp(initialRtoMs);
+    }
+
+    /**
+     * 记录一次往返时间
+     */
+    public synchronized void sample(long rttMs) {
+        if (srtt < 0) {
+            srtt = rttMs;
+            rttvar = rttMs / 2.0;
+        } else {
+            rttvar = (1 - BETA) * rttvar + BETA * Math.abs(srtt - rttMs);
+            srtt = (1 - ALPHA) * srtt + ALPHA * rttMs;
+        }
+        rto = clamp((long) Math.ceil(srtt + Math.max(1, K * rttvar)));
+    }
+
+    /**
+     * 超时未响应，RTO翻倍
+     *
+     * @return 退避后的RTO
+     */
+    public synchronized long backoff() {
+        rto = clamp(rto * 2);
+        return rto;
+    }
+
+    public synchronized long getRtoMs() {
+        return rto;
+    }
+
+    /**
+     * 尚无样本时为-1
+     */
+    public synchronized long getSrttMs() {
+        return Math.round(srtt);
+    }
+
+    public synchronized long getRttvarMs() {
+        return Math.round(rttvar);
+    }
+
+    private long clamp(long value) {
+        return Math.max(minRtoMs, Math.min(maxRtoMs, value));
+    }
+}
@@ -0,0 +1,160 @@
+package com.nari._mw.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * 乱序切片组装器
+ * 切片按位置直接写入文件，不在内存中缓存；MD5随已连续到达的前缀增量计算，
+ * 前缀之后的空缺补齐时从文件读回后续已到达的切片继续计算，每个字节只参与一次摘要。
+ * 非线程安全，由执行回读的线程独占使用。
+ */
+public final class SliceAssembler implements Closeable {
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int sliceSize;
+    private final int sliceCount;
+    private final BitSet received;
+    private final MessageDigest digest;
+    private final ByteBuffer readBuffer;
+    private int digestedSlices;
+
+    /**
+     * @param path      目标文件，已存在时截断
+     * @param fileSize  文件总大小
+     * @param sliceSize 切片大小
+     */
+    public SliceAssembler(Path path, long fileSize, int sliceSize) throws IOException {
+        if (fileSize < 0 || sliceSize <= 0) {
+            throw new IllegalArgumentException("无效的文件大小或切片大小: " + fileSize + "/" + sliceSize);
+        }
+        long count = (fileSize + sliceSize - 1) / sliceSize;
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("切片数量过多: " + count);
+        }
+        this.fileSize = fileSize;
+        this.sliceSize = sliceSize;
+        this.sliceCount = (int) count;
+        this.received = new BitSet(sliceCount);
+        this.readBuffer = ByteBuffer.allocate(sliceSize);
+        try {
+            this.digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("计算MD5时出错", e);
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.READ, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    public int getSliceCount() {
+        return sliceCount;
+    }
+
+    /**
+     * 写入切片
+     *
+     * @param number 切片序号，从1开始
+     * @return 是否首次收到该切片；重复切片不再写入
+     * @throws IllegalArgumentException 序号越界或长度与元数据不符
+     */
+    public boolean write(int number, byte[] data) throws IOException {
+        int index = number - 1;
+        if (index < 0 || index >= sliceCount) {
+            throw new IllegalArgumentException("切片序号越界: " + number);
+        }
+        long position = (long) index * sliceSize;
+        if (data == null || data.length != expectedLength(position)) {
+            throw new IllegalArgumentException("切片长度与元数据不符: " + number);
+        }
+        if (received.get(index)) {
+            return false;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+        received.set(index);
+
+        if (index == digestedSlices) {
+            digest.update(data);
+            digestedSlices++;
+            advanceDigest();
+        }
+        return true;
+    }
+
+    public boolean isComplete() {
+        return digestedSlices == sliceCount;
+    }
+
+    public int getReceivedCount() {
+        return received.cardinality();
+    }
+
+    /**
+     * 尚未收到的切片序号，按序号升序，最多返回 limit 个
+     */
+    public List<Integer> missing(int limit) {
+        List<Integer> missing = new ArrayList<>();
+        for (int index = received.nextClearBit(0); index < sliceCount && missing.size() < limit;
+             index = received.nextClearBit(index + 1)) {
+            missing.add(index + 1);
+        }
+        return missing;
+    }
+
+    /**
+     * 全部切片到达后的文件MD5(32位十六进制小写)
+     */
+    public String md5() {
+        if (!isComplete()) {
+            throw new IllegalStateException("切片尚未全部到达");
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 将数据刷入磁盘
+     */
+    public void force() throws IOException {
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * 从文件读回连续前缀之后已到达的切片，推进摘要
+     */
+    private void advanceDigest() throws IOException {
+        while (digestedSlices < sliceCount && received.get(digestedSlices)) {
+            long position = (long) digestedSlices * sliceSize;
+            readBuffer.clear().limit(expectedLength(position));
+            while (readBuffer.hasRemaining()) {
+                if (channel.read(readBuffer, position + readBuffer.position()) < 0) {
+                    throw new IOException("读回切片时文件提前结束: " + (digestedSlices + 1));
+                }
+            }
+            readBuffer.flip();
+            digest.update(readBuffer);
+            digestedSlices++;
+        }
+    }
+
+    private int expectedLength(long position) {
+        return (int) Math.min(sliceSize, fileSize - position);
+    }
+}
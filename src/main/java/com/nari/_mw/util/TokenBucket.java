@@ -0,0 +1,107 @@
+package com.nari._mw.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶限速器
+ * 以字节为令牌，容量为一秒的速率；单次请求超过剩余令牌时允许透支，由后续请求等待偿还，
+ * 因此大于桶容量的消息也不会被永久阻塞。速率小于等于0表示不限速。
+ */
+public class TokenBucket {
+    private long ratePerSecond;
+    private double tokens;
+    private long lastRefillNanos;
+    private long lastReserveNanos;
+
+    public TokenBucket(long ratePerSecond) {
+        this.ratePerSecond = ratePerSecond;
+        this.tokens = Math.max(ratePerSecond, 0);
+        this.lastRefillNanos = System.nanoTime();
+        this.lastReserveNanos = lastRefillNanos;
+    }
+
+    /**
+     * 获取当前速率（字节/秒）
+     */
+    public synchronized long getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    /**
+     * 运行时调整速率，已有透支按新速率偿还
+     *
+     * @param ratePerSecond 新速率（字节/秒），小于等于0表示不限速
+     */
+    public synchronized void setRatePerSecond(long ratePerSecond) {
+        long now = System.nanoTime();
+        if (this.ratePerSecond > 0) {
+            refill(now);
+        } else {
+            // 由不限速切换为限速时从满桶开始
+            tokens = Math.max(ratePerSecond, 0);
+        }
+        this.ratePerSecond = ratePerSecond;
+        this.lastRefillNanos = now;
+        if (ratePerSecond > 0 && tokens > ratePerSecond) {
+            tokens = ratePerSecond;
+        }
+    }
+
+    /**
+     * 预留指定数量的令牌
+     *
+     * @param permits 令牌数（字节数）
+     * @return 调用方需要等待的纳秒数
+     */
+    public synchronized long reserve(long permits) {
+        long now = System.nanoTime();
+        lastReserveNanos = now;
+        if (ratePerSecond <= 0) {
+            return 0;
+        }
+
+        refill(now);
+        tokens -= permits;
+        if (tokens >= 0) {
+            return 0;
+        }
+        return (long) (-tokens * TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+    }
+
+    /**
+     * 获取令牌，不足时阻塞等待
+     *
+     * @param permits 令牌数（字节数）
+     * @throws InterruptedException 如果等待时线程被中断
+     */
+    public void acquire(long permits) throws InterruptedException {
+        long waitNanos = reserve(permits);
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * 桶已满且指定时间内未被使用时，与新建的桶等价，可以丢弃
+     *
+     * @param idleNanos 未使用时长（纳秒）
+     */
+    public synchronized boolean isIdle(long now, long idleNanos) {
+        if (now - lastReserveNanos < idleNanos) {
+            return false;
+        }
+        if (ratePerSecond <= 0) {
+            return true;
+        }
+        refill(now);
+        return tokens >= ratePerSecond;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(ratePerSecond, tokens + (double) elapsed * ratePerSecond / TimeUnit.SECONDS.toNanos(1));
+            lastRefillNanos = now;
+        }
+    }
+}
@@ -9,6 +9,11 @@ import org.springframework.stereotype.Component;
 public class TopicBuilder {
     private static final String PUBLISH_TOPIC_TEMPLATE = "power/10mw/publish/%s";
     private static final String SUBSCRIBE_TOPIC_TEMPLATE = "power/10mw/subscribe/%s";
+    private static final String SUBSCRIBE_TOPIC_PREFIX = "power/10mw/subscribe/";
+    private static final String PRESENCE_TOPIC_PREFIX = "power/10mw/presence/";
+    private static final String HEARTBEAT_TOPIC_PREFIX = "power/10mw/heartbeat/";
+    private static final String GROUP_TOPIC_PREFIX = "power/10mw/group/";
+    private static final String GROUP_ACK_LEVEL = "/ack/";
 
     public String buildPublishTopic(String deviceId) {
         return String.format(PUBLISH_TOPIC_TEMPLATE, deviceId);
@@ -16,4 +21,87 @@ public class TopicBuilder {
     public String buildSubscribeTopic(String deviceId) {
         return String.format(SUBSCRIBE_TOPIC_TEMPLATE, deviceId);
     }
+
+    /**
+     * 匹配所有设备subscribe主题的通配符过滤器
+     */
+    public String buildSubscribeWildcardTopic() {
+        return SUBSCRIBE_TOPIC_PREFIX + "+";
+    }
+
+    /**
+     * 从具体的subscribe主题中解析设备ID
+     *
+     * @return 设备ID，不是subscribe主题时返回null
+     */
+    public String parseSubscribeTopicDeviceId(String topic) {
+        return parseDeviceId(topic, SUBSCRIBE_TOPIC_PREFIX);
+    }
+
+    /**
+     * 控制器上线("online")和遗嘱("offline")消息的主题
+     */
+    public String buildPresenceTopic(String deviceId) {
+        return PRESENCE_TOPIC_PREFIX + deviceId;
+    }
+
+    public String buildPresenceWildcardTopic() {
+        return PRESENCE_TOPIC_PREFIX + "+";
+    }
+
+    public String parsePresenceTopicDeviceId(String topic) {
+        return parseDeviceId(topic, PRESENCE_TOPIC_PREFIX);
+    }
+
+    /**
+     * 控制器定期发布心跳的主题
+     */
+    public String buildHeartbeatTopic(String deviceId) {
+        return HEARTBEAT_TOPIC_PREFIX + deviceId;
+    }
+
+    public String buildHeartbeatWildcardTopic() {
+        return HEARTBEAT_TOPIC_PREFIX + "+";
+    }
+
+    public String parseHeartbeatTopicDeviceId(String topic) {
+        return parseDeviceId(topic, HEARTBEAT_TOPIC_PREFIX);
+    }
+
+    /**
+     * 组内所有控制器共同订阅的组主题
+     */
+    public String buildGroupTopic(String groupId) {
+        return GROUP_TOPIC_PREFIX + groupId;
+    }
+
+    /**
+     * 组成员确认组下发的主题
+     */
+    public String buildGroupAckTopic(String groupId, String deviceId) {
+        return GROUP_TOPIC_PREFIX + groupId + GROUP_ACK_LEVEL + deviceId;
+    }
+
+    public String buildGroupAckWildcardTopic(String groupId) {
+        return GROUP_TOPIC_PREFIX + groupId + GROUP_ACK_LEVEL + "+";
+    }
+
+    public String parseGroupAckTopicDeviceId(String groupId, String topic) {
+        return parseDeviceId(topic, GROUP_TOPIC_PREFIX + groupId + GROUP_ACK_LEVEL);
+    }
+
+    /**
+     * 作为主题层级的标识(设备ID、组ID)不能为空，且不能包含层级分隔符 / 和通配符 + #
+     */
+    public static boolean isValidTopicLevel(String name) {
+        return name != null && !name.isEmpty()
+                && name.chars().noneMatch(c -> c == '/' || c == '+' || c == '#');
+    }
+
+    private static String parseDeviceId(String topic, String prefix) {
+        if (topic == null || !topic.startsWith(prefix) || topic.length() == prefix.length()) {
+            return null;
+        }
+        return topic.substring(prefix.length());
+    }
 }
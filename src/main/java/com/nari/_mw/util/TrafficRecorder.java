@@ -0,0 +1,193 @@
+package com.nari._mw.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * MQTT流量记录器：把客户端发布和收到的每条消息连同纳秒时间戳追加到内存映射的二进制日志
+ * 文件按容量一次性映射，写满后停止记录并计数丢弃的消息；主题首次出现时写入一次，之后按编号引用。
+ * 记录先写内容再写类型字节，读取方遇到类型0即为日志末尾，运行中也可读取已写入的部分。
+ * 格式见 {@link TrafficRecording}。
+ */
+@Slf4j
+public final class TrafficRecorder implements Closeable {
+    static final byte[] MAGIC = "10MWREC1".getBytes(StandardCharsets.US_ASCII);
+    static final byte END = 0;
+    static final byte SESSION = 1;
+    static final byte TOPIC = 2;
+    static final byte PUBLISHED = 3;
+    static final byte RECEIVED = 4;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long baseNanos = System.nanoTime();
+    private final Map<String, Short> topicIds = new HashMap<>();
+    private int nextSessionId;
+    private long dropped;
+    private boolean closed;
+
+    private TrafficRecorder(Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * 创建记录文件，已存在时覆盖
+     *
+     * @param capacity 文件大小(字节)，记录总量超出后不再写入
+     */
+    public static TrafficRecorder create(Path path, int capacity) throws IOException {
+        if (capacity < MAGIC.length + Long.BYTES) {
+            throw new IllegalArgumentException("记录文件容量过小: " + capacity);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            buffer.put(MAGIC).putLong(System.currentTimeMillis());
+            return new TrafficRecorder(path, channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * 因容量不足未写入的消息数
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * 开始记录一个客户端连接
+     *
+     * @param deviceId 目标设备ID，可为空
+     */
+    public synchronized Session openSession(String clientId, String deviceId, String brokerUri) {
+        int id = ++nextSessionId;
+        byte[] client = utf8(clientId);
+        byte[] device = utf8(deviceId);
+        byte[] broker = utf8(brokerUri);
+        int start = reserve(Integer.BYTES + Long.BYTES + 3 * Short.BYTES + client.length + device.length + broker.length);
+        if (start >= 0) {
+            buffer.putInt(id).putLong(System.nanoTime() - baseNanos);
+            putShortString(client);
+            putShortString(device);
+            putShortString(broker);
+            buffer.put(start, SESSION);
+        }
+        return new Session(id);
+    }
+
+    private synchronized void append(byte type, int session, String topic, byte[] payload) {
+        long nanos = System.nanoTime() - baseNanos;
+        Short topicId = topicId(topic);
+        if (topicId == null) {
+            return;
+        }
+        int start = reserve(Integer.BYTES + Long.BYTES + Short.BYTES + Integer.BYTES + payload.length);
+        if (start < 0) {
+            return;
+        }
+        buffer.putInt(session).putLong(nanos).putShort(topicId).putInt(payload.length).put(payload);
+        buffer.put(start, type);
+    }
+
+    /**
+     * 主题编号，首次出现时写入主题记录；容量不足时返回null
+     */
+    private Short topicId(String topic) {
+        Short id = topicIds.get(topic);
+        if (id != null) {
+            return id;
+        }
+        if (topicIds.size() > Short.MAX_VALUE) {
+            dropped++;
+            return null;
+        }
+        byte[] name = utf8(topic);
+        int start = reserve(Short.BYTES + Short.BYTES + name.length);
+        if (start < 0) {
+            return null;
+        }
+        id = (short) topicIds.size();
+        buffer.putShort(id);
+        putShortString(name);
+        buffer.put(start, TOPIC);
+        topicIds.put(topic, id);
+        return id;
+    }
+
+    /**
+     * 预留类型字节和记录内容，返回类型字节的位置；空间不足时返回-1
+     */
+    private int reserve(int length) {
+        if (closed || buffer.remaining() < 1 + length) {
+            if (!closed && dropped++ == 0) {
+                log.warn("流量记录文件已满，停止记录: {}", path);
+            }
+            return -1;
+        }
+        int start = buffer.position();
+        buffer.put(END);
+        return start;
+    }
+
+    private void putShortString(byte[] value) {
+        buffer.putShort((short) value.length).put(value);
+    }
+
+    private static byte[] utf8(String value) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("字符串过长: " + bytes.length);
+        }
+        return bytes;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        buffer.force();
+        channel.close();
+        log.info("流量记录已关闭: {}, 写入 {} 字节, 丢弃 {} 条消息", path, buffer.position(), dropped);
+    }
+
+    /**
+     * 单个客户端连接的记录入口
+     */
+    public final class Session {
+        private final int id;
+
+        private Session(int id) {
+            this.id = id;
+        }
+
+        public void published(String topic, byte[] payload) {
+            append(PUBLISHED, id, topic, payload);
+        }
+
+        public void received(String topic, byte[] payload) {
+            append(RECEIVED, id, topic, payload);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.nari._mw.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 读取 {@link TrafficRecorder} 写入的流量记录
+ * <pre>
+ * 文件头: "10MWREC1" | 记录开始时间(epoch毫秒, long)
+ * 记录:   类型(byte) | 内容，类型0表示末尾
+ *   1 连接: 连接编号(int) | 纳秒(long) | 客户端ID | 设备ID | 代理地址   (字符串均为 长度(short) + UTF-8)
+ *   2 主题: 主题编号(short) | 主题
+ *   3 发布 / 4 收到: 连接编号(int) | 纳秒(long) | 主题编号(short) | 负载长度(int) | 负载
+ * </pre>
+ * 纳秒为相对记录开始的单调时间，整数均为大端序。
+ */
+public final class TrafficRecording {
+    private final long startedAt;
+    private final List<Session> sessions;
+
+    private TrafficRecording(long startedAt, List<Session> sessions) {
+        this.startedAt = startedAt;
+        this.sessions = sessions;
+    }
+
+    public static TrafficRecording read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] magic = new byte[TrafficRecorder.MAGIC.length];
+            if (buffer.remaining() < magic.length + Long.BYTES) {
+                throw new IOException("不是流量记录文件: " + path);
+            }
+            buffer.get(magic);
+            if (!Arrays.equals(magic, TrafficRecorder.MAGIC)) {
+                throw new IOException("不是流量记录文件: " + path);
+            }
+            long startedAt = buffer.getLong();
+
+            Map<Integer, Session> sessions = new LinkedHashMap<>();
+            Map<Short, String> topics = new LinkedHashMap<>();
+            while (buffer.hasRemaining()) {
+                byte type = buffer.get();
+                if (type == TrafficRecorder.END) {
+                    break;
+                }
+                switch (type) {
+                    case TrafficRecorder.SESSION: {
+                        int id = buffer.getInt();
+                        long nanos = buffer.getLong();
+                        sessions.put(id, new Session(id, nanos, getShortString(buffer), getShortString(buffer),
+                                getShortString(buffer), new ArrayList<>()));
+                        break;
+                    }
+                    case TrafficRecorder.TOPIC: {
+                        short id = buffer.getShort();
+                        topics.put(id, getShortString(buffer));
+                        break;
+                    }
+                    case TrafficRecorder.PUBLISHED:
+                    case TrafficRecorder.RECEIVED: {
+                        Session session = sessions.get(buffer.getInt());
+                        long nanos = buffer.getLong();
+                        String topic = topics.get(buffer.getShort());
+                        byte[] payload = new byte[buffer.getInt()];
+                        buffer.get(payload);
+                        if (session == null || topic == null) {
+                            throw new IOException("流量记录引用了未定义的连接或主题: " + path);
+                        }
+                        session.getMessages().add(new Message(type == TrafficRecorder.PUBLISHED, nanos, topic, payload));
+                        break;
+                    }
+                    default:
+                        throw new IOException("未知的记录类型 " + type + ": " + path);
+                }
+            }
+            return new TrafficRecording(startedAt, new ArrayList<>(sessions.values()));
+        }
+    }
+
+    private static String getShortString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public List<Session> getSessions() {
+        return sessions;
+    }
+
+    /**
+     * 设备的第一个有消息的连接，不存在时返回null
+     */
+    public Session firstSession(String deviceId) {
+        for (Session session : sessions) {
+            if (session.getDeviceId().equals(deviceId) && !session.getMessages().isEmpty()) {
+                return session;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 记录中的一个客户端连接，消息按记录顺序排列
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Session {
+        private int id;
+        private long openedNanos;
+        private String clientId;
+        private String deviceId;
+        private String brokerUri;
+        private List<Message> messages;
+    }
+
+    /**
+     * @param published true为客户端发布，false为客户端收到
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Message {
+        private boolean published;
+        private long nanos;
+        private String topic;
+        private byte[] payload;
+    }
+}
@@ -0,0 +1,145 @@
+package com.nari._mw.util;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.nari._mw.pojo.dto.mqtt.connect.MQTTConnectionParams;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按流量记录回放设备一侧的行为，作为被测传输的模拟设备
+ * 被测客户端发来的第k条消息按记录中该连接第k条发布作答：发出记录时在它之后、下一条发布之前收到的全部消息，
+ * 并保持记录中的相对延迟(除以speed)；记录中没有响应的发布(如设备丢包)同样不作答。
+ * 响应中记录时的任务号替换为实时请求的任务号。被测客户端的发布顺序与记录不同(如重传时机不同)时，
+ * 之后的响应按新的顺序对应，回放不再与记录逐条一致。
+ */
+@Slf4j
+public final class TrafficReplayer implements Closeable {
+    private static final String TASK_NO = "taskNo";
+
+    private final List<Step> steps = new ArrayList<>();
+    private final double speed;
+    private final Map<String, String> taskNos = new ConcurrentHashMap<>();
+    private final AtomicInteger received = new AtomicInteger();
+    private final ScheduledExecutorService scheduler;
+    private final MQTTClientWrapper client;
+
+    /**
+     * 连接代理并订阅记录中被测客户端发布过的主题
+     *
+     * @param session 记录中的被测客户端连接
+     * @param speed   回放速度，1为原速，2为两倍速
+     */
+    public TrafficReplayer(TrafficRecording.Session session, MQTTConnectionParams params, double speed) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("回放速度必须大于0: " + speed);
+        }
+        this.speed = speed;
+        Set<String> topics = new LinkedHashSet<>();
+        for (TrafficRecording.Message message : session.getMessages()) {
+            if (message.isPublished()) {
+                steps.add(new Step(message));
+                topics.add(message.getTopic());
+            } else if (!steps.isEmpty()) {
+                steps.get(steps.size() - 1).responses.add(message);
+            }
+        }
+
+        this.client = new MQTTClientWrapper(params, false);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "traffic-replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (String topic : topics) {
+                client.subscribe(topic, this::onMessage).join();
+            }
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+        log.info("开始回放设备 {} 的记录: {} 条请求, {} 倍速", session.getDeviceId(), steps.size(), speed);
+    }
+
+    /**
+     * 记录中被测客户端的发布数
+     */
+    public int getRecordedSteps() {
+        return steps.size();
+    }
+
+    /**
+     * 已收到的被测客户端消息数
+     */
+    public int getReplayedSteps() {
+        return received.get();
+    }
+
+    private void onMessage(String topic, byte[] payload) {
+        int index = received.getAndIncrement();
+        if (index >= steps.size()) {
+            log.warn("被测客户端的消息超出记录范围，不作答 - Topic: {}, 序号: {}", topic, index + 1);
+            return;
+        }
+        Step step = steps.get(index);
+        if (!topic.equals(step.request.getTopic())) {
+            log.warn("回放偏离记录 - 序号: {}, 记录主题: {}, 实际主题: {}", index + 1, step.request.getTopic(), topic);
+        }
+        String recordedTaskNo = taskNo(step.request.getPayload());
+        String liveTaskNo = taskNo(payload);
+        if (recordedTaskNo != null && liveTaskNo != null) {
+            taskNos.put(recordedTaskNo, liveTaskNo);
+        }
+
+        for (TrafficRecording.Message response : step.responses) {
+            long delay = (long) ((response.getNanos() - step.request.getNanos()) / speed);
+            String content = rewrite(new String(response.getPayload(), StandardCharsets.UTF_8));
+            scheduler.schedule(() -> client.publishMessage(response.getTopic(), content),
+                    Math.max(0, delay), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private String rewrite(String content) {
+        for (Map.Entry<String, String> entry : taskNos.entrySet()) {
+            content = content.replace(entry.getKey(), entry.getValue());
+        }
+        return content;
+    }
+
+    private static String taskNo(byte[] payload) {
+        try {
+            JSONObject json = JSON.parseObject(new String(payload, StandardCharsets.UTF_8));
+            return json != null ? json.getString(TASK_NO) : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        client.disconnect();
+    }
+
+    private static final class Step {
+        private final TrafficRecording.Message request;
+        private final List<TrafficRecording.Message> responses = new ArrayList<>();
+
+        private Step(TrafficRecording.Message request) {
+            this.request = request;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.nari._mw.util;
+
+import com.nari._mw.config.TransferLoggingConfig;
+import com.nari._mw.jfr.TransferEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * 传输事件日志
+ * 事件以key=value结构化格式写入独立的logger，由后台线程异步输出，传输线程只做入队。
+ * 每次传输结束输出一条INFO汇总；逐切片明细仅对开启明细的设备输出，其余设备按采样率输出DEBUG。
+ */
+@Slf4j
+@Component
+public class TransferEventLogger {
+    private static final Logger EVENT_LOG = LoggerFactory.getLogger("com.nari._mw.transfer");
+
+    private final TransferLoggingConfig config;
+    private final Set<String> detailDevices = ConcurrentHashMap.newKeySet();
+    private final BlockingQueue<Runnable> queue;
+    private final AtomicLong sliceEventCounter = new AtomicLong();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final Thread writer;
+
+    public TransferEventLogger(TransferLoggingConfig config) {
+        this.config = config;
+        this.detailDevices.addAll(config.getDetailDevices());
+        this.queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        this.writer = new Thread(this::drain, "transfer-event-logger");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * 开始记录一次传输
+     */
+    public TransferTrace begin(String deviceId, String taskNo, long fileSize, int sliceCount) {
+        return new TransferTrace(deviceId, taskNo, fileSize, sliceCount);
+    }
+
+    public void enableDetail(String deviceId) {
+        detailDevices.add(deviceId);
+    }
+
+    public void disableDetail(String deviceId) {
+        detailDevices.remove(deviceId);
+    }
+
+    public Set<String> getDetailDevices() {
+        return Set.copyOf(detailDevices);
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    /**
+     * 日志中保留的消息内容最大字符数，传给传输使用的MQTT客户端
+     */
+    public int getPayloadPreviewLength() {
+        return config.getPayloadPreviewLength();
+    }
+
+    /**
+     * 将消息内容缩略为长度、CRC32和截断预览，避免在日志中写入完整负载
+     *
+     * @param payload    消息内容
+     * @param maxPreview 预览保留的最大字符数
+     * @return 缩略描述
+     */
+    public static String abbreviate(String payload, int maxPreview) {
+        if (payload == null) {
+            return "null";
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload.getBytes(StandardCharsets.UTF_8));
+        String preview = payload.length() <= maxPreview ? payload : payload.substring(0, maxPreview) + "...";
+        return "len=" + payload.length() + " crc32=" + Long.toHexString(crc.getValue()) + " preview=" + preview;
+    }
+
+    public String abbreviate(String payload) {
+        return abbreviate(payload, config.getPayloadPreviewLength());
+    }
+
+    private boolean shouldLogSlice(String deviceId) {
+        if (detailDevices.contains(deviceId)) {
+            return true;
+        }
+        int rate = config.getSliceSampleRate();
+        return rate > 0 && EVENT_LOG.isDebugEnabled() && sliceEventCounter.incrementAndGet() % rate == 0;
+    }
+
+    private void submit(Runnable event) {
+        if (!queue.offer(event)) {
+            droppedEvents.incrementAndGet();
+        }
+    }
+
+    private void drain() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                queue.take().run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.warn("输出传输事件日志失败", e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.interrupt();
+        // 输出剩余事件，保证传输汇总不丢失
+        Runnable event;
+        while ((event = queue.poll()) != null) {
+            event.run();
+        }
+    }
+
+    /**
+     * 单次传输的事件记录，由执行传输的线程独占使用
+     */
+    public final class TransferTrace {
+        private final String deviceId;
+        private final String taskNo;
+        private final long fileSize;
+        private final int sliceCount;
+        private final long startNanos = System.nanoTime();
+        private final boolean detail;
+        private final TransferEvent event;
+        private long bytesSent;
+        private int slicesAcked;
+        private int retries;
+
+        private TransferTrace(String deviceId, String taskNo, long fileSize, int sliceCount) {
+            this.deviceId = deviceId;
+            this.taskNo = taskNo;
+            this.fileSize = fileSize;
+            this.sliceCount = sliceCount;
+            this.detail = detailDevices.contains(deviceId);
+            this.event = TransferEvent.start(deviceId, taskNo, fileSize, sliceCount);
+        }
+
+        /**
+         * 记录一个切片已被设备确认
+         *
+         * @param number  切片序号
+         * @param bytes   切片字节数
+         * @param retries 该切片的重发次数
+         */
+        public void sliceAcked(int number, int bytes, int retries) {
+            this.bytesSent += (long) bytes * (retries + 1);
+            this.slicesAcked++;
+            this.retries += retries;
+
+            if (shouldLogSlice(deviceId)) {
+                long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                boolean info = detail;
+                submit(() -> {
+                    String format = "event=slice_ack device={} taskNo={} slice={}/{} bytes={} retries={} elapsedMs={}";
+                    if (info) {
+                        EVENT_LOG.info(format, deviceId, taskNo, number, sliceCount, bytes, retries, elapsedMs);
+                    } else {
+                        EVENT_LOG.debug(format, deviceId, taskNo, number, sliceCount, bytes, retries, elapsedMs);
+                    }
+                });
+            }
+        }
+
+        /**
+         * 记录一次非切片消息（元数据、最终校验）的重发
+         */
+        public void retried(int count) {
+            this.retries += count;
+        }
+
+        public void completed() {
+            summary("success", null);
+        }
+
+        public void failed(Throwable cause) {
+            summary("failure", cause != null ? cause.getMessage() : null);
+        }
+
+        private void summary(String status, String error) {
+            long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            int acked = slicesAcked;
+            long bytes = bytesSent;
+            int totalRetries = retries;
+            event.complete(acked, bytes, totalRetries, "success".equals(status), error);
+            submit(() -> EVENT_LOG.info(
+                    "event=transfer_summary device={} taskNo={} status={} fileSize={} slices={}/{} bytesSent={} retries={} durationMs={} error={}",
+                    deviceId, taskNo, status, fileSize, acked, sliceCount, bytes, totalRetries, durationMs, error));
+        }
+    }
+}
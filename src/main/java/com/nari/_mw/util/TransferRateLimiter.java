@@ -0,0 +1,152 @@
+package com.nari._mw.util;
+
+import com.nari._mw.config.TransferRateLimitConfig;
+import com.nari._mw.pojo.dto.request.RateLimitUpdateRequest;
+import com.nari._mw.pojo.dto.response.RateLimitResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * 传输限速器
+ * 每次发布同时受设备、MQTT代理和全局三级令牌桶约束，等待时间取三者最大值。
+ * 代理和设备令牌桶按需创建，已满且长时间未使用的桶定期清理。
+ */
+@Slf4j
+@Component
+public class TransferRateLimiter {
+    private final TokenBucket globalBucket;
+    private final ConcurrentHashMap<String, TokenBucket> brokerBuckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, TokenBucket> deviceBuckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> deviceOverrides = new ConcurrentHashMap<>();
+    private volatile long brokerBytesPerSecond;
+    private volatile long deviceBytesPerSecond;
+    private final long idleEvictNanos;
+    private final AtomicLong lastEvictNanos = new AtomicLong(System.nanoTime());
+
+    public TransferRateLimiter(TransferRateLimitConfig config) {
+        this.globalBucket = new TokenBucket(config.getGlobalBytesPerSecond());
+        this.brokerBytesPerSecond = config.getBrokerBytesPerSecond();
+        this.deviceBytesPerSecond = config.getDeviceBytesPerSecond();
+        this.deviceOverrides.putAll(config.getDevices());
+        this.idleEvictNanos = TimeUnit.MILLISECONDS.toNanos(config.getIdleEvictMs());
+    }
+
+    /**
+     * 为一次发布获取令牌，不足时阻塞等待
+     *
+     * @param deviceId  设备ID，可为空
+     * @param serverURI MQTT代理地址
+     * @param bytes     消息字节数
+     * @throws InterruptedException 如果等待时线程被中断
+     */
+    public void acquire(String deviceId, String serverURI, int bytes) throws InterruptedException {
+        long waitNanos = reserve(deviceId, serverURI, bytes);
+        if (waitNanos > 0) {
+            log.debug("发布限速等待 {} ms - 设备: {}, 代理: {}", waitNanos / 1_000_000, deviceId, serverURI);
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * 在三级令牌桶中预留令牌
+     *
+     * @return 需要等待的纳秒数
+     */
+    long reserve(String deviceId, String serverURI, int bytes) {
+        evictIdleBuckets();
+        long waitNanos = globalBucket.reserve(bytes);
+        if (serverURI != null) {
+            waitNanos = Math.max(waitNanos, reserve(brokerBuckets, serverURI, k -> brokerBytesPerSecond, bytes));
+        }
+        if (deviceId != null) {
+            waitNanos = Math.max(waitNanos, reserve(deviceBuckets, deviceId, this::deviceRate, bytes));
+        }
+        return waitNanos;
+    }
+
+    /**
+     * 当前保留的代理和设备令牌桶数量
+     */
+    int bucketCount() {
+        return brokerBuckets.size() + deviceBuckets.size();
+    }
+
+    /**
+     * 运行时调整限速，请求中为空的字段保持不变
+     */
+    public void update(RateLimitUpdateRequest request) {
+        if (request.getGlobalBytesPerSecond() != null) {
+            globalBucket.setRatePerSecond(request.getGlobalBytesPerSecond());
+        }
+        if (request.getBrokerBytesPerSecond() != null) {
+            brokerBytesPerSecond = request.getBrokerBytesPerSecond();
+            brokerBuckets.values().forEach(bucket -> bucket.setRatePerSecond(brokerBytesPerSecond));
+        }
+        if (request.getDeviceBytesPerSecond() != null) {
+            deviceBytesPerSecond = request.getDeviceBytesPerSecond();
+        }
+        if (request.getDevices() != null) {
+            request.getDevices().forEach((deviceId, rate) -> {
+                if (rate == null) {
+                    deviceOverrides.remove(deviceId);
+                } else {
+                    deviceOverrides.put(deviceId, rate);
+                }
+            });
+        }
+        deviceBuckets.forEach((deviceId, bucket) -> bucket.setRatePerSecond(deviceRate(deviceId)));
+
+        log.info("传输限速已调整 - 全局: {} B/s, 代理: {} B/s, 设备: {} B/s, 设备覆盖: {}",
+                globalBucket.getRatePerSecond(), brokerBytesPerSecond, deviceBytesPerSecond, deviceOverrides);
+    }
+
+    /**
+     * 获取当前限速配置
+     */
+    public RateLimitResponse snapshot() {
+        Map<String, Long> devices = new HashMap<>(deviceOverrides);
+        return new RateLimitResponse(globalBucket.getRatePerSecond(), brokerBytesPerSecond, deviceBytesPerSecond, devices);
+    }
+
+    private static long reserve(ConcurrentHashMap<String, TokenBucket> buckets, String key,
+                                ToLongFunction<String> rate, int bytes) {
+        long[] waitNanos = new long[1];
+        // 在映射的锁内预留，与空闲清理互斥，不会向已被移除的桶预留
+        buckets.compute(key, (k, bucket) -> {
+            TokenBucket current = bucket != null ? bucket : new TokenBucket(rate.applyAsLong(k));
+            waitNanos[0] = current.reserve(bytes);
+            return current;
+        });
+        return waitNanos[0];
+    }
+
+    /**
+     * 每个清理周期最多由一个发布线程执行一次
+     */
+    private void evictIdleBuckets() {
+        long now = System.nanoTime();
+        long last = lastEvictNanos.get();
+        if (now - last < idleEvictNanos || !lastEvictNanos.compareAndSet(last, now)) {
+            return;
+        }
+        evictIdle(brokerBuckets, now);
+        evictIdle(deviceBuckets, now);
+    }
+
+    private void evictIdle(ConcurrentHashMap<String, TokenBucket> buckets, long now) {
+        for (String key : buckets.keySet()) {
+            buckets.computeIfPresent(key, (k, bucket) -> bucket.isIdle(now, idleEvictNanos) ? null : bucket);
+        }
+    }
+
+    private long deviceRate(String deviceId) {
+        return deviceOverrides.getOrDefault(deviceId, deviceBytesPerSecond);
+    }
+}
@@ -0,0 +1,157 @@
+package com.nari._mw.util;
+
+import com.nari._mw.pojo.dto.response.TransferTimelineResponse;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 单次配置传输的时间线：按阶段累计耗时并记录每个切片的往返时间
+ * 经准入队列提交的传输从提交时开始计时，排队等待计入 queue 阶段；
+ * 连接和订阅在启动任务的线程上记录，其余阶段在传输线程上记录；传输超时或取消时时间线在执行线程结束前就被读取，
+ * 因此方法均加锁，结束后的记录被忽略。
+ */
+public final class TransferTimeline {
+    public static final String QUEUE = "queue";
+    public static final String CONNECT = "connect";
+    public static final String SUBSCRIBE = "subscribe";
+    public static final String DISPATCH = "dispatch";
+    public static final String SLICE = "slice";
+    public static final String METADATA = "metadata";
+    public static final String SLICES = "slices";
+    public static final String VERIFICATION = "verification";
+
+    private final String deviceId;
+    private final long startedAt;
+    private final long startNanos;
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+    private String phase;
+    private long phaseStartNanos;
+    private long[] sliceRttNanos = new long[0];
+    private int sliceSamples;
+    private int retries;
+    private long bytesSent;
+    private boolean finished;
+    private String transferId;
+    private String taskNo;
+    private long fileSize;
+    private int sliceCount;
+
+    public TransferTimeline(String deviceId) {
+        this.deviceId = deviceId;
+        this.startedAt = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+    }
+
+    private TransferTimeline(String deviceId, long queuedAtNanos) {
+        this.deviceId = deviceId;
+        this.startedAt = System.currentTimeMillis() - (System.nanoTime() - queuedAtNanos) / 1_000_000;
+        this.startNanos = queuedAtNanos;
+        this.phase = QUEUE;
+        this.phaseStartNanos = queuedAtNanos;
+    }
+
+    /**
+     * 从提交到准入队列时开始的时间线，到第一个阶段开始前都计入 queue 阶段
+     *
+     * @param queuedAtNanos 提交时的 {@link System#nanoTime()}
+     */
+    public static TransferTimeline queuedSince(String deviceId, long queuedAtNanos) {
+        return new TransferTimeline(deviceId, queuedAtNanos);
+    }
+
+    /**
+     * 结束当前阶段并开始新阶段，同名阶段多次出现时累计
+     */
+    public synchronized void phase(String name) {
+        if (finished) {
+            return;
+        }
+        long now = System.nanoTime();
+        closePhase(now);
+        phase = name;
+        phaseStartNanos = now;
+    }
+
+    public synchronized void transferId(String transferId) {
+        this.transferId = transferId;
+    }
+
+    public synchronized void file(String taskNo, long fileSize, int sliceCount) {
+        this.taskNo = taskNo;
+        this.fileSize = fileSize;
+        this.sliceCount = sliceCount;
+        this.sliceRttNanos = new long[Math.max(sliceCount, 1)];
+    }
+
+    /**
+     * 记录一个切片从首次发送到确认的耗时及其发送量；选择性重传的切片再次记录
+     *
+     * @param bytes   切片字节数
+     * @param retries 该切片的重发次数
+     */
+    public synchronized void sliceAcked(int bytes, int retries, long nanos) {
+        if (finished) {
+            return;
+        }
+        this.bytesSent += (long) bytes * (retries + 1);
+        this.retries += retries;
+        if (sliceSamples == sliceRttNanos.length) {
+            sliceRttNanos = Arrays.copyOf(sliceRttNanos, Math.max(16, sliceSamples * 2));
+        }
+        sliceRttNanos[sliceSamples++] = nanos;
+    }
+
+    /**
+     * 记录非切片消息(元数据)的重发
+     */
+    public synchronized void retried(int count) {
+        if (!finished) {
+            this.retries += count;
+        }
+    }
+
+    /**
+     * 结束时间线，进行中的阶段计入到此为止的耗时
+     */
+    public synchronized TransferTimelineResponse finish(boolean succeeded, String error) {
+        long now = System.nanoTime();
+        if (!finished) {
+            closePhase(now);
+            phase = null;
+            finished = true;
+        }
+
+        Map<String, Double> phasesMs = new LinkedHashMap<>();
+        phaseNanos.forEach((name, nanos) -> phasesMs.put(name, toMillis(nanos)));
+        long[] samples = Arrays.copyOf(sliceRttNanos, sliceSamples);
+        Arrays.sort(samples);
+
+        return new TransferTimelineResponse(transferId, deviceId, taskNo, succeeded ? "success" : "failure",
+                startedAt, toMillis(now - startNanos), phasesMs, fileSize, sliceCount,
+                percentile(samples, 0.50), percentile(samples, 0.90), percentile(samples, 0.99),
+                samples.length == 0 ? 0 : toMillis(samples[samples.length - 1]), retries, bytesSent, error);
+    }
+
+    private void closePhase(long now) {
+        if (phase != null) {
+            phaseNanos.merge(phase, now - phaseStartNanos, Long::sum);
+        }
+    }
+
+    /**
+     * 最近秩百分位
+     */
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return toMillis(sorted[Math.max(0, rank - 1)]);
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+}
@@ -0,0 +1,6 @@
+CREATE TABLE IF NOT EXISTS cluster_member (
+    node_id        VARCHAR(128) NOT NULL,
+    url            VARCHAR(255) NOT NULL,
+    last_heartbeat BIGINT       NOT NULL,
+    PRIMARY KEY (node_id)
+);
@@ -0,0 +1,19 @@
+CREATE TABLE IF NOT EXISTS telemetry_sample (
+    device_id VARCHAR(64) NOT NULL,
+    point     VARCHAR(64) NOT NULL,
+    ts        BIGINT      NOT NULL,
+    value     DOUBLE      NOT NULL,
+    INDEX idx_telemetry_sample_series (device_id, point, ts)
+);
+
+CREATE TABLE IF NOT EXISTS telemetry_rollup (
+    device_id     VARCHAR(64) NOT NULL,
+    point         VARCHAR(64) NOT NULL,
+    resolution_ms INT         NOT NULL,
+    bucket_start  BIGINT      NOT NULL,
+    min_value     DOUBLE      NOT NULL,
+    max_value     DOUBLE      NOT NULL,
+    avg_value     DOUBLE      NOT NULL,
+    sample_count  INT         NOT NULL,
+    PRIMARY KEY (device_id, point, resolution_ms, bucket_start)
+);
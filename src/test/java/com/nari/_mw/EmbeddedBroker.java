@@ -0,0 +1,44 @@
+package com.nari._mw;
+
+import io.moquette.broker.Server;
+import io.moquette.broker.config.IConfig;
+import io.moquette.broker.config.MemoryConfig;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.util.Properties;
+
+/**
+ * 测试用嵌入式MQTT代理，监听本机随机端口，允许匿名连接，不持久化
+ */
+public class EmbeddedBroker {
+	private final Server server = new Server();
+	private int port;
+
+	public EmbeddedBroker start() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		Properties properties = new Properties();
+		properties.setProperty(IConfig.HOST_PROPERTY_NAME, "127.0.0.1");
+		properties.setProperty(IConfig.PORT_PROPERTY_NAME, String.valueOf(port));
+		properties.setProperty(IConfig.ALLOW_ANONYMOUS_PROPERTY_NAME, "true");
+		properties.setProperty(IConfig.PERSISTENCE_ENABLED_PROPERTY_NAME, "false");
+		properties.setProperty(IConfig.DATA_PATH_PROPERTY_NAME, Files.createTempDirectory("moquette").toString());
+		server.startServer(new MemoryConfig(properties));
+		return this;
+	}
+
+	public void stop() {
+		server.stopServer();
+	}
+
+	public String getUri() {
+		return "tcp://127.0.0.1:" + port;
+	}
+
+	public int getConnectedClientCount() {
+		return server.listConnectedClients().size();
+	}
+}
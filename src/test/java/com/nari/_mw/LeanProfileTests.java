@@ -0,0 +1,101 @@
+package com.nari._mw;
+
+import com.nari._mw.service.ClusterService;
+import com.nari._mw.service.DevicePresenceRegistry;
+import com.nari._mw.service.StoreAndForwardService;
+import com.nari._mw.service.TelemetryIngestionService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Profiles;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * lean配置全局延迟初始化Bean，启动后台任务的服务仍应随上下文启动
+ * 测试配置以命令行参数传入：SpringApplicationBuilder.properties 设置的是默认属性，优先级低于 application.properties
+ */
+class LeanProfileTests {
+	private static EmbeddedBroker broker;
+
+	@TempDir
+	Path directory;
+
+	@BeforeAll
+	static void startBroker() throws Exception {
+		broker = new EmbeddedBroker().start();
+	}
+
+	@AfterAll
+	static void stopBroker() {
+		broker.stop();
+	}
+
+	@Test
+	void leanProfileEnablesLazyInitialization() {
+		try (ConfigurableApplicationContext context = startLean()) {
+			assertTrue(context.getEnvironment().acceptsProfiles(Profiles.of("lean")));
+			assertEquals(Boolean.TRUE,
+					context.getEnvironment().getProperty("spring.main.lazy-initialization", Boolean.class));
+		}
+	}
+
+	@Test
+	void telemetryIngestionStartsUnderLeanProfile() {
+		try (ConfigurableApplicationContext context = startLean("--telemetry.ingestion.enabled=true",
+				"--telemetry.ingestion.host=" + broker.getUri())) {
+			assertStarted(context, TelemetryIngestionService.class, "telemetry-worker-0");
+			assertTrue(broker.getConnectedClientCount() >= 1, "遥测订阅客户端未连接");
+		}
+	}
+
+	@Test
+	void presenceRegistryStartsUnderLeanProfile() {
+		try (ConfigurableApplicationContext context = startLean("--presence.enabled=true",
+				"--presence.host=" + broker.getUri())) {
+			assertStarted(context, DevicePresenceRegistry.class, "device-presence-sweeper");
+			assertTrue(broker.getConnectedClientCount() >= 1, "在线状态订阅客户端未连接");
+		}
+	}
+
+	@Test
+	void storeAndForwardStartsUnderLeanProfile() {
+		try (ConfigurableApplicationContext context = startLean("--store-forward.enabled=true",
+				"--store-forward.directory=" + directory.resolve("outbound"),
+				"--store-forward.host=" + broker.getUri())) {
+			assertStarted(context, StoreAndForwardService.class, "outbound-drain");
+		}
+	}
+
+	@Test
+	void clusterHeartbeatStartsUnderLeanProfile() {
+		try (ConfigurableApplicationContext context = startLean("--cluster.enabled=true",
+				"--cluster.membership=memory")) {
+			assertStarted(context, ClusterService.class, "cluster-heartbeat");
+		}
+	}
+
+	private static ConfigurableApplicationContext startLean(String... args) {
+		String[] all = Stream.concat(Stream.of("--server.port=0"), Arrays.stream(args)).toArray(String[]::new);
+		return new SpringApplicationBuilder(Application.class).profiles("lean").run(all);
+	}
+
+	/**
+	 * 服务在上下文启动时已创建，且其后台线程已运行
+	 */
+	private static void assertStarted(ConfigurableApplicationContext context, Class<?> type, String threadName) {
+		String[] names = context.getBeanNamesForType(type);
+		assertTrue(names.length == 1 && context.getBeanFactory().containsSingleton(names[0]),
+				type.getSimpleName() + " 未在启动时创建");
+		assertTrue(Thread.getAllStackTraces().keySet().stream().anyMatch(thread -> thread.getName().equals(threadName)),
+				"后台线程未启动: " + threadName);
+	}
+}
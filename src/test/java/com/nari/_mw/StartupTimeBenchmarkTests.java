@@ -0,0 +1,42 @@
+package com.nari._mw;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 启动时间基准：分别以默认配置和lean配置启动完整应用上下文并计时，lean配置应更快且不超过预算
+ * 启动预算可通过 -Dstartup.budget-ms 调整
+ */
+@Tag("benchmark")
+class StartupTimeBenchmarkTests {
+	private static final long STARTUP_BUDGET_MS = Long.getLong("startup.budget-ms", 20_000);
+
+	@Test
+	void leanProfileStartsWithinBudget() {
+		// 预热一次，避免类加载的首次开销计入对比
+		startupMillis();
+
+		long defaultMs = startupMillis();
+		long leanMs = startupMillis("lean");
+
+		assertTrue(leanMs < defaultMs, "lean配置启动耗时 " + leanMs + " ms 不低于默认配置 " + defaultMs + " ms");
+		assertTrue(leanMs <= STARTUP_BUDGET_MS,
+				"lean配置启动耗时 " + leanMs + " ms 超出预算 " + STARTUP_BUDGET_MS + " ms");
+	}
+
+	private static long startupMillis(String... profiles) {
+		long start = System.nanoTime();
+		try (ConfigurableApplicationContext ignored = new SpringApplicationBuilder(Application.class)
+				.profiles(profiles)
+				.properties("server.port=0")
+				.run()) {
+			return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package com.nari._mw.controller;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.nari._mw.config.DeviceStatePushConfig;
+import com.nari._mw.pojo.model.TelemetryMessage;
+import com.nari._mw.service.DeviceStateService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 设备状态推送：连接时全量快照，之后只推送变化，发送失败的客户端被移除
+ */
+class DeviceStateWebSocketHandlerTests {
+	private DeviceStateService deviceStateService;
+	private DeviceStateWebSocketHandler handler;
+
+	@BeforeEach
+	void setUp() {
+		DeviceStatePushConfig config = new DeviceStatePushConfig();
+		config.setIntervalMs(20);
+		deviceStateService = new DeviceStateService();
+		handler = new DeviceStateWebSocketHandler(deviceStateService, config);
+		handler.start();
+	}
+
+	@AfterEach
+	void tearDown() {
+		handler.stop();
+	}
+
+	@Test
+	void sendsSnapshotOnConnectThenOnlyChanges() throws Exception {
+		update("d1", 100, 1.0, 2.0);
+		BlockingQueue<JSONObject> frames = new LinkedBlockingQueue<>();
+		WebSocketSession session = session("s1", frames);
+		handler.afterConnectionEstablished(session);
+
+		JSONObject snapshot = frames.poll(5, TimeUnit.SECONDS);
+		assertNotNull(snapshot);
+		assertEquals("snapshot", snapshot.getString("type"));
+		assertEquals(2, snapshot.getJSONObject("values").getJSONObject("d1").size());
+
+		// 连接前的变化已包含在快照中，等待其被下一帧清除后再更新
+		Thread.sleep(100);
+		frames.clear();
+		update("d1", 200, 1.0, 3.0);
+		JSONObject delta = frames.poll(5, TimeUnit.SECONDS);
+		assertNotNull(delta);
+		assertEquals("delta", delta.getString("type"));
+		JSONObject values = delta.getJSONObject("values").getJSONObject("d1");
+		assertEquals(1, values.size());
+		assertEquals(3.0, values.getDoubleValue("P1"));
+
+		handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+		update("d1", 300, 4.0, 4.0);
+		assertNull(frames.poll(200, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	void dropsSessionWhenSendFails() throws Exception {
+		BlockingQueue<JSONObject> frames = new LinkedBlockingQueue<>();
+		WebSocketSession broken = mock(WebSocketSession.class);
+		when(broken.getId()).thenReturn("broken");
+		when(broken.isOpen()).thenReturn(true);
+		doThrow(new IOException("连接已重置")).when(broken).sendMessage(any());
+		handler.afterConnectionEstablished(broken);
+		handler.afterConnectionEstablished(session("s2", frames));
+		frames.poll(5, TimeUnit.SECONDS);
+
+		// 失败的客户端不影响其他客户端收到变化
+		update("d1", 100, 5.0, 6.0);
+		JSONObject delta = frames.poll(5, TimeUnit.SECONDS);
+		assertNotNull(delta);
+		assertEquals("delta", delta.getString("type"));
+		// 快照发送失败后即被移除，不再尝试推送变化
+		verify(broken, times(1)).sendMessage(any());
+	}
+
+	private void update(String deviceId, long timestamp, double p0, double p1) {
+		deviceStateService.onTelemetry(List.of(
+				new TelemetryMessage(deviceId, timestamp, new String[]{"P0", "P1"}, new double[]{p0, p1})));
+	}
+
+	private static WebSocketSession session(String id, BlockingQueue<JSONObject> frames) throws IOException {
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn(id);
+		when(session.isOpen()).thenReturn(true);
+		doAnswer(invocation -> {
+			frames.add(JSON.parseObject(((TextMessage) invocation.getArgument(0)).getPayload()));
+			return null;
+		}).when(session).sendMessage(any());
+		return session;
+	}
+}
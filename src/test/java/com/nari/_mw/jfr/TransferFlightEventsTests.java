@@ -0,0 +1,98 @@
+package com.nari._mw.jfr;
+
+import com.nari._mw.EmbeddedBroker;
+import com.nari._mw.config.DeviceLinkConfig;
+import com.nari._mw.config.TransferLoggingConfig;
+import com.nari._mw.exception.DeviceInteractionException;
+import com.nari._mw.pojo.dto.mqtt.connect.MQTTConnectionParams;
+import com.nari._mw.service.DeviceLinkService;
+import com.nari._mw.util.FileSlicerUtil;
+import com.nari._mw.util.MQTTClientWrapper;
+import com.nari._mw.util.TransferEventLogger;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 在JFR录制中执行一次切片、连接、订阅、无响应重传和传输汇总，检查各类事件都带有所属设备和任务号
+ */
+class TransferFlightEventsTests {
+	private static final String DEVICE_ID = "jfr-device";
+	private static final String TASK_NO = "jfr-task";
+	private static final List<String> EVENT_NAMES = List.of(
+			"com.nari.mw.MqttConnect", "com.nari.mw.MqttSubscribe", "com.nari.mw.MqttPublish",
+			"com.nari.mw.AckWait", "com.nari.mw.Retransmit", "com.nari.mw.SlicePreparation", "com.nari.mw.Transfer");
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void transferLifecycleIsRecorded() throws Exception {
+		Path configFile = directory.resolve("config.bin");
+		Files.write(configFile, new byte[4096]);
+		EmbeddedBroker broker = new EmbeddedBroker().start();
+		TransferEventLogger transferEventLogger = new TransferEventLogger(new TransferLoggingConfig());
+
+		Path dump = directory.resolve("transfer.jfr");
+		try (Recording recording = new Recording()) {
+			// 测试中关闭阈值，记录所有事件
+			EVENT_NAMES.forEach(name -> recording.enable(name).withThreshold(Duration.ZERO));
+			recording.start();
+
+			try (TransferContext ignored = TransferContext.open(DEVICE_ID)) {
+				TransferContext.setTaskNo(TASK_NO);
+				FileSlicerUtil.sliceFile(configFile.toString(), 1024);
+
+				MQTTClientWrapper client = new MQTTClientWrapper(
+						new MQTTConnectionParams(broker.getUri(), "admin", "public"), false);
+				try {
+					client.subscribe("jfr/ack").join();
+					DeviceLinkConfig config = new DeviceLinkConfig();
+					config.setInitialRtoMs(50);
+					config.setMinRtoMs(10);
+					config.setMaxRetransmits(1);
+					assertThrows(DeviceInteractionException.class, () -> new DeviceLinkService(config)
+							.exchange(client, DEVICE_ID, "jfr/request", "jfr/ack", "ping", TASK_NO + "/1", r -> true));
+					client.publishMessage("jfr/request", "pong").join();
+				} finally {
+					client.disconnect();
+				}
+
+				transferEventLogger.begin(DEVICE_ID, TASK_NO, 4096, 4).failed(new RuntimeException("设备无响应"));
+			}
+
+			recording.stop();
+			recording.dump(dump);
+		} finally {
+			transferEventLogger.shutdown();
+			broker.stop();
+		}
+
+		Map<String, List<RecordedEvent>> events = RecordingFile.readAllEvents(dump).stream()
+				.collect(Collectors.groupingBy(event -> event.getEventType().getName()));
+		for (String name : EVENT_NAMES) {
+			List<RecordedEvent> recorded = events.getOrDefault(name, List.of());
+			assertFalse(recorded.isEmpty(), "未记录事件: " + name);
+			recorded.forEach(event -> assertEquals(DEVICE_ID, event.getString("deviceId"), name));
+		}
+		assertTrue(events.get("com.nari.mw.MqttPublish").stream()
+				.allMatch(event -> TASK_NO.equals(event.getString("taskNo"))));
+		assertEquals(2, events.get("com.nari.mw.AckWait").size());
+		assertEquals(1, events.get("com.nari.mw.Retransmit").size());
+		assertFalse(events.get("com.nari.mw.Transfer").get(0).getBoolean("succeeded"));
+	}
+}
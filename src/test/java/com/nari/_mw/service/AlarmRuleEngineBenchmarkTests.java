@@ -0,0 +1,78 @@
+package com.nari._mw.service;
+
+import com.nari._mw._enum.AlarmRuleType;
+import com.nari._mw.pojo.model.AlarmRule;
+import com.nari._mw.pojo.model.TelemetryMessage;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 告警规则引擎基准：大量规则下的消息评估速率
+ */
+class AlarmRuleEngineBenchmarkTests {
+	private static final int DEVICES = 1000;
+	private static final int POINTS = 10;
+	private static final int BATCH_SIZE = 256;
+	private static final int MESSAGES = 500_000;
+	// 增量评估下每条规则只做常数次运算，百万次每秒是保守下限
+	private static final double MIN_EVALUATIONS_PER_SECOND = 1_000_000;
+
+	@Test
+	@Tag("benchmark")
+	void evaluationThroughput() {
+		AlarmRuleEngine engine = new AlarmRuleEngine();
+		String[] points = new String[POINTS];
+		for (int p = 0; p < POINTS; p++) {
+			points[p] = "P" + p;
+		}
+		for (int d = 0; d < DEVICES; d++) {
+			for (String point : points) {
+				engine.addRule(rule("device" + d, point, AlarmRuleType.THRESHOLD, 0));
+				engine.addRule(rule("device" + d, point, AlarmRuleType.RATE_OF_CHANGE, 0));
+				engine.addRule(rule("device" + d, point, AlarmRuleType.WINDOW_AVERAGE, 5_000));
+			}
+		}
+
+		List<TelemetryMessage> batch = new ArrayList<>(BATCH_SIZE);
+		long start = System.nanoTime();
+		for (int i = 0; i < MESSAGES; i++) {
+			double[] values = new double[POINTS];
+			for (int p = 0; p < POINTS; p++) {
+				values[p] = (i + p) % 100;
+			}
+			batch.add(new TelemetryMessage("device" + (i % DEVICES), i * 10L, points, values));
+			if (batch.size() == BATCH_SIZE) {
+				engine.onTelemetry(batch);
+				batch.clear();
+			}
+		}
+		engine.onTelemetry(batch);
+		long elapsedNanos = System.nanoTime() - start;
+
+		assertEquals(DEVICES * POINTS * 3, engine.getRuleCount());
+		// 测点值始终低于阈值，且同一设备相邻两条消息的值相同，不应产生告警
+		assertTrue(engine.getActiveAlarms().isEmpty(), "产生了 " + engine.getActiveAlarms().size() + " 条告警");
+		double evaluationsPerSecond = (double) MESSAGES * POINTS * 3 * 1e9 / elapsedNanos;
+		assertTrue(evaluationsPerSecond > MIN_EVALUATIONS_PER_SECOND,
+				String.format("规则评估速率 %.0f 次/秒", evaluationsPerSecond));
+	}
+
+	private static AlarmRule rule(String deviceId, String point, AlarmRuleType type, long windowMs) {
+		return AlarmRule.builder()
+				.deviceId(deviceId)
+				.point(point)
+				.type(type)
+				.high(type == AlarmRuleType.RATE_OF_CHANGE ? 1000.0 : 100.0)
+				.low(type == AlarmRuleType.RATE_OF_CHANGE ? -1000.0 : null)
+				.windowMs(windowMs)
+				.debounceCount(3)
+				.severity("major")
+				.build();
+	}
+}
@@ -0,0 +1,145 @@
+package com.nari._mw.service;
+
+import com.nari._mw._enum.AlarmRuleType;
+import com.nari._mw.pojo.model.AlarmEvent;
+import com.nari._mw.pojo.model.AlarmRule;
+import com.nari._mw.pojo.model.TelemetryMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 告警规则引擎：窗口平均值、变化率、回差与去抖、规则替换与副本保存
+ */
+class AlarmRuleEngineTests {
+	private static final double DELTA = 1e-9;
+
+	private final AlarmRuleEngine engine = new AlarmRuleEngine();
+	private final List<AlarmEvent> events = new ArrayList<>();
+
+	@Test
+	void windowAverageEvictsExpiredSamplesAndIgnoresOutOfOrderOnes() {
+		AlarmRule rule = rule(AlarmRuleType.WINDOW_AVERAGE, 100.0, null);
+		rule.setWindowMs(1_000);
+		rule.setDebounceCount(1);
+		engine.addRule(rule);
+		engine.addAlarmListener(events::add);
+
+		send(0, 90);
+		send(400, 120);
+		assertEquals(1, events.size());
+		assertEquals("RAISED", events.get(0).getState());
+		assertEquals(105, events.get(0).getValue(), DELTA);
+
+		// 窗口为(200, 1200]，t=0 的样本移出
+		send(1_200, 80);
+		assertEquals(2, events.size());
+		assertEquals("CLEARED", events.get(1).getState());
+		assertEquals(100, events.get(1).getValue(), DELTA);
+
+		// 早于窗口内最新样本的乱序样本被丢弃，不会抬高平均值
+		send(300, 1_000);
+		send(1_300, 100);
+		assertEquals(2, events.size());
+		assertTrue(engine.getActiveAlarms().isEmpty());
+	}
+
+	@Test
+	void rateOfChangeUsesPreviousSampleAndSkipsOutOfOrderOnes() {
+		AlarmRule rule = rule(AlarmRuleType.RATE_OF_CHANGE, 10.0, -10.0);
+		rule.setDebounceCount(1);
+		engine.addRule(rule);
+		engine.addAlarmListener(events::add);
+
+		send(0, 0);
+		send(1_000, 5);
+		assertTrue(events.isEmpty());
+		send(500, 100);
+		assertTrue(events.isEmpty());
+		send(1_500, 20);
+		assertEquals(1, events.size());
+		assertEquals(30, events.get(0).getValue(), DELTA);
+	}
+
+	@Test
+	void debounceAndHysteresis() {
+		AlarmRule rule = rule(AlarmRuleType.THRESHOLD, 100.0, null);
+		rule.setDebounceCount(2);
+		rule.setHysteresis(5);
+		engine.addRule(rule);
+		engine.addAlarmListener(events::add);
+
+		double[] sequence = {95, 101, 99, 101, 102, 97, 94, 93};
+		for (int i = 0; i < sequence.length; i++) {
+			send(i, sequence[i]);
+			if (i == 4) {
+				// 99打断了连续越限，101、102连续两次越限后才产生告警
+				assertEquals(1, engine.getActiveAlarms().size());
+			}
+		}
+		// 97未回到回差范围内，94、93连续两次满足后恢复
+		assertEquals(0, engine.getActiveAlarms().size());
+		assertEquals(2, events.size());
+		assertEquals(102, events.get(0).getValue(), DELTA);
+		assertEquals(93, events.get(1).getValue(), DELTA);
+	}
+
+	@Test
+	void replacingRuleClearsActiveAlarm() {
+		AlarmRule rule = rule(AlarmRuleType.THRESHOLD, 100.0, null);
+		rule.setDebounceCount(1);
+		String ruleId = engine.addRule(rule).getId();
+		engine.addAlarmListener(events::add);
+
+		send(0, 120);
+		assertEquals(1, engine.getActiveAlarms().size());
+
+		AlarmRule replacement = rule(AlarmRuleType.THRESHOLD, 150.0, null);
+		replacement.setId(ruleId);
+		engine.addRule(replacement);
+
+		assertEquals(0, engine.getActiveAlarms().size());
+		assertEquals(1, engine.getRuleCount());
+		assertEquals(2, events.size());
+		assertEquals("CLEARED", events.get(1).getState());
+		assertEquals(ruleId, events.get(1).getRuleId());
+	}
+
+	@Test
+	void keepsCopyOfRuleIndependentOfCaller() {
+		AlarmRule rule = rule(AlarmRuleType.THRESHOLD, 100.0, null);
+		rule.setDebounceCount(1);
+		AlarmRule added = engine.addRule(rule);
+		assertNull(rule.getId());
+		assertEquals("rule-1", added.getId());
+
+		// 修改传入对象和返回对象都不影响引擎中的规则
+		rule.setHigh(10.0);
+		added.setHigh(10.0);
+		engine.getRules().get(0).setHigh(10.0);
+		engine.addAlarmListener(events::add);
+		send(0, 50);
+		assertTrue(events.isEmpty());
+		assertEquals(100.0, engine.getRules().get(0).getHigh(), DELTA);
+	}
+
+	private void send(long timestamp, double value) {
+		engine.onTelemetry(List.of(new TelemetryMessage("device1", timestamp, new String[]{"U"}, new double[]{value})));
+	}
+
+	private static AlarmRule rule(AlarmRuleType type, Double high, Double low) {
+		return AlarmRule.builder()
+				.deviceId("device1")
+				.point("U")
+				.type(type)
+				.high(high)
+				.low(low)
+				.severity("major")
+				.build();
+	}
+}
@@ -0,0 +1,172 @@
+package com.nari._mw.service;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.nari._mw.EmbeddedBroker;
+import com.nari._mw._enum.MqttTopic;
+import com.nari._mw.exception.BrokerUnavailableException;
+import com.nari._mw.pojo.dto.mqtt.connect.MQTTConnectionParams;
+import com.nari._mw.pojo.dto.mqtt.transfer.ConfigTransferAcknowledgeResponse;
+import com.nari._mw.pojo.dto.mqtt.transfer.ConfigTransferSliceResponse;
+import com.nari._mw.pojo.dto.request.PublishConfigRequest;
+import com.nari._mw.pojo.dto.response.TransferTimelineResponse;
+import com.nari._mw.util.MQTTClientWrapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 主代理在传输第5个切片时停止：传输切换到冗余代理，从未确认的切片继续，不重发元数据，任务号不变；
+ * 没有可切换的代理时传输以代理不可用结束，不计入设备熔断统计
+ */
+@SpringBootTest
+class BrokerFailoverTests {
+	private static final String DEVICE_ID = "redundant-device";
+	private static final String SINGLE_BROKER_DEVICE_ID = "single-broker-device";
+	private static final int SLICE_SIZE = 1024;
+	private static final int SLICES = 20;
+
+	@TempDir
+	Path directory;
+
+	@Autowired
+	private DeviceService deviceService;
+
+	@Autowired
+	private BrokerHealthRegistry brokerHealthRegistry;
+
+	@Autowired
+	private DeviceLinkService deviceLinkService;
+
+	@Test
+	void transferContinuesOnSurvivingBrokerFromLastAckedSlice() throws Exception {
+		Path configFile = directory.resolve("config.bin");
+		Files.write(configFile, new byte[SLICES * SLICE_SIZE]);
+
+		EmbeddedBroker primary = new EmbeddedBroker().start();
+		EmbeddedBroker backup = new EmbeddedBroker().start();
+		Controller onPrimary = new Controller(primary);
+		Controller onBackup = new Controller(backup);
+		try {
+			PublishConfigRequest request = new PublishConfigRequest();
+			request.setDeviceId(DEVICE_ID);
+			request.setConfigFilePath(configFile.toString());
+			request.setSliceSize(SLICE_SIZE);
+			request.setMqttConnectionParams(new MQTTConnectionParams(primary.getUri(), "admin", "public",
+					List.of(backup.getUri())));
+			CompletableFuture<TransferTimelineResponse> transfer = deviceService.publishConfig(request);
+
+			assertTrue(onPrimary.fifthSlice.await(30, TimeUnit.SECONDS));
+			long stoppedAt = System.nanoTime();
+			primary.stop();
+
+			TransferTimelineResponse timeline = transfer.get(30, TimeUnit.SECONDS);
+			long recoveryMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stoppedAt);
+			assertEquals("success", timeline.getStatus());
+			assertTrue(recoveryMs < 10_000, "主代理停止后 " + recoveryMs + " ms 才完成传输");
+
+			// 元数据只在主代理上发送一次，冗余代理上从第5或第6片继续
+			assertEquals(1, onPrimary.metadata.size());
+			assertEquals(0, onBackup.metadata.size());
+			assertTrue(onBackup.slices.get(0) >= 5, onBackup.slices.toString());
+			assertTrue(onBackup.slices.contains(SLICES));
+			assertEquals(onPrimary.taskNos, onBackup.taskNos);
+			assertEquals(backup.getUri(), brokerHealthRegistry.rank(List.of(primary.getUri(), backup.getUri())).get(0));
+		} finally {
+			onPrimary.stop();
+			onBackup.stop();
+			backup.stop();
+		}
+	}
+
+	@Test
+	void brokerLossWithoutFailoverTargetDoesNotCountAgainstDevice() throws Exception {
+		Path configFile = directory.resolve("config.bin");
+		Files.write(configFile, new byte[SLICES * SLICE_SIZE]);
+
+		EmbeddedBroker only = new EmbeddedBroker().start();
+		Controller controller = new Controller(only);
+		try {
+			PublishConfigRequest request = new PublishConfigRequest();
+			request.setDeviceId(SINGLE_BROKER_DEVICE_ID);
+			request.setConfigFilePath(configFile.toString());
+			request.setSliceSize(SLICE_SIZE);
+			request.setMqttConnectionParams(new MQTTConnectionParams(only.getUri(), "admin", "public"));
+			CompletableFuture<TransferTimelineResponse> transfer = deviceService.publishConfig(request);
+
+			assertTrue(controller.fifthSlice.await(30, TimeUnit.SECONDS));
+			only.stop();
+
+			ExecutionException failure = assertThrows(ExecutionException.class, () -> transfer.get(60, TimeUnit.SECONDS));
+			assertInstanceOf(BrokerUnavailableException.class, failure.getCause());
+			// 代理不可用与设备无关，设备的连续失败次数不增加
+			assertTrue(deviceLinkService.getStatus().stream()
+					.filter(status -> status.getDeviceId().equals(SINGLE_BROKER_DEVICE_ID))
+					.allMatch(status -> status.getConsecutiveFailures() == 0));
+		} finally {
+			controller.stop();
+		}
+	}
+
+	/**
+	 * 控制器在每个代理上各有一个连接，在收到请求的代理上确认，切片确认延迟20ms
+	 */
+	private static final class Controller {
+		private final MQTTClientWrapper client;
+		private final ScheduledExecutorService replies = Executors.newSingleThreadScheduledExecutor();
+		private final List<String> metadata = new CopyOnWriteArrayList<>();
+		private final List<Integer> slices = new CopyOnWriteArrayList<>();
+		private final Set<String> taskNos = ConcurrentHashMap.newKeySet();
+		private final CountDownLatch fifthSlice = new CountDownLatch(1);
+
+		private Controller(EmbeddedBroker broker) {
+			client = new MQTTClientWrapper(new MQTTConnectionParams(broker.getUri(), "admin", "public"), false);
+			client.subscribe(MqttTopic.CONFIG_TRANSFER_REQUEST.getTopic(), (topic, payload) -> {
+				metadata.add(new String(payload, StandardCharsets.UTF_8));
+				reply(MqttTopic.CONFIG_TRANSFER_REQUEST_ACK, new ConfigTransferAcknowledgeResponse("ready"));
+			}).join();
+			client.subscribe(MqttTopic.FILE_DATA_SLICE.getTopic(), (topic, payload) -> {
+				JSONObject slice = JSON.parseObject(new String(payload, StandardCharsets.UTF_8));
+				int number = slice.getIntValue("number");
+				slices.add(number);
+				taskNos.add(slice.getString("taskNo"));
+				if (number == 5) {
+					fifthSlice.countDown();
+				}
+				reply(number < SLICES ? MqttTopic.FILE_SLICE_ACK : MqttTopic.FILE_VERIFICATION_RESULT,
+						number < SLICES ? new ConfigTransferSliceResponse(slice.getString("taskNo"), number, "success")
+								: new ConfigTransferAcknowledgeResponse("success"));
+			}).join();
+		}
+
+		private void reply(MqttTopic topic, Object response) {
+			replies.schedule(() -> client.publishMessage(topic.getTopic(), JSON.toJSONString(response)),
+					20, TimeUnit.MILLISECONDS);
+		}
+
+		private void stop() {
+			replies.shutdownNow();
+			client.disconnect();
+		}
+	}
+}
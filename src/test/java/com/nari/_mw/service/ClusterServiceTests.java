@@ -0,0 +1,189 @@
+package com.nari._mw.service;
+
+import com.nari._mw.config.ClusterConfig;
+import com.nari._mw.exception.ClusterForwardException;
+import com.nari._mw.pojo.model.ClusterNode;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.ResponseEntity;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 集群设备归属：各实例对归属达成一致，成员变化时只迁移必要的设备；误投的请求转发给所属实例
+ */
+class ClusterServiceTests {
+	private static final int DEVICES = 3000;
+
+	@Test
+	void membersAgreeOnOwnershipAndRebalanceMinimally() throws InterruptedException {
+		InMemoryMembershipStore store = new InMemoryMembershipStore();
+		ClusterService a = node(store, "node-a", 60_000);
+		ClusterService b = node(store, "node-b", 60_000);
+		ClusterService c = node(store, "node-c", 60_000);
+		refresh(a, b, c);
+
+		Map<String, String> before = owners(a);
+		assertEquals(before, owners(b));
+		assertEquals(before, owners(c));
+		for (String nodeId : new String[]{"node-a", "node-b", "node-c"}) {
+			long owned = before.values().stream().filter(nodeId::equals).count();
+			assertTrue(owned > DEVICES / 5 && owned < DEVICES / 2, nodeId + " 拥有 " + owned);
+		}
+
+		// node-c 退出：只有它的设备改变归属
+		c.stop();
+		refresh(a, b);
+		Map<String, String> afterLeave = owners(a);
+		assertEquals(afterLeave, owners(b));
+		before.forEach((device, owner) -> {
+			if (!owner.equals("node-c")) {
+				assertEquals(owner, afterLeave.get(device), device);
+			}
+		});
+		assertFalse(afterLeave.containsValue("node-c"));
+
+		// node-d 加入：改变归属的设备都归 node-d
+		ClusterService d = node(store, "node-d", 60_000);
+		refresh(d, a, b);
+		Map<String, String> afterJoin = owners(a);
+		assertEquals(afterJoin, owners(d));
+		afterJoin.forEach((device, owner) -> {
+			if (!owner.equals(afterLeave.get(device))) {
+				assertEquals("node-d", owner, device);
+			}
+		});
+	}
+
+	@Test
+	void silentMemberExpiresAfterTimeout() throws InterruptedException {
+		InMemoryMembershipStore store = new InMemoryMembershipStore();
+		ClusterService a = node(store, "node-a", 200);
+		ClusterService b = node(store, "node-b", 200);
+		refresh(a, b);
+		assertEquals(2, a.getMembers().size());
+
+		// node-b 停止心跳但未注销
+		Thread.sleep(300);
+		a.refresh();
+		assertEquals(1, a.getMembers().size());
+		assertTrue(owners(a).values().stream().allMatch("node-a"::equals));
+	}
+
+	@Test
+	void forwardsToOwnerAndRelaysResponse() throws Exception {
+		AtomicReference<String> forwardedBy = new AtomicReference<>();
+		AtomicReference<String> operator = new AtomicReference<>();
+		AtomicReference<String> body = new AtomicReference<>();
+		HttpServer owner = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		owner.createContext("/api/v1/devices/publish-config", exchange -> {
+			forwardedBy.set(exchange.getRequestHeaders().getFirst(ClusterForwarder.FORWARDED_HEADER));
+			operator.set(exchange.getRequestHeaders().getFirst("X-Operator-Id"));
+			body.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+			byte[] response = "{\"message\":\"下发队列已满\"}".getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Retry-After", "30");
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(429, response.length);
+			exchange.getResponseBody().write(response);
+			exchange.close();
+		});
+		owner.start();
+		try {
+			ClusterConfig config = config("node-a", 60_000);
+			ClusterForwarder forwarder = new ClusterForwarder(config,
+					new ClusterService(config, provider(new InMemoryMembershipStore())));
+			ClusterNode target = new ClusterNode("node-b", "http://127.0.0.1:" + owner.getAddress().getPort(), 0);
+
+			Map<String, String> headers = new HashMap<>();
+			headers.put("X-Operator-Id", "operator-1");
+			headers.put("X-Transfer-Priority", null);
+			ResponseEntity<String> response = forwarder.forward(target, "/api/v1/devices/publish-config",
+					Map.of("deviceId", "device-1"), headers).join();
+
+			assertEquals(429, response.getStatusCode().value());
+			assertEquals("30", response.getHeaders().getFirst("Retry-After"));
+			assertEquals("{\"message\":\"下发队列已满\"}", response.getBody());
+			assertEquals("application/json", response.getHeaders().getFirst("Content-Type"));
+			assertEquals("node-a", forwardedBy.get());
+			assertEquals("operator-1", operator.get());
+			assertEquals("{\"deviceId\":\"device-1\"}", body.get());
+
+			ClusterNode unreachable = new ClusterNode("node-c", "http://127.0.0.1:1", 0);
+			CompletionException failure = assertThrows(CompletionException.class, () -> forwarder.forward(unreachable,
+					"/api/v1/devices/publish-config", Map.of(), Map.of()).join());
+			assertInstanceOf(ClusterForwardException.class, failure.getCause());
+		} finally {
+			owner.stop(0);
+		}
+	}
+
+	@Test
+	void honoursForwardedHeaderOnlyFromCurrentMembers() {
+		InMemoryMembershipStore store = new InMemoryMembershipStore();
+		ClusterService a = node(store, "node-a", 60_000);
+		ClusterService b = node(store, "node-b", 60_000);
+		refresh(a, b);
+		ClusterForwarder forwarder = new ClusterForwarder(config("node-a", 60_000), a);
+
+		assertTrue(forwarder.isForwardedByMember("node-b"));
+		assertFalse(forwarder.isForwardedByMember("node-a"));
+		assertFalse(forwarder.isForwardedByMember("client"));
+		assertFalse(forwarder.isForwardedByMember(" "));
+		assertFalse(forwarder.isForwardedByMember(null));
+
+		// 退出集群的实例不再被认可
+		b.stop();
+		a.refresh();
+		assertFalse(forwarder.isForwardedByMember("node-b"));
+	}
+
+	private static ClusterService node(MembershipStore store, String nodeId, long memberTimeoutMs) {
+		return new ClusterService(config(nodeId, memberTimeoutMs), provider(store));
+	}
+
+	private static ClusterConfig config(String nodeId, long memberTimeoutMs) {
+		ClusterConfig config = new ClusterConfig();
+		config.setEnabled(true);
+		config.setNodeId(nodeId);
+		config.setAdvertisedUrl("http://" + nodeId + ":8080");
+		config.setMemberTimeoutMs(memberTimeoutMs);
+		return config;
+	}
+
+	private static ObjectProvider<MembershipStore> provider(MembershipStore store) {
+		return new StaticListableBeanFactory(Map.of("membershipStore", store)).getBeanProvider(MembershipStore.class);
+	}
+
+	/**
+	 * 先全部写入心跳再全部刷新，使各实例看到相同的成员列表
+	 */
+	private static void refresh(ClusterService... nodes) {
+		for (ClusterService node : nodes) {
+			node.refresh();
+		}
+		for (ClusterService node : nodes) {
+			node.refresh();
+		}
+	}
+
+	private static Map<String, String> owners(ClusterService node) {
+		Map<String, String> owners = new HashMap<>();
+		for (int i = 0; i < DEVICES; i++) {
+			owners.put("device-" + i, node.ownerOf("device-" + i).getNodeId());
+		}
+		return owners;
+	}
+}
@@ -0,0 +1,171 @@
+package com.nari._mw.service;
+
+import com.alibaba.fastjson.JSON;
+import com.nari._mw.EmbeddedBroker;
+import com.nari._mw._enum.MqttTopic;
+import com.nari._mw._enum.TransferPriority;
+import com.nari._mw.pojo.dto.mqtt.connect.MQTTConnectionParams;
+import com.nari._mw.pojo.dto.mqtt.transfer.ConfigTransferMetadata;
+import com.nari._mw.pojo.dto.mqtt.transfer.ConfigTransferSlice;
+import com.nari._mw.pojo.dto.mqtt.transfer.ConfigUploadRequest;
+import com.nari._mw.pojo.dto.mqtt.transfer.ConfigUploadResult;
+import com.nari._mw.pojo.dto.request.ConfigReadBackRequest;
+import com.nari._mw.pojo.dto.response.ConfigBackupResponse;
+import com.nari._mw.pojo.dto.response.ConfigReadBackResponse;
+import com.nari._mw.util.FileSlicerUtil;
+import com.nari._mw.util.MQTTClientWrapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 两个模拟控制器各自在独立代理上乱序回传配置，首轮丢失一个切片并重复发送另一个切片；
+ * 两个设备并行回读，文件应与控制器上的内容一致，缺失切片通过一轮重发补齐；
+ * 两个设备ID替换特殊字符后相同，文件仍应保存在不同目录
+ */
+@SpringBootTest(properties = {
+		"transfer.read-back.directory=target/test-backups",
+		"transfer.read-back.idle-timeout-ms=300"
+})
+class ConfigReadBackServiceTests {
+	private static final int SLICE_SIZE = 1024;
+	private static final int FILE_SIZE = 50 * SLICE_SIZE + 100;
+
+	private static EmbeddedBroker firstBroker;
+	private static EmbeddedBroker secondBroker;
+
+	@Autowired
+	private ConfigReadBackService configReadBackService;
+
+	@BeforeAll
+	static void startBrokers() throws Exception {
+		firstBroker = new EmbeddedBroker().start();
+		secondBroker = new EmbeddedBroker().start();
+	}
+
+	@AfterAll
+	static void stopBrokers() {
+		firstBroker.stop();
+		secondBroker.stop();
+	}
+
+	@Test
+	void outOfOrderSlicesAreAssembledAndMissingSlicesRequestedAgain() throws Exception {
+		SimulatedController first = new SimulatedController(firstBroker, 1);
+		SimulatedController second = new SimulatedController(secondBroker, 2);
+		try {
+			ConfigBackupResponse backup = configReadBackService.backup(List.of(
+					first.request("controller/1"), second.request("controller_1")), "backup-test", TransferPriority.NORMAL)
+					.get(60, TimeUnit.SECONDS);
+
+			assertEquals(2, backup.getSucceeded());
+			assertEquals(2, backup.getDevices().stream().map(ConfigReadBackResponse::getFilePath).distinct().count());
+			for (ConfigReadBackResponse result : backup.getDevices()) {
+				SimulatedController controller = result.getDeviceId().equals("controller/1") ? first : second;
+				assertEquals("success", result.getStatus(), result.getError());
+				assertArrayEquals(controller.content, Files.readAllBytes(Paths.get(result.getFilePath())));
+				assertEquals(1, result.getRetransmissionRounds());
+				assertTrue(result.getDuplicateSlices() >= 1);
+				// 确认按批发送，远少于切片数
+				assertTrue(controller.ackBatches.get() < result.getSliceCount() / 2);
+			}
+		} finally {
+			first.stop();
+			second.stop();
+		}
+	}
+
+	/**
+	 * 模拟控制器：收到回传请求后一次性乱序发出全部切片，首轮丢弃第2片、重复发送第5片，按回传结果重发缺失切片
+	 */
+	private static final class SimulatedController {
+		private final MQTTConnectionParams params;
+		private final MQTTClientWrapper client;
+		private final ExecutorService sender = Executors.newSingleThreadExecutor();
+		private final byte[] content = new byte[FILE_SIZE];
+		private final AtomicInteger ackBatches = new AtomicInteger();
+		private volatile String taskNo;
+
+		private SimulatedController(EmbeddedBroker broker, long seed) throws Exception {
+			new Random(seed).nextBytes(content);
+			params = new MQTTConnectionParams(broker.getUri(), "admin", "public");
+			client = new MQTTClientWrapper(params, false);
+			client.subscribe(MqttTopic.UPLOAD_SLICE_ACK.getTopic(), (topic, payload) -> ackBatches.incrementAndGet()).join();
+			client.subscribe(MqttTopic.UPLOAD_VERIFICATION_RESULT.getTopic(), (topic, payload) -> {
+				ConfigUploadResult result = JSON.parseObject(new String(payload, StandardCharsets.UTF_8), ConfigUploadResult.class);
+				if ("failure".equals(result.getStatus()) && result.getMissing() != null) {
+					sender.execute(() -> result.getMissing().forEach(this::sendSlice));
+				}
+			}).join();
+			client.subscribe(MqttTopic.CONFIG_UPLOAD_REQUEST.getTopic(), (topic, payload) -> {
+				ConfigUploadRequest request = JSON.parseObject(new String(payload, StandardCharsets.UTF_8), ConfigUploadRequest.class);
+				sender.execute(() -> upload(request));
+			}).join();
+		}
+
+		private ConfigReadBackRequest request(String deviceId) {
+			ConfigReadBackRequest request = new ConfigReadBackRequest();
+			request.setDeviceId(deviceId);
+			request.setSliceSize(SLICE_SIZE);
+			request.setMqttConnectionParams(params);
+			return request;
+		}
+
+		private void upload(ConfigUploadRequest request) {
+			taskNo = request.getTaskNo();
+			int number = (FILE_SIZE + SLICE_SIZE - 1) / SLICE_SIZE;
+			client.publishMessage(MqttTopic.CONFIG_UPLOAD_METADATA.getTopic(), JSON.toJSONString(new ConfigTransferMetadata(
+					"upload_config", taskNo, "active.cfg", FILE_SIZE, number, SLICE_SIZE, md5(content)))).join();
+
+			List<Integer> order = new ArrayList<>();
+			for (int i = 1; i <= number; i++) {
+				order.add(i);
+			}
+			Collections.shuffle(order, new Random(number));
+			order.remove(Integer.valueOf(2));
+			order.add(order.size() / 2, 5);
+			order.forEach(this::sendSlice);
+		}
+
+		private void sendSlice(int number) {
+			int from = (number - 1) * SLICE_SIZE;
+			byte[] data = Arrays.copyOfRange(content, from, Math.min(FILE_SIZE, from + SLICE_SIZE));
+			ConfigTransferSlice slice = new ConfigTransferSlice(taskNo, number, data, FileSlicerUtil.calculateCRC32C(data));
+			client.publishMessage(MqttTopic.UPLOAD_DATA_SLICE.getTopic(), JSON.toJSONString(slice)).join();
+		}
+
+		private void stop() {
+			sender.shutdownNow();
+			client.disconnect();
+		}
+
+		private static String md5(byte[] data) {
+			try {
+				return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(data));
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
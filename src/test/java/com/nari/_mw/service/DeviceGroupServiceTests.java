@@ -0,0 +1,113 @@
+package com.nari._mw.service;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.nari._mw.EmbeddedBroker;
+import com.nari._mw.exception.MessageProcessingException;
+import com.nari._mw.pojo.dto.mqtt.connect.MQTTConnectionParams;
+import com.nari._mw.pojo.dto.request.GroupFunctionBlockRequest;
+import com.nari._mw.pojo.dto.response.GroupPublishResponse;
+import com.nari._mw.pojo.model.FunctionBlock;
+import com.nari._mw.util.MQTTClientWrapper;
+import com.nari._mw.util.TopicBuilder;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 三个模拟控制器订阅组主题：一个确认成功、一个确认失败、一个不响应；组下发只发布一次，超时后收集结束。
+ * 组ID和成员设备ID中的主题分隔符和通配符被拒绝
+ */
+@SpringBootTest(properties = "device-group.ack-timeout-ms=1500")
+class DeviceGroupServiceTests {
+	private static EmbeddedBroker broker;
+
+	@Autowired
+	private DeviceGroupService deviceGroupService;
+
+	@Autowired
+	private TopicBuilder topicBuilder;
+
+	@BeforeAll
+	static void startBroker() throws Exception {
+		broker = new EmbeddedBroker().start();
+	}
+
+	@AfterAll
+	static void stopBroker() {
+		broker.stop();
+	}
+
+	@Test
+	void singlePublishCollectsAcksUntilTimeout() throws Exception {
+		MQTTConnectionParams params = new MQTTConnectionParams(broker.getUri(), "admin", "public");
+		String groupTopic = deviceGroupService.putGroup("feeder-1", List.of("ok", "bad", "silent")).getTopic();
+
+		AtomicInteger received = new AtomicInteger();
+		List<MQTTClientWrapper> devices = new ArrayList<>();
+		try {
+			for (String deviceId : List.of("ok", "bad", "silent")) {
+				MQTTClientWrapper device = new MQTTClientWrapper(params, false);
+				devices.add(device);
+				device.subscribe(groupTopic, (topic, payload) -> {
+					received.incrementAndGet();
+					if (deviceId.equals("silent")) {
+						return;
+					}
+					JSONObject ack = new JSONObject();
+					ack.put("publishId", JSON.parseObject(new String(payload, StandardCharsets.UTF_8)).getString("publishId"));
+					ack.put("status", deviceId.equals("ok") ? "success" : "failure");
+					device.publishMessage(topicBuilder.buildGroupAckTopic("feeder-1", deviceId), ack.toJSONString());
+				}).join();
+			}
+
+			GroupFunctionBlockRequest request = new GroupFunctionBlockRequest();
+			request.setFunctionBlocks(List.of(new FunctionBlock("PID", new int[]{1}, new int[]{2})));
+			request.setMqttConnectionParams(params);
+			GroupPublishResponse accepted = deviceGroupService.publishFunctionBlocks("feeder-1", request)
+					.get(10, TimeUnit.SECONDS);
+			assertFalse(accepted.isCompleted());
+
+			awaitTrue(() -> deviceGroupService.getPublish(accepted.getPublishId()).isCompleted());
+			GroupPublishResponse result = deviceGroupService.getPublish(accepted.getPublishId());
+			assertEquals(List.of("ok"), result.getAcknowledged());
+			assertEquals(List.of("bad"), result.getFailed());
+			assertEquals(List.of("silent"), result.getPending());
+			assertEquals(3, received.get());
+		} finally {
+			devices.forEach(MQTTClientWrapper::disconnect);
+		}
+	}
+
+	@Test
+	void rejectsWildcardsInGroupAndDeviceIds() {
+		assertThrows(MessageProcessingException.class, () -> deviceGroupService.putGroup("feeder/1", List.of("a")));
+		assertThrows(MessageProcessingException.class, () -> deviceGroupService.putGroup("feeder-#", List.of("a")));
+		assertThrows(MessageProcessingException.class, () -> deviceGroupService.putGroup("feeder-2", List.of("a", "+")));
+		assertNull(deviceGroupService.getGroup("feeder-2"));
+	}
+
+	private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!condition.getAsBoolean()) {
+			if (System.nanoTime() > deadline) {
+				throw new AssertionError("等待组下发结束超时");
+			}
+			Thread.sleep(20);
+		}
+	}
+}
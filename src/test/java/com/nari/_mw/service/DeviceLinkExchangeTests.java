@@ -0,0 +1,116 @@
+package com.nari._mw.service;
+
+import com.nari._mw.config.DeviceLinkConfig;
+import com.nari._mw.util.MQTTReply;
+import com.nari._mw.util.MQTTTransferClient;
+import com.nari._mw.util.TransferRateLimiter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 请求-响应交互：MQTT 5 按关联标识匹配响应，MQTT 3.1.1 按消息内容过滤迟到响应
+ */
+class DeviceLinkExchangeTests {
+
+	@Test
+	void correlatedClientSkipsContentFilter() throws InterruptedException {
+		StubClient client = new StubClient(true, "{\"number\":1}");
+		DeviceLinkService.Reply reply = service().exchange(client, "device", "file/data", "file/ack",
+				"slice-2", "task/2", response -> response.contains("\"number\":2"));
+
+		assertEquals("{\"number\":1}", reply.getResponse());
+		assertEquals(0, reply.getRetransmissions());
+		assertEquals(List.of("task/2"), client.correlationIds);
+	}
+
+	@Test
+	void uncorrelatedClientDropsStaleRepliesAndRetransmitsWithSameId() throws InterruptedException {
+		StubClient client = new StubClient(false, "{\"number\":1}", null, "{\"number\":2}");
+		DeviceLinkService.Reply reply = service().exchange(client, "device", "file/data", "file/ack",
+				"slice-2", "task/2", response -> response.contains("\"number\":2"));
+
+		assertEquals("{\"number\":2}", reply.getResponse());
+		assertEquals(1, reply.getRetransmissions());
+		assertEquals(List.of("task/2", "task/2"), client.correlationIds);
+	}
+
+	private static DeviceLinkService service() {
+		DeviceLinkConfig config = new DeviceLinkConfig();
+		config.setInitialRtoMs(50);
+		config.setMinRtoMs(10);
+		return new DeviceLinkService(config);
+	}
+
+	/**
+	 * 依次返回预设响应的客户端，null 表示本次等待超时
+	 */
+	private static final class StubClient implements MQTTTransferClient {
+		private final boolean correlated;
+		private final Deque<String> replies = new ArrayDeque<>();
+		private final List<String> correlationIds = new ArrayList<>();
+
+		private StubClient(boolean correlated, String... replies) {
+			this.correlated = correlated;
+			for (String reply : replies) {
+				this.replies.add(reply == null ? "" : reply);
+			}
+		}
+
+		@Override
+		public CompletableFuture<Void> publishRequest(String topic, String responseTopic, String message,
+													  String correlationId) {
+			correlationIds.add(correlationId);
+			return CompletableFuture.completedFuture(null);
+		}
+
+		@Override
+		public MQTTReply pollReply(String responseTopic, String correlationId, long timeout) {
+			String reply = replies.poll();
+			if (reply == null || reply.isEmpty()) {
+				return null;
+			}
+			return correlated ? MQTTReply.correlated(reply) : MQTTReply.uncorrelated(reply);
+		}
+
+		@Override
+		public MQTTTransferClient withRateLimit(TransferRateLimiter rateLimiter, String deviceId) {
+			return this;
+		}
+
+		@Override
+		public MQTTTransferClient withQos(String topic, int qos) {
+			return this;
+		}
+
+		@Override
+		public CompletableFuture<Void> subscribe(String topic) {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		@Override
+		public CompletableFuture<Void> publishMessage(String topic, String message) {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		@Override
+		public String poll(String topic, long timeout) {
+			return null;
+		}
+
+		@Override
+		public String listen(String topic, long timeout) {
+			return null;
+		}
+
+		@Override
+		public void disconnect() {
+		}
+	}
+}
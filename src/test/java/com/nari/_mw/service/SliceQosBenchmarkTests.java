@@ -0,0 +1,97 @@
+package com.nari._mw.service;
+
+import com.nari._mw.EmbeddedBroker;
+import com.nari._mw._enum.MqttTopic;
+import com.nari._mw.config.DeviceLinkConfig;
+import com.nari._mw.pojo.dto.mqtt.connect.MQTTConnectionParams;
+import com.nari._mw.util.MQTTClientWrapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 切片QoS基准：嵌入式代理上逐片发布并等待设备的应用层确认，比较切片QoS 0与QoS 1的切片速率
+ * 两种QoS下每个切片都应送达一次且无需重传，QoS 0省去代理确认后切片速率应更高
+ */
+@Tag("benchmark")
+class SliceQosBenchmarkTests {
+	private static final int WARMUP_SLICES = 100;
+	private static final int SLICES = 1000;
+	private static final int SLICE_BYTES = 1024;
+
+	@Test
+	void sliceThroughputByQos() throws Exception {
+		double qos1 = sliceRate(1);
+		double qos0 = sliceRate(0);
+		assertTrue(qos0 > qos1, String.format("QoS 0 %.0f 片/秒 不高于 QoS 1 %.0f 片/秒", qos0, qos1));
+	}
+
+	/**
+	 * 每个QoS使用独立代理：Moquette 0.17 在客户端断开时偶发重复释放QoS 1消息，导致会话线程退出，后续连接无法建立
+	 */
+	private double sliceRate(int qos) throws Exception {
+		EmbeddedBroker broker = new EmbeddedBroker().start();
+		try {
+			return sliceRate(broker, qos);
+		} finally {
+			broker.stop();
+		}
+	}
+
+	private double sliceRate(EmbeddedBroker broker, int qos) throws InterruptedException {
+		MQTTConnectionParams params = new MQTTConnectionParams(broker.getUri(), "admin", "public");
+		String sliceTopic = MqttTopic.FILE_DATA_SLICE.getTopic();
+		String ackTopic = MqttTopic.FILE_SLICE_ACK.getTopic();
+
+		// 模拟设备：收到切片即在确认主题上回复切片序号，确认使用相同QoS
+		MQTTClientWrapper device = new MQTTClientWrapper(params, false).withQos(ackTopic, qos);
+		MQTTClientWrapper sender = new MQTTClientWrapper(params, false).withQos(sliceTopic, qos);
+		AtomicInteger delivered = new AtomicInteger();
+		try {
+			device.subscribe(sliceTopic, (topic, payload) -> {
+				delivered.incrementAndGet();
+				String message = new String(payload, StandardCharsets.UTF_8);
+				device.publishMessage(ackTopic, message.substring(0, message.indexOf('|')));
+			}).join();
+			sender.subscribe(ackTopic).join();
+
+			DeviceLinkConfig config = new DeviceLinkConfig();
+			config.setInitialRtoMs(5000);
+			DeviceLinkService links = new DeviceLinkService(config);
+			char[] filler = new char[SLICE_BYTES];
+			Arrays.fill(filler, 'x');
+			String data = new String(filler);
+
+			int retransmissions = run(links, sender, 0, WARMUP_SLICES, data);
+			long start = System.nanoTime();
+			retransmissions += run(links, sender, WARMUP_SLICES, SLICES, data);
+			long elapsedNanos = System.nanoTime() - start;
+
+			// 超出重传次数时 exchange 抛出异常，走到这里说明每个切片都已确认；本地代理上不应丢片
+			assertEquals(0, retransmissions, "QoS " + qos + " 下发生重传");
+			assertEquals(WARMUP_SLICES + SLICES, delivered.get(), "QoS " + qos + " 下设备收到的切片数");
+			return SLICES * 1e9 / elapsedNanos;
+		} finally {
+			sender.disconnect();
+			device.disconnect();
+		}
+	}
+
+	private int run(DeviceLinkService links, MQTTClientWrapper sender, int from, int count, String data)
+			throws InterruptedException {
+		int retransmissions = 0;
+		for (int number = from; number < from + count; number++) {
+			String expected = String.valueOf(number);
+			retransmissions += links.exchange(sender, "bench-device", MqttTopic.FILE_DATA_SLICE.getTopic(),
+					MqttTopic.FILE_SLICE_ACK.getTopic(), number + "|" + data, expected, expected::equals)
+					.getRetransmissions();
+		}
+		return retransmissions;
+	}
+}
@@ -0,0 +1,66 @@
+package com.nari._mw.service;
+
+import com.nari._mw.config.MQTTDefaultConfig;
+import com.nari._mw.config.TelemetryIngestionConfig;
+import com.nari._mw.util.TopicBuilder;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 遥测接入吞吐基准：单个生产者模拟MQTT回调线程，测量从入队到监听器收到的消息速率
+ */
+@Tag("benchmark")
+class TelemetryIngestionBenchmarkTests {
+	private static final int MESSAGES = 1_000_000;
+	private static final int DEVICES = 100;
+	// 保守下限：每个控制器每秒数千测点、数十台控制器
+	private static final double MIN_MESSAGES_PER_SECOND = 100_000;
+
+	@Test
+	void ingestionThroughput() throws InterruptedException {
+		TelemetryIngestionConfig config = new TelemetryIngestionConfig();
+		config.setWorkerThreads(2);
+		TopicBuilder topicBuilder = new TopicBuilder();
+		TelemetryIngestionService service = new TelemetryIngestionService(config, new MQTTDefaultConfig(), topicBuilder,
+				new StaticListableBeanFactory().getBeanProvider(TelemetryListener.class));
+
+		AtomicLong points = new AtomicLong();
+		service.addListener(batch -> batch.forEach(m -> points.addAndGet(m.getPoints().length)));
+		service.startWorkers();
+
+		String[] topics = new String[DEVICES];
+		for (int i = 0; i < DEVICES; i++) {
+			topics[i] = topicBuilder.buildSubscribeTopic("device" + i);
+		}
+		byte[] payload = "{\"ts\":1700000000000,\"points\":{\"P\":512.3,\"Q\":-12.5,\"U\":400.1,\"I\":730.2,\"SOC\":0.82}}"
+				.getBytes(StandardCharsets.UTF_8);
+
+		try {
+			long start = System.nanoTime();
+			for (int i = 0; i < MESSAGES; i++) {
+				while (!service.ingest(topics[i % DEVICES], payload)) {
+					Thread.onSpinWait();
+				}
+			}
+			while (service.getStats().getProcessed() + service.getStats().getParseErrors() < MESSAGES) {
+				Thread.sleep(1);
+			}
+			long elapsedNanos = System.nanoTime() - start;
+
+			assertEquals(MESSAGES, service.getStats().getProcessed());
+			assertEquals(0, service.getStats().getParseErrors());
+			assertEquals(MESSAGES * 5L, points.get());
+			double messagesPerSecond = MESSAGES * 1e9 / elapsedNanos;
+			assertTrue(messagesPerSecond > MIN_MESSAGES_PER_SECOND, String.format("接入速率 %.0f 条/秒", messagesPerSecond));
+		} finally {
+			service.stop();
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package com.nari._mw.service;
+
+import com.nari._mw.config.MQTTDefaultConfig;
+import com.nari._mw.config.TelemetryIngestionConfig;
+import com.nari._mw.pojo.model.TelemetryMessage;
+import com.nari._mw.util.TopicBuilder;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 多个工作线程时同一设备的消息仍由一个线程按到达顺序分发
+ */
+class TelemetryIngestionServiceTests {
+	private static final int DEVICES = 16;
+	private static final int MESSAGES_PER_DEVICE = 2_000;
+
+	@Test
+	void samplesOfOneDeviceReachListenersInOrderOnOneThread() throws InterruptedException {
+		TelemetryIngestionConfig config = new TelemetryIngestionConfig();
+		config.setWorkerThreads(4);
+		config.setBatchSize(16);
+		TopicBuilder topicBuilder = new TopicBuilder();
+		TelemetryIngestionService service = new TelemetryIngestionService(config, new MQTTDefaultConfig(), topicBuilder,
+				new StaticListableBeanFactory().getBeanProvider(TelemetryListener.class));
+
+		Map<String, List<Long>> timestamps = new ConcurrentHashMap<>();
+		Map<String, Set<String>> threads = new ConcurrentHashMap<>();
+		service.addListener(batch -> {
+			for (TelemetryMessage message : batch) {
+				timestamps.computeIfAbsent(message.getDeviceId(), k -> new CopyOnWriteArrayList<>())
+						.add(message.getTimestamp());
+				threads.computeIfAbsent(message.getDeviceId(), k -> ConcurrentHashMap.newKeySet())
+						.add(Thread.currentThread().getName());
+			}
+		});
+		service.startWorkers();
+
+		try {
+			for (int i = 0; i < MESSAGES_PER_DEVICE; i++) {
+				for (int device = 0; device < DEVICES; device++) {
+					byte[] payload = ("{\"ts\":" + i + ",\"P\":1.0}").getBytes(StandardCharsets.UTF_8);
+					while (!service.ingest(topicBuilder.buildSubscribeTopic("device" + device), payload)) {
+						Thread.onSpinWait();
+					}
+				}
+			}
+			while (service.getStats().getProcessed() < (long) DEVICES * MESSAGES_PER_DEVICE) {
+				Thread.sleep(1);
+			}
+		} finally {
+			service.stop();
+		}
+
+		assertEquals(DEVICES, timestamps.size());
+		for (Map.Entry<String, List<Long>> entry : timestamps.entrySet()) {
+			List<Long> received = entry.getValue();
+			assertEquals(MESSAGES_PER_DEVICE, received.size(), entry.getKey());
+			for (int i = 0; i < received.size(); i++) {
+				assertEquals(i, received.get(i), entry.getKey() + " 的样本乱序");
+			}
+			assertEquals(1, threads.get(entry.getKey()).size(), entry.getKey() + " 由多个工作线程分发");
+		}
+		Set<String> workers = ConcurrentHashMap.newKeySet();
+		threads.values().forEach(workers::addAll);
+		assertTrue(workers.size() > 1, "所有设备都分到了同一个工作线程");
+	}
+}
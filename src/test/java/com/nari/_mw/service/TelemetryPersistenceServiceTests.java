@@ -0,0 +1,82 @@
+package com.nari._mw.service;
+
+import com.nari._mw.config.TelemetryPersistenceConfig;
+import com.nari._mw.pojo.model.TelemetryMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 设备停止上报后聚合桶仍按时间关闭，停止服务时写入未关闭的桶
+ */
+class TelemetryPersistenceServiceTests {
+	private static final long HOUR_MS = 60 * 60 * 1000;
+
+	/**
+	 * 只记录写入聚合表的行数，不连接数据库
+	 */
+	private static final class RecordingJdbcTemplate extends JdbcTemplate {
+		private final AtomicInteger rollupRows = new AtomicInteger();
+
+		@Override
+		public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+									   ParameterizedPreparedStatementSetter<T> pss) {
+			if (sql.startsWith("INSERT INTO telemetry_rollup")) {
+				rollupRows.addAndGet(batchArgs.size());
+			}
+			return new int[0][];
+		}
+	}
+
+	@Test
+	void closesBucketsOfQuietDeviceFromWriterLoop() throws InterruptedException {
+		RecordingJdbcTemplate jdbcTemplate = new RecordingJdbcTemplate();
+		TelemetryPersistenceService service = new TelemetryPersistenceService(config(0), jdbcTemplate);
+		service.start();
+		try {
+			// 两小时前的唯一样本，三种粒度的桶都已过期，此后不再有样本
+			service.onTelemetry(List.of(sample(System.currentTimeMillis() - 2 * HOUR_MS)));
+
+			long deadline = System.currentTimeMillis() + 5_000;
+			while (jdbcTemplate.rollupRows.get() < 3 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(20);
+			}
+			assertEquals(3, jdbcTemplate.rollupRows.get());
+		} finally {
+			service.stop();
+		}
+		assertEquals(3, jdbcTemplate.rollupRows.get());
+	}
+
+	@Test
+	void stopWritesOpenBuckets() throws InterruptedException {
+		RecordingJdbcTemplate jdbcTemplate = new RecordingJdbcTemplate();
+		TelemetryPersistenceService service = new TelemetryPersistenceService(config(HOUR_MS), jdbcTemplate);
+		service.start();
+
+		service.onTelemetry(List.of(sample(System.currentTimeMillis())));
+		Thread.sleep(200);
+		assertEquals(0, jdbcTemplate.rollupRows.get());
+
+		service.stop();
+		assertEquals(3, jdbcTemplate.rollupRows.get());
+	}
+
+	private static TelemetryPersistenceConfig config(long rollupGraceMs) {
+		TelemetryPersistenceConfig config = new TelemetryPersistenceConfig();
+		config.setInitializeSchema(false);
+		config.setFlushIntervalMs(20);
+		config.setRollupGraceMs(rollupGraceMs);
+		return config;
+	}
+
+	private static TelemetryMessage sample(long timestamp) {
+		return new TelemetryMessage("d1", timestamp, new String[]{"P"}, new double[]{1.0});
+	}
+}
@@ -0,0 +1,142 @@
+package com.nari._mw.service;
+
+import com.nari._mw.pojo.model.TelemetryBucket;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 聚合桶边界与min/max/avg
+ */
+class TelemetryRollupAggregatorTests {
+	private static final double DELTA = 1e-9;
+
+	private record Closed(long resolutionMs, TelemetryBucket bucket) {
+	}
+
+	@Test
+	void closesBucketsAtResolutionBoundaries() {
+		TelemetryRollupAggregator aggregator = new TelemetryRollupAggregator(10);
+		List<Closed> closed = new ArrayList<>();
+		TelemetryRollupAggregator.BucketSink sink =
+				(deviceId, point, resolutionMs, bucket) -> closed.add(new Closed(resolutionMs, bucket));
+
+		// [60000, 61000) 内三个样本，最后一个样本恰好落在桶结束前
+		aggregator.add("d1", "P", 60_000, 3.0, sink);
+		aggregator.add("d1", "P", 60_500, 1.0, sink);
+		aggregator.add("d1", "P", 60_999, 8.0, sink);
+		assertEquals(0, closed.size());
+
+		// 61000 属于下一个1秒桶，只关闭1秒桶
+		aggregator.add("d1", "P", 61_000, 4.0, sink);
+		assertEquals(1, closed.size());
+		assertBucket(closed.get(0), 1_000, 60_000, 1.0, 8.0, 4.0, 3);
+
+		// 120000 跨入下一个1秒和1分钟桶，15分钟桶仍未关闭
+		aggregator.add("d1", "P", 120_000, 10.0, sink);
+		assertEquals(3, closed.size());
+		assertBucket(closed.get(1), 1_000, 61_000, 4.0, 4.0, 4.0, 1);
+		assertBucket(closed.get(2), 60_000, 60_000, 1.0, 8.0, 4.0, 4);
+
+		List<TelemetryBucket> quarter = aggregator.query("d1", "P", 900_000, 0, 900_000);
+		assertEquals(1, quarter.size());
+		TelemetryBucket open = quarter.get(0);
+		assertEquals(0, open.getStart());
+		assertEquals(1.0, open.getMin(), DELTA);
+		assertEquals(10.0, open.getMax(), DELTA);
+		assertEquals(26.0 / 5, open.getAvg(), DELTA);
+		assertEquals(5, open.getCount());
+
+		// 早于当前1秒和1分钟桶的迟到样本不参与这两个粒度的聚合
+		aggregator.add("d1", "P", 59_000, 100.0, sink);
+		assertEquals(3, closed.size());
+		List<TelemetryBucket> minutes = aggregator.query("d1", "P", 60_000, 60_000, 180_000);
+		assertEquals(2, minutes.size());
+		assertEquals(120_000, minutes.get(1).getStart());
+		assertEquals(10.0, minutes.get(1).getMax(), DELTA);
+		assertEquals(1, minutes.get(1).getCount());
+	}
+
+	@Test
+	void queryReturnsRetainedBucketsInRange() {
+		TelemetryRollupAggregator aggregator = new TelemetryRollupAggregator(2);
+		TelemetryRollupAggregator.BucketSink sink = (deviceId, point, resolutionMs, bucket) -> {
+		};
+		for (int second = 0; second < 5; second++) {
+			aggregator.add("d1", "P", second * 1_000L, second, sink);
+		}
+
+		// 只保留最近两个已关闭的1秒桶(2s、3s)和当前桶(4s)
+		List<TelemetryBucket> buckets = aggregator.query("d1", "P", 1_000, 2_000, 4_000);
+		assertEquals(2, buckets.size());
+		assertEquals(2_000, buckets.get(0).getStart());
+		assertEquals(3_000, buckets.get(1).getStart());
+		assertEquals(3, aggregator.query("d1", "P", 1_000, 2_000, 5_000).size());
+
+		assertNull(aggregator.query("d1", "P", 1_000, 0, 5_000));
+		assertNull(aggregator.query("d2", "P", 1_000, 2_000, 5_000));
+	}
+
+	@Test
+	void closesExpiredBucketsWithoutLaterSamples() {
+		TelemetryRollupAggregator aggregator = new TelemetryRollupAggregator(10);
+		List<Closed> closed = new ArrayList<>();
+		TelemetryRollupAggregator.BucketSink sink =
+				(deviceId, point, resolutionMs, bucket) -> closed.add(new Closed(resolutionMs, bucket));
+
+		aggregator.add("d1", "P", 60_000, 2.0, sink);
+		aggregator.add("d1", "P", 60_400, 6.0, sink);
+
+		// 1秒桶在 61000 结束，宽限期内不关闭
+		aggregator.closeExpired(61_999, 1_000, sink);
+		assertEquals(0, closed.size());
+		aggregator.closeExpired(62_000, 1_000, sink);
+		assertEquals(1, closed.size());
+		assertBucket(closed.get(0), 1_000, 60_000, 2.0, 6.0, 4.0, 2);
+
+		aggregator.closeExpired(121_000, 1_000, sink);
+		assertEquals(2, closed.size());
+		assertBucket(closed.get(1), 60_000, 60_000, 2.0, 6.0, 4.0, 2);
+
+		// 已关闭桶内的迟到样本不会重新打开该桶
+		aggregator.add("d1", "P", 60_800, 100.0, sink);
+		aggregator.closeExpired(121_000, 1_000, sink);
+		assertEquals(2, closed.size());
+		List<TelemetryBucket> seconds = aggregator.query("d1", "P", 1_000, 60_000, 62_000);
+		assertEquals(1, seconds.size());
+		assertEquals(2, seconds.get(0).getCount());
+	}
+
+	@Test
+	void flushClosesAllOpenBuckets() {
+		TelemetryRollupAggregator aggregator = new TelemetryRollupAggregator(10);
+		List<Closed> closed = new ArrayList<>();
+		TelemetryRollupAggregator.BucketSink sink =
+				(deviceId, point, resolutionMs, bucket) -> closed.add(new Closed(resolutionMs, bucket));
+
+		aggregator.add("d1", "P", 1_000, 5.0, sink);
+		aggregator.flush(sink);
+		assertEquals(3, closed.size());
+		assertBucket(closed.get(0), 1_000, 1_000, 5.0, 5.0, 5.0, 1);
+		assertBucket(closed.get(1), 60_000, 0, 5.0, 5.0, 5.0, 1);
+		assertBucket(closed.get(2), 900_000, 0, 5.0, 5.0, 5.0, 1);
+
+		// 没有未关闭的桶时不再输出
+		aggregator.flush(sink);
+		assertEquals(3, closed.size());
+	}
+
+	private static void assertBucket(Closed closed, long resolutionMs, long start, double min, double max, double avg,
+									 int count) {
+		assertEquals(resolutionMs, closed.resolutionMs());
+		assertEquals(start, closed.bucket().getStart());
+		assertEquals(min, closed.bucket().getMin(), DELTA);
+		assertEquals(max, closed.bucket().getMax(), DELTA);
+		assertEquals(avg, closed.bucket().getAvg(), DELTA);
+		assertEquals(count, closed.bucket().getCount());
+	}
+}
@@ -0,0 +1,152 @@
+package com.nari._mw.service;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.nari._mw.EmbeddedBroker;
+import com.nari._mw._enum.MqttTopic;
+import com.nari._mw.pojo.dto.mqtt.connect.MQTTConnectionParams;
+import com.nari._mw.pojo.dto.mqtt.transfer.ConfigTransferAcknowledgeResponse;
+import com.nari._mw.pojo.dto.mqtt.transfer.ConfigTransferSliceResponse;
+import com.nari._mw.pojo.dto.request.PublishConfigRequest;
+import com.nari._mw.pojo.dto.response.TransferTimelineResponse;
+import com.nari._mw.util.MQTTClientWrapper;
+import com.nari._mw.util.TrafficRecording;
+import com.nari._mw.util.TrafficReplayer;
+import com.nari._mw.util.TransferTimeline;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 记录一次与"现场"控制器的传输(第3片确认明显偏慢，首次最终校验报告第2片缺失)，
+ * 再以4倍速回放该控制器的行为重新传输：重传行为应与记录一致，切片阶段耗时按比例缩短
+ */
+@SpringBootTest(properties = {
+		"mqtt.recorder.enabled=true",
+		"mqtt.recorder.directory=target/test-recordings",
+		"mqtt.recorder.capacity-bytes=4194304"
+})
+class TrafficReplayTests {
+	private static final String DEVICE_ID = "field-device";
+	private static final int SLICE_SIZE = 1024;
+	private static final int SLICES = 10;
+	private static final double SPEED = 4;
+
+	private static EmbeddedBroker broker;
+
+	@TempDir
+	Path directory;
+
+	@Autowired
+	private DeviceService deviceService;
+
+	@Autowired
+	private TrafficRecordingService trafficRecordingService;
+
+	@BeforeAll
+	static void startBroker() throws Exception {
+		broker = new EmbeddedBroker().start();
+	}
+
+	@AfterAll
+	static void stopBroker() {
+		broker.stop();
+	}
+
+	@Test
+	void replayReproducesRecordedControllerBehaviourAtHigherSpeed() throws Exception {
+		Path configFile = directory.resolve("config.bin");
+		Files.write(configFile, new byte[SLICES * SLICE_SIZE]);
+		MQTTConnectionParams params = new MQTTConnectionParams(broker.getUri(), "admin", "public");
+
+		TransferTimelineResponse recorded;
+		FieldController controller = new FieldController(params);
+		try {
+			recorded = deviceService.publishConfig(request(configFile, params)).get(60, TimeUnit.SECONDS);
+		} finally {
+			controller.stop();
+		}
+		assertEquals(1, recorded.getRetries());
+
+		TrafficRecording recording = TrafficRecording.read(trafficRecordingService.getRecorder().getPath());
+		TrafficRecording.Session session = recording.firstSession(DEVICE_ID);
+		assertNotNull(session);
+		// 元数据、10个切片、重传的第2片、再次触发校验的最后一片
+		assertEquals(SLICES + 3, session.getMessages().stream().filter(TrafficRecording.Message::isPublished).count());
+
+		TransferTimelineResponse replayed;
+		try (TrafficReplayer replayer = new TrafficReplayer(session, params, SPEED)) {
+			replayed = deviceService.publishConfig(request(configFile, params)).get(60, TimeUnit.SECONDS);
+			assertEquals(replayer.getRecordedSteps(), replayer.getReplayedSteps());
+		}
+
+		assertEquals(recorded.getRetries(), replayed.getRetries());
+		assertEquals(recorded.getBytesSent(), replayed.getBytesSent());
+		double recordedSlices = recorded.getPhasesMs().get(TransferTimeline.SLICES);
+		double replayedSlices = replayed.getPhasesMs().get(TransferTimeline.SLICES);
+		assertTrue(replayedSlices < recordedSlices / 2,
+				String.format("切片阶段: 记录 %.1f ms, %.0f倍速回放 %.1f ms", recordedSlices, SPEED, replayedSlices));
+	}
+
+	private static PublishConfigRequest request(Path configFile, MQTTConnectionParams params) {
+		PublishConfigRequest request = new PublishConfigRequest();
+		request.setDeviceId(DEVICE_ID);
+		request.setConfigFilePath(configFile.toString());
+		request.setSliceSize(SLICE_SIZE);
+		request.setMqttConnectionParams(params);
+		return request;
+	}
+
+	/**
+	 * "现场"控制器：切片确认30ms，第3片150ms；最后一片首次到达时报告第2片缺失
+	 */
+	private static final class FieldController {
+		private final MQTTClientWrapper client;
+		private final ScheduledExecutorService replies = Executors.newSingleThreadScheduledExecutor();
+		private final AtomicBoolean verified = new AtomicBoolean();
+
+		private FieldController(MQTTConnectionParams params) {
+			client = new MQTTClientWrapper(params, false);
+			client.subscribe(MqttTopic.CONFIG_TRANSFER_REQUEST.getTopic(), (topic, payload) ->
+					reply(20, MqttTopic.CONFIG_TRANSFER_REQUEST_ACK, new ConfigTransferAcknowledgeResponse("ready"))).join();
+			client.subscribe(MqttTopic.FILE_DATA_SLICE.getTopic(), (topic, payload) -> {
+				JSONObject slice = JSON.parseObject(new String(payload, StandardCharsets.UTF_8));
+				int number = slice.getIntValue("number");
+				if (number < SLICES) {
+					reply(number == 3 ? 150 : 30, MqttTopic.FILE_SLICE_ACK,
+							new ConfigTransferSliceResponse(slice.getString("taskNo"), number, "success"));
+				} else if (verified.compareAndSet(false, true)) {
+					reply(30, MqttTopic.FILE_VERIFICATION_RESULT, new ConfigTransferAcknowledgeResponse("failure", List.of(2)));
+				} else {
+					reply(30, MqttTopic.FILE_VERIFICATION_RESULT, new ConfigTransferAcknowledgeResponse("success"));
+				}
+			}).join();
+		}
+
+		private void reply(long delayMs, MqttTopic topic, Object response) {
+			replies.schedule(() -> client.publishMessage(topic.getTopic(), JSON.toJSONString(response)),
+					delayMs, TimeUnit.MILLISECONDS);
+		}
+
+		private void stop() {
+			replies.shutdownNow();
+			client.disconnect();
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package com.nari._mw.service;
+
+import com.nari._mw._enum.TransferPriority;
+import com.nari._mw.config.TransferAdmissionConfig;
+import com.nari._mw.exception.AdmissionRejectedException;
+import com.nari._mw.pojo.dto.response.AdmissionTicketResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 准入队列调度顺序：优先级、操作员轮转、同设备顺序执行、队列满时拒绝、调用方放弃时移除排队任务
+ */
+class TransferAdmissionQueueTests {
+	private final List<String> started = new ArrayList<>();
+	private final List<CompletableFuture<Void>> inFlight = new ArrayList<>();
+
+	@Test
+	void schedulesByPriorityThenRoundRobinAcrossOperators() {
+		TransferAdmissionQueue queue = newQueue(1, 10);
+		submit(queue, "blocker", "op-a", TransferPriority.NORMAL);
+		submit(queue, "a1", "op-a", TransferPriority.NORMAL);
+		submit(queue, "a2", "op-a", TransferPriority.NORMAL);
+		submit(queue, "a3", "op-a", TransferPriority.NORMAL);
+		submit(queue, "b1", "op-b", TransferPriority.NORMAL);
+		submit(queue, "low", "op-c", TransferPriority.LOW);
+		submit(queue, "urgent", "op-c", TransferPriority.HIGH);
+
+		List<AdmissionTicketResponse> tickets = queue.snapshot();
+		assertEquals("RUNNING", tickets.get(0).getState());
+		assertEquals("urgent", tickets.get(1).getDeviceId());
+		assertEquals(1, tickets.get(1).getPosition());
+
+		drain();
+		assertEquals(List.of("blocker", "urgent", "a1", "b1", "a2", "a3", "low"), started);
+	}
+
+	@Test
+	void runsJobsForTheSameDeviceOneAtATimeInOrder() {
+		TransferAdmissionQueue queue = newQueue(2, 10);
+		submit(queue, "dev-1", "op-a", TransferPriority.LOW);
+		submit(queue, "dev-1", "op-b", TransferPriority.HIGH);
+		submit(queue, "dev-2", "op-b", TransferPriority.LOW);
+		assertEquals(List.of("dev-1", "dev-2"), started);
+
+		inFlight.get(0).complete(null);
+		assertEquals(List.of("dev-1", "dev-2", "dev-1"), started);
+	}
+
+	@Test
+	void rejectsOnlyWhenQueueIsFull() {
+		TransferAdmissionQueue queue = newQueue(1, 2);
+		submit(queue, "d1", "op-a", TransferPriority.NORMAL);
+		submit(queue, "d2", "op-a", TransferPriority.NORMAL);
+		submit(queue, "d3", "op-a", TransferPriority.NORMAL);
+		assertThrows(AdmissionRejectedException.class, () -> submit(queue, "d4", "op-a", TransferPriority.NORMAL));
+	}
+
+	@Test
+	void removesQueuedJobWhenCallerGivesUp() {
+		TransferAdmissionQueue queue = newQueue(1, 10);
+		submit(queue, "d1", "op-a", TransferPriority.NORMAL);
+		CompletableFuture<Void> abandoned = queue.submit("d2", "op-a", TransferPriority.NORMAL, () -> {
+			started.add("d2");
+			return CompletableFuture.completedFuture(null);
+		});
+		assertEquals(2, queue.snapshot().size());
+
+		abandoned.completeExceptionally(new TimeoutException());
+		assertEquals(1, queue.snapshot().size());
+
+		drain();
+		assertEquals(List.of("d1"), started);
+	}
+
+	private TransferAdmissionQueue newQueue(int maxConcurrent, int maxDepth) {
+		TransferAdmissionConfig config = new TransferAdmissionConfig();
+		config.setMaxConcurrent(maxConcurrent);
+		config.setMaxDepth(maxDepth);
+		// 直接在调用线程上启动任务，便于断言调度顺序
+		return new TransferAdmissionQueue(config, Runnable::run);
+	}
+
+	private void submit(TransferAdmissionQueue queue, String deviceId, String operator, TransferPriority priority) {
+		queue.submit(deviceId, operator, priority, () -> {
+			started.add(deviceId);
+			CompletableFuture<Void> future = new CompletableFuture<>();
+			inFlight.add(future);
+			return future;
+		});
+	}
+
+	private void drain() {
+		for (int i = 0; i < inFlight.size(); i++) {
+			inFlight.get(i).complete(null);
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package com.nari._mw.service;
+
+import com.nari._mw.EmbeddedBroker;
+import com.nari._mw.exception.TransferCancelledException;
+import com.nari._mw.pojo.dto.mqtt.connect.MQTTConnectionParams;
+import com.nari._mw.pojo.dto.request.PublishConfigRequest;
+import com.nari._mw.pojo.dto.response.TransferStatusResponse;
+import com.nari._mw.pojo.dto.response.TransferTimelineResponse;
+import com.nari._mw.util.TransferTimeline;
+import com.nari._mw.util.MQTTClientWrapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 向不响应的设备发起传输，超时或取消后执行线程、MQTT连接和客户端线程都应回到基线
+ */
+@SpringBootTest(properties = "transfer.execution.ack-timeout-ms=600000")
+class TransferCancellationLeakTests {
+	private static final int TRANSFERS = 6;
+
+	private static EmbeddedBroker broker;
+
+	@Autowired
+	private DeviceService deviceService;
+
+	@Autowired
+	private TransferRegistry transferRegistry;
+
+	@Autowired
+	private TransferTimelineStore transferTimelineStore;
+
+	@TempDir
+	Path directory;
+
+	@BeforeAll
+	static void startBroker() throws Exception {
+		broker = new EmbeddedBroker().start();
+	}
+
+	@AfterAll
+	static void stopBroker() {
+		broker.stop();
+	}
+
+	@Test
+	void timedOutAndCancelledTransfersReleaseThreadsAndConnections() throws Exception {
+		Path configFile = directory.resolve("config.bin");
+		Files.write(configFile, new byte[50 * 1024]);
+
+		int baselineClients = MQTTClientWrapper.getOpenClientCount();
+		long baselineMqttThreads = countMqttThreads();
+
+		List<CompletableFuture<TransferTimelineResponse>> futures = new ArrayList<>();
+		for (int i = 0; i < TRANSFERS; i++) {
+			PublishConfigRequest request = new PublishConfigRequest();
+			request.setDeviceId("dead-device-" + i);
+			request.setConfigFilePath(configFile.toString());
+			request.setMqttConnectionParams(new MQTTConnectionParams(broker.getUri(), "admin", "public"));
+			futures.add(deviceService.publishConfig(request));
+		}
+
+		// 所有传输都阻塞在等待元数据确认
+		awaitTrue(() -> transferRegistry.getActiveThreadCount() == TRANSFERS
+				&& broker.getConnectedClientCount() == TRANSFERS);
+		assertTrue(countMqttThreads() > baselineMqttThreads);
+
+		// 一半通过取消接口结束，另一半模拟控制器上的超时
+		List<TransferStatusResponse> running = transferRegistry.list();
+		assertEquals(TRANSFERS, running.size());
+		int cancelled = 0;
+		for (CompletableFuture<TransferTimelineResponse> future : futures) {
+			future.orTimeout(200, TimeUnit.MILLISECONDS);
+		}
+		for (int i = 0; i < TRANSFERS / 2; i++) {
+			if (transferRegistry.cancel(running.get(i).getTransferId())) {
+				cancelled++;
+			}
+		}
+		assertEquals(TRANSFERS / 2, cancelled);
+
+		int cancelledResults = 0;
+		for (CompletableFuture<TransferTimelineResponse> future : futures) {
+			Throwable cause = assertFails(future);
+			if (cause instanceof TransferCancelledException) {
+				cancelledResults++;
+			} else {
+				assertInstanceOf(TimeoutException.class, cause);
+			}
+		}
+		assertEquals(TRANSFERS / 2, cancelledResults);
+
+		// 提前结束的传输同样留下时间线，停留在等待元数据确认的阶段
+		for (int i = 0; i < TRANSFERS; i++) {
+			String deviceId = "dead-device-" + i;
+			awaitTrue(() -> !transferTimelineStore.list(deviceId).isEmpty());
+			List<TransferTimelineResponse> timelines = transferTimelineStore.list(deviceId);
+			assertEquals(1, timelines.size());
+			assertEquals("failure", timelines.get(0).getStatus());
+			assertTrue(timelines.get(0).getPhasesMs().containsKey(TransferTimeline.METADATA));
+		}
+
+		awaitTrue(() -> transferRegistry.getActiveThreadCount() == 0
+				&& transferRegistry.list().isEmpty()
+				&& MQTTClientWrapper.getOpenClientCount() == baselineClients
+				&& broker.getConnectedClientCount() == 0
+				&& countMqttThreads() <= baselineMqttThreads);
+	}
+
+	private static Throwable assertFails(CompletableFuture<?> future) {
+		try {
+			future.join();
+		} catch (CompletionException e) {
+			return e.getCause();
+		}
+		throw new AssertionError("传输应以异常结束");
+	}
+
+	private static long countMqttThreads() {
+		return Thread.getAllStackTraces().keySet().stream()
+				.filter(thread -> thread.isAlive() && thread.getName().contains("mqtt-client-"))
+				.count();
+	}
+
+	private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!condition.getAsBoolean()) {
+			if (System.nanoTime() > deadline) {
+				throw new AssertionError("等待资源回收超时");
+			}
+			Thread.sleep(20);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.nari._mw.service;
+
+import com.nari._mw.config.TransferCoalescingConfig;
+import com.nari._mw.exception.IdempotencyConflictException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 重复下发合并：进行中的相同请求只传输一次，Idempotency-Key 重复提交返回首次结果，失败后可重试；
+ * 新建传输在合并器的锁外进行
+ */
+class TransferCoalescerTests {
+	private static final String CONTENT = "device-1|md5|1024";
+
+	private final TransferCoalescer coalescer = new TransferCoalescer(new TransferCoalescingConfig());
+	private final AtomicInteger started = new AtomicInteger();
+	private CompletableFuture<String> transfer;
+
+	@Test
+	void duplicatesAttachToInFlightTransfer() {
+		CompletableFuture<String> first = coalescer.submit(CONTENT, null, task());
+		CompletableFuture<String> second = coalescer.submit(CONTENT, null, task());
+		assertEquals(1, started.get());
+		assertEquals(1, coalescer.getCoalescedCount());
+
+		// 一个调用方取消不影响其他调用方和传输本身
+		first.cancel(true);
+		assertFalse(transfer.isDone());
+		transfer.complete("success");
+		assertEquals("success", second.join());
+
+		coalescer.submit(CONTENT, null, task());
+		assertEquals(2, started.get());
+	}
+
+	@Test
+	void idempotentRetryReturnsFirstResult() {
+		coalescer.submit(CONTENT, "key-1", task());
+		transfer.complete("success");
+
+		assertEquals("success", coalescer.submit(CONTENT, "key-1", task()).join());
+		assertEquals(1, started.get());
+		assertThrows(IdempotencyConflictException.class,
+				() -> coalescer.submit("device-2|md5|1024", "key-1", task()));
+	}
+
+	@Test
+	void failedTransferCanBeRetriedWithSameKey() {
+		CompletableFuture<String> first = coalescer.submit(CONTENT, "key-1", task());
+		transfer.completeExceptionally(new RuntimeException("设备无响应"));
+		assertTrue(first.isCompletedExceptionally());
+
+		coalescer.submit(CONTENT, "key-1", task());
+		assertEquals(2, started.get());
+	}
+
+	@Test
+	void taskRunsOutsideTheLock() throws Exception {
+		CompletableFuture<Long> fromOtherThread = new CompletableFuture<>();
+		CompletableFuture<String> first = coalescer.submit(CONTENT, null, () -> {
+			// 排队或连接期间其他请求仍可进入合并器
+			fromOtherThread.complete(CompletableFuture.supplyAsync(coalescer::getCoalescedCount)
+					.orTimeout(5, TimeUnit.SECONDS).join());
+			return task().get();
+		});
+		assertEquals(0L, fromOtherThread.get(5, TimeUnit.SECONDS));
+		assertFalse(first.isDone());
+		assertEquals(1, started.get());
+	}
+
+	@Test
+	void synchronousTaskFailureReleasesContentKey() {
+		assertThrows(IllegalStateException.class, () -> coalescer.submit(CONTENT, "key-1", () -> {
+			throw new IllegalStateException("队列已满");
+		}));
+
+		coalescer.submit(CONTENT, "key-1", task());
+		assertEquals(1, started.get());
+		assertEquals(0, coalescer.getCoalescedCount());
+	}
+
+	private Supplier<CompletableFuture<String>> task() {
+		return () -> {
+			started.incrementAndGet();
+			transfer = new CompletableFuture<>();
+			return transfer;
+		};
+	}
+}
@@ -0,0 +1,107 @@
+package com.nari._mw.util;
+
+import com.alibaba.fastjson.JSON;
+import com.nari._mw.pojo.dto.mqtt.transfer.ConfigTransferSliceResponse;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 确认报文扫描：固定格式直接比较，意外格式交给 Fastjson；附与 Fastjson 反射解析的吞吐对比
+ */
+class AckScannerTests {
+	private static final String TASK_NO = "20250301120000-8f3a";
+
+	@Test
+	void comparesFixedShapeAcks() {
+		String ack = "{\"taskNo\":\"" + TASK_NO + "\",\"number\":12,\"status\":\"success\"}";
+		assertEquals(AckScanner.MATCH, AckScanner.matchSliceAck(ack, TASK_NO, 12, "success"));
+		assertEquals(AckScanner.MISMATCH, AckScanner.matchSliceAck(ack, TASK_NO, 11, "success"));
+		assertEquals(AckScanner.MISMATCH, AckScanner.matchSliceAck(ack, "other", 12, "success"));
+		assertEquals(AckScanner.MISMATCH, AckScanner.matchSliceAck(ack, TASK_NO, 12, "failure"));
+		assertEquals(AckScanner.MATCH, AckScanner.matchSliceAck(ack, TASK_NO, 12, null));
+
+		String spaced = " { \"status\" : \"failure\" ,\n \"number\" : 12 , \"taskNo\" : \"" + TASK_NO + "\" , \"crc\" : -1 } ";
+		assertEquals(AckScanner.MISMATCH, AckScanner.matchSliceAck(spaced, TASK_NO, 12, "success"));
+		assertEquals(AckScanner.MATCH, AckScanner.matchSliceAck(spaced, TASK_NO, 12, null));
+
+		assertEquals(AckScanner.MATCH, AckScanner.matchStatus("{\"status\":\"ready\",\"retry\":false}", "ready"));
+		assertEquals(AckScanner.MISMATCH, AckScanner.matchStatus("{\"status\":\"busy\"}", "ready"));
+	}
+
+	@Test
+	void reportsUnexpectedShapesAsUnknown() {
+		String[] payloads = {
+				"{\"taskNo\":\"a\\\"b\",\"number\":1,\"status\":\"success\"}",
+				"{\"taskNo\":\"a\",\"number\":\"1\",\"status\":\"success\"}",
+				"{\"taskNo\":\"a\",\"number\":1.0,\"status\":\"success\"}",
+				"{\"taskNo\":\"a\",\"number\":1}",
+				"{\"taskNo\":\"a\",\"number\":1,\"number\":2,\"status\":\"success\"}",
+				"{\"taskNo\":\"a\",\"number\":1,\"status\":\"success\",\"missing\":[1]}",
+				"{\"taskNo\":\"a\",\"number\":1,\"status\":null}",
+				"{\"taskNo\":\"a\",\"number\":1,\"status\":\"success\"} x",
+				"{\"taskNo\":\"a\",\"number\":1,\"status\":\"success\"",
+				"success",
+				""
+		};
+		for (String payload : payloads) {
+			assertEquals(AckScanner.UNKNOWN, AckScanner.matchSliceAck(payload, "a", 1, "success"), payload);
+		}
+	}
+
+	@Test
+	@Tag("benchmark")
+	void scanThroughputAgainstFastjson() {
+		String[] acks = new String[64];
+		for (int i = 0; i < acks.length; i++) {
+			acks[i] = "{\"taskNo\":\"" + TASK_NO + "\",\"number\":" + (i + 1) + ",\"status\":\"success\"}";
+		}
+		int iterations = 2_000_000;
+
+		// 预热两种实现
+		scan(acks, iterations);
+		parse(acks, iterations);
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+		long start = System.nanoTime();
+		assertEquals(iterations, scan(acks, iterations));
+		double scanNanos = (double) (System.nanoTime() - start) / iterations;
+		long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+		start = System.nanoTime();
+		assertEquals(iterations, parse(acks, iterations));
+		double fastjsonNanos = (double) (System.nanoTime() - start) / iterations;
+
+		// 扫描本身不分配，允许计时和统计调用的少量分配
+		assertTrue(allocated < 1024, "扫描分配 " + allocated + " 字节");
+		assertTrue(scanNanos < fastjsonNanos,
+				String.format("扫描 %.1f ns/条 不快于 Fastjson %.1f ns/条", scanNanos, fastjsonNanos));
+	}
+
+	private static int scan(String[] acks, int iterations) {
+		int matched = 0;
+		for (int i = 0; i < iterations; i++) {
+			if (AckScanner.matchSliceAck(acks[i & 63], TASK_NO, (i & 63) + 1, "success") == AckScanner.MATCH) {
+				matched++;
+			}
+		}
+		return matched;
+	}
+
+	private static int parse(String[] acks, int iterations) {
+		int matched = 0;
+		for (int i = 0; i < iterations; i++) {
+			ConfigTransferSliceResponse response = JSON.parseObject(acks[i & 63], ConfigTransferSliceResponse.class);
+			if (response.getTaskNo().equals(TASK_NO) && response.getNumber() == (i & 63) + 1
+					&& response.getStatus().equals("success")) {
+				matched++;
+			}
+		}
+		return matched;
+	}
+}
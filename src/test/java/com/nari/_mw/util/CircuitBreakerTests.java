@@ -0,0 +1,61 @@
+package com.nari._mw.util;
+
+import com.nari._mw._enum.CircuitState;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 熔断状态转换与RTO估计
+ */
+class CircuitBreakerTests {
+
+	@Test
+	void opensAfterThresholdAndProbesOnceWhenHalfOpen() {
+		CircuitBreaker breaker = new CircuitBreaker(3, 1000);
+		for (int i = 0; i < 3; i++) {
+			assertTrue(breaker.tryAcquire(0));
+			breaker.onFailure(0);
+		}
+		assertEquals(CircuitState.OPEN, breaker.getState());
+		assertFalse(breaker.tryAcquire(999));
+
+		// 冷却结束只放行一个探测
+		assertTrue(breaker.tryAcquire(1000));
+		assertFalse(breaker.tryAcquire(1001));
+		breaker.onFailure(1100);
+		assertEquals(CircuitState.OPEN, breaker.getState());
+		assertFalse(breaker.tryAcquire(2000));
+
+		// 取消的探测不计入结果，下一个请求继续探测
+		assertTrue(breaker.tryAcquire(2100));
+		breaker.release();
+		assertTrue(breaker.tryAcquire(2101));
+		breaker.onSuccess();
+		assertEquals(CircuitState.CLOSED, breaker.getState());
+		assertTrue(breaker.tryAcquire(2102));
+	}
+
+	@Test
+	void rtoFollowsSmoothedRttAndBacksOff() {
+		RtoEstimator estimator = new RtoEstimator(3000, 200, 60_000);
+		assertEquals(3000, estimator.getRtoMs());
+
+		estimator.sample(100);
+		// SRTT=100, RTTVAR=50 -> RTO=300
+		assertEquals(300, estimator.getRtoMs());
+		for (int i = 0; i < 50; i++) {
+			estimator.sample(100);
+		}
+		assertEquals(200, estimator.getRtoMs());
+
+		assertEquals(400, estimator.backoff());
+		assertEquals(800, estimator.backoff());
+		for (int i = 0; i < 10; i++) {
+			estimator.backoff();
+		}
+		assertEquals(60_000, estimator.getRtoMs());
+	}
+}
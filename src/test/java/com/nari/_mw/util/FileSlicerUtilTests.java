@@ -0,0 +1,71 @@
+package com.nari._mw.util;
+
+import com.nari._mw.pojo.dto.mqtt.transfer.ConfigTransferSlice;
+import com.nari._mw.pojo.model.ConfigTransferData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 并行切片与顺序读取的结果一致：切片边界、最后一片长度、CRC32C和MD5
+ */
+class FileSlicerUtilTests {
+	// 非2的幂，避免边界恰好与读取缓冲对齐
+	private static final int SLICE_SIZE = 1000;
+	private static final int TASK_BYTES = FileSlicerUtil.SLICES_PER_TASK * SLICE_SIZE;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void matchesSequentialReferenceAroundTaskBoundaries() throws Exception {
+		int[] sizes = {
+				0, 1, SLICE_SIZE - 1, SLICE_SIZE, SLICE_SIZE + 1,
+				TASK_BYTES - 1, TASK_BYTES, TASK_BYTES + 1,
+				2 * TASK_BYTES - 1, 2 * TASK_BYTES + SLICE_SIZE / 2,
+				37 * TASK_BYTES + 7
+		};
+		Random random = new Random(26);
+		for (int size : sizes) {
+			byte[] content = new byte[size];
+			random.nextBytes(content);
+			Path file = directory.resolve("config-" + size + ".bin");
+			Files.write(file, content);
+
+			ConfigTransferData data = FileSlicerUtil.sliceFile(file.toString(), SLICE_SIZE);
+
+			int expectedSlices = (size + SLICE_SIZE - 1) / SLICE_SIZE;
+			assertEquals(size, data.getSize());
+			assertEquals(SLICE_SIZE, data.getSliceSize());
+			assertEquals(expectedSlices, data.getNumber(), "大小 " + size);
+			assertEquals(expectedSlices, data.getSlices().size(), "大小 " + size);
+			for (int i = 0; i < expectedSlices; i++) {
+				byte[] expected = Arrays.copyOfRange(content, i * SLICE_SIZE, Math.min(size, (i + 1) * SLICE_SIZE));
+				ConfigTransferSlice slice = data.getSlices().get(i);
+				String where = "大小 " + size + " 切片 " + (i + 1);
+				assertEquals(i + 1, slice.getNumber(), where);
+				assertEquals(data.getTaskNo(), slice.getTaskNo(), where);
+				assertArrayEquals(expected, slice.getData(), where);
+				assertEquals(crc32c(expected), slice.getCrc(), where);
+			}
+			assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(content)), data.getMd5(),
+					"大小 " + size);
+		}
+	}
+
+	private static long crc32c(byte[] data) {
+		CRC32C crc = new CRC32C();
+		crc.update(data);
+		return crc.getValue();
+	}
+}
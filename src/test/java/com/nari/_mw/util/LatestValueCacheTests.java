@@ -0,0 +1,134 @@
+package com.nari._mw.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 最新值缓存：并发写入扩容、变化量取出、过期时间戳、按设备遍历
+ */
+class LatestValueCacheTests {
+	private static final double DELTA = 1e-9;
+
+	@Test
+	void keepsAllValuesWhileSegmentsResizeUnderConcurrentWriters() throws Exception {
+		int writers = 4;
+		int pointsPerDevice = 5_000;
+		LatestValueCache cache = new LatestValueCache();
+		ExecutorService executor = Executors.newFixedThreadPool(writers);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<?>> futures = IntStream.range(0, writers)
+					.<Future<?>>mapToObj(w -> executor.submit(() -> {
+						start.await();
+						for (int round = 0; round < 2; round++) {
+							for (int p = 0; p < pointsPerDevice; p++) {
+								cache.put("d" + w, "P" + p, round * 10_000 + p, round);
+							}
+						}
+						return null;
+					}))
+					.toList();
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		Map<String, Integer> counts = new ConcurrentHashMap<>();
+		cache.forEach((deviceId, point, value, timestamp) -> counts.merge(deviceId, 1, Integer::sum));
+		for (int w = 0; w < writers; w++) {
+			assertEquals(pointsPerDevice, counts.get("d" + w));
+			for (int p = 0; p < pointsPerDevice; p += 97) {
+				assertEquals(10_000 + p, cache.get("d" + w, "P" + p), DELTA);
+			}
+		}
+	}
+
+	@Test
+	void drainsEachChangedPointOnceAndKeepsMarksAcrossResize() {
+		LatestValueCache cache = new LatestValueCache();
+		// 超过初始容量的3/4，触发分段扩容后变化标记仍保留
+		for (int p = 0; p < 2_000; p++) {
+			cache.put("d1", "P" + p, p, 1);
+		}
+		cache.put("d1", "P0", 0, 2);
+		assertEquals(2_000, drain(cache).size());
+		assertTrue(drain(cache).isEmpty());
+
+		// 值未变化只更新时间戳，不产生变化量
+		cache.put("d1", "P1", 1, 3);
+		assertTrue(drain(cache).isEmpty());
+
+		cache.put("d1", "P1", 5, 4);
+		cache.put("d1", "P1", 6, 5);
+		Map<String, Double> changes = drain(cache);
+		assertEquals(1, changes.size());
+		assertEquals(6, changes.get("d1/P1"), DELTA);
+	}
+
+	@Test
+	void ignoresUpdatesWithOlderTimestamps() {
+		LatestValueCache cache = new LatestValueCache();
+		cache.put("d1", "P", 1.0, 100);
+		drain(cache);
+
+		cache.put("d1", "P", 2.0, 50);
+		assertEquals(1.0, cache.get("d1", "P"), DELTA);
+		assertTrue(drain(cache).isEmpty());
+
+		// 相同时间戳视为更新
+		cache.put("d1", "P", 3.0, 100);
+		assertEquals(3.0, cache.get("d1", "P"), DELTA);
+		assertTrue(Double.isNaN(cache.get("d1", "missing")));
+		assertTrue(Double.isNaN(cache.get("missing", "P")));
+	}
+
+	@Test
+	void forEachOfDeviceVisitsOnlyThatDevice() {
+		LatestValueCache cache = new LatestValueCache();
+		for (int d = 0; d < 50; d++) {
+			for (int p = 0; p < 20; p++) {
+				cache.put("d" + d, "P" + p, d * 100 + p, 1);
+			}
+		}
+		// 其他设备使用同名测点
+		cache.put("d7", "P3", 42.0, 2);
+
+		Map<String, Double> visited = new HashMap<>();
+		Set<String> devices = new HashSet<>();
+		cache.forEachOfDevice("d7", (deviceId, point, value, timestamp) -> {
+			devices.add(deviceId);
+			visited.put(point, value);
+		});
+		assertEquals(Set.of("d7"), devices);
+		assertEquals(20, visited.size());
+		assertEquals(42.0, visited.get("P3"), DELTA);
+		assertEquals(719, visited.get("P19"), DELTA);
+
+		cache.forEachOfDevice("unknown", (deviceId, point, value, timestamp) -> devices.add(deviceId));
+		assertEquals(Set.of("d7"), devices);
+	}
+
+	private static Map<String, Double> drain(LatestValueCache cache) {
+		Map<String, Double> changes = new HashMap<>();
+		cache.drainChanges((deviceId, point, value, timestamp) -> changes.put(deviceId + "/" + point, value));
+		return changes;
+	}
+}
@@ -0,0 +1,96 @@
+package com.nari._mw.util;
+
+import com.nari._mw.pojo.model.OutboundMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 暂存日志：重启恢复、同种类取代、空间不足时压缩、目标代理记录
+ */
+class OutboundMessageLogTests {
+	@TempDir
+	Path directory;
+
+	@Test
+	void recoversPendingMessagesInOrderAfterReopen() throws Exception {
+		Path file = directory.resolve("device-1.log");
+		try (OutboundMessageLog log = OutboundMessageLog.open(file, 4096)) {
+			log.append("function-blocks", "topic/a", "v1");
+			log.append("command", "topic/a", "reboot");
+			OutboundMessage latest = log.append("function-blocks", "topic/a", "v2");
+			log.append("other", "topic/b", "x");
+			log.acknowledge(2);
+			assertEquals(latest.getSequence(), log.pending().get(0).getSequence());
+		}
+
+		try (OutboundMessageLog log = OutboundMessageLog.open(file, 4096)) {
+			List<OutboundMessage> pending = log.pending();
+			assertEquals(2, pending.size());
+			assertEquals("v2", pending.get(0).getPayload());
+			assertEquals("x", pending.get(1).getPayload());
+			assertEquals(5, log.append("command", "topic/a", "y").getSequence());
+		}
+	}
+
+	@Test
+	void compactsSupersededMessagesWhenFull() throws Exception {
+		Path file = directory.resolve("device-2.log");
+		String payload = "p".repeat(200);
+		try (OutboundMessageLog log = OutboundMessageLog.open(file, 1024)) {
+			for (int i = 0; i < 100; i++) {
+				log.append("function-blocks", "topic/a", payload + i);
+			}
+			assertEquals(1, log.pending().size());
+			assertEquals(1024, Files.size(file));
+
+			log.acknowledge(100);
+			assertTrue(log.isEmpty());
+		}
+
+		try (OutboundMessageLog log = OutboundMessageLog.open(file, 1024)) {
+			assertTrue(log.isEmpty());
+		}
+	}
+
+	@Test
+	void growsWhenLiveMessagesExceedCapacity() throws Exception {
+		Path file = directory.resolve("device-3.log");
+		try (OutboundMessageLog log = OutboundMessageLog.open(file, 256)) {
+			for (int i = 0; i < 20; i++) {
+				log.append("kind-" + i, "topic/a", "payload-" + i);
+			}
+		}
+
+		try (OutboundMessageLog log = OutboundMessageLog.open(file, 256)) {
+			List<OutboundMessage> pending = log.pending();
+			assertEquals(20, pending.size());
+			assertEquals("payload-19", pending.get(19).getPayload());
+		}
+	}
+
+	@Test
+	void recoversTargetBrokerWithoutSyncOnAppend() throws Exception {
+		Path file = directory.resolve("device-4.log");
+		try (OutboundMessageLog log = OutboundMessageLog.open(file, 1024, false)) {
+			log.append("function-blocks", "topic/a", "v1", "tcp://broker-b:1883", "operator");
+			log.append("group:g1", "topic/a", "join");
+			log.flush();
+		}
+
+		try (OutboundMessageLog log = OutboundMessageLog.open(file, 1024, false)) {
+			List<OutboundMessage> pending = log.pending();
+			assertEquals(2, pending.size());
+			assertEquals("tcp://broker-b:1883", pending.get(0).getHost());
+			assertEquals("operator", pending.get(0).getUsername());
+			assertNull(pending.get(1).getHost());
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package com.nari._mw.util;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.nari._mw.config.TransferLoggingConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 传输事件日志：后台线程异步输出、切片采样与明细设备、消息内容缩略
+ */
+class TransferEventLoggerTests {
+	private final Logger eventLog = (Logger) LoggerFactory.getLogger("com.nari._mw.transfer");
+	private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+	private Level originalLevel;
+	private TransferEventLogger logger;
+
+	@BeforeEach
+	void setUp() {
+		originalLevel = eventLog.getLevel();
+		appender.start();
+		eventLog.addAppender(appender);
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (logger != null) {
+			logger.shutdown();
+		}
+		eventLog.detachAppender(appender);
+		eventLog.setLevel(originalLevel);
+	}
+
+	@Test
+	void writesSummaryFromBackgroundThread() throws InterruptedException {
+		logger = new TransferEventLogger(new TransferLoggingConfig());
+		TransferEventLogger.TransferTrace trace = logger.begin("d1", "task-1", 2048, 2);
+		trace.sliceAcked(1, 1024, 0);
+		trace.sliceAcked(2, 1024, 1);
+		trace.completed();
+
+		List<ILoggingEvent> events = awaitEvents(1);
+		ILoggingEvent summary = events.get(0);
+		assertEquals(Level.INFO, summary.getLevel());
+		assertEquals("transfer-event-logger", summary.getThreadName());
+		String message = summary.getFormattedMessage();
+		assertTrue(message.startsWith("event=transfer_summary device=d1 taskNo=task-1 status=success"), message);
+		assertTrue(message.contains("slices=2/2 bytesSent=3072 retries=1"), message);
+	}
+
+	@Test
+	void samplesSliceEventsAndLogsEverySliceOfDetailDevices() throws InterruptedException {
+		eventLog.setLevel(Level.DEBUG);
+		TransferLoggingConfig config = new TransferLoggingConfig();
+		config.setSliceSampleRate(3);
+		config.setDetailDevices(Set.of("detail"));
+		logger = new TransferEventLogger(config);
+
+		TransferEventLogger.TransferTrace sampled = logger.begin("d1", "task-1", 9, 9);
+		for (int slice = 1; slice <= 9; slice++) {
+			sampled.sliceAcked(slice, 1, 0);
+		}
+		TransferEventLogger.TransferTrace detail = logger.begin("detail", "task-2", 4, 4);
+		for (int slice = 1; slice <= 4; slice++) {
+			detail.sliceAcked(slice, 1, 0);
+		}
+
+		List<ILoggingEvent> events = awaitEvents(7);
+		assertEquals(3, events.stream()
+				.filter(e -> e.getLevel() == Level.DEBUG && e.getFormattedMessage().contains("device=d1")).count());
+		assertEquals(4, events.stream()
+				.filter(e -> e.getLevel() == Level.INFO && e.getFormattedMessage().contains("device=detail")).count());
+	}
+
+	@Test
+	void skipsSampledSliceEventsWhenDebugIsDisabled() throws InterruptedException {
+		eventLog.setLevel(Level.INFO);
+		TransferLoggingConfig config = new TransferLoggingConfig();
+		config.setSliceSampleRate(1);
+		logger = new TransferEventLogger(config);
+
+		TransferEventLogger.TransferTrace trace = logger.begin("d1", "task-1", 3, 3);
+		for (int slice = 1; slice <= 3; slice++) {
+			trace.sliceAcked(slice, 1, 0);
+		}
+		trace.failed(new IllegalStateException("校验失败"));
+
+		List<ILoggingEvent> events = awaitEvents(1);
+		assertEquals(1, events.size());
+		assertTrue(events.get(0).getFormattedMessage().contains("status=failure"));
+		assertTrue(events.get(0).getFormattedMessage().endsWith("error=校验失败"));
+	}
+
+	@Test
+	void abbreviatesPayloadToLengthCrcAndPreview() {
+		String payload = "{\"deviceId\":\"设备-1\",\"data\":\"" + "x".repeat(100) + "\"}";
+		CRC32 crc = new CRC32();
+		crc.update(payload.getBytes(StandardCharsets.UTF_8));
+
+		String abbreviated = TransferEventLogger.abbreviate(payload, 10);
+		assertEquals("len=" + payload.length() + " crc32=" + Long.toHexString(crc.getValue())
+				+ " preview=" + payload.substring(0, 10) + "...", abbreviated);
+		assertTrue(TransferEventLogger.abbreviate("short", 10).endsWith(" preview=short"));
+		assertEquals("null", TransferEventLogger.abbreviate(null, 10));
+
+		TransferLoggingConfig config = new TransferLoggingConfig();
+		config.setPayloadPreviewLength(4);
+		logger = new TransferEventLogger(config);
+		assertEquals(4, logger.getPayloadPreviewLength());
+		assertTrue(logger.abbreviate(payload).endsWith(" preview={\"de..."));
+	}
+
+	/**
+	 * 等待至少 count 条事件输出，再留出时间确认没有多余事件
+	 */
+	private List<ILoggingEvent> awaitEvents(int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (appender.list.size() < count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(100);
+		return List.copyOf(appender.list);
+	}
+}
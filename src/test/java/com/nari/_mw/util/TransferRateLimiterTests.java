@@ -0,0 +1,98 @@
+package com.nari._mw.util;
+
+import com.nari._mw.config.TransferRateLimitConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 令牌桶补充与突发，三级限速取最大等待，设备覆盖与空闲桶清理
+ */
+class TransferRateLimiterTests {
+	private static final long TOLERANCE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+	@Test
+	void allowsBurstUpToOneSecondThenChargesOverdraft() {
+		TokenBucket bucket = new TokenBucket(1_000);
+		assertEquals(0, bucket.reserve(1_000));
+		// 透支500字节，按1000 B/s需要等待约0.5秒
+		assertWait(TimeUnit.MILLISECONDS.toNanos(500), bucket.reserve(500));
+		assertEquals(0, new TokenBucket(0).reserve(Long.MAX_VALUE));
+	}
+
+	@Test
+	void refillsAtConfiguredRateUpToCapacity() throws InterruptedException {
+		TokenBucket bucket = new TokenBucket(1_000);
+		assertEquals(0, bucket.reserve(1_000));
+		Thread.sleep(300);
+		assertEquals(0, bucket.reserve(250));
+		assertTrue(bucket.reserve(200) > 0);
+
+		// 长时间空闲后最多补满一秒的令牌
+		TokenBucket idle = new TokenBucket(1_000);
+		Thread.sleep(300);
+		assertEquals(0, idle.reserve(1_000));
+		assertTrue(idle.reserve(100) > 0);
+	}
+
+	@Test
+	void waitsForTheSlowestOfGlobalBrokerAndDeviceBuckets() {
+		TransferRateLimitConfig config = new TransferRateLimitConfig();
+		config.setGlobalBytesPerSecond(4_000);
+		config.setBrokerBytesPerSecond(2_000);
+		config.setDeviceBytesPerSecond(1_000);
+		config.setDevices(Map.of("fast", 100_000L));
+		TransferRateLimiter limiter = new TransferRateLimiter(config);
+
+		assertEquals(0, limiter.reserve("d1", "tcp://b1", 1_000));
+		// 代理剩余1000透支500(0.25秒)，设备透支500(0.5秒)，全局充足
+		assertWait(TimeUnit.MILLISECONDS.toNanos(500), limiter.reserve("d2", "tcp://b1", 1_500));
+		// 设备不受限，代理再透支1000共1500(0.75秒)，全局剩余500
+		assertWait(TimeUnit.MILLISECONDS.toNanos(750), limiter.reserve("fast", "tcp://b1", 1_000));
+		// 另一个代理和设备充足，全局透支1500(0.375秒)
+		assertWait(TimeUnit.MILLISECONDS.toNanos(375), limiter.reserve("fast", "tcp://b2", 2_000));
+	}
+
+	@Test
+	void appliesPerDeviceOverrides() {
+		TransferRateLimitConfig config = new TransferRateLimitConfig();
+		config.setDeviceBytesPerSecond(1_000);
+		config.setDevices(Map.of("slow", 100L));
+		TransferRateLimiter limiter = new TransferRateLimiter(config);
+
+		assertEquals(0, limiter.reserve("slow", null, 100));
+		assertWait(TimeUnit.SECONDS.toNanos(1), limiter.reserve("slow", null, 100));
+		assertEquals(0, limiter.reserve("other", null, 1_000));
+		assertEquals(0, limiter.reserve(null, null, 1_000_000));
+	}
+
+	@Test
+	void evictsBucketsOnlyWhenFullAndIdle() throws InterruptedException {
+		TransferRateLimitConfig config = new TransferRateLimitConfig();
+		config.setBrokerBytesPerSecond(10_000);
+		config.setDeviceBytesPerSecond(10_000);
+		config.setIdleEvictMs(50);
+		TransferRateLimiter limiter = new TransferRateLimiter(config);
+
+		limiter.reserve("d1", "tcp://b1", 10_000);
+		assertEquals(2, limiter.bucketCount());
+
+		// 空闲已超过清理周期但令牌尚未补满，保留以免清理后绕过限速
+		Thread.sleep(200);
+		limiter.reserve("d2", null, 1);
+		assertEquals(3, limiter.bucketCount());
+
+		Thread.sleep(1_100);
+		limiter.reserve("d3", null, 1);
+		assertEquals(1, limiter.bucketCount());
+	}
+
+	private static void assertWait(long expectedNanos, long actualNanos) {
+		assertTrue(actualNanos <= expectedNanos && actualNanos > expectedNanos - TOLERANCE_NANOS,
+				"等待 " + actualNanos + " ns，期望约 " + expectedNanos + " ns");
+	}
+}
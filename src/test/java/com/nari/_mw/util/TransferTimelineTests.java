@@ -0,0 +1,62 @@
+package com.nari._mw.util;
+
+import com.nari._mw.pojo.dto.response.TransferTimelineResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 传输时间线：阶段按出现顺序累计，准入排队计入 queue 阶段，切片往返时间取最近秩百分位，结束后的记录被忽略
+ */
+class TransferTimelineTests {
+
+	@Test
+	void summarizesPhasesSliceRoundTripsAndCounters() {
+		TransferTimeline timeline = new TransferTimeline("device-1");
+		timeline.phase(TransferTimeline.CONNECT);
+		timeline.transferId("transfer-1");
+		timeline.file("task-1", 100 * 1024, 100);
+		timeline.phase(TransferTimeline.METADATA);
+		timeline.retried(1);
+		timeline.phase(TransferTimeline.SLICES);
+		for (int i = 1; i <= 100; i++) {
+			timeline.sliceAcked(1024, i == 100 ? 2 : 0, TimeUnit.MILLISECONDS.toNanos(i));
+		}
+		timeline.phase(TransferTimeline.VERIFICATION);
+		TransferTimelineResponse response = timeline.finish(true, null);
+
+		assertEquals("success", response.getStatus());
+		assertEquals("transfer-1", response.getTransferId());
+		assertEquals(List.of(TransferTimeline.CONNECT, TransferTimeline.METADATA, TransferTimeline.SLICES,
+				TransferTimeline.VERIFICATION), List.copyOf(response.getPhasesMs().keySet()));
+		assertEquals(50.0, response.getSliceRttP50Ms());
+		assertEquals(90.0, response.getSliceRttP90Ms());
+		assertEquals(99.0, response.getSliceRttP99Ms());
+		assertEquals(100.0, response.getSliceRttMaxMs());
+		assertEquals(3, response.getRetries());
+		assertEquals(102L * 1024, response.getBytesSent());
+		assertNull(response.getError());
+
+		// 执行线程在超时后继续记录不影响已结束的时间线
+		timeline.sliceAcked(1024, 5, 1);
+		assertEquals(3, timeline.finish(false, "超时").getRetries());
+	}
+
+	@Test
+	void countsAdmissionWaitAsQueuePhase() {
+		TransferTimeline timeline = TransferTimeline.queuedSince("device-1",
+				System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(200));
+		timeline.phase(TransferTimeline.CONNECT);
+		TransferTimelineResponse response = timeline.finish(false, "连接失败");
+
+		assertEquals(List.of(TransferTimeline.QUEUE, TransferTimeline.CONNECT),
+				List.copyOf(response.getPhasesMs().keySet()));
+		assertTrue(response.getPhasesMs().get(TransferTimeline.QUEUE) >= 200.0);
+		assertTrue(response.getDurationMs() >= 200.0);
+	}
+}